@@ -0,0 +1,52 @@
+package com.springbootmicroservices.apigateway.filter;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+// Forwards the time the caller still waits, so services can abandon work nobody will receive.
+// The gateway stops waiting after its own request timeout, so a longer client timeout is shortened to it
+@Component
+public class RequestDeadlineFilter implements GlobalFilter, Ordered {
+
+    public static final String TIMEOUT_HEADER = "X-Request-Timeout";
+
+    private final long requestTimeoutMillis;
+
+    public RequestDeadlineFilter(@Value("${gateway.request-timeout:30s}") Duration requestTimeout) {
+        this.requestTimeoutMillis = requestTimeout.toMillis();
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        long timeoutMillis = Math.min(requestTimeoutMillis,
+                clientTimeout(exchange.getRequest().getHeaders().getFirst(TIMEOUT_HEADER)));
+        ServerWebExchange forwarded = exchange.mutate()
+                .request(request -> request.headers(headers -> headers.set(TIMEOUT_HEADER, Long.toString(timeoutMillis))))
+                .build();
+        return chain.filter(forwarded);
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+
+    // Missing or malformed values leave the gateway's own timeout in place
+    private long clientTimeout(String value) {
+        if (value == null) {
+            return Long.MAX_VALUE;
+        }
+        try {
+            return Math.max(0, Long.parseLong(value.trim()));
+        } catch (NumberFormatException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.springbootmicroservices.orderservice.config;
+
+import com.springbootmicroservices.orderservice.service.ShadowPacking;
+import com.springbootmicroservices.packing.BranchAndBoundEngine;
+import com.springbootmicroservices.packing.LocalSearchEngine;
+import com.springbootmicroservices.packing.PackingEngine;
+import com.springbootmicroservices.packing.PackingEngines;
+import com.springbootmicroservices.packing.PartitionedEngine;
+import com.springbootmicroservices.packing.PortfolioEngine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+@Configuration
+@EnableConfigurationProperties(PackagingProperties.class)
+public class PackagingConfig {
+
+    @Bean
+    public PackingEngine packingEngine(PackagingProperties properties,
+                                       @Qualifier("portfolioExecutor") ExecutorService portfolioExecutor,
+                                       ForkJoinPool partitionPool,
+                                       MeterRegistry meterRegistry) {
+        PackingEngine engine = PackingEngines.PORTFOLIO.equals(properties.getEngine())
+                ? portfolio(properties, portfolioExecutor, meterRegistry)
+                : engine(properties.getEngine(), properties);
+
+        PackagingProperties.Partition partition = properties.getPartition();
+        if (partition.isEnabled()) {
+            engine = new PartitionedEngine(engine, partitionPool, partition.getMinItems(), partition.getPartitions());
+        }
+
+        PackagingProperties.LocalSearch localSearch = properties.getLocalSearch();
+        if (localSearch.isEnabled()) {
+            engine = new LocalSearchEngine(engine, localSearch.getBudget().toNanos(), localSearchListener(meterRegistry));
+        }
+        return engine;
+    }
+
+    private LocalSearchEngine.Listener localSearchListener(MeterRegistry meterRegistry) {
+        Timer improved = localSearchTimer("improved", meterRegistry);
+        Timer unchanged = localSearchTimer("unchanged", meterRegistry);
+        Counter boxesSaved = Counter.builder("packaging.local-search.boxes.saved")
+                .description("Boxes removed by the local search")
+                .register(meterRegistry);
+        Counter volumeSaved = Counter.builder("packaging.local-search.volume.saved")
+                .description("Box volume removed by the local search")
+                .baseUnit("cm3")
+                .register(meterRegistry);
+        return (boxesBefore, boxesAfter, volumeBefore, volumeAfter, nanos) -> {
+            boolean better = boxesAfter < boxesBefore || volumeAfter < volumeBefore;
+            (better ? improved : unchanged).record(nanos, TimeUnit.NANOSECONDS);
+            boxesSaved.increment(boxesBefore - boxesAfter);
+            volumeSaved.increment(volumeBefore - volumeAfter);
+        };
+    }
+
+    private Timer localSearchTimer(String outcome, MeterRegistry meterRegistry) {
+        return Timer.builder("packaging.local-search")
+                .description("Time spent improving plans, by whether the plan got better")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private PackingEngine portfolio(PackagingProperties properties, ExecutorService portfolioExecutor,
+                                    MeterRegistry meterRegistry) {
+        PackagingProperties.Portfolio portfolio = properties.getPortfolio();
+        List<PackingEngine> strategies = portfolio.getStrategies().stream()
+                .map(name -> engine(name, properties))
+                .collect(Collectors.toList());
+        PortfolioEngine.Listener listener = (strategy, outcome, nanos) -> Timer.builder("packaging.portfolio.strategy")
+                .description("Time spent by each portfolio strategy, by how it ended")
+                .tag("strategy", strategy)
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        return new PortfolioEngine(strategies, portfolioExecutor, portfolio.getBudget().toNanos(), listener);
+    }
+
+    private PackingEngine engine(String name, PackagingProperties properties) {
+        if (!PackingEngines.EXACT.equals(name)) {
+            return PackingEngines.byName(name);
+        }
+        PackagingProperties.Exact exact = properties.getExact();
+        return new BranchAndBoundEngine(PackingEngines.byName(exact.getFallback()), exact.getMaxItems(),
+                exact.getDeadline().toNanos());
+    }
+
+    // Bounded CPU pool for packing; when the queue is full the caller packs the order itself
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService packingExecutor(PackagingProperties properties, MeterRegistry meterRegistry) {
+        PackagingProperties.Parallel parallel = properties.getParallel();
+        return boundedPool("packing", parallel.getThreads(), parallel.getQueueCapacity(),
+                new ThreadPoolExecutor.CallerRunsPolicy(), meterRegistry);
+    }
+
+    // Separate pool for portfolio strategies, so orders packed on the packing pool never wait on
+    // their own pool; when it is full the extra strategies are skipped
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService portfolioExecutor(PackagingProperties properties, MeterRegistry meterRegistry) {
+        PackagingProperties.Portfolio portfolio = properties.getPortfolio();
+        return boundedPool("portfolio", portfolio.getThreads(), portfolio.getQueueCapacity(),
+                new ThreadPoolExecutor.AbortPolicy(), meterRegistry);
+    }
+
+    // Fork-join pool the partitions of a single large order are packed on
+    @Bean(destroyMethod = "shutdown")
+    public ForkJoinPool partitionPool(PackagingProperties properties, MeterRegistry meterRegistry) {
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, properties.getPartition().getPartitions()));
+        new ExecutorServiceMetrics(pool, "partition", Collections.emptyList()).bindTo(meterRegistry);
+        return pool;
+    }
+
+    // Candidate engine evaluated on a sample of the live orders, never on the request thread
+    @Bean
+    public ShadowPacking shadowPacking(PackagingProperties properties,
+                                       @Qualifier("shadowExecutor") ExecutorService shadowExecutor,
+                                       MeterRegistry meterRegistry) {
+        PackagingProperties.Shadow shadow = properties.getShadow();
+        PackingEngine candidate = shadow.isEnabled() ? engine(shadow.getEngine(), properties) : null;
+        return new ShadowPacking(candidate, shadowExecutor, shadow, meterRegistry);
+    }
+
+    // Small pool for the shadow candidate; when it is full the sampled order is dropped
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService shadowExecutor(PackagingProperties properties, MeterRegistry meterRegistry) {
+        PackagingProperties.Shadow shadow = properties.getShadow();
+        return boundedPool("shadow", shadow.getThreads(), shadow.getQueueCapacity(),
+                new ThreadPoolExecutor.AbortPolicy(), meterRegistry);
+    }
+
+    private ExecutorService boundedPool(String name, int threads, int queueCapacity,
+                                        RejectedExecutionHandler rejectionHandler, MeterRegistry meterRegistry) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                threads,
+                threads,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, name + "-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                rejectionHandler);
+        return ExecutorServiceMetrics.monitor(meterRegistry, executor, name);
+    }
+}
@@ -0,0 +1,188 @@
+package com.springbootmicroservices.orderservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+@Data
+@ConfigurationProperties(prefix = "packaging")
+public class PackagingProperties {
+
+    // Packing engine used for new orders: "ffd" (volume based), "extreme-point" (3D placement),
+    // one of the other heuristics ("bfd", "wfd", "ffd-longest-edge", "bfd-longest-edge"), "exact" or "portfolio"
+    private String engine = "ffd";
+
+    private Parallel parallel = new Parallel();
+
+    private Cache cache = new Cache();
+
+    private Portfolio portfolio = new Portfolio();
+
+    private Exact exact = new Exact();
+
+    private Partition partition = new Partition();
+
+    private LocalSearch localSearch = new LocalSearch();
+
+    private Shadow shadow = new Shadow();
+
+    private Deadline deadline = new Deadline();
+
+    private WriteBehind writeBehind = new WriteBehind();
+
+    private Storage storage = new Storage();
+
+    private History history = new History();
+
+    private Retention retention = new Retention();
+
+    @Data
+    public static class Parallel {
+        // Packs the orders of a batch concurrently on the packing pool
+        private boolean enabled = false;
+        // Size of the packing pool; packing is CPU bound, so one thread per core
+        private int threads = Runtime.getRuntime().availableProcessors();
+        // Orders waiting for a packing thread before the submitting thread packs them itself
+        private int queueCapacity = 1000;
+        // Smaller batches are packed on the request thread
+        private int minOrders = 2;
+    }
+
+    @Data
+    public static class Cache {
+        // Reuses packing results for orders with the same item shapes
+        private boolean enabled = true;
+        // Least recently used results are evicted beyond this many entries
+        private int maxEntries = 10000;
+        // Larger orders are not cached; their keys would cost more memory than they save
+        private int maxItems = 1000;
+    }
+
+    @Data
+    public static class Portfolio {
+        // Engines raced by the "portfolio" engine; the first one runs on the request thread and always counts
+        private List<String> strategies = new ArrayList<>(Arrays.asList(
+                "ffd", "bfd", "wfd", "ffd-longest-edge", "bfd-longest-edge"));
+        // Time per order the other strategies get to finish
+        private Duration budget = Duration.ofMillis(50);
+        // Size of the pool the other strategies run on
+        private int threads = Runtime.getRuntime().availableProcessors();
+        // Strategies waiting for a thread; beyond this they are skipped
+        private int queueCapacity = 1000;
+    }
+
+    @Data
+    public static class Exact {
+        // Heuristic that gives the starting plan, and the whole plan for larger orders
+        private String fallback = "ffd";
+        // Orders with more items are left to the fallback; the search grows exponentially
+        private int maxItems = 20;
+        // Hard limit per order; the best plan found so far is returned, not marked optimal
+        private Duration deadline = Duration.ofMillis(100);
+    }
+
+    @Data
+    public static class Partition {
+        // Packs single very large orders in parallel partitions, then consolidates their boxes
+        private boolean enabled = false;
+        // Orders with fewer items are packed serially
+        private int minItems = 20000;
+        // Number of partitions, and size of the fork-join pool they are packed on
+        private int partitions = Runtime.getRuntime().availableProcessors();
+    }
+
+    @Data
+    public static class LocalSearch {
+        // Keeps improving every plan after the engine (emptying and shrinking boxes) within the budget
+        private boolean enabled = false;
+        // Time per order the search may take; it stops with the best plan so far
+        private Duration budget = Duration.ofMillis(20);
+    }
+
+    @Data
+    public static class Shadow {
+        // Packs a sample of the orders again with a candidate engine and compares it with the primary one
+        private boolean enabled = false;
+        // Candidate engine name, as for packaging.engine
+        private String engine = "bfd";
+        // Fraction of the packed orders the candidate also packs
+        private double sampleRate = 0.01;
+        private int threads = 1;
+        // Sampled orders beyond the queue are dropped, never packed on the request thread
+        private int queueCapacity = 100;
+        // Orders where the candidate does worst against the primary, kept for inspection
+        private int disagreements = 50;
+    }
+
+    @Data
+    public static class Deadline {
+        // Time a request may take when it carries no X-Request-Timeout header
+        private Duration defaultTimeout = Duration.ofSeconds(30);
+        // Upper bound for the timeout a client asks for
+        private Duration maxTimeout = Duration.ofMinutes(5);
+    }
+
+    @Data
+    public static class WriteBehind {
+        // Answers /optimize once the orders are packed and logged to the outbox; a background writer stores them
+        private boolean enabled = false;
+        // Orders accepted but not yet stored; past it requests wait, then fail with a 503
+        private int queueCapacity = 10000;
+        // Orders stored per transaction
+        private int batchSize = 500;
+        // How long a request waits for room in a full queue, within its own deadline
+        private Duration maxWait = Duration.ofSeconds(1);
+        // Append-only file of accepted orders, replayed on startup for the ones never stored
+        private String outbox = "data/packaging-outbox.jsonl";
+        // Forces every append to disk before answering; without it a power loss may drop the latest orders
+        private boolean sync = true;
+        // How long shutdown waits for the queue to drain; what is left is replayed on the next start
+        private Duration shutdownTimeout = Duration.ofSeconds(30);
+        // Orders that can never be stored, e.g. breaking a constraint, in the outbox record format
+        private String deadLetter = "data/packaging-dead-letter.jsonl";
+        // First wait before a batch that failed for a temporary reason is tried again; doubled up to maxRetryBackoff
+        private Duration retryBackoff = Duration.ofMillis(100);
+        private Duration maxRetryBackoff = Duration.ofSeconds(30);
+    }
+
+    @Data
+    public static class Storage {
+        // How new boxes store their contents: "join-table" (one packaging_products and one quantity row per
+        // entry) or "packed" (one encoded column per box, with positions); both are read either way
+        private String format = "join-table";
+        // Converts boxes stored in the join tables to the packed column on startup
+        private boolean migrate = false;
+        // Boxes converted per transaction
+        private int migrationBatchSize = 500;
+    }
+
+    @Data
+    public static class History {
+        // Orders per history page when the client does not ask for a size
+        private int pageSize = 20;
+        // Largest page a client may ask for
+        private int maxPageSize = 100;
+    }
+
+    @Data
+    public static class Retention {
+        // Removes orders older than maxAge, with their products and boxes, in the background
+        private boolean enabled = false;
+        // Orders created longer ago than this are removed
+        private Duration maxAge = Duration.ofDays(365);
+        // Time from the end of one run to the start of the next; the first run starts one interval after startup
+        private Duration interval = Duration.ofHours(1);
+        // Orders removed per transaction, so no lock is held for long
+        private int batchSize = 500;
+        // Pause between transactions, leaving the database to live traffic in between
+        private Duration pause = Duration.ofMillis(100);
+        // Writes the removed orders to a gzipped JSON lines file per run before removing them
+        private boolean archive = false;
+        // Directory of the archive files
+        private String archiveDirectory = "data/archive";
+    }
+}
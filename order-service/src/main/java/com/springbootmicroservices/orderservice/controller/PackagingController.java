@@ -1,10 +1,15 @@
 package com.springbootmicroservices.orderservice.controller;
 
+import com.springbootmicroservices.orderservice.dto.AppendProductsRequestDto;
 import com.springbootmicroservices.orderservice.dto.OrderPackagingResponseDto;
 import com.springbootmicroservices.orderservice.dto.PackagingRequestDto;
 import com.springbootmicroservices.orderservice.dto.PackagingResponseDto;
+import com.springbootmicroservices.orderservice.dto.StoredOrderDto;
+import com.springbootmicroservices.orderservice.dto.StoredOrderPageDto;
 import com.springbootmicroservices.orderservice.service.PackagingService;
+import com.springbootmicroservices.orderservice.service.RequestDeadlines;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -14,10 +19,15 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 import javax.validation.Valid;
 import java.util.List;
@@ -29,6 +39,7 @@ import java.util.List;
 public class PackagingController {
 
     private final PackagingService packagingService;
+    private final RequestDeadlines requestDeadlines;
 
     @PostMapping("/optimize")
     @Operation(
@@ -44,19 +55,157 @@ public class PackagingController {
             @ApiResponse(responseCode = "400", description = "Invalid input"),
             @ApiResponse(responseCode = "401", description = "Unauthorized"),
             @ApiResponse(responseCode = "403", description = "Forbidden"),
-            @ApiResponse(responseCode = "500", description = "Server error")
+            @ApiResponse(responseCode = "500", description = "Server error"),
+            @ApiResponse(responseCode = "503", description = "Request deadline exceeded")
         }
     )
     @PreAuthorize("hasRole('ROLE_USER')")
     public ResponseEntity<PackagingResponseDto> optimizePackaging(
-            @Valid @RequestBody PackagingRequestDto request) {
+            @Valid @RequestBody PackagingRequestDto request,
+            @Parameter(description = "Time in milliseconds the client waits for the response")
+            @RequestHeader(value = RequestDeadlines.TIMEOUT_HEADER, required = false) Long timeoutMillis) {
         
         List<OrderPackagingResponseDto> orderResponses = 
-                packagingService.packageOrders(request.getOrders());
+                packagingService.packageOrders(request.getOrders(), requestDeadlines.start(timeoutMillis));
         
         PackagingResponseDto response = new PackagingResponseDto();
         response.setOrders(orderResponses);
         
         return new ResponseEntity<>(response, HttpStatus.OK);
     }
+
+    @PostMapping("/quote")
+    @Operation(
+        summary = "Quote packaging for orders",
+        description = "Returns the same packaging as /optimize without storing the orders or their packaging",
+        security = { @SecurityRequirement(name = "bearer-jwt") },
+        responses = {
+            @ApiResponse(
+                responseCode = "200",
+                description = "Orders packaged successfully",
+                content = @Content(schema = @Schema(implementation = PackagingResponseDto.class))
+            ),
+            @ApiResponse(responseCode = "400", description = "Invalid input"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized"),
+            @ApiResponse(responseCode = "403", description = "Forbidden"),
+            @ApiResponse(responseCode = "500", description = "Server error"),
+            @ApiResponse(responseCode = "503", description = "Request deadline exceeded")
+        }
+    )
+    @PreAuthorize("hasRole('ROLE_USER')")
+    public ResponseEntity<PackagingResponseDto> quotePackaging(
+            @Valid @RequestBody PackagingRequestDto request,
+            @Parameter(description = "Time in milliseconds the client waits for the response")
+            @RequestHeader(value = RequestDeadlines.TIMEOUT_HEADER, required = false) Long timeoutMillis) {
+        
+        List<OrderPackagingResponseDto> orderResponses = 
+                packagingService.quoteOrders(request.getOrders(), requestDeadlines.start(timeoutMillis));
+        
+        PackagingResponseDto response = new PackagingResponseDto();
+        response.setOrders(orderResponses);
+        
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
+
+    @PostMapping("/orders/{orderNumber}/products")
+    @Operation(
+        summary = "Add products to a packaged order",
+        description = "Packs the new products into the order's existing boxes where they fit, opening new boxes " +
+                "only for the rest, and returns all boxes of the order",
+        security = { @SecurityRequirement(name = "bearer-jwt") },
+        responses = {
+            @ApiResponse(
+                responseCode = "200",
+                description = "Products added successfully",
+                content = @Content(schema = @Schema(implementation = OrderPackagingResponseDto.class))
+            ),
+            @ApiResponse(responseCode = "400", description = "Invalid input"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized"),
+            @ApiResponse(responseCode = "403", description = "Forbidden"),
+            @ApiResponse(responseCode = "404", description = "Order not found"),
+            @ApiResponse(responseCode = "500", description = "Server error"),
+            @ApiResponse(responseCode = "503", description = "Request deadline exceeded")
+        }
+    )
+    @PreAuthorize("hasRole('ROLE_USER')")
+    public ResponseEntity<OrderPackagingResponseDto> appendProducts(
+            @PathVariable String orderNumber,
+            @Valid @RequestBody AppendProductsRequestDto request,
+            @Parameter(description = "Time in milliseconds the client waits for the response")
+            @RequestHeader(value = RequestDeadlines.TIMEOUT_HEADER, required = false) Long timeoutMillis) {
+        
+        OrderPackagingResponseDto response = packagingService.appendProducts(orderNumber, request.getProducts(),
+                requestDeadlines.start(timeoutMillis));
+        
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
+
+    @GetMapping("/orders/{orderNumber}")
+    @Operation(
+        summary = "Get a packaged order",
+        description = "Returns the stored boxes of an order with an ETag; send it back in If-None-Match " +
+                "to get 304 Not Modified while the order has not changed",
+        security = { @SecurityRequirement(name = "bearer-jwt") },
+        responses = {
+            @ApiResponse(
+                responseCode = "200",
+                description = "Order found",
+                content = @Content(schema = @Schema(implementation = StoredOrderDto.class))
+            ),
+            @ApiResponse(responseCode = "304", description = "Order not modified"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized"),
+            @ApiResponse(responseCode = "403", description = "Forbidden"),
+            @ApiResponse(responseCode = "404", description = "Order not found"),
+            @ApiResponse(responseCode = "500", description = "Server error")
+        }
+    )
+    @PreAuthorize("hasRole('ROLE_USER')")
+    public ResponseEntity<StoredOrderDto> getOrder(@PathVariable String orderNumber, WebRequest webRequest) {
+        
+        String tag = etag(packagingService.orderTag(orderNumber));
+        if (webRequest.checkNotModified(tag)) {
+            return null;
+        }
+        
+        return ResponseEntity.ok().eTag(tag).body(packagingService.findOrder(orderNumber));
+    }
+
+    @GetMapping("/orders")
+    @Operation(
+        summary = "List packaged orders",
+        description = "Returns stored orders newest first, one page at a time. Pass nextCursor of a page as " +
+                "cursor to get the next one. Pages carry an ETag for If-None-Match like single orders",
+        security = { @SecurityRequirement(name = "bearer-jwt") },
+        responses = {
+            @ApiResponse(
+                responseCode = "200",
+                description = "Page of orders",
+                content = @Content(schema = @Schema(implementation = StoredOrderPageDto.class))
+            ),
+            @ApiResponse(responseCode = "304", description = "Page not modified"),
+            @ApiResponse(responseCode = "400", description = "Invalid cursor or page size"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized"),
+            @ApiResponse(responseCode = "403", description = "Forbidden"),
+            @ApiResponse(responseCode = "500", description = "Server error")
+        }
+    )
+    @PreAuthorize("hasRole('ROLE_USER')")
+    public ResponseEntity<StoredOrderPageDto> listOrders(
+            @Parameter(description = "nextCursor of the previous page; omit for the newest orders")
+            @RequestParam(required = false) String cursor,
+            @Parameter(description = "Orders per page")
+            @RequestParam(required = false) Integer limit,
+            WebRequest webRequest) {
+        
+        String tag = etag(packagingService.orderPageTag(cursor, limit));
+        if (webRequest.checkNotModified(tag)) {
+            return null;
+        }
+        
+        return ResponseEntity.ok().eTag(tag).body(packagingService.listOrders(cursor, limit));
+    }
+
+    private static String etag(String tag) {
+        return "\"" + tag + "\"";
+    }
 }
@@ -0,0 +1,23 @@
+package com.springbootmicroservices.orderservice.controller;
+
+import com.springbootmicroservices.orderservice.service.ShadowPacking;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+// Orders where the shadow candidate and the primary engine disagreed, the candidate's worst first
+@Component
+@Endpoint(id = "packagingshadow")
+@RequiredArgsConstructor
+public class ShadowPackingEndpoint {
+
+    private final ShadowPacking shadowPacking;
+
+    @ReadOperation
+    public List<ShadowPacking.Disagreement> disagreements() {
+        return shadowPacking.disagreements();
+    }
+}
@@ -0,0 +1,19 @@
+package com.springbootmicroservices.orderservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AppendProductsRequestDto {
+    @NotEmpty(message = "At least one product must be added")
+    @Valid
+    private List<ProductDto> products = new ArrayList<>();
+}
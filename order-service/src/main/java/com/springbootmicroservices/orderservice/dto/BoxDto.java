@@ -17,4 +17,7 @@ public class BoxDto {
     private Double width;
     private Double length;
     private List<ProductDto> products = new ArrayList<>();
+    // One entry per product, in the same order; empty when the engine does not track positions.
+    // Products appended to the box after it was packed have an entry without coordinates
+    private List<PlacementDto> placements = new ArrayList<>();
 }
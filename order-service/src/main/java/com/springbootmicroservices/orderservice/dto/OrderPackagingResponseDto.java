@@ -13,4 +13,8 @@ import java.util.List;
 public class OrderPackagingResponseDto {
     private String orderNumber;
     private List<BoxDto> boxes = new ArrayList<>();
+    // Packing engine, or the winning portfolio strategy, that produced the boxes
+    private String strategy;
+    // True only when the exact solver proved that no packing uses fewer boxes (or less box volume)
+    private boolean optimal;
 }
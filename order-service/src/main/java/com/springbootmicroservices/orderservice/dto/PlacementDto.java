@@ -0,0 +1,19 @@
+package com.springbootmicroservices.orderservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Position of a product inside its box: x runs along the box length, y along its
+// width and z along its height. length/width/height give the product orientation.
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PlacementDto {
+    private Double x;
+    private Double y;
+    private Double z;
+    private Double length;
+    private Double width;
+    private Double height;
+}
@@ -27,4 +27,8 @@ public class ProductDto {
     private Double length;
     
     private String description;
+    
+    // Number of identical units on this order line; one when omitted
+    @Positive(message = "Quantity must be greater than 0")
+    private Integer quantity;
 }
@@ -0,0 +1,21 @@
+package com.springbootmicroservices.orderservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StoredOrderDto {
+    private String orderNumber;
+    private LocalDateTime createdAt;
+    private List<BoxDto> boxes = new ArrayList<>();
+    // Unknown (null) for orders stored before it was recorded
+    private String strategy;
+    private boolean optimal;
+}
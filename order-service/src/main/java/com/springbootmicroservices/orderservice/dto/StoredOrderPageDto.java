@@ -0,0 +1,18 @@
+package com.springbootmicroservices.orderservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StoredOrderPageDto {
+    // Newest first
+    private List<StoredOrderDto> orders = new ArrayList<>();
+    // Pass as cursor to get the following page; null on the last page
+    private String nextCursor;
+}
@@ -11,7 +11,9 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "orders")
+// created_at, id: the key history pages are listed and continued by, newest first. Descending, so
+// H2 reads a page straight off the index instead of sorting the table
+@Table(name = "orders", indexes = @Index(name = "idx_orders_created_at", columnList = "created_at DESC, id DESC"))
 @Getter
 @Setter
 @NoArgsConstructor
@@ -30,4 +32,16 @@ public class Order extends BaseEntity {
     
     @Column(name = "processed")
     private boolean processed = false;
+    
+    // How the order was packed, so a repeated submission can be answered with the stored result
+    @Column(name = "strategy")
+    private String strategy;
+    
+    @Column(name = "optimal")
+    private boolean optimal = false;
+    
+    // Bumped whenever the order or its list of products changes; history reads use it as their ETag
+    @Version
+    @Column(name = "version")
+    private Long version;
 }
@@ -31,5 +31,18 @@ public class OrderPackaging extends BaseEntity {
         joinColumns = @JoinColumn(name = "packaging_id"),
         inverseJoinColumns = @JoinColumn(name = "product_id")
     )
+    @OrderColumn(name = "position")
     private List<Product> products = new ArrayList<>();
+    
+    // Units of each entry of products that went into this box
+    @ElementCollection
+    @CollectionTable(name = "packaging_product_quantities", joinColumns = @JoinColumn(name = "packaging_id"))
+    @OrderColumn(name = "position")
+    @Column(name = "quantity", nullable = false)
+    private List<Integer> quantities = new ArrayList<>();
+    
+    // Packed storage (PackedContents): product ids, units and positions of every entry in one value.
+    // Boxes stored this way leave products and quantities empty
+    @Column(name = "contents", length = 1048576)
+    private byte[] contents;
 }
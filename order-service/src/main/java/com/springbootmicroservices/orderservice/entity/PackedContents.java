@@ -0,0 +1,150 @@
+package com.springbootmicroservices.orderservice.entity;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Contents of one packed box, product ids and units of every entry plus optional
+ * positions, encoded as a single column value. Layout of version 1:
+ * <pre>
+ *   version (1 byte) | flags (1 byte, bit 0: positions) | entry count (varint)
+ *   per entry: product id minus the previous one (zig-zag varint) | units (varint)
+ *   with positions, per entry: x, y, z, length, width, height (8-byte doubles)
+ * </pre>
+ * Entries appended to a box after it was packed have no place in its layout; their
+ * position fields are NaN, and the entries packed before keep theirs.
+ * Order lines get ids from one sequence, so the id deltas mostly fit in one byte.
+ */
+public final class PackedContents {
+
+    public static final byte VERSION = 1;
+
+    private static final int FLAG_POSITIONS = 1;
+    // x, y, z, length, width and height of every entry
+    private static final int POSITION_FIELDS = 6;
+
+    private final long[] productIds;
+    private final int[] units;
+    private final double[] positions;
+
+    // positions holds POSITION_FIELDS values per entry, or is null when the box has none
+    public PackedContents(long[] productIds, int[] units, double[] positions) {
+        if (productIds.length != units.length
+                || positions != null && positions.length != productIds.length * POSITION_FIELDS) {
+            throw new IllegalArgumentException("Every entry needs a product id, units and, if any, a position");
+        }
+        this.productIds = productIds;
+        this.units = units;
+        this.positions = positions;
+    }
+
+    public int size() {
+        return productIds.length;
+    }
+
+    public long productId(int entry) {
+        return productIds[entry];
+    }
+
+    public int units(int entry) {
+        return units[entry];
+    }
+
+    public boolean hasPositions() {
+        return positions != null;
+    }
+
+    // Whether the packing placed this entry; false for entries appended later, or when the box has no positions
+    public boolean isPlaced(int entry) {
+        return positions != null && !Double.isNaN(positions[entry * POSITION_FIELDS]);
+    }
+
+    // Position of an entry: x, y, z, length, width, height
+    public double[] position(int entry) {
+        return Arrays.copyOfRange(positions, entry * POSITION_FIELDS, (entry + 1) * POSITION_FIELDS);
+    }
+
+    // Entries added after packing are not placed; those already in the box keep their positions
+    public PackedContents append(long[] moreProductIds, int[] moreUnits) {
+        long[] ids = Arrays.copyOf(productIds, productIds.length + moreProductIds.length);
+        int[] counts = Arrays.copyOf(units, units.length + moreUnits.length);
+        System.arraycopy(moreProductIds, 0, ids, productIds.length, moreProductIds.length);
+        System.arraycopy(moreUnits, 0, counts, units.length, moreUnits.length);
+        double[] placed = null;
+        if (positions != null) {
+            placed = Arrays.copyOf(positions, ids.length * POSITION_FIELDS);
+            Arrays.fill(placed, positions.length, placed.length, Double.NaN);
+        }
+        return new PackedContents(ids, counts, placed);
+    }
+
+    public byte[] encode() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(4 + productIds.length * 3
+                + (positions != null ? positions.length * Double.BYTES : 0));
+        out.write(VERSION);
+        out.write(positions != null ? FLAG_POSITIONS : 0);
+        writeVarint(out, productIds.length);
+        long previous = 0;
+        for (int i = 0; i < productIds.length; i++) {
+            long delta = productIds[i] - previous;
+            writeVarint(out, (delta << 1) ^ (delta >> 63));
+            writeVarint(out, units[i]);
+            previous = productIds[i];
+        }
+        if (positions != null) {
+            ByteBuffer buffer = ByteBuffer.allocate(positions.length * Double.BYTES);
+            for (double value : positions) {
+                buffer.putDouble(value);
+            }
+            out.write(buffer.array(), 0, buffer.capacity());
+        }
+        return out.toByteArray();
+    }
+
+    public static PackedContents decode(byte[] bytes) {
+        ByteBuffer in = ByteBuffer.wrap(bytes);
+        byte version = in.get();
+        if (version != VERSION) {
+            throw new IllegalStateException("Unsupported packed contents version: " + version);
+        }
+        int flags = in.get();
+        int size = (int) readVarint(in);
+        long[] productIds = new long[size];
+        int[] units = new int[size];
+        long previous = 0;
+        for (int i = 0; i < size; i++) {
+            long zigzag = readVarint(in);
+            previous += (zigzag >>> 1) ^ -(zigzag & 1);
+            productIds[i] = previous;
+            units[i] = (int) readVarint(in);
+        }
+        double[] positions = null;
+        if ((flags & FLAG_POSITIONS) != 0) {
+            positions = new double[size * POSITION_FIELDS];
+            for (int i = 0; i < positions.length; i++) {
+                positions[i] = in.getDouble();
+            }
+        }
+        return new PackedContents(productIds, units, positions);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarint(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+}
@@ -40,6 +40,11 @@ public class Product extends BaseEntity {
     @Column(name = "description")
     private String description;
     
+    @Column(name = "quantity", nullable = false)
+    @NotNull
+    @Positive
+    private Integer quantity = 1; // identical units on the order line
+    
     // Method to calculate volume of the product in cubic centimeters
     public Double getVolume() {
         return height * width * length;
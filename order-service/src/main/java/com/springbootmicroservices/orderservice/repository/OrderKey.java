@@ -0,0 +1,12 @@
+package com.springbootmicroservices.orderservice.repository;
+
+import java.time.LocalDateTime;
+
+// Identity, version and position of an order in the history, without loading the order
+public interface OrderKey {
+    Long getId();
+
+    Long getVersion();
+
+    LocalDateTime getCreatedAt();
+}
@@ -2,13 +2,68 @@ package com.springbootmicroservices.orderservice.repository;
 
 import com.springbootmicroservices.orderservice.entity.Order;
 import com.springbootmicroservices.orderservice.entity.OrderPackaging;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface OrderPackagingRepository extends JpaRepository<OrderPackaging, Long> {
     List<OrderPackaging> findByOrder(Order order);
-    void deleteByOrder(Order order);
+
+    // Boxes of the given orders with their catalog box, in one query; contents in the join tables are read
+    // separately with findProductLinks and findQuantities
+    @Query("SELECT p FROM OrderPackaging p JOIN FETCH p.box WHERE p.order.id IN (:orderIds) ORDER BY p.id")
+    List<OrderPackaging> findWithBoxByOrderIdIn(@Param("orderIds") Collection<Long> orderIds);
+
+    // Boxes still stored in the join tables, after the given id, with their order and box in the same query
+    @Query("SELECT p FROM OrderPackaging p JOIN FETCH p.order JOIN FETCH p.box "
+            + "WHERE p.contents IS NULL AND p.id > :after ORDER BY p.id")
+    List<OrderPackaging> findJoinTableStoredAfter(@Param("after") Long after, Pageable pageable);
+
+    // Product ids of the given boxes, as (packaging id, product id) in entry order
+    @Query(value = "SELECT packaging_id, product_id FROM packaging_products WHERE packaging_id IN (:packagingIds) "
+            + "ORDER BY packaging_id, position", nativeQuery = true)
+    List<Object[]> findProductLinks(@Param("packagingIds") Collection<Long> packagingIds);
+
+    // Units of the given boxes, as (packaging id, quantity) in entry order
+    @Query(value = "SELECT packaging_id, quantity FROM packaging_product_quantities "
+            + "WHERE packaging_id IN (:packagingIds) ORDER BY packaging_id, position", nativeQuery = true)
+    List<Object[]> findQuantities(@Param("packagingIds") Collection<Long> packagingIds);
+
+    @Modifying
+    @Query(value = "DELETE FROM packaging_products WHERE packaging_id IN (:packagingIds)", nativeQuery = true)
+    int deleteProductLinks(@Param("packagingIds") Collection<Long> packagingIds);
+
+    @Modifying
+    @Query(value = "DELETE FROM packaging_product_quantities WHERE packaging_id IN (:packagingIds)",
+            nativeQuery = true)
+    int deleteQuantities(@Param("packagingIds") Collection<Long> packagingIds);
+
+    // Packaging of the given orders, with its product links and quantities, in three statements;
+    // bypasses the persistence context, so loaded packagings of these orders go stale
+    @Transactional
+    default int deleteByOrderIds(Collection<Long> orderIds) {
+        if (orderIds.isEmpty()) {
+            return 0;
+        }
+        deleteQuantitiesByOrderIds(orderIds);
+        return deletePackagingsByOrderIds(orderIds);
+    }
+
+    // Hibernate cleans the many-to-many product links itself on the bulk delete below, not element collections
+    @Modifying(flushAutomatically = true)
+    @Query(value = "DELETE FROM packaging_product_quantities WHERE packaging_id IN "
+            + "(SELECT id FROM order_packaging WHERE order_id IN (:orderIds))", nativeQuery = true)
+    int deleteQuantitiesByOrderIds(@Param("orderIds") Collection<Long> orderIds);
+
+    @Modifying(clearAutomatically = true)
+    @Query("DELETE FROM OrderPackaging p WHERE p.order.id IN (:orderIds)")
+    int deletePackagingsByOrderIds(@Param("orderIds") Collection<Long> orderIds);
 }
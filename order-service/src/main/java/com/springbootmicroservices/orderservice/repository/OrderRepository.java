@@ -1,12 +1,69 @@
 package com.springbootmicroservices.orderservice.repository;
 
 import com.springbootmicroservices.orderservice.entity.Order;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.LockModeType;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface OrderRepository extends JpaRepository<Order, Long> {
     Optional<Order> findByOrderNumber(String orderNumber);
+
+    // Holds the order row until commit, so that a change to its boxes waits for a storage migration of them
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<Order> findForUpdateByOrderNumber(String orderNumber);
+
+    @Query("SELECT o.id AS id, o.version AS version, o.createdAt AS createdAt FROM Order o "
+            + "WHERE o.orderNumber = :orderNumber")
+    Optional<OrderKey> findKeyByOrderNumber(@Param("orderNumber") String orderNumber);
+
+    @Query("SELECT o.id AS id, o.version AS version, o.createdAt AS createdAt FROM Order o "
+            + "WHERE o.orderNumber IN :orderNumbers")
+    List<OrderKey> findKeysByOrderNumberIn(@Param("orderNumbers") Collection<String> orderNumbers);
+
+    // History pages, newest first: the first page, then the one after a given key. The leading
+    // createdAt <= bound lets the database seek into the index instead of walking it from the top
+    @Query("SELECT o.id AS id, o.version AS version, o.createdAt AS createdAt FROM Order o "
+            + "ORDER BY o.createdAt DESC, o.id DESC")
+    List<OrderKey> findFirstKeys(Pageable pageable);
+
+    @Query("SELECT o.id AS id, o.version AS version, o.createdAt AS createdAt FROM Order o "
+            + "WHERE o.createdAt <= :createdAt AND (o.createdAt < :createdAt OR o.id < :id) "
+            + "ORDER BY o.createdAt DESC, o.id DESC")
+    List<OrderKey> findKeysAfter(@Param("createdAt") LocalDateTime createdAt, @Param("id") Long id,
+                                 Pageable pageable);
+
+    // Orders with their products in one query
+    @Query("SELECT DISTINCT o FROM Order o LEFT JOIN FETCH o.products WHERE o.id IN (:ids)")
+    List<Order> findWithProductsByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Which of the given order numbers are already stored
+    @Query("SELECT o.orderNumber FROM Order o WHERE o.orderNumber IN (:orderNumbers)")
+    List<String> findExistingOrderNumbers(@Param("orderNumbers") Collection<String> orderNumbers);
+
+    // Orders created before the cutoff, in no particular order, so the database stops after the
+    // first page of the created_at index range instead of sorting every old order
+    @Query("SELECT o.id AS id, o.version AS version, o.createdAt AS createdAt FROM Order o "
+            + "WHERE o.createdAt < :cutoff")
+    List<OrderKey> findKeysCreatedBefore(@Param("cutoff") LocalDateTime cutoff, Pageable pageable);
+
+    // Bulk delete of orders whose products and boxes are already gone
+    @Modifying(clearAutomatically = true)
+    @Query("DELETE FROM Order o WHERE o.id IN (:ids)")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Locks the rows and moves the versions on, so that a writer holding an older copy of an order fails
+    @Modifying
+    @Query("UPDATE Order o SET o.version = o.version + 1 WHERE o.id IN (:ids)")
+    int incrementVersions(@Param("ids") Collection<Long> ids);
 }
@@ -2,8 +2,18 @@ package com.springbootmicroservices.orderservice.repository;
 
 import com.springbootmicroservices.orderservice.entity.Product;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+
 @Repository
 public interface ProductRepository extends JpaRepository<Product, Long> {
+
+    // Products of the given orders; their box links must be deleted first
+    @Modifying
+    @Query(value = "DELETE FROM products WHERE order_id IN (:orderIds)", nativeQuery = true)
+    int deleteByOrderIds(@Param("orderIds") Collection<Long> orderIds);
 }
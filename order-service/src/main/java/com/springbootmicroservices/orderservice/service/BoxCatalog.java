@@ -0,0 +1,52 @@
+package com.springbootmicroservices.orderservice.service;
+
+import com.springbootmicroservices.orderservice.entity.Box;
+import com.springbootmicroservices.orderservice.repository.BoxRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Holds the current box catalog snapshot; packing and persistence read only from here
+@Component
+public class BoxCatalog {
+
+    private final BoxRepository boxRepository;
+    private final AtomicReference<BoxCatalogSnapshot> snapshot = new AtomicReference<>(BoxCatalogSnapshot.EMPTY);
+    private final Counter refreshes;
+
+    public BoxCatalog(BoxRepository boxRepository, MeterRegistry meterRegistry) {
+        this.boxRepository = boxRepository;
+        this.refreshes = Counter.builder("packaging.box.catalog.refreshes")
+                .description("Number of times the box catalog snapshot was reloaded")
+                .register(meterRegistry);
+        Gauge.builder("packaging.box.catalog.version", snapshot, s -> s.get().getVersion())
+                .description("Version of the box catalog snapshot in use")
+                .register(meterRegistry);
+        Gauge.builder("packaging.box.catalog.size", snapshot, s -> s.get().getBoxes().size())
+                .description("Number of box types in the catalog snapshot")
+                .register(meterRegistry);
+    }
+
+    public BoxCatalogSnapshot current() {
+        return snapshot.get();
+    }
+
+    // Reloads the boxes from the database and swaps the snapshot in one step
+    public synchronized BoxCatalogSnapshot refresh() {
+        List<Box> boxes = boxRepository.findAll();
+        BoxCatalogSnapshot next = new BoxCatalogSnapshot(snapshot.get().getVersion() + 1, boxes);
+        snapshot.set(next);
+        refreshes.increment();
+        return next;
+    }
+
+    // Box changes have to go through here so the snapshot never lags behind the table
+    public synchronized BoxCatalogSnapshot saveAll(List<Box> boxes) {
+        boxRepository.saveAll(boxes);
+        return refresh();
+    }
+}
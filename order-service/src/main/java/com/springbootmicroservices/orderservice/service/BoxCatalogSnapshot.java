@@ -0,0 +1,87 @@
+package com.springbootmicroservices.orderservice.service;
+
+import com.springbootmicroservices.orderservice.entity.Box;
+import com.springbootmicroservices.packing.BoxTypes;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Immutable view of the box catalog at a given version. The boxes are detached
+ * copies of the persisted rows, so they can be shared between threads and used
+ * as references when saving packaging without going back to the database.
+ */
+public final class BoxCatalogSnapshot {
+
+    static final BoxCatalogSnapshot EMPTY = new BoxCatalogSnapshot(0, Collections.emptyList());
+
+    private final long version;
+    private final List<Box> boxes;
+    private final Map<Long, Box> boxesById;
+    private final Map<Long, Integer> typesById;
+    private final BoxTypes boxTypes;
+
+    BoxCatalogSnapshot(long version, List<Box> source) {
+        List<Box> copies = new ArrayList<>(source.size());
+        Map<Long, Box> byId = new HashMap<>();
+        Map<Long, Integer> typeById = new HashMap<>();
+        double[] heights = new double[source.size()];
+        double[] widths = new double[source.size()];
+        double[] lengths = new double[source.size()];
+
+        for (int i = 0; i < source.size(); i++) {
+            Box box = source.get(i);
+            Box copy = new Box(box.getName(), box.getHeight(), box.getWidth(), box.getLength());
+            copy.setId(box.getId());
+            copies.add(copy);
+            if (copy.getId() != null) {
+                byId.put(copy.getId(), copy);
+                typeById.put(copy.getId(), i);
+            }
+            heights[i] = box.getHeight();
+            widths[i] = box.getWidth();
+            lengths[i] = box.getLength();
+        }
+
+        this.version = version;
+        this.boxes = Collections.unmodifiableList(copies);
+        this.boxesById = Collections.unmodifiableMap(byId);
+        this.typesById = Collections.unmodifiableMap(typeById);
+        this.boxTypes = new BoxTypes(heights, widths, lengths);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public boolean isEmpty() {
+        return boxes.isEmpty();
+    }
+
+    // Boxes in catalog order; the index matches the box type index in getBoxTypes()
+    public List<Box> getBoxes() {
+        return boxes;
+    }
+
+    public Box getBox(int type) {
+        return boxes.get(type);
+    }
+
+    public Optional<Box> findById(Long id) {
+        return Optional.ofNullable(boxesById.get(id));
+    }
+
+    // Box type index of a catalog box, or -1 when the box is no longer in the catalog
+    public int typeOf(Long id) {
+        Integer type = typesById.get(id);
+        return type != null ? type : -1;
+    }
+
+    public BoxTypes getBoxTypes() {
+        return boxTypes;
+    }
+}
@@ -4,10 +4,22 @@ import com.springbootmicroservices.orderservice.dto.BoxDto;
 import com.springbootmicroservices.orderservice.dto.OrderPackagingResponseDto;
 import com.springbootmicroservices.orderservice.dto.OrderRequestDto;
 import com.springbootmicroservices.orderservice.dto.ProductDto;
+import com.springbootmicroservices.orderservice.dto.StoredOrderDto;
+import com.springbootmicroservices.orderservice.dto.StoredOrderPageDto;
 
 import java.util.List;
 
 public interface PackagingService {
-    List<OrderPackagingResponseDto> packageOrders(List<OrderRequestDto> orderRequests);
+    List<OrderPackagingResponseDto> packageOrders(List<OrderRequestDto> orderRequests, RequestDeadline deadline);
+    // Same packing as packageOrders, without storing anything
+    List<OrderPackagingResponseDto> quoteOrders(List<OrderRequestDto> orderRequests, RequestDeadline deadline);
+    // Adds products to a stored order, filling its existing boxes before opening new ones
+    OrderPackagingResponseDto appendProducts(String orderNumber, List<ProductDto> products, RequestDeadline deadline);
     List<BoxDto> findOptimalPackaging(List<ProductDto> products);
+    // Stored orders, newest first. The tags change whenever what they describe changes,
+    // and cost a single key query, so repeat polls are answered without loading anything
+    String orderTag(String orderNumber);
+    StoredOrderDto findOrder(String orderNumber);
+    String orderPageTag(String cursor, Integer limit);
+    StoredOrderPageDto listOrders(String cursor, Integer limit);
 }
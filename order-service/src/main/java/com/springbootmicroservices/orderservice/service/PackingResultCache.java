@@ -0,0 +1,143 @@
+package com.springbootmicroservices.orderservice.service;
+
+import com.springbootmicroservices.orderservice.config.PackagingProperties;
+import com.springbootmicroservices.packing.PackingItems;
+import com.springbootmicroservices.packing.PackingPlan;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Bounded LRU cache of packing plans. Orders are keyed by the multiset of their
+ * sorted item dimensions and quantities plus the catalog version and engine, and
+ * plans are stored in that canonical item order; a hit is renumbered onto the
+ * caller's items.
+ */
+@Component
+public class PackingResultCache {
+
+    private final PackagingProperties.Cache properties;
+    private final Map<Key, PackingPlan> plans;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    public PackingResultCache(PackagingProperties packagingProperties, MeterRegistry meterRegistry) {
+        this.properties = packagingProperties.getCache();
+        this.hits = Counter.builder("packaging.cache.hits")
+                .description("Packing requests answered from the result cache")
+                .register(meterRegistry);
+        this.misses = Counter.builder("packaging.cache.misses")
+                .description("Packing requests that had to be solved")
+                .register(meterRegistry);
+        this.evictions = Counter.builder("packaging.cache.evictions")
+                .description("Cached packing results dropped to stay within the size limit")
+                .register(meterRegistry);
+
+        int maxEntries = properties.getMaxEntries();
+        this.plans = new LinkedHashMap<Key, PackingPlan>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, PackingPlan> eldest) {
+                if (size() > maxEntries) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+        Gauge.builder("packaging.cache.size", this, PackingResultCache::size)
+                .description("Packing results currently cached")
+                .register(meterRegistry);
+    }
+
+    // Returns the cached plan for an equivalent order, or runs the packer and caches its plan
+    public PackingPlan computeIfAbsent(long catalogVersion, String engine, PackingItems items, Supplier<PackingPlan> packer) {
+        if (!properties.isEnabled() || items.size() == 0 || items.size() > properties.getMaxItems()) {
+            return packer.get();
+        }
+
+        // canonical[c] is the caller's index of the c-th item in canonical order
+        int[] canonical = items.canonicalOrder();
+        Key key = new Key(catalogVersion, engine, items, canonical);
+
+        PackingPlan cached;
+        synchronized (plans) {
+            cached = plans.get(key);
+        }
+        if (cached != null) {
+            hits.increment();
+            return cached.permute(canonical);
+        }
+
+        misses.increment();
+        PackingPlan plan = packer.get();
+        int[] toCanonical = new int[canonical.length];
+        for (int c = 0; c < canonical.length; c++) {
+            toCanonical[canonical[c]] = c;
+        }
+        PackingPlan canonicalPlan = plan.permute(toCanonical);
+        synchronized (plans) {
+            plans.put(key, canonicalPlan);
+        }
+        return plan;
+    }
+
+    public int size() {
+        synchronized (plans) {
+            return plans.size();
+        }
+    }
+
+    public void clear() {
+        synchronized (plans) {
+            plans.clear();
+        }
+    }
+
+    private static final class Key {
+
+        private final long catalogVersion;
+        private final String engine;
+        private final double[] dimensions;
+        private final int hash;
+
+        Key(long catalogVersion, String engine, PackingItems items, int[] canonical) {
+            this.catalogVersion = catalogVersion;
+            this.engine = engine;
+            this.dimensions = new double[canonical.length * 4];
+            for (int c = 0; c < canonical.length; c++) {
+                dimensions[4 * c] = items.small(canonical[c]);
+                dimensions[4 * c + 1] = items.medium(canonical[c]);
+                dimensions[4 * c + 2] = items.large(canonical[c]);
+                dimensions[4 * c + 3] = items.quantity(canonical[c]);
+            }
+            this.hash = 31 * (31 * Long.hashCode(catalogVersion) + engine.hashCode()) + Arrays.hashCode(dimensions);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return hash == other.hash
+                    && catalogVersion == other.catalogVersion
+                    && engine.equals(other.engine)
+                    && Arrays.equals(dimensions, other.dimensions);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
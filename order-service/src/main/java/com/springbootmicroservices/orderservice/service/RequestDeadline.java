@@ -0,0 +1,39 @@
+package com.springbootmicroservices.orderservice.service;
+
+import java.time.Duration;
+
+/**
+ * Point in time by which a request's work must be done, on the monotonic clock.
+ * Packing and persistence check it between units of work and give up once it has
+ * passed, since nobody is waiting for the result any more.
+ */
+public final class RequestDeadline {
+
+    // For work that is not tied to a waiting client
+    public static final RequestDeadline NONE = new RequestDeadline(Long.MAX_VALUE);
+
+    private final long deadlineNanos;
+
+    private RequestDeadline(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    public static RequestDeadline in(Duration timeout) {
+        long nanos = timeout.toNanos();
+        long now = System.nanoTime();
+        // Saturate instead of overflowing for very large timeouts
+        return new RequestDeadline(nanos >= Long.MAX_VALUE - now ? Long.MAX_VALUE : now + nanos);
+    }
+
+    // Time left, at least 0; Long.MAX_VALUE for NONE
+    public long remainingNanos() {
+        if (deadlineNanos == Long.MAX_VALUE) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, deadlineNanos - System.nanoTime());
+    }
+
+    public boolean isExpired() {
+        return deadlineNanos != Long.MAX_VALUE && deadlineNanos - System.nanoTime() <= 0;
+    }
+}
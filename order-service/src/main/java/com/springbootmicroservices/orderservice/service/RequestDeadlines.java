@@ -0,0 +1,68 @@
+package com.springbootmicroservices.orderservice.service;
+
+import com.springbootmicroservices.orderservice.config.PackagingProperties;
+import com.springbootmicroservices.orderservice.exception.ApiException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Creates request deadlines from the X-Request-Timeout header (milliseconds, as set
+ * by the gateway) or the configured default, and enforces them: work found past its
+ * deadline is abandoned with a 503 and counted per stage in packaging.deadline.expired,
+ * and packs dropped from the packing pool on the way are counted in packaging.deadline.cancelled.
+ */
+@Component
+public class RequestDeadlines {
+
+    public static final String TIMEOUT_HEADER = "X-Request-Timeout";
+
+    public static final String STAGE_PACKING = "packing";
+    public static final String STAGE_PERSISTENCE = "persistence";
+
+    private final PackagingProperties.Deadline properties;
+    private final MeterRegistry meterRegistry;
+    private final Counter cancelled;
+
+    public RequestDeadlines(PackagingProperties packagingProperties, MeterRegistry meterRegistry) {
+        this.properties = packagingProperties.getDeadline();
+        this.meterRegistry = meterRegistry;
+        this.cancelled = Counter.builder("packaging.deadline.cancelled")
+                .description("Packs cancelled on the packing pool because their request ran out of time")
+                .register(meterRegistry);
+    }
+
+    // Deadline for a request; a missing header means the default timeout, and no timeout can exceed the maximum
+    public RequestDeadline start(Long timeoutMillis) {
+        Duration timeout = timeoutMillis != null
+                ? Duration.ofMillis(Math.max(0, timeoutMillis))
+                : properties.getDefaultTimeout();
+        if (timeout.compareTo(properties.getMaxTimeout()) > 0) {
+            timeout = properties.getMaxTimeout();
+        }
+        return RequestDeadline.in(timeout);
+    }
+
+    // Throws once the deadline has passed, so the stage stops and its transaction rolls back
+    public void check(RequestDeadline deadline, String stage) {
+        if (deadline.isExpired()) {
+            throw expired(stage);
+        }
+    }
+
+    public ApiException expired(String stage) {
+        Counter.builder("packaging.deadline.expired")
+                .description("Requests abandoned because their deadline passed, by the stage they were in")
+                .tag("stage", stage)
+                .register(meterRegistry)
+                .increment();
+        return new ApiException(HttpStatus.SERVICE_UNAVAILABLE, "Request deadline exceeded during " + stage);
+    }
+
+    public void cancelled(int packs) {
+        cancelled.increment(packs);
+    }
+}
@@ -0,0 +1,189 @@
+package com.springbootmicroservices.orderservice.service;
+
+import com.springbootmicroservices.orderservice.config.PackagingProperties;
+import com.springbootmicroservices.packing.BoxTypes;
+import com.springbootmicroservices.packing.PackingEngine;
+import com.springbootmicroservices.packing.PackingItems;
+import com.springbootmicroservices.packing.PackingPlan;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a candidate engine next to the primary one on a sample of the packed orders.
+ * The candidate packs on its own pool, after the primary plan is already on its way
+ * to the client, and its plan is only compared, never returned: box count, total box
+ * volume and packing time of both engines go to the packaging.shadow.* meters, and
+ * the worst orders where the plans differ are kept in a bounded heap.
+ */
+public class ShadowPacking {
+
+    public static final String OUTCOME_SAME = "same";
+    public static final String OUTCOME_BETTER = "better";
+    public static final String OUTCOME_WORSE = "worse";
+    public static final String OUTCOME_FAILED = "failed";
+
+    // Least severe first: fewest extra boxes for the candidate, then least extra volume, then oldest
+    private static final Comparator<Disagreement> LEAST_SEVERE_FIRST = Comparator
+            .comparingInt((Disagreement d) -> d.getCandidateBoxes() - d.getPrimaryBoxes())
+            .thenComparingDouble(d -> d.getCandidateVolume() - d.getPrimaryVolume())
+            .thenComparing(Disagreement::getTime);
+
+    private final PackingEngine candidate;
+    private final Executor executor;
+    private final double sampleRate;
+    private final MeterRegistry meterRegistry;
+    private final Counter dropped;
+    private final Timer primaryTime;
+    private final Timer candidateTime;
+    private final Counter primaryBoxes;
+    private final Counter candidateBoxes;
+    private final Counter primaryVolume;
+    private final Counter candidateVolume;
+
+    // The worst disagreements so far, least severe at the head, so it is the one evicted
+    private final PriorityQueue<Disagreement> disagreements;
+    private final int capacity;
+
+    public ShadowPacking(PackingEngine candidate, Executor executor, PackagingProperties.Shadow properties,
+                         MeterRegistry meterRegistry) {
+        this.candidate = candidate;
+        this.executor = executor;
+        this.sampleRate = properties.isEnabled() && candidate != null ? properties.getSampleRate() : 0;
+        this.meterRegistry = meterRegistry;
+        this.capacity = Math.max(1, properties.getDisagreements());
+        this.disagreements = new PriorityQueue<>(capacity, LEAST_SEVERE_FIRST);
+
+        this.dropped = Counter.builder("packaging.shadow.dropped")
+                .description("Sampled orders skipped because the shadow pool was full")
+                .register(meterRegistry);
+        this.primaryTime = time("primary", meterRegistry);
+        this.candidateTime = time("candidate", meterRegistry);
+        this.primaryBoxes = boxes("primary", meterRegistry);
+        this.candidateBoxes = boxes("candidate", meterRegistry);
+        this.primaryVolume = volume("primary", meterRegistry);
+        this.candidateVolume = volume("candidate", meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return sampleRate > 0;
+    }
+
+    // Called on the request path once the primary engine packed an order; returns at once
+    public void offer(String orderNumber, PackingItems items, BoxTypes boxes, PackingPlan primary, long primaryNanos) {
+        if (sampleRate <= 0 || ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return;
+        }
+        try {
+            executor.execute(() -> compare(orderNumber, items, boxes, primary, primaryNanos));
+        } catch (RejectedExecutionException e) {
+            dropped.increment();
+        }
+    }
+
+    void compare(String orderNumber, PackingItems items, BoxTypes boxes, PackingPlan primary, long primaryNanos) {
+        PackingPlan plan;
+        long start = System.nanoTime();
+        try {
+            plan = candidate.pack(items.hasQuantities() && !candidate.packsQuantities() ? items.expand() : items, boxes);
+        } catch (RuntimeException e) {
+            outcome(OUTCOME_FAILED);
+            return;
+        }
+        long candidateNanos = System.nanoTime() - start;
+
+        double primaryTotal = primary.totalBoxVolume(boxes);
+        double candidateTotal = plan.totalBoxVolume(boxes);
+        primaryTime.record(primaryNanos, TimeUnit.NANOSECONDS);
+        candidateTime.record(candidateNanos, TimeUnit.NANOSECONDS);
+        primaryBoxes.increment(primary.boxCount());
+        candidateBoxes.increment(plan.boxCount());
+        primaryVolume.increment(primaryTotal);
+        candidateVolume.increment(candidateTotal);
+
+        int compared = plan.boxCount() != primary.boxCount()
+                ? Integer.compare(plan.boxCount(), primary.boxCount())
+                : Double.compare(candidateTotal, primaryTotal);
+        outcome(compared < 0 ? OUTCOME_BETTER : compared > 0 ? OUTCOME_WORSE : OUTCOME_SAME);
+        if (compared != 0) {
+            record(new Disagreement(Instant.now(), orderNumber, items.size(),
+                    primary.boxCount(), plan.boxCount(), primaryTotal, candidateTotal,
+                    TimeUnit.NANOSECONDS.toMicros(primaryNanos), TimeUnit.NANOSECONDS.toMicros(candidateNanos)));
+        }
+    }
+
+    // Disagreements kept, the candidate's worst first
+    public List<Disagreement> disagreements() {
+        List<Disagreement> result;
+        synchronized (disagreements) {
+            result = new ArrayList<>(disagreements);
+        }
+        result.sort(LEAST_SEVERE_FIRST.reversed());
+        return result;
+    }
+
+    // A full heap takes a disagreement only in place of a less severe one
+    private void record(Disagreement disagreement) {
+        synchronized (disagreements) {
+            if (disagreements.size() < capacity) {
+                disagreements.add(disagreement);
+            } else if (LEAST_SEVERE_FIRST.compare(disagreement, disagreements.peek()) > 0) {
+                disagreements.poll();
+                disagreements.add(disagreement);
+            }
+        }
+    }
+
+    private void outcome(String outcome) {
+        meterRegistry.counter("packaging.shadow.comparisons", "outcome", outcome).increment();
+    }
+
+    private static Timer time(String engine, MeterRegistry meterRegistry) {
+        return Timer.builder("packaging.shadow.time")
+                .description("Packing time of the primary and the candidate engine on the sampled orders")
+                .tag("engine", engine)
+                .register(meterRegistry);
+    }
+
+    private static Counter boxes(String engine, MeterRegistry meterRegistry) {
+        return Counter.builder("packaging.shadow.boxes")
+                .description("Boxes used by the primary and the candidate engine on the sampled orders")
+                .tag("engine", engine)
+                .register(meterRegistry);
+    }
+
+    private static Counter volume(String engine, MeterRegistry meterRegistry) {
+        return Counter.builder("packaging.shadow.volume")
+                .description("Total box volume used by the primary and the candidate engine on the sampled orders")
+                .tag("engine", engine)
+                .baseUnit("cm3")
+                .register(meterRegistry);
+    }
+
+    // An order the two engines packed differently
+    @Getter
+    @AllArgsConstructor
+    public static class Disagreement {
+        private final Instant time;
+        private final String orderNumber;
+        private final int items;
+        private final int primaryBoxes;
+        private final int candidateBoxes;
+        private final double primaryVolume;
+        private final double candidateVolume;
+        private final long primaryMicros;
+        private final long candidateMicros;
+    }
+}
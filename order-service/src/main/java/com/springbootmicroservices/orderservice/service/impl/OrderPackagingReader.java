@@ -0,0 +1,183 @@
+package com.springbootmicroservices.orderservice.service.impl;
+
+import com.springbootmicroservices.orderservice.config.PackagingProperties;
+import com.springbootmicroservices.orderservice.dto.BoxDto;
+import com.springbootmicroservices.orderservice.dto.StoredOrderDto;
+import com.springbootmicroservices.orderservice.dto.StoredOrderPageDto;
+import com.springbootmicroservices.orderservice.entity.Order;
+import com.springbootmicroservices.orderservice.entity.OrderPackaging;
+import com.springbootmicroservices.orderservice.entity.PackedContents;
+import com.springbootmicroservices.orderservice.entity.Product;
+import com.springbootmicroservices.orderservice.exception.ApiException;
+import com.springbootmicroservices.orderservice.repository.OrderKey;
+import com.springbootmicroservices.orderservice.repository.OrderPackagingRepository;
+import com.springbootmicroservices.orderservice.repository.OrderRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Reads stored orders and their boxes. Whatever the number of orders, a read costs
+ * the same queries: the order keys, the orders with their products, their boxes
+ * with the catalog box, and the product links and units of boxes still stored in
+ * the join tables. Tags are built from the keys alone, so a repeat poll whose tag
+ * matches costs one indexed query.
+ */
+@Component
+@RequiredArgsConstructor
+@Transactional(readOnly = true)
+public class OrderPackagingReader {
+
+    private static final String CURSOR_SEPARATOR = "|";
+
+    private final OrderRepository orderRepository;
+    private final OrderPackagingRepository orderPackagingRepository;
+    private final PackagingProperties packagingProperties;
+
+    public String orderTag(String orderNumber) {
+        return tag(Collections.singletonList(findKey(orderNumber)));
+    }
+
+    public StoredOrderDto findOrder(String orderNumber) {
+        return load(Collections.singletonList(findKey(orderNumber))).get(0);
+    }
+
+    // Those of the numbers that are stored, in no particular order; nothing but the key query when none is
+    public List<StoredOrderDto> findOrders(Collection<String> orderNumbers) {
+        return load(orderRepository.findKeysByOrderNumberIn(orderNumbers));
+    }
+
+    // Orders of keys read elsewhere, in key order
+    public List<StoredOrderDto> findOrdersByKeys(List<OrderKey> keys) {
+        return load(keys);
+    }
+
+    public String orderPageTag(String cursor, Integer limit) {
+        return tag(findPageKeys(cursor, limit));
+    }
+
+    public StoredOrderPageDto listOrders(String cursor, Integer limit) {
+        List<OrderKey> keys = findPageKeys(cursor, limit);
+        // A full page may be followed by more; the next page is empty at worst
+        String nextCursor = keys.size() == pageSize(limit) ? encodeCursor(keys.get(keys.size() - 1)) : null;
+        return new StoredOrderPageDto(load(keys), nextCursor);
+    }
+
+    private OrderKey findKey(String orderNumber) {
+        return orderRepository.findKeyByOrderNumber(orderNumber)
+                .orElseThrow(() -> new ApiException(HttpStatus.NOT_FOUND, "Order not found: " + orderNumber));
+    }
+
+    private List<OrderKey> findPageKeys(String cursor, Integer limit) {
+        PageRequest page = PageRequest.of(0, pageSize(limit));
+        if (cursor == null || cursor.isEmpty()) {
+            return orderRepository.findFirstKeys(page);
+        }
+        String[] position = decodeCursor(cursor);
+        try {
+            return orderRepository.findKeysAfter(LocalDateTime.parse(position[0]), Long.valueOf(position[1]), page);
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw invalidCursor();
+        }
+    }
+
+    private int pageSize(Integer limit) {
+        PackagingProperties.History history = packagingProperties.getHistory();
+        if (limit == null) {
+            return history.getPageSize();
+        }
+        if (limit < 1 || limit > history.getMaxPageSize()) {
+            throw new ApiException(HttpStatus.BAD_REQUEST,
+                    "Page size must be between 1 and " + history.getMaxPageSize());
+        }
+        return limit;
+    }
+
+    // Orders of the keys, in key order
+    private List<StoredOrderDto> load(List<OrderKey> keys) {
+        if (keys.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Long> ids = keys.stream().map(OrderKey::getId).collect(Collectors.toList());
+        Map<Long, Order> orders = new HashMap<>();
+        for (Order order : orderRepository.findWithProductsByIdIn(ids)) {
+            orders.put(order.getId(), order);
+        }
+        Map<Long, Product> productsById = new HashMap<>();
+        orders.values().forEach(order -> order.getProducts().forEach(p -> productsById.put(p.getId(), p)));
+
+        // Boxes of every order; the orders are already in the persistence context, so no query each
+        List<OrderPackaging> packagings = orderPackagingRepository.findWithBoxByOrderIdIn(ids);
+        List<Long> joinTableIds = packagings.stream()
+                .filter(packaging -> packaging.getContents() == null)
+                .map(OrderPackaging::getId)
+                .collect(Collectors.toList());
+        Map<Long, PackedContents> joinTableContents = joinTableIds.isEmpty() ? Collections.emptyMap()
+                : PackagingContents.readJoinTables(orderPackagingRepository, joinTableIds);
+        Map<Long, List<BoxDto>> boxesByOrder = new HashMap<>();
+        for (OrderPackaging packaging : packagings) {
+            PackedContents contents = packaging.getContents() != null
+                    ? PackedContents.decode(packaging.getContents())
+                    : joinTableContents.get(packaging.getId());
+            boxesByOrder.computeIfAbsent(packaging.getOrder().getId(), id -> new ArrayList<>())
+                    .add(PackagingContents.toBoxDto(packaging.getBox(), contents, productsById));
+        }
+
+        List<StoredOrderDto> result = new ArrayList<>(keys.size());
+        for (Long id : ids) {
+            Order order = orders.get(id);
+            if (order != null) {
+                result.add(new StoredOrderDto(order.getOrderNumber(), order.getCreatedAt(),
+                        boxesByOrder.getOrDefault(id, new ArrayList<>()), order.getStrategy(), order.isOptimal()));
+            }
+        }
+        return result;
+    }
+
+    // Changes whenever an order of the page, or the page's set of orders, changes
+    private static String tag(List<OrderKey> keys) {
+        StringBuilder versions = new StringBuilder();
+        for (OrderKey key : keys) {
+            versions.append(key.getId()).append(':').append(key.getVersion()).append(';');
+        }
+        return DigestUtils.md5DigestAsHex(versions.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String encodeCursor(OrderKey key) {
+        String position = key.getCreatedAt() + CURSOR_SEPARATOR + key.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String[] decodeCursor(String cursor) {
+        String position;
+        try {
+            position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw invalidCursor();
+        }
+        int separator = position.indexOf(CURSOR_SEPARATOR);
+        if (separator < 0) {
+            throw invalidCursor();
+        }
+        return new String[]{position.substring(0, separator), position.substring(separator + 1)};
+    }
+
+    private static ApiException invalidCursor() {
+        return new ApiException(HttpStatus.BAD_REQUEST, "Invalid history cursor");
+    }
+}
@@ -0,0 +1,226 @@
+package com.springbootmicroservices.orderservice.service.impl;
+
+import com.springbootmicroservices.orderservice.config.PackagingProperties;
+import com.springbootmicroservices.orderservice.dto.BoxDto;
+import com.springbootmicroservices.orderservice.dto.OrderPackagingResponseDto;
+import com.springbootmicroservices.orderservice.dto.OrderRequestDto;
+import com.springbootmicroservices.orderservice.dto.ProductDto;
+import com.springbootmicroservices.orderservice.entity.Order;
+import com.springbootmicroservices.orderservice.entity.OrderPackaging;
+import com.springbootmicroservices.orderservice.entity.Product;
+import com.springbootmicroservices.orderservice.exception.ApiException;
+import com.springbootmicroservices.orderservice.repository.OrderPackagingRepository;
+import com.springbootmicroservices.orderservice.repository.OrderRepository;
+import com.springbootmicroservices.orderservice.repository.ProductRepository;
+import com.springbootmicroservices.orderservice.service.BoxCatalog;
+import com.springbootmicroservices.orderservice.service.BoxCatalogSnapshot;
+import com.springbootmicroservices.orderservice.service.RequestDeadline;
+import com.springbootmicroservices.orderservice.service.RequestDeadlines;
+import com.springbootmicroservices.packing.IncrementalPacker;
+import com.springbootmicroservices.packing.ItemDoesNotFitException;
+import com.springbootmicroservices.packing.PackingEngine;
+import com.springbootmicroservices.packing.PackingPlan;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+// Persists already computed packings; all JPA work of a batch happens here, on the caller's thread
+@Component
+@RequiredArgsConstructor
+public class OrderPackagingWriter {
+
+    private final BoxCatalog boxCatalog;
+    private final OrderRepository orderRepository;
+    private final OrderPackagingRepository orderPackagingRepository;
+    private final ProductRepository productRepository;
+    private final RequestDeadlines requestDeadlines;
+    private final PackagingProperties packagingProperties;
+
+    // Stops between orders once the deadline has passed; the exception rolls the whole batch back.
+    // Entities are collected and handed over with saveAll, so the flush can send the inserts in JDBC batches
+    @Transactional
+    public List<OrderPackagingResponseDto> saveOrders(List<OrderRequestDto> orderRequests, List<OrderPacking> packings,
+                                                      RequestDeadline deadline) {
+        List<Order> orders = new ArrayList<>(orderRequests.size());
+        
+        for (int i = 0; i < orderRequests.size(); i++) {
+            requestDeadlines.check(deadline, RequestDeadlines.STAGE_PERSISTENCE);
+            OrderRequestDto orderRequest = orderRequests.get(i);
+            
+            // Create order
+            Order order = new Order();
+            order.setOrderNumber(orderRequest.getOrderNumber() != null ? 
+                    orderRequest.getOrderNumber() : UUID.randomUUID().toString());
+            order.setStrategy(packings.get(i).getStrategy());
+            order.setOptimal(packings.get(i).isOptimal());
+            
+            // Convert DTO to entity
+            List<Product> products = orderRequest.getProducts().stream()
+                    .map(this::mapToProduct)
+                    .collect(Collectors.toList());
+            
+            order.setProducts(products);
+            orders.add(order);
+        }
+        orderRepository.saveAll(orders);
+        
+        // Packaging details of all orders; the orders are new, so there is no old packaging to replace
+        List<OrderPackaging> packagings = new ArrayList<>();
+        for (int i = 0; i < orders.size(); i++) {
+            requestDeadlines.check(deadline, RequestDeadlines.STAGE_PERSISTENCE);
+            packagings.addAll(buildOrderPackaging(orders.get(i), packings.get(i)));
+        }
+        orderPackagingRepository.saveAll(packagings);
+        
+        List<OrderPackagingResponseDto> responseList = new ArrayList<>(orders.size());
+        for (int i = 0; i < orders.size(); i++) {
+            responseList.add(packings.get(i).toResponse(orders.get(i).getOrderNumber()));
+        }
+        
+        // Nobody is waiting for a batch that finished too late, so it is not committed either
+        requestDeadlines.check(deadline, RequestDeadlines.STAGE_PERSISTENCE);
+        return responseList;
+    }
+
+    /**
+     * Adds products to a stored order without repacking it. The new units go into the
+     * spare volume of the order's boxes first and the engine packs the rest into new
+     * boxes; only the entries appended to existing boxes and the new boxes are written.
+     */
+    @Transactional
+    public OrderPackagingResponseDto appendProducts(String orderNumber, List<ProductDto> productDtos,
+                                                    PackingEngine packingEngine, RequestDeadline deadline) {
+        requestDeadlines.check(deadline, RequestDeadlines.STAGE_PERSISTENCE);
+        // Locked before its boxes are read: a storage migration of them either finished or waits for this
+        Order order = orderRepository.findForUpdateByOrderNumber(orderNumber)
+                .orElseThrow(() -> new ApiException(HttpStatus.NOT_FOUND, "Order not found: " + orderNumber));
+        List<OrderPackaging> packagings = new ArrayList<>(orderPackagingRepository.findByOrder(order));
+        packagings.sort(Comparator.comparing(OrderPackaging::getId));
+
+        // Spare volume of every stored box; boxes since removed from the catalog take nothing more
+        Map<Long, Product> productsById = productsById(order);
+        BoxCatalogSnapshot catalog = boxCatalog.current();
+        int[] openTypes = new int[packagings.size()];
+        double[] openRemaining = new double[packagings.size()];
+        for (int b = 0; b < packagings.size(); b++) {
+            OrderPackaging packaging = packagings.get(b);
+            int type = catalog.typeOf(packaging.getBox().getId());
+            openTypes[b] = Math.max(type, 0);
+            if (type >= 0) {
+                openRemaining[b] = catalog.getBoxTypes().volume(type)
+                        - PackagingContents.usedVolume(packaging, productsById);
+            }
+        }
+
+        PackingPlan plan;
+        try {
+            plan = IncrementalPacker.pack(packingEngine, PackingAdapter.toPackingItems(productDtos),
+                    catalog.getBoxTypes(), openTypes, openRemaining);
+        } catch (ItemDoesNotFitException e) {
+            throw PackingAdapter.doesNotFit(productDtos.get(e.getItem()));
+        }
+        requestDeadlines.check(deadline, RequestDeadlines.STAGE_PACKING);
+
+        // New order lines
+        List<Product> products = productDtos.stream()
+                .map(this::mapToProduct)
+                .collect(Collectors.toList());
+        productRepository.saveAll(products);
+        order.getProducts().addAll(products);
+        products.forEach(product -> productsById.put(product.getId(), product));
+
+        int[][] contents = plan.contents();
+        int[][] units = plan.units();
+        boolean packed = isPacked();
+        List<OrderPackaging> opened = new ArrayList<>(plan.boxCount() - packagings.size());
+        for (int b = 0; b < plan.boxCount(); b++) {
+            List<Product> boxProducts = new ArrayList<>(contents[b].length);
+            List<Integer> quantities = new ArrayList<>(contents[b].length);
+            for (int k = 0; k < contents[b].length; k++) {
+                boxProducts.add(products.get(contents[b][k]));
+                quantities.add(units[b][k]);
+            }
+            if (b < packagings.size()) {
+                // Appended at the end, so existing join rows stay as they are; packed boxes rewrite one column
+                if (!boxProducts.isEmpty()) {
+                    PackagingContents.append(packagings.get(b), boxProducts, quantities);
+                }
+            } else {
+                OrderPackaging packaging = new OrderPackaging();
+                packaging.setOrder(order);
+                packaging.setBox(catalog.getBox(plan.boxType(b)));
+                PackagingContents.write(packaging, boxProducts, quantities, Collections.emptyList(), packed);
+                opened.add(packaging);
+            }
+        }
+        orderPackagingRepository.saveAll(opened);
+        packagings.addAll(opened);
+
+        requestDeadlines.check(deadline, RequestDeadlines.STAGE_PERSISTENCE);
+        List<BoxDto> boxes = new ArrayList<>(packagings.size());
+        for (OrderPackaging packaging : packagings) {
+            boxes.add(PackagingContents.toBoxDto(packaging, productsById));
+        }
+        String strategy = plan.strategy() != null ? plan.strategy() : packingEngine.name();
+        return new OrderPackagingResponseDto(order.getOrderNumber(), boxes, strategy, false);
+    }
+
+    // Every product entry already names its order line, and every box its catalog entity: no lookups
+    private List<OrderPackaging> buildOrderPackaging(Order order, OrderPacking packing) {
+        List<Product> orderProducts = order.getProducts();
+        List<BoxDto> boxDtos = packing.getBoxes();
+        List<OrderPackaging> packagings = new ArrayList<>(boxDtos.size());
+        boolean packed = isPacked();
+        for (int b = 0; b < boxDtos.size(); b++) {
+            List<ProductDto> boxProducts = boxDtos.get(b).getProducts();
+            int[] lines = packing.getLines()[b];
+            List<Product> products = new ArrayList<>(lines.length);
+            List<Integer> quantities = new ArrayList<>(lines.length);
+            for (int k = 0; k < lines.length; k++) {
+                products.add(orderProducts.get(lines[k]));
+                quantities.add(boxProducts.get(k).getQuantity());
+            }
+            
+            OrderPackaging packaging = new OrderPackaging();
+            packaging.setOrder(order);
+            packaging.setBox(packing.getCatalogBoxes().get(b));
+            PackagingContents.write(packaging, products, quantities, boxDtos.get(b).getPlacements(), packed);
+            packagings.add(packaging);
+        }
+        return packagings;
+    }
+
+    private boolean isPacked() {
+        return PackagingContents.FORMAT_PACKED.equals(packagingProperties.getStorage().getFormat());
+    }
+
+    private static Map<Long, Product> productsById(Order order) {
+        Map<Long, Product> productsById = new HashMap<>();
+        for (Product product : order.getProducts()) {
+            productsById.put(product.getId(), product);
+        }
+        return productsById;
+    }
+
+    // Helper methods for object conversion; order lines are always new rows, whatever id the client sent
+    private Product mapToProduct(ProductDto dto) {
+        Product product = new Product();
+        product.setName(dto.getName() != null ? dto.getName() : "Product");
+        product.setHeight(dto.getHeight());
+        product.setWidth(dto.getWidth());
+        product.setLength(dto.getLength());
+        product.setDescription(dto.getDescription());
+        product.setQuantity(dto.getQuantity() != null ? dto.getQuantity() : 1);
+        return product;
+    }
+}
@@ -0,0 +1,34 @@
+package com.springbootmicroservices.orderservice.service.impl;
+
+import com.springbootmicroservices.orderservice.dto.BoxDto;
+import com.springbootmicroservices.orderservice.dto.OrderPackagingResponseDto;
+import com.springbootmicroservices.orderservice.entity.Box;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.List;
+
+// Packing computed for one order, handed from the packing step to the writer
+@Getter
+@RequiredArgsConstructor
+public class OrderPacking {
+
+    private final List<BoxDto> boxes;
+    // Catalog box of every entry of boxes, from the snapshot the order was packed with
+    private final List<Box> catalogBoxes;
+    // Order line of every product entry of every box, so each maps straight to its order line
+    private final int[][] lines;
+    // Engine or portfolio strategy that produced the boxes
+    private final String strategy;
+    // Whether a complete search proved no packing needs fewer boxes (or less box volume)
+    private final boolean optimal;
+
+    OrderPackagingResponseDto toResponse(String orderNumber) {
+        OrderPackagingResponseDto responseDto = new OrderPackagingResponseDto();
+        responseDto.setOrderNumber(orderNumber);
+        responseDto.setBoxes(boxes);
+        responseDto.setStrategy(strategy);
+        responseDto.setOptimal(optimal);
+        return responseDto;
+    }
+}
@@ -0,0 +1,244 @@
+package com.springbootmicroservices.orderservice.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.springbootmicroservices.orderservice.config.PackagingProperties;
+import com.springbootmicroservices.orderservice.dto.StoredOrderDto;
+import com.springbootmicroservices.orderservice.repository.OrderKey;
+import com.springbootmicroservices.orderservice.repository.OrderPackagingRepository;
+import com.springbootmicroservices.orderservice.repository.OrderRepository;
+import com.springbootmicroservices.orderservice.repository.ProductRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Removes orders older than the retention age, with their products and boxes, on a
+ * background thread. Each run works in chunks of batchSize orders, one short
+ * transaction per chunk and a pause between chunks, so no lock is held for long and
+ * live requests get the database in between. With archive on, a chunk is written to
+ * the run's gzipped JSON lines file before it is removed; a chunk whose removal fails
+ * stays stored and is archived again by a later run, so every order is archived at
+ * least once.
+ */
+@Slf4j
+@Component
+public class OrderRetention {
+
+    private static final DateTimeFormatter ARCHIVE_NAME =
+            DateTimeFormatter.ofPattern("'orders-'yyyyMMdd-HHmmss'.jsonl.gz'");
+
+    private final OrderRepository orderRepository;
+    private final OrderPackagingRepository orderPackagingRepository;
+    private final ProductRepository productRepository;
+    private final OrderPackagingReader orderPackagingReader;
+    private final PackagingProperties.Retention properties;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectWriter archiveWriter;
+    private final Counter removedOrders;
+    private final Counter removedProducts;
+    private final Counter removedBoxes;
+    private final DistributionSummary removedPerRun;
+    private final Timer runDuration;
+    private volatile boolean stopping;
+    private ScheduledExecutorService scheduler;
+
+    public OrderRetention(OrderRepository orderRepository, OrderPackagingRepository orderPackagingRepository,
+                          ProductRepository productRepository, OrderPackagingReader orderPackagingReader,
+                          PackagingProperties packagingProperties, TransactionTemplate transactionTemplate,
+                          ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.orderRepository = orderRepository;
+        this.orderPackagingRepository = orderPackagingRepository;
+        this.productRepository = productRepository;
+        this.orderPackagingReader = orderPackagingReader;
+        this.properties = packagingProperties.getRetention();
+        this.transactionTemplate = transactionTemplate;
+        this.archiveWriter = objectMapper.writerFor(StoredOrderDto.class);
+
+        this.removedOrders = removed(meterRegistry, "orders");
+        this.removedProducts = removed(meterRegistry, "products");
+        this.removedBoxes = removed(meterRegistry, "order_packaging");
+        this.removedPerRun = DistributionSummary.builder("packaging.retention.run.orders")
+                .description("Orders removed per retention run")
+                .register(meterRegistry);
+        this.runDuration = Timer.builder("packaging.retention.run.duration")
+                .description("Time a retention run took, pauses between chunks included")
+                .register(meterRegistry);
+    }
+
+    // Box product links and units go with their boxes and are not counted separately
+    private static Counter removed(MeterRegistry meterRegistry, String table) {
+        return Counter.builder("packaging.retention.removed")
+                .description("Rows removed by the retention job, by table")
+                .tag("table", table)
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "retention");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = properties.getInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(this::runSafely, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    // Stops after the current chunk; the thread is not interrupted, since H2 closes its file on an interrupt
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (scheduler == null) {
+            return;
+        }
+        stopping = true;
+        scheduler.shutdown();
+        scheduler.awaitTermination(30, TimeUnit.SECONDS);
+    }
+
+    private void runSafely() {
+        try {
+            purge();
+        } catch (RuntimeException e) {
+            // The failed chunk was rolled back; the next run starts over from what is still stored
+            log.error("Retention run failed", e);
+        }
+    }
+
+    // Removes, and archives when configured, every order older than the retention age; returns how many
+    public int purge() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime cutoff = now.minus(properties.getMaxAge());
+        Archive archive = properties.isArchive()
+                ? new Archive(Paths.get(properties.getArchiveDirectory()).resolve(now.format(ARCHIVE_NAME))) : null;
+        long start = System.nanoTime();
+        int total = 0;
+        try {
+            while (true) {
+                int[] removed = transactionTemplate.execute(status -> purgeChunk(cutoff, archive));
+                if (removed == null || removed[0] == 0) {
+                    break;
+                }
+                // Counted once committed
+                removedOrders.increment(removed[0]);
+                removedProducts.increment(removed[1]);
+                removedBoxes.increment(removed[2]);
+                total += removed[0];
+                // A short chunk was the last one; on shutdown the rest is left to the next start
+                if (removed[0] < properties.getBatchSize() || stopping) {
+                    break;
+                }
+                pause();
+            }
+        } finally {
+            if (archive != null) {
+                archive.close();
+            }
+            long elapsed = System.nanoTime() - start;
+            runDuration.record(elapsed, TimeUnit.NANOSECONDS);
+            removedPerRun.record(total);
+            if (total > 0) {
+                log.info("Retention removed {} orders created before {} in {} ms", total, cutoff,
+                        TimeUnit.NANOSECONDS.toMillis(elapsed));
+            }
+        }
+        return total;
+    }
+
+    // Rows removed as (orders, products, boxes)
+    private int[] purgeChunk(LocalDateTime cutoff, Archive archive) {
+        List<OrderKey> keys = orderRepository.findKeysCreatedBefore(cutoff,
+                PageRequest.of(0, properties.getBatchSize()));
+        if (keys.isEmpty()) {
+            return new int[3];
+        }
+        if (archive != null) {
+            archive.write(orderPackagingReader.findOrdersByKeys(keys));
+        }
+        List<Long> ids = keys.stream().map(OrderKey::getId).collect(Collectors.toList());
+
+        // Children first: box contents and boxes, then the products they pointed at, then the orders
+        int boxes = orderPackagingRepository.deleteByOrderIds(ids);
+        int products = productRepository.deleteByOrderIds(ids);
+        return new int[]{orderRepository.deleteByIdIn(ids), products, boxes};
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(properties.getPause().toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted between retention chunks", e);
+        }
+    }
+
+    // One gzipped JSON lines file per run, created with the first archived chunk
+    private final class Archive {
+
+        private final Path file;
+        private FileChannel channel;
+        private OutputStream out;
+
+        private Archive(Path file) {
+            this.file = file;
+        }
+
+        private void write(List<StoredOrderDto> orders) {
+            try {
+                if (out == null) {
+                    Files.createDirectories(file.toAbsolutePath().getParent());
+                    channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+                    out = new GZIPOutputStream(Channels.newOutputStream(channel), true);
+                }
+                for (StoredOrderDto order : orders) {
+                    out.write(archiveWriter.writeValueAsBytes(order));
+                    out.write('\n');
+                }
+                // On disk before the chunk is removed; a file cut short by a crash still reads up to here
+                out.flush();
+                channel.force(false);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not write retention archive " + file, e);
+            }
+        }
+
+        private void close() {
+            if (out == null) {
+                return;
+            }
+            try {
+                out.close();
+            } catch (IOException e) {
+                log.error("Could not close retention archive {}", file, e);
+            }
+        }
+    }
+}
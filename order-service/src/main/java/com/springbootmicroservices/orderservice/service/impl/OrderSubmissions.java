@@ -0,0 +1,202 @@
+package com.springbootmicroservices.orderservice.service.impl;
+
+import com.springbootmicroservices.orderservice.dto.OrderPackagingResponseDto;
+import com.springbootmicroservices.orderservice.dto.OrderRequestDto;
+import com.springbootmicroservices.orderservice.dto.StoredOrderDto;
+import com.springbootmicroservices.orderservice.service.RequestDeadline;
+import com.springbootmicroservices.orderservice.service.RequestDeadlines;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Makes order submission idempotent on the order number. A number that is already
+ * stored is answered with its stored packing, and a number that another request is
+ * packing right now waits for that request's answer, so a retry neither packs again
+ * nor runs into the unique constraint. A number stays claimed until its order is
+ * stored: right after the save, or, with write-behind, once the writer thread has
+ * stored it. Orders without a number are always packed.
+ */
+@Component
+public class OrderSubmissions {
+
+    private final OrderPackagingReader orderPackagingReader;
+    private final RequestDeadlines requestDeadlines;
+    private final ConcurrentMap<String, CompletableFuture<OrderPackagingResponseDto>> inFlight =
+            new ConcurrentHashMap<>();
+    private final Counter packed;
+    private final Counter stored;
+    private final Counter joined;
+
+    public OrderSubmissions(OrderPackagingReader orderPackagingReader, RequestDeadlines requestDeadlines,
+                            MeterRegistry meterRegistry) {
+        this.orderPackagingReader = orderPackagingReader;
+        this.requestDeadlines = requestDeadlines;
+        this.packed = submissions(meterRegistry, "packed");
+        this.stored = submissions(meterRegistry, "stored");
+        this.joined = submissions(meterRegistry, "in-flight");
+    }
+
+    // Hit rate: (stored + in-flight) / all
+    private static Counter submissions(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("packaging.submissions")
+                .description("Submitted orders by how they were answered: packed, from the stored order, "
+                        + "or from a request packing the same order number")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Claims the order numbers of a request. Numbers are claimed before the database is
+     * checked, so an order whose request let go of its number is always found stored.
+     */
+    public Claim claim(List<OrderRequestDto> orderRequests) {
+        Claim claim = new Claim(orderRequests.size());
+        for (int i = 0; i < orderRequests.size(); i++) {
+            OrderRequestDto orderRequest = orderRequests.get(i);
+            String orderNumber = orderRequest.getOrderNumber();
+            if (orderNumber == null) {
+                claim.pack(i, orderRequest, new CompletableFuture<>());
+                continue;
+            }
+            CompletableFuture<OrderPackagingResponseDto> mine = new CompletableFuture<>();
+            CompletableFuture<OrderPackagingResponseDto> theirs = inFlight.putIfAbsent(orderNumber, mine);
+            if (theirs != null) {
+                // Another request, or an earlier line of this one, has the number
+                claim.results.set(i, theirs);
+                joined.increment();
+                continue;
+            }
+            claim.owned.put(orderNumber, mine);
+            claim.pack(i, orderRequest, mine);
+        }
+        if (claim.owned.isEmpty()) {
+            return claim;
+        }
+
+        Map<String, OrderPackagingResponseDto> storedOrders = new HashMap<>();
+        try {
+            for (StoredOrderDto order : orderPackagingReader.findOrders(claim.owned.keySet())) {
+                storedOrders.put(order.getOrderNumber(), new OrderPackagingResponseDto(order.getOrderNumber(),
+                        order.getBoxes(), order.getStrategy(), order.isOptimal()));
+            }
+        } catch (RuntimeException e) {
+            claim.failed(e);
+            throw e;
+        }
+        if (storedOrders.isEmpty()) {
+            return claim;
+        }
+        List<OrderRequestDto> fresh = new ArrayList<>(claim.fresh.size());
+        List<CompletableFuture<OrderPackagingResponseDto>> freshResults = new ArrayList<>(claim.fresh.size());
+        for (int f = 0; f < claim.fresh.size(); f++) {
+            OrderRequestDto orderRequest = claim.fresh.get(f);
+            OrderPackagingResponseDto response = orderRequest.getOrderNumber() != null
+                    ? storedOrders.get(orderRequest.getOrderNumber()) : null;
+            if (response == null) {
+                fresh.add(orderRequest);
+                freshResults.add(claim.freshResults.get(f));
+                continue;
+            }
+            CompletableFuture<OrderPackagingResponseDto> mine = claim.owned.remove(orderRequest.getOrderNumber());
+            mine.complete(response);
+            inFlight.remove(orderRequest.getOrderNumber(), mine);
+            stored.increment();
+        }
+        claim.fresh = fresh;
+        claim.freshResults = freshResults;
+        return claim;
+    }
+
+    /**
+     * Lets go of numbers whose orders the write-behind writer has stored, or given up on.
+     * Their claims were answered before the writer got the orders, so a number whose
+     * answer is still missing belongs to a later request packing it again, for instance
+     * while an order from the last run's outbox is replayed, and is left alone.
+     */
+    public void release(Collection<String> orderNumbers) {
+        for (String orderNumber : orderNumbers) {
+            inFlight.computeIfPresent(orderNumber, (number, result) -> result.isDone() ? null : result);
+        }
+    }
+
+    /**
+     * Order numbers claimed by one request. The request packs {@link #getFresh()},
+     * hands the answers to {@link #packed(List)} and collects every answer, its own
+     * and those of other requests, with {@link #await(RequestDeadline)}.
+     */
+    public final class Claim {
+
+        private final List<CompletableFuture<OrderPackagingResponseDto>> results;
+        private final Map<String, CompletableFuture<OrderPackagingResponseDto>> owned = new HashMap<>();
+        private List<OrderRequestDto> fresh = new ArrayList<>();
+        private List<CompletableFuture<OrderPackagingResponseDto>> freshResults = new ArrayList<>();
+
+        private Claim(int size) {
+            results = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                results.add(null);
+            }
+        }
+
+        private void pack(int index, OrderRequestDto orderRequest, CompletableFuture<OrderPackagingResponseDto> result) {
+            results.set(index, result);
+            fresh.add(orderRequest);
+            freshResults.add(result);
+        }
+
+        // Orders to pack and store, in request order
+        public List<OrderRequestDto> getFresh() {
+            return fresh;
+        }
+
+        // Answers for getFresh(), in the same order; waiting requests get them too
+        public void packed(List<OrderPackagingResponseDto> responses) {
+            for (int f = 0; f < freshResults.size(); f++) {
+                freshResults.get(f).complete(responses.get(f));
+            }
+            packed.increment(freshResults.size());
+        }
+
+        // Packing or storing failed: waiting requests fail too, and the numbers are free again
+        public void failed(RuntimeException e) {
+            freshResults.forEach(result -> result.completeExceptionally(e));
+            release();
+        }
+
+        // The orders are stored, so their numbers are found in the database from now on
+        public void release() {
+            owned.forEach(inFlight::remove);
+        }
+
+        public List<OrderPackagingResponseDto> await(RequestDeadline deadline) {
+            List<OrderPackagingResponseDto> responses = new ArrayList<>(results.size());
+            try {
+                for (CompletableFuture<OrderPackagingResponseDto> result : results) {
+                    responses.add(result.get(deadline.remainingNanos(), TimeUnit.NANOSECONDS));
+                }
+                return responses;
+            } catch (TimeoutException e) {
+                throw requestDeadlines.expired(RequestDeadlines.STAGE_PACKING);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                throw cause instanceof RuntimeException ? (RuntimeException) cause : new RuntimeException(cause);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for orders", e);
+            }
+        }
+    }
+}
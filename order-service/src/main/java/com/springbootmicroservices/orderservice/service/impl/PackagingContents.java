@@ -0,0 +1,145 @@
+package com.springbootmicroservices.orderservice.service.impl;
+
+import com.springbootmicroservices.orderservice.dto.BoxDto;
+import com.springbootmicroservices.orderservice.dto.PlacementDto;
+import com.springbootmicroservices.orderservice.dto.ProductDto;
+import com.springbootmicroservices.orderservice.entity.Box;
+import com.springbootmicroservices.orderservice.entity.OrderPackaging;
+import com.springbootmicroservices.orderservice.entity.PackedContents;
+import com.springbootmicroservices.orderservice.entity.Product;
+import com.springbootmicroservices.orderservice.repository.OrderPackagingRepository;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads and writes the contents of a stored box in either format: the
+ * packaging_products and quantity join tables, or the packed contents column.
+ * Readers take the order's products by id, so packed boxes need no extra query.
+ */
+final class PackagingContents {
+
+    static final String FORMAT_PACKED = "packed";
+
+    private PackagingContents() {
+    }
+
+    // placements is empty or holds one position per product entry
+    static void write(OrderPackaging packaging, List<Product> products, List<Integer> quantities,
+                      List<PlacementDto> placements, boolean packed) {
+        if (!packed) {
+            packaging.setProducts(products);
+            packaging.setQuantities(quantities);
+            return;
+        }
+        int size = products.size();
+        long[] productIds = new long[size];
+        int[] units = new int[size];
+        double[] positions = placements.size() == size && size > 0 ? new double[size * 6] : null;
+        for (int i = 0; i < size; i++) {
+            productIds[i] = products.get(i).getId();
+            units[i] = quantities.get(i);
+            if (positions != null) {
+                PlacementDto placement = placements.get(i);
+                positions[i * 6] = placement.getX();
+                positions[i * 6 + 1] = placement.getY();
+                positions[i * 6 + 2] = placement.getZ();
+                positions[i * 6 + 3] = placement.getLength();
+                positions[i * 6 + 4] = placement.getWidth();
+                positions[i * 6 + 5] = placement.getHeight();
+            }
+        }
+        packaging.setContents(new PackedContents(productIds, units, positions).encode());
+    }
+
+    // Adds entries in the format the box is already stored in
+    static void append(OrderPackaging packaging, List<Product> products, List<Integer> quantities) {
+        if (packaging.getContents() == null) {
+            packaging.getProducts().addAll(products);
+            packaging.getQuantities().addAll(quantities);
+            return;
+        }
+        long[] productIds = products.stream().mapToLong(Product::getId).toArray();
+        int[] units = quantities.stream().mapToInt(Integer::intValue).toArray();
+        packaging.setContents(PackedContents.decode(packaging.getContents()).append(productIds, units).encode());
+    }
+
+    static double usedVolume(OrderPackaging packaging, Map<Long, Product> productsById) {
+        double used = 0;
+        if (packaging.getContents() == null) {
+            for (int i = 0; i < packaging.getProducts().size(); i++) {
+                used += packaging.getProducts().get(i).getVolume() * packaging.getQuantities().get(i);
+            }
+            return used;
+        }
+        PackedContents contents = PackedContents.decode(packaging.getContents());
+        for (int i = 0; i < contents.size(); i++) {
+            used += productsById.get(contents.productId(i)).getVolume() * contents.units(i);
+        }
+        return used;
+    }
+
+    static BoxDto toBoxDto(OrderPackaging packaging, Map<Long, Product> productsById) {
+        if (packaging.getContents() == null) {
+            BoxDto boxDto = PackingAdapter.mapToBoxDto(packaging.getBox());
+            for (int i = 0; i < packaging.getProducts().size(); i++) {
+                boxDto.getProducts().add(toProductDto(packaging.getProducts().get(i), packaging.getQuantities().get(i)));
+            }
+            return boxDto;
+        }
+        return toBoxDto(packaging.getBox(), PackedContents.decode(packaging.getContents()), productsById);
+    }
+
+    // Contents of either format, once decoded or read from the join rows
+    static BoxDto toBoxDto(Box box, PackedContents contents, Map<Long, Product> productsById) {
+        BoxDto boxDto = PackingAdapter.mapToBoxDto(box);
+        for (int i = 0; i < contents.size(); i++) {
+            boxDto.getProducts().add(toProductDto(productsById.get(contents.productId(i)), contents.units(i)));
+            if (contents.isPlaced(i)) {
+                double[] position = contents.position(i);
+                boxDto.getPlacements().add(new PlacementDto(position[0], position[1], position[2],
+                        position[3], position[4], position[5]));
+            } else if (contents.hasPositions()) {
+                // Appended after packing: still one placement per product, without coordinates
+                boxDto.getPlacements().add(new PlacementDto());
+            }
+        }
+        return boxDto;
+    }
+
+    // Contents of boxes stored in the join tables, read with two queries for all of them
+    static Map<Long, PackedContents> readJoinTables(OrderPackagingRepository repository, List<Long> ids) {
+        Map<Long, List<Long>> productIds = new HashMap<>();
+        for (Object[] row : repository.findProductLinks(ids)) {
+            productIds.computeIfAbsent(((Number) row[0]).longValue(), id -> new ArrayList<>())
+                    .add(((Number) row[1]).longValue());
+        }
+        Map<Long, List<Integer>> units = new HashMap<>();
+        for (Object[] row : repository.findQuantities(ids)) {
+            units.computeIfAbsent(((Number) row[0]).longValue(), id -> new ArrayList<>())
+                    .add(((Number) row[1]).intValue());
+        }
+        Map<Long, PackedContents> contents = new HashMap<>();
+        for (Long id : ids) {
+            contents.put(id, new PackedContents(
+                    productIds.getOrDefault(id, new ArrayList<>()).stream().mapToLong(Long::longValue).toArray(),
+                    units.getOrDefault(id, new ArrayList<>()).stream().mapToInt(Integer::intValue).toArray(),
+                    null));
+        }
+        return contents;
+    }
+
+    private static ProductDto toProductDto(Product product, int quantity) {
+        return new ProductDto(
+                product.getId(),
+                product.getName(),
+                product.getHeight(),
+                product.getWidth(),
+                product.getLength(),
+                product.getDescription(),
+                quantity
+        );
+    }
+}
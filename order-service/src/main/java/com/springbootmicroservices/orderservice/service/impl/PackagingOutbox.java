@@ -0,0 +1,148 @@
+package com.springbootmicroservices.orderservice.service.impl;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springbootmicroservices.orderservice.dto.BoxDto;
+import com.springbootmicroservices.orderservice.dto.OrderRequestDto;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only log of the orders accepted for write-behind persistence, one JSON
+ * record per line. Accepted orders are appended (and forced to disk) before the
+ * client gets its answer; once a batch is stored an ack record with its last
+ * sequence is appended. On open, the records after the last ack are the orders
+ * still to store. The file is emptied whenever everything in it is acknowledged.
+ */
+final class PackagingOutbox implements AutoCloseable {
+
+    private final Path path;
+    private final ObjectMapper objectMapper;
+    private final boolean sync;
+    private FileChannel channel;
+    private long lastSequence;
+
+    PackagingOutbox(Path path, ObjectMapper objectMapper, boolean sync) {
+        this.path = path;
+        this.objectMapper = objectMapper;
+        this.sync = sync;
+    }
+
+    // Opens the file for appending and returns the records written but never acknowledged
+    synchronized List<Record> open() throws IOException {
+        List<Record> records = new ArrayList<>();
+        long acked = 0;
+        if (Files.exists(path)) {
+            try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    Record record;
+                    try {
+                        record = objectMapper.readValue(line, Record.class);
+                    } catch (JsonProcessingException e) {
+                        // A line torn by a crash; its request was never answered
+                        continue;
+                    }
+                    if (record.getAck() != null) {
+                        acked = Math.max(acked, record.getAck());
+                    } else {
+                        records.add(record);
+                        lastSequence = Math.max(lastSequence, record.getSequence());
+                    }
+                }
+            }
+        } else if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        long pendingAfter = acked;
+        records.removeIf(record -> record.getSequence() <= pendingAfter);
+
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        // Ends a torn last line, so the next record starts on a line of its own
+        ByteBuffer last = ByteBuffer.allocate(1);
+        if (channel.size() > 0 && channel.read(last, channel.size() - 1) == 1 && last.get(0) != '\n') {
+            write("\n");
+        }
+        return records;
+    }
+
+    // Numbers the records and appends them as one write
+    synchronized void append(List<Record> records) throws IOException {
+        StringBuilder lines = new StringBuilder();
+        for (Record record : records) {
+            record.setSequence(++lastSequence);
+            lines.append(objectMapper.writeValueAsString(record)).append('\n');
+        }
+        write(lines.toString());
+    }
+
+    // Marks every record up to sequence as stored
+    synchronized void ack(long sequence) throws IOException {
+        if (sequence == lastSequence) {
+            // Nothing pending: start over with an empty file
+            channel.truncate(0);
+            channel.position(0);
+            return;
+        }
+        Record ack = new Record();
+        ack.setAck(sequence);
+        write(objectMapper.writeValueAsString(ack) + '\n');
+    }
+
+    synchronized long size() throws IOException {
+        return channel.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    private void write(String lines) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(lines.getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        if (sync) {
+            channel.force(false);
+        }
+    }
+
+    // An accepted order with its packing, or (ack set) the last sequence of a stored batch. Dead letters use
+    // the same format, so once their cause is fixed they can be appended to the outbox and replayed
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    static class Record {
+        private Long sequence;
+        // Epoch millis the order was accepted at
+        private Long time;
+        private OrderRequestDto request;
+        private List<BoxDto> boxes;
+        // Catalog box of every entry of boxes
+        private List<Long> boxIds;
+        private int[][] lines;
+        private String strategy;
+        private Boolean optimal;
+        private Long ack;
+        // Why the order went to the dead-letter file; never set in the outbox
+        private String error;
+    }
+}
@@ -1,35 +1,52 @@
 package com.springbootmicroservices.orderservice.service.impl;
 
+import com.springbootmicroservices.orderservice.config.PackagingProperties;
 import com.springbootmicroservices.orderservice.dto.*;
 import com.springbootmicroservices.orderservice.entity.Box;
-import com.springbootmicroservices.orderservice.entity.Order;
-import com.springbootmicroservices.orderservice.entity.OrderPackaging;
-import com.springbootmicroservices.orderservice.entity.Product;
-import com.springbootmicroservices.orderservice.repository.BoxRepository;
-import com.springbootmicroservices.orderservice.repository.OrderPackagingRepository;
-import com.springbootmicroservices.orderservice.repository.OrderRepository;
+import com.springbootmicroservices.orderservice.service.BoxCatalog;
+import com.springbootmicroservices.orderservice.service.BoxCatalogSnapshot;
 import com.springbootmicroservices.orderservice.service.PackagingService;
+import com.springbootmicroservices.orderservice.service.PackingResultCache;
+import com.springbootmicroservices.orderservice.service.RequestDeadline;
+import com.springbootmicroservices.orderservice.service.RequestDeadlines;
+import com.springbootmicroservices.orderservice.service.ShadowPacking;
+import com.springbootmicroservices.packing.ItemDoesNotFitException;
+import com.springbootmicroservices.packing.PackingEngine;
+import com.springbootmicroservices.packing.PackingItems;
+import com.springbootmicroservices.packing.PackingPlan;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import javax.annotation.PostConstruct;
-import java.util.*;
-import java.util.stream.Collectors;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @Service
 @RequiredArgsConstructor
 public class PackagingServiceImpl implements PackagingService {
 
-    private final BoxRepository boxRepository;
-    private final OrderRepository orderRepository;
-    private final OrderPackagingRepository orderPackagingRepository;
+    private final BoxCatalog boxCatalog;
+    private final OrderPackagingWriter orderPackagingWriter;
+    private final PackingEngine packingEngine;
+    private final PackingResultCache packingResultCache;
+    private final ExecutorService packingExecutor;
+    private final PackagingProperties packagingProperties;
+    private final ShadowPacking shadowPacking;
+    private final RequestDeadlines requestDeadlines;
+    private final WriteBehindPersistence writeBehindPersistence;
+    private final OrderPackagingReader orderPackagingReader;
+    private final OrderSubmissions orderSubmissions;
 
     // Initialize the available boxes as specified in the requirements
     @PostConstruct
     public void initializeBoxes() {
-        // Check if boxes are already initialized
-        if (boxRepository.count() > 0) {
+        // Check if boxes are already initialized; loading them also publishes the catalog snapshot
+        if (!boxCatalog.refresh().isEmpty()) {
             return;
         }
         
@@ -59,276 +76,153 @@ public class PackagingServiceImpl implements PackagingService {
         box3.setLength(60.0);
         boxes.add(box3);
         
-        boxRepository.saveAll(boxes);
+        boxCatalog.saveAll(boxes);
     }
 
     @Override
-    @Transactional
-    public List<OrderPackagingResponseDto> packageOrders(List<OrderRequestDto> orderRequests) {
-        List<OrderPackagingResponseDto> responseList = new ArrayList<>();
-        
-        for (OrderRequestDto orderRequest : orderRequests) {
-            // Create and save order
-            Order order = new Order();
-            order.setOrderNumber(orderRequest.getOrderNumber() != null ? 
-                    orderRequest.getOrderNumber() : UUID.randomUUID().toString());
-            
-            // Convert DTO to entity
-            List<Product> products = orderRequest.getProducts().stream()
-                    .map(this::mapToProduct)
-                    .collect(Collectors.toList());
-            
-            order.setProducts(products);
-            Order savedOrder = orderRepository.save(order);
-            
-            // Find optimal packaging
-            List<BoxDto> optimalBoxes = findOptimalPackaging(orderRequest.getProducts());
-            
-            // Save packaging details
-            saveOrderPackaging(savedOrder, optimalBoxes);
-            
-            // Create response
-            OrderPackagingResponseDto responseDto = new OrderPackagingResponseDto();
-            responseDto.setOrderNumber(savedOrder.getOrderNumber());
-            responseDto.setBoxes(optimalBoxes);
-            
-            responseList.add(responseDto);
+    public List<OrderPackagingResponseDto> packageOrders(List<OrderRequestDto> orderRequests, RequestDeadline deadline) {
+        // Order numbers already stored, or being packed by another request, are answered from there
+        requestDeadlines.check(deadline, RequestDeadlines.STAGE_PACKING);
+        OrderSubmissions.Claim claim = orderSubmissions.claim(orderRequests);
+        List<OrderRequestDto> fresh = claim.getFresh();
+        if (!fresh.isEmpty()) {
+            try {
+                // Packing only reads the catalog snapshot, so it runs before (and outside) the transaction
+                List<OrderPacking> packings = packAll(fresh, deadline);
+                
+                // With write-behind the answer goes out once the orders are in the outbox, before they are stored;
+                // the writer thread lets go of their numbers once it has stored them
+                if (writeBehindPersistence.isEnabled()) {
+                    writeBehindPersistence.submit(claim, packings, deadline);
+                } else {
+                    claim.packed(orderPackagingWriter.saveOrders(fresh, packings, deadline));
+                    claim.release();
+                }
+            } catch (RuntimeException e) {
+                claim.failed(e);
+                throw e;
+            }
         }
-        
-        return responseList;
+        return claim.await(deadline);
     }
 
     @Override
-    public List<BoxDto> findOptimalPackaging(List<ProductDto> productDtos) {
-        // Get all available box types
-        List<Box> availableBoxes = boxRepository.findAll();
+    public List<OrderPackagingResponseDto> quoteOrders(List<OrderRequestDto> orderRequests, RequestDeadline deadline) {
+        // Catalog snapshot and engines only: no transaction, no entities, no database round trip
+        List<OrderPacking> packings = packAll(orderRequests, deadline);
         
-        if (availableBoxes.isEmpty()) {
-            throw new RuntimeException("No box configurations are available");
-        }
-        
-        // Convert products to a more usable format for the algorithm
-        List<Product> products = productDtos.stream()
-                .map(this::mapToProduct)
-                .sorted(Comparator.comparing(Product::getVolume).reversed())
-                .collect(Collectors.toList());
-        
-        // First-Fit Decreasing bin packing algorithm
-        List<BoxDto> resultBoxes = new ArrayList<>();
-        List<List<Product>> boxContents = new ArrayList<>();
-        
-        // Try to place each product
-        for (Product product : products) {
-            boolean placed = false;
-            
-            // Try to place the product in an existing box
-            for (int i = 0; i < boxContents.size(); i++) {
-                Box boxType = mapToBox(resultBoxes.get(i));
-                List<Product> currentBoxProducts = boxContents.get(i);
-                
-                // Check if product can fit in this box by volume
-                double currentVolume = currentBoxProducts.stream()
-                        .mapToDouble(Product::getVolume)
-                        .sum();
-                
-                if (currentVolume + product.getVolume() <= boxType.getVolume() && 
-                        canFitPhysically(product, boxType, currentBoxProducts)) {
-                    // Product fits in this box
-                    currentBoxProducts.add(product);
-                    resultBoxes.get(i).getProducts().add(mapToProductDto(product));
-                    placed = true;
-                    break;
-                }
-            }
-            
-            // If product couldn't fit in any existing box, create a new box
-            if (!placed) {
-                // Find the smallest box that can fit the product
-                Box bestBox = findBestBoxForProduct(product, availableBoxes);
-                
-                BoxDto newBoxDto = mapToBoxDto(bestBox);
-                newBoxDto.getProducts().add(mapToProductDto(product));
-                resultBoxes.add(newBoxDto);
-                
-                List<Product> newBoxContents = new ArrayList<>();
-                newBoxContents.add(product);
-                boxContents.add(newBoxContents);
-            }
+        List<OrderPackagingResponseDto> responseList = new ArrayList<>(packings.size());
+        for (int i = 0; i < orderRequests.size(); i++) {
+            responseList.add(packings.get(i).toResponse(orderRequests.get(i).getOrderNumber()));
         }
-        
-        return resultBoxes;
+        return responseList;
     }
 
-    private boolean canFitPhysically(Product product, Box box, List<Product> existingProducts) {
-        // Verifica múltiplas orientações do produto (6 possíveis rotações) 
-        if (canRotateAndFit(product, box, existingProducts)) {
-            return true;
-        }
-        
-        // Verificação baseada apenas no volume como fallback
-        double totalVolume = existingProducts.stream()
-                .mapToDouble(Product::getVolume)
-                .sum() + product.getVolume();
-                
-        return totalVolume <= box.getVolume();
+    @Override
+    public OrderPackagingResponseDto appendProducts(String orderNumber, List<ProductDto> productDtos,
+                                                    RequestDeadline deadline) {
+        // Packing depends on the stored boxes, so it happens inside the writer's transaction
+        return orderPackagingWriter.appendProducts(orderNumber, productDtos, packingEngine, deadline);
     }
-      private boolean canRotateAndFit(Product product, Box box, List<Product> existingProducts) {
-        double totalExistingVolume = existingProducts.stream()
-                .mapToDouble(Product::getVolume)
-                .sum();
-                
-        if (totalExistingVolume + product.getVolume() > box.getVolume()) {
-            return false; // Falha imediata se o volume total exceder
-        }
-        
-        // Verificar espaço disponível na caixa após produtos existentes
-        double occupiedSpace = calculateOccupiedSpace(existingProducts);
-        double availableSpace = box.getVolume() - occupiedSpace;
-        
-        if (product.getVolume() > availableSpace) {
-            return false; // Não há espaço suficiente
+
+    // Packs every order, in parallel on the packing pool when enabled; results keep the request order.
+    // The deadline is checked between orders: a pack that has started runs to the end, bounded by the engine budgets
+    private List<OrderPacking> packAll(List<OrderRequestDto> orderRequests, RequestDeadline deadline) {
+        PackagingProperties.Parallel parallel = packagingProperties.getParallel();
+        List<OrderPacking> packings = new ArrayList<>(orderRequests.size());
+        
+        if (!parallel.isEnabled() || orderRequests.size() < parallel.getMinOrders()) {
+            for (OrderRequestDto orderRequest : orderRequests) {
+                requestDeadlines.check(deadline, RequestDeadlines.STAGE_PACKING);
+                packings.add(pack(orderRequest.getOrderNumber(), orderRequest.getProducts()));
+            }
+            return packings;
         }
         
-        // Testar todas as 6 possíveis orientações
-        return
-            // Orientação original
-            (fitsInBox(product.getHeight(), product.getWidth(), product.getLength(), box)) ||
-            // Rotação 90° no eixo Y
-            (fitsInBox(product.getHeight(), product.getLength(), product.getWidth(), box)) ||
-            // Rotação 90° no eixo X
-            (fitsInBox(product.getWidth(), product.getHeight(), product.getLength(), box)) ||
-            // Rotação 90° em X, 90° em Y
-            (fitsInBox(product.getWidth(), product.getLength(), product.getHeight(), box)) ||
-            // Rotação 90° em Z
-            (fitsInBox(product.getLength(), product.getHeight(), product.getWidth(), box)) ||
-            // Rotação 90° em Z, 90° em Y
-            (fitsInBox(product.getLength(), product.getWidth(), product.getHeight(), box));
-    }
-    
-    // Calcular o espaço ocupado com maior precisão, considerando a distribuição espacial
-    private double calculateOccupiedSpace(List<Product> products) {
-        if (products.isEmpty()) {
-            return 0.0;
+        List<Future<OrderPacking>> futures = new ArrayList<>(orderRequests.size());
+        try {
+            for (OrderRequestDto orderRequest : orderRequests) {
+                futures.add(packingExecutor.submit(() -> pack(orderRequest.getOrderNumber(), orderRequest.getProducts())));
+            }
+            for (Future<OrderPacking> future : futures) {
+                packings.add(future.get(deadline.remainingNanos(), TimeUnit.NANOSECONDS));
+            }
+            return packings;
+        } catch (TimeoutException e) {
+            // Packs still queued or running are dropped by the cancellation below
+            requestDeadlines.cancelled((int) futures.stream().filter(future -> !future.isDone()).count());
+            throw requestDeadlines.expired(RequestDeadlines.STAGE_PACKING);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : new RuntimeException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while packing orders", e);
+        } finally {
+            futures.forEach(future -> future.cancel(true));
         }
-        
-        // Cálculo básico do volume total
-        return products.stream()
-                .mapToDouble(Product::getVolume)
-                .sum();
-        
-        // Nota: Uma implementação mais avançada incluiria algoritmos 
-        // de empacotamento 3D para calcular o espaço real ocupado
-        // considerando como as peças se encaixam
     }
-    
-    private boolean fitsInBox(double height, double width, double length, Box box) {
-        return height <= box.getHeight() && width <= box.getWidth() && length <= box.getLength();
-    }    private Box findBestBoxForProduct(Product product, List<Box> availableBoxes) {
-        return availableBoxes.stream()
-                .filter(box -> 
-                    // Verifica todas as possíveis orientações do produto
-                    (product.getHeight() <= box.getHeight() && product.getWidth() <= box.getWidth() && product.getLength() <= box.getLength()) ||
-                    (product.getHeight() <= box.getHeight() && product.getLength() <= box.getWidth() && product.getWidth() <= box.getLength()) ||
-                    (product.getWidth() <= box.getHeight() && product.getHeight() <= box.getWidth() && product.getLength() <= box.getLength()) ||
-                    (product.getWidth() <= box.getHeight() && product.getLength() <= box.getWidth() && product.getHeight() <= box.getLength()) ||
-                    (product.getLength() <= box.getHeight() && product.getHeight() <= box.getWidth() && product.getWidth() <= box.getLength()) ||
-                    (product.getLength() <= box.getHeight() && product.getWidth() <= box.getWidth() && product.getHeight() <= box.getLength())
-                )
-                .min(Comparator.comparing(Box::getVolume))
-                .orElseThrow(() -> new RuntimeException("No box can fit this product: " + product.getName() + 
-                    " with dimensions (H×W×L): " + product.getHeight() + "×" + product.getWidth() + "×" + product.getLength()));
+
+    @Override
+    public List<BoxDto> findOptimalPackaging(List<ProductDto> productDtos) {
+        return pack(null, productDtos).getBoxes();
     }
 
-    private void saveOrderPackaging(Order order, List<BoxDto> boxDtos) {
-        // First delete any existing packaging for this order
-        orderPackagingRepository.deleteByOrder(order);
-        
-        for (BoxDto boxDto : boxDtos) {
-            Box box = mapToBox(boxDto);
-            
-            OrderPackaging packaging = new OrderPackaging();
-            packaging.setOrder(order);
-            packaging.setBox(box);
-            
-            List<Product> productsInBox = boxDto.getProducts().stream()
-                    .map(this::mapToProduct)
-                    .collect(Collectors.toList());
-            
-            // Find actual product entities from the order
-            List<Product> orderProducts = order.getProducts();
-            List<Product> matchedProducts = new ArrayList<>();
-            
-            for (Product boxProduct : productsInBox) {
-                // Find matching product from order
-                Product matchedProduct = orderProducts.stream()
-                        .filter(p -> Objects.equals(p.getId(), boxProduct.getId()) || 
-                                    (p.getHeight().equals(boxProduct.getHeight()) && 
-                                     p.getWidth().equals(boxProduct.getWidth()) &&
-                                     p.getLength().equals(boxProduct.getLength())))
-                        .findFirst()
-                        .orElse(boxProduct); // Fallback to the box product if no match
-                        
-                matchedProducts.add(matchedProduct);
-            }
-            
-            packaging.setProducts(matchedProducts);
-            orderPackagingRepository.save(packaging);
-        }
+    @Override
+    public String orderTag(String orderNumber) {
+        return orderPackagingReader.orderTag(orderNumber);
     }
 
-    // Helper methods for object conversion
-    private Product mapToProduct(ProductDto dto) {
-        Product product = new Product();
-        product.setId(dto.getId());
-        product.setName(dto.getName() != null ? dto.getName() : "Product");
-        product.setHeight(dto.getHeight());
-        product.setWidth(dto.getWidth());
-        product.setLength(dto.getLength());
-        product.setDescription(dto.getDescription());
-        return product;
+    @Override
+    public StoredOrderDto findOrder(String orderNumber) {
+        return orderPackagingReader.findOrder(orderNumber);
     }
 
-    private ProductDto mapToProductDto(Product product) {
-        return new ProductDto(
-                product.getId(),
-                product.getName(),
-                product.getHeight(),
-                product.getWidth(),
-                product.getLength(),
-                product.getDescription()
-        );
+    @Override
+    public String orderPageTag(String cursor, Integer limit) {
+        return orderPackagingReader.orderPageTag(cursor, limit);
     }
 
-    private BoxDto mapToBoxDto(Box box) {
-        return new BoxDto(
-                box.getId(),
-                box.getName(),
-                box.getHeight(),
-                box.getWidth(),
-                box.getLength(),
-                new ArrayList<>()
-        );
+    @Override
+    public StoredOrderPageDto listOrders(String cursor, Integer limit) {
+        return orderPackagingReader.listOrders(cursor, limit);
     }
 
-    private Box mapToBox(BoxDto dto) {
-        // If it's an existing box (has ID), find it
-        if (dto.getId() != null) {
-            return boxRepository.findById(dto.getId()).orElseGet(() -> {
-                Box newBox = new Box();
-                newBox.setName(dto.getName());
-                newBox.setHeight(dto.getHeight());
-                newBox.setWidth(dto.getWidth());
-                newBox.setLength(dto.getLength());
-                return boxRepository.save(newBox);
+    private OrderPacking pack(String orderNumber, List<ProductDto> productDtos) {
+        // Get all available box types from the in-memory catalog
+        BoxCatalogSnapshot catalog = boxCatalog.current();
+        
+        if (catalog.isEmpty()) {
+            throw new RuntimeException("No box configurations are available");
+        }
+        
+        // The engine works on primitive arrays, no entities involved; equivalent orders come from the cache.
+        // Engines that cannot pack quantities get one item per unit, mapped back to its order line
+        PackingItems lines = PackingAdapter.toPackingItems(productDtos);
+        boolean expand = lines.hasQuantities() && !packingEngine.packsQuantities();
+        PackingItems items = expand ? lines.expand() : lines;
+        int[] itemLines = expand ? lines.unitItems() : null;
+        PackingPlan plan;
+        // Time of the engine alone; stays -1 when the plan comes from the cache
+        long[] packNanos = {-1};
+        try {
+            plan = packingResultCache.computeIfAbsent(catalog.getVersion(), packingEngine.name(), items, () -> {
+                long start = System.nanoTime();
+                PackingPlan packed = packingEngine.pack(items, catalog.getBoxTypes());
+                packNanos[0] = System.nanoTime() - start;
+                return packed;
             });
+        } catch (ItemDoesNotFitException e) {
+            throw PackingAdapter.doesNotFit(productDtos.get(expand ? itemLines[e.getItem()] : e.getItem()));
+        }
+        // Sampled orders are packed again by the shadow candidate, off this thread; a cache hit has no
+        // primary packing time to compare with, so it is not offered
+        if (packNanos[0] >= 0) {
+            shadowPacking.offer(orderNumber, items, catalog.getBoxTypes(), plan, packNanos[0]);
         }
         
-        // Otherwise create a new one
-        Box box = new Box();
-        box.setName(dto.getName());
-        box.setHeight(dto.getHeight());
-        box.setWidth(dto.getWidth());
-        box.setLength(dto.getLength());
-        return boxRepository.save(box);
+        // Portfolio plans name the heuristic that won
+        String strategy = plan.strategy() != null ? plan.strategy() : packingEngine.name();
+        return PackingAdapter.toOrderPacking(plan, catalog, productDtos, itemLines, strategy);
     }
 }
@@ -0,0 +1,96 @@
+package com.springbootmicroservices.orderservice.service.impl;
+
+import com.springbootmicroservices.orderservice.config.PackagingProperties;
+import com.springbootmicroservices.orderservice.entity.OrderPackaging;
+import com.springbootmicroservices.orderservice.entity.PackedContents;
+import com.springbootmicroservices.orderservice.repository.OrderPackagingRepository;
+import com.springbootmicroservices.orderservice.repository.OrderRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Moves boxes stored in the packaging_products and quantity join tables to the
+ * packed contents column, in id order and one transaction per chunk, so it can
+ * run on a live database and pick up where it stopped. A chunk reads its join
+ * rows with two queries and deletes them with two more. Before reading them it
+ * locks the owning orders and moves their versions on: an append to one of these
+ * boxes either waits for the chunk and finds it packed, or fails on its stale
+ * version instead of adding join rows nobody reads any more.
+ */
+@Component
+public class PackagingStorageMigration {
+
+    private final OrderPackagingRepository orderPackagingRepository;
+    private final OrderRepository orderRepository;
+    private final PackagingProperties.Storage properties;
+    private final TransactionTemplate transactionTemplate;
+    private final Counter migrated;
+
+    public PackagingStorageMigration(OrderPackagingRepository orderPackagingRepository,
+                                     OrderRepository orderRepository,
+                                     PackagingProperties packagingProperties,
+                                     TransactionTemplate transactionTemplate,
+                                     MeterRegistry meterRegistry) {
+        this.orderPackagingRepository = orderPackagingRepository;
+        this.orderRepository = orderRepository;
+        this.properties = packagingProperties.getStorage();
+        this.transactionTemplate = transactionTemplate;
+        this.migrated = Counter.builder("packaging.storage.migrated")
+                .description("Boxes moved from the join tables to the packed contents column")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateOnStartup() {
+        if (properties.isMigrate()) {
+            migrate();
+        }
+    }
+
+    // Converts every box still in the join tables; returns how many were converted
+    public int migrate() {
+        int total = 0;
+        long after = 0;
+        while (true) {
+            long from = after;
+            List<Long> converted = transactionTemplate.execute(status -> migrateChunk(from));
+            if (converted == null || converted.isEmpty()) {
+                return total;
+            }
+            total += converted.size();
+            after = converted.get(converted.size() - 1);
+        }
+    }
+
+    private List<Long> migrateChunk(long after) {
+        List<OrderPackaging> packagings = orderPackagingRepository.findJoinTableStoredAfter(after,
+                PageRequest.of(0, properties.getMigrationBatchSize()));
+        if (packagings.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Long> ids = packagings.stream().map(OrderPackaging::getId).collect(Collectors.toList());
+        // Sorted, so that chunks lock their orders in one order
+        orderRepository.incrementVersions(packagings.stream().map(packaging -> packaging.getOrder().getId())
+                .distinct().sorted().collect(Collectors.toList()));
+
+        Map<Long, PackedContents> contents = PackagingContents.readJoinTables(orderPackagingRepository, ids);
+        // The collections are never loaded, so only the new column is written for each box
+        for (OrderPackaging packaging : packagings) {
+            packaging.setContents(contents.get(packaging.getId()).encode());
+        }
+        orderPackagingRepository.deleteProductLinks(ids);
+        orderPackagingRepository.deleteQuantities(ids);
+        migrated.increment(packagings.size());
+        return ids;
+    }
+}
@@ -0,0 +1,131 @@
+package com.springbootmicroservices.orderservice.service.impl;
+
+import com.springbootmicroservices.orderservice.dto.BoxDto;
+import com.springbootmicroservices.orderservice.dto.PlacementDto;
+import com.springbootmicroservices.orderservice.dto.ProductDto;
+import com.springbootmicroservices.orderservice.entity.Box;
+import com.springbootmicroservices.orderservice.service.BoxCatalogSnapshot;
+import com.springbootmicroservices.packing.PackingItems;
+import com.springbootmicroservices.packing.PackingPlan;
+import com.springbootmicroservices.packing.Placements;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Translates between the order DTOs and the packing-core value types: order lines
+ * become {@link PackingItems}, and a {@link PackingPlan} comes back as box DTOs
+ * listing the products of every box, each tied to the order line it came from.
+ */
+final class PackingAdapter {
+
+    private PackingAdapter() {
+    }
+
+    // One item per order line, the line's quantity as its units
+    static PackingItems toPackingItems(List<ProductDto> productDtos) {
+        int size = productDtos.size();
+        double[] heights = new double[size];
+        double[] widths = new double[size];
+        double[] lengths = new double[size];
+        int[] quantities = new int[size];
+        for (int i = 0; i < size; i++) {
+            ProductDto dto = productDtos.get(i);
+            heights[i] = dto.getHeight();
+            widths[i] = dto.getWidth();
+            lengths[i] = dto.getLength();
+            quantities[i] = quantity(dto);
+        }
+        return new PackingItems(heights, widths, lengths, quantities);
+    }
+
+    // Boxes of the plan with their products and the order line of every product entry;
+    // itemLines maps plan items back to order lines, null when they are the same
+    static OrderPacking toOrderPacking(PackingPlan plan, BoxCatalogSnapshot catalog, List<ProductDto> productDtos,
+                                       int[] itemLines, String strategy) {
+        List<BoxDto> resultBoxes = new ArrayList<>(plan.boxCount());
+        List<Box> catalogBoxes = new ArrayList<>(plan.boxCount());
+        int[][] lines = new int[plan.boxCount()][];
+        int[][] contents = plan.contents();
+        int[][] units = plan.units();
+        Placements placements = plan.placements();
+        for (int i = 0; i < plan.boxCount(); i++) {
+            Box box = catalog.getBox(plan.boxType(i));
+            BoxDto boxDto = mapToBoxDto(box);
+            List<ProductDto> boxProducts = boxDto.getProducts();
+            int[] boxLines = new int[contents[i].length];
+            int entries = 0;
+            int previousLine = -1;
+            for (int k = 0; k < contents[i].length; k++) {
+                int item = contents[i][k];
+                int line = itemLines != null ? itemLines[item] : item;
+                if (placements != null) {
+                    // Every unit has its own position
+                    boxProducts.add(copyProductDto(productDtos.get(line), units[i][k]));
+                    boxDto.getPlacements().add(mapToPlacementDto(placements, item));
+                    boxLines[entries++] = line;
+                } else if (line == previousLine) {
+                    ProductDto last = boxProducts.get(boxProducts.size() - 1);
+                    last.setQuantity(last.getQuantity() + units[i][k]);
+                } else {
+                    boxProducts.add(copyProductDto(productDtos.get(line), units[i][k]));
+                    boxLines[entries++] = line;
+                }
+                previousLine = line;
+            }
+            resultBoxes.add(boxDto);
+            catalogBoxes.add(box);
+            lines[i] = entries == boxLines.length ? boxLines : Arrays.copyOf(boxLines, entries);
+        }
+        return new OrderPacking(resultBoxes, catalogBoxes, lines, strategy, plan.provenOptimal());
+    }
+
+    static RuntimeException doesNotFit(ProductDto product) {
+        return new RuntimeException("No box can fit this product: " + productName(product) +
+                " with dimensions (H×W×L): " + product.getHeight() + "×" + product.getWidth() + "×" + product.getLength());
+    }
+
+    static String productName(ProductDto dto) {
+        return dto.getName() != null ? dto.getName() : "Product";
+    }
+
+    private static int quantity(ProductDto dto) {
+        return dto.getQuantity() != null ? dto.getQuantity() : 1;
+    }
+
+    private static ProductDto copyProductDto(ProductDto dto, int quantity) {
+        return new ProductDto(
+                dto.getId(),
+                productName(dto),
+                dto.getHeight(),
+                dto.getWidth(),
+                dto.getLength(),
+                dto.getDescription(),
+                quantity
+        );
+    }
+
+    static BoxDto mapToBoxDto(Box box) {
+        return new BoxDto(
+                box.getId(),
+                box.getName(),
+                box.getHeight(),
+                box.getWidth(),
+                box.getLength(),
+                new ArrayList<>(),
+                new ArrayList<>()
+        );
+    }
+
+    private static PlacementDto mapToPlacementDto(Placements placements, int item) {
+        return new PlacementDto(
+                placements.x(item),
+                placements.y(item),
+                placements.z(item),
+                placements.length(item),
+                placements.width(item),
+                placements.height(item)
+        );
+    }
+}
@@ -0,0 +1,410 @@
+package com.springbootmicroservices.orderservice.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springbootmicroservices.orderservice.config.PackagingProperties;
+import com.springbootmicroservices.orderservice.dto.BoxDto;
+import com.springbootmicroservices.orderservice.dto.OrderPackagingResponseDto;
+import com.springbootmicroservices.orderservice.dto.OrderRequestDto;
+import com.springbootmicroservices.orderservice.entity.Box;
+import com.springbootmicroservices.orderservice.exception.ApiException;
+import com.springbootmicroservices.orderservice.repository.OrderRepository;
+import com.springbootmicroservices.orderservice.service.BoxCatalog;
+import com.springbootmicroservices.orderservice.service.BoxCatalogSnapshot;
+import com.springbootmicroservices.orderservice.service.RequestDeadline;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Write-behind persistence of packed orders. Accepted orders are appended to the
+ * {@link PackagingOutbox} and queued, and the caller gets its answer right away; a
+ * single writer thread drains the queue and stores up to batchSize orders per
+ * transaction. The queue is bounded: a request waits for room up to maxWait (and
+ * its own deadline), then fails with a 503. Orders still in the outbox on startup,
+ * whether from a crash or a shutdown that did not drain, are stored first.
+ * A batch is only acknowledged in the outbox up to the orders that are done with:
+ * stored, or moved to the dead-letter file because they break a constraint and can
+ * never be stored. Any other failure, such as the database being down or a lock
+ * timeout, keeps the batch and retries it with backoff, so an accepted order is
+ * never dropped.
+ */
+@Slf4j
+@Component
+public class WriteBehindPersistence {
+
+    private final OrderPackagingWriter orderPackagingWriter;
+    private final OrderRepository orderRepository;
+    private final BoxCatalog boxCatalog;
+    private final OrderSubmissions orderSubmissions;
+    private final PackagingProperties.WriteBehind properties;
+    private final PackagingOutbox outbox;
+    private final PackagingOutbox deadLetters;
+    private final BlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+    // One permit per free queue slot, so the queue stays bounded while whole requests enter it at once
+    private final Semaphore room;
+    private final Counter rejected;
+    private final Counter failed;
+    private final Counter retries;
+    private final Counter recovered;
+    private final Timer lag;
+    private final DistributionSummary batchSize;
+    private volatile boolean running;
+    private Thread writer;
+
+    public WriteBehindPersistence(OrderPackagingWriter orderPackagingWriter, OrderRepository orderRepository,
+                                  BoxCatalog boxCatalog, OrderSubmissions orderSubmissions,
+                                  PackagingProperties packagingProperties, ObjectMapper objectMapper,
+                                  MeterRegistry meterRegistry) {
+        this.orderPackagingWriter = orderPackagingWriter;
+        this.orderRepository = orderRepository;
+        this.boxCatalog = boxCatalog;
+        this.orderSubmissions = orderSubmissions;
+        this.properties = packagingProperties.getWriteBehind();
+        this.outbox = new PackagingOutbox(Paths.get(properties.getOutbox()), objectMapper, properties.isSync());
+        this.deadLetters = new PackagingOutbox(Paths.get(properties.getDeadLetter()), objectMapper, true);
+        this.room = new Semaphore(properties.getQueueCapacity());
+
+        this.rejected = Counter.builder("packaging.write-behind.rejected")
+                .description("Orders refused because the write-behind queue stayed full")
+                .register(meterRegistry);
+        this.failed = Counter.builder("packaging.write-behind.failed")
+                .description("Accepted orders moved to the dead-letter file because they can never be stored")
+                .register(meterRegistry);
+        this.retries = Counter.builder("packaging.write-behind.retries")
+                .description("Write-behind batches tried again after a temporary failure")
+                .register(meterRegistry);
+        this.recovered = Counter.builder("packaging.write-behind.recovered")
+                .description("Orders replayed from the outbox on startup")
+                .register(meterRegistry);
+        this.lag = Timer.builder("packaging.write-behind.lag")
+                .description("Time from accepting an order to committing it")
+                .register(meterRegistry);
+        this.batchSize = DistributionSummary.builder("packaging.write-behind.batch.size")
+                .description("Orders stored per write-behind transaction")
+                .register(meterRegistry);
+        Gauge.builder("packaging.write-behind.queue.depth", queue, BlockingQueue::size)
+                .description("Accepted orders waiting to be stored")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        // Replayed orders go first; the queue may briefly hold more than its capacity
+        for (PackagingOutbox.Record record : outbox.open()) {
+            queue.add(new Entry(record, null));
+            recovered.increment();
+        }
+        // Opened for appending only; what is in it waits for an operator
+        deadLetters.open();
+        running = true;
+        writer = new Thread(this::drain, "write-behind");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    public void stop() throws IOException, InterruptedException {
+        if (writer == null) {
+            return;
+        }
+        running = false;
+        writer.join(properties.getShutdownTimeout().toMillis());
+        writer.interrupt();
+        outbox.close();
+        deadLetters.close();
+    }
+
+    /**
+     * Accepts packed orders for storage and answers with their packing. Orders without
+     * a number get one here, so the answer carries the number they will be stored under.
+     */
+    public List<OrderPackagingResponseDto> submit(List<OrderRequestDto> orderRequests, List<OrderPacking> packings,
+                                                  RequestDeadline deadline) {
+        return submit(orderRequests, packings, deadline, responses -> { });
+    }
+
+    /**
+     * Accepts the fresh orders of a claim, and hands the claim its answers before the
+     * writer thread can see the orders: the writer lets go of a number only once its
+     * answer is there, so it must never store an order that has none yet.
+     */
+    public void submit(OrderSubmissions.Claim claim, List<OrderPacking> packings, RequestDeadline deadline) {
+        submit(claim.getFresh(), packings, deadline, claim::packed);
+    }
+
+    private List<OrderPackagingResponseDto> submit(List<OrderRequestDto> orderRequests, List<OrderPacking> packings,
+                                                   RequestDeadline deadline,
+                                                   Consumer<List<OrderPackagingResponseDto>> accepted) {
+        if (!running) {
+            throw new ApiException(HttpStatus.SERVICE_UNAVAILABLE, "Write-behind persistence is not running");
+        }
+        int count = orderRequests.size();
+        acquire(count, deadline);
+
+        long now = System.currentTimeMillis();
+        List<PackagingOutbox.Record> records = new ArrayList<>(count);
+        List<Entry> entries = new ArrayList<>(count);
+        List<OrderPackagingResponseDto> responseList = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            OrderRequestDto orderRequest = orderRequests.get(i);
+            OrderPacking packing = packings.get(i);
+            String orderNumber = orderRequest.getOrderNumber() != null
+                    ? orderRequest.getOrderNumber() : UUID.randomUUID().toString();
+            OrderRequestDto request = new OrderRequestDto(orderNumber, orderRequest.getProducts());
+            PackagingOutbox.Record record = new PackagingOutbox.Record(null, now, request, packing.getBoxes(),
+                    packing.getCatalogBoxes().stream().map(Box::getId).collect(Collectors.toList()),
+                    packing.getLines(), packing.getStrategy(), packing.isOptimal(), null, null);
+            records.add(record);
+            entries.add(new Entry(record, packing));
+            responseList.add(packing.toResponse(orderNumber));
+        }
+
+        // Queue order follows outbox order, so a stored batch is always a prefix of the outbox
+        try {
+            synchronized (outbox) {
+                outbox.append(records);
+                accepted.accept(responseList);
+                queue.addAll(entries);
+            }
+        } catch (IOException e) {
+            room.release(count);
+            throw new UncheckedIOException("Could not write the packaging outbox", e);
+        }
+        return responseList;
+    }
+
+    private void acquire(int count, RequestDeadline deadline) {
+        long waitNanos = Math.min(properties.getMaxWait().toNanos(), deadline.remainingNanos());
+        boolean acquired;
+        try {
+            acquired = room.tryAcquire(count, waitNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            rejected.increment(count);
+            throw new ApiException(HttpStatus.SERVICE_UNAVAILABLE, "Too many orders waiting to be stored, retry later");
+        }
+    }
+
+    // Writer thread: stores the queue in batches until stopped and drained
+    private void drain() {
+        List<Entry> entries = new ArrayList<>(properties.getBatchSize());
+        while (running || !queue.isEmpty()) {
+            try {
+                Entry first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                entries.add(first);
+                queue.drainTo(entries, properties.getBatchSize() - 1);
+                if (!storeWithRetry(new Batch(entries))) {
+                    // Shut down while the database was failing; the rest stays in the outbox
+                    return;
+                }
+            } catch (InterruptedException e) {
+                // Shutdown gave up waiting; what is left stays in the outbox
+                return;
+            } finally {
+                entries.clear();
+            }
+        }
+    }
+
+    // Stores the whole batch, retrying temporary failures with backoff; false when shutdown cut the retries short
+    private boolean storeWithRetry(Batch batch) throws InterruptedException {
+        long backoff = properties.getRetryBackoff().toMillis();
+        while (true) {
+            try {
+                store(batch);
+                return true;
+            } catch (RuntimeException | IOException e) {
+                batch.retried = true;
+                if (!running) {
+                    log.warn("Write-behind batch failed during shutdown; it is replayed on the next start", e);
+                    return false;
+                }
+                retries.increment();
+                log.warn("Write-behind batch failed, trying again in {} ms", backoff, e);
+                Thread.sleep(backoff);
+                backoff = Math.min(backoff * 2, properties.getMaxRetryBackoff().toMillis());
+            }
+        }
+    }
+
+    // Picks up where the last attempt stopped; throws on a temporary failure, with the orders done so far kept
+    private void store(Batch batch) throws IOException {
+        List<Entry> entries = batch.entries;
+        if (batch.done < entries.size()) {
+            List<Entry> rest = entries.subList(batch.done, entries.size());
+            Set<Entry> pending = Collections.newSetFromMap(new IdentityHashMap<>());
+            pending.addAll(withoutStored(rest, batch.retried));
+            try {
+                save(rest.stream().filter(pending::contains).collect(Collectors.toList()));
+                batch.done = entries.size();
+            } catch (RuntimeException e) {
+                // One bad order must not sink the others: go one at a time, stopping at a temporary failure
+                for (int i = batch.done; i < entries.size(); i++) {
+                    Entry entry = entries.get(i);
+                    if (pending.contains(entry)) {
+                        try {
+                            save(Collections.singletonList(entry));
+                        } catch (RuntimeException single) {
+                            if (!isPermanent(single)) {
+                                throw single;
+                            }
+                            deadLetter(entry, single);
+                        }
+                    }
+                    batch.done = i + 1;
+                }
+            }
+        }
+        if (batch.acked < batch.done) {
+            outbox.ack(entries.get(batch.done - 1).record.getSequence());
+            completed(entries.subList(batch.acked, batch.done));
+            batch.acked = batch.done;
+        }
+    }
+
+    // Stored or dead-lettered, and acknowledged
+    private void completed(List<Entry> entries) {
+        // A repeated number is now answered from the database, or packed again
+        orderSubmissions.release(entries.stream().map(entry -> entry.record.getRequest().getOrderNumber())
+                .collect(Collectors.toList()));
+        room.release((int) entries.stream().filter(entry -> entry.packing != null).count());
+
+        long now = System.currentTimeMillis();
+        for (Entry entry : entries) {
+            lag.record(now - entry.record.getTime(), TimeUnit.MILLISECONDS);
+        }
+        batchSize.record(entries.size());
+    }
+
+    private void deadLetter(Entry entry, RuntimeException e) throws IOException {
+        PackagingOutbox.Record record = entry.record;
+        PackagingOutbox.Record letter = new PackagingOutbox.Record(null, record.getTime(), record.getRequest(),
+                record.getBoxes(), record.getBoxIds(), record.getLines(), record.getStrategy(), record.getOptimal(),
+                null, String.valueOf(NestedExceptionUtils.getMostSpecificCause(e)));
+        deadLetters.append(Collections.singletonList(letter));
+        failed.increment();
+        log.error("Order {} can never be stored; moved to {}", record.getRequest().getOrderNumber(),
+                properties.getDeadLetter(), e);
+    }
+
+    // Failures retrying cannot fix: the order itself breaks a constraint of the schema or the entities
+    static boolean isPermanent(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause() == cause ? null : cause.getCause()) {
+            if (cause instanceof DataIntegrityViolationException
+                    || cause instanceof javax.validation.ConstraintViolationException
+                    || cause instanceof org.hibernate.exception.ConstraintViolationException
+                    || cause instanceof SQLIntegrityConstraintViolationException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void save(List<Entry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        BoxCatalogSnapshot catalog = boxCatalog.current();
+        List<OrderRequestDto> orderRequests = new ArrayList<>(entries.size());
+        List<OrderPacking> packings = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            orderRequests.add(entry.record.getRequest());
+            packings.add(entry.packing != null ? entry.packing : toPacking(entry.record, catalog));
+        }
+        orderPackagingWriter.saveOrders(orderRequests, packings, RequestDeadline.NONE);
+    }
+
+    // Replayed orders may have been stored just before a crash, ahead of their ack, and after a failed attempt
+    // any order may have been: a commit can fail after the database applied it
+    private List<Entry> withoutStored(List<Entry> batch, boolean retried) {
+        List<String> replayed = batch.stream()
+                .filter(entry -> retried || entry.packing == null)
+                .map(entry -> entry.record.getRequest().getOrderNumber())
+                .collect(Collectors.toList());
+        if (replayed.isEmpty()) {
+            return batch;
+        }
+        Set<String> stored = new HashSet<>(orderRepository.findExistingOrderNumbers(replayed));
+        return batch.stream()
+                .filter(entry -> !stored.contains(entry.record.getRequest().getOrderNumber()))
+                .collect(Collectors.toList());
+    }
+
+    // Boxes are looked up in the current catalog; the id alone is enough for the foreign key
+    private static OrderPacking toPacking(PackagingOutbox.Record record, BoxCatalogSnapshot catalog) {
+        List<Box> catalogBoxes = new ArrayList<>(record.getBoxIds().size());
+        for (Long id : record.getBoxIds()) {
+            catalogBoxes.add(catalog.findById(id).orElseGet(() -> {
+                Box box = new Box();
+                box.setId(id);
+                return box;
+            }));
+        }
+        List<BoxDto> boxes = record.getBoxes();
+        return new OrderPacking(boxes, catalogBoxes, record.getLines(), record.getStrategy(),
+                Boolean.TRUE.equals(record.getOptimal()));
+    }
+
+    // Orders taken off the queue together; the first done are stored or dead-lettered, the first acked acknowledged
+    private static final class Batch {
+        private final List<Entry> entries;
+        private int done;
+        private int acked;
+        private boolean retried;
+
+        private Batch(List<Entry> entries) {
+            this.entries = entries;
+        }
+    }
+
+    // Queued order: its outbox record, and its packing unless it was replayed from the outbox
+    private static final class Entry {
+        private final PackagingOutbox.Record record;
+        private final OrderPacking packing;
+
+        private Entry(PackagingOutbox.Record record, OrderPacking packing) {
+            this.record = record;
+            this.packing = packing;
+        }
+    }
+}
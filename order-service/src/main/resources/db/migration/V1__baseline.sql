@@ -0,0 +1,93 @@
+-- Schema of order-service as mapped by the JPA entities. Only profiles with
+-- spring.flyway.enabled=true (durable) run it; the in-memory profiles keep ddl-auto.
+-- Later changes to the entities go in new V<n>__*.sql files, never into this one.
+
+-- Ids come from one sequence per entity in blocks of 50 (see BaseEntity)
+CREATE SEQUENCE box_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE order_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE order_packaging_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE product_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE user_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE boxes (
+    id     BIGINT       NOT NULL,
+    name   VARCHAR(255) NOT NULL,
+    height DOUBLE       NOT NULL,
+    width  DOUBLE       NOT NULL,
+    length DOUBLE       NOT NULL,
+    CONSTRAINT pk_boxes PRIMARY KEY (id)
+);
+
+CREATE TABLE orders (
+    id           BIGINT       NOT NULL,
+    order_number VARCHAR(255) NOT NULL,
+    created_at   TIMESTAMP,
+    processed    BOOLEAN      DEFAULT FALSE NOT NULL,
+    strategy     VARCHAR(255),
+    optimal      BOOLEAN      DEFAULT FALSE NOT NULL,
+    version      BIGINT       DEFAULT 0 NOT NULL,
+    CONSTRAINT pk_orders PRIMARY KEY (id),
+    CONSTRAINT uk_orders_order_number UNIQUE (order_number)
+);
+
+-- Key of the history pages, newest first
+CREATE INDEX idx_orders_created_at ON orders (created_at DESC, id DESC);
+
+CREATE TABLE products (
+    id          BIGINT       NOT NULL,
+    order_id    BIGINT,
+    name        VARCHAR(255) NOT NULL,
+    height      DOUBLE       NOT NULL,
+    width       DOUBLE       NOT NULL,
+    length      DOUBLE       NOT NULL,
+    description VARCHAR(255),
+    quantity    INTEGER      NOT NULL,
+    CONSTRAINT pk_products PRIMARY KEY (id),
+    CONSTRAINT fk_products_order FOREIGN KEY (order_id) REFERENCES orders (id)
+);
+
+-- contents holds the packed box contents; boxes stored in the join tables below leave it null
+CREATE TABLE order_packaging (
+    id       BIGINT NOT NULL,
+    order_id BIGINT NOT NULL,
+    box_id   BIGINT NOT NULL,
+    contents VARBINARY(1048576),
+    CONSTRAINT pk_order_packaging PRIMARY KEY (id),
+    CONSTRAINT fk_order_packaging_order FOREIGN KEY (order_id) REFERENCES orders (id),
+    CONSTRAINT fk_order_packaging_box FOREIGN KEY (box_id) REFERENCES boxes (id)
+);
+
+CREATE TABLE packaging_products (
+    packaging_id BIGINT  NOT NULL,
+    position     INTEGER NOT NULL,
+    product_id   BIGINT  NOT NULL,
+    CONSTRAINT pk_packaging_products PRIMARY KEY (packaging_id, position),
+    CONSTRAINT fk_packaging_products_packaging FOREIGN KEY (packaging_id) REFERENCES order_packaging (id),
+    CONSTRAINT fk_packaging_products_product FOREIGN KEY (product_id) REFERENCES products (id)
+);
+
+CREATE TABLE packaging_product_quantities (
+    packaging_id BIGINT  NOT NULL,
+    position     INTEGER NOT NULL,
+    quantity     INTEGER NOT NULL,
+    CONSTRAINT pk_packaging_product_quantities PRIMARY KEY (packaging_id, position),
+    CONSTRAINT fk_packaging_product_quantities_packaging FOREIGN KEY (packaging_id)
+        REFERENCES order_packaging (id)
+);
+
+CREATE TABLE users (
+    id       BIGINT       NOT NULL,
+    username VARCHAR(255) NOT NULL,
+    password VARCHAR(255) NOT NULL,
+    name     VARCHAR(255) NOT NULL,
+    email    VARCHAR(255) NOT NULL,
+    active   BOOLEAN      NOT NULL,
+    CONSTRAINT pk_users PRIMARY KEY (id),
+    CONSTRAINT uk_users_username UNIQUE (username)
+);
+
+CREATE TABLE user_roles (
+    user_id BIGINT NOT NULL,
+    role    VARCHAR(255),
+    CONSTRAINT fk_user_roles_user FOREIGN KEY (user_id) REFERENCES users (id)
+);
@@ -6,6 +6,7 @@ import com.springbootmicroservices.orderservice.dto.OrderRequestDto;
 import com.springbootmicroservices.orderservice.dto.PackagingRequestDto;
 import com.springbootmicroservices.orderservice.dto.ProductDto;
 import com.springbootmicroservices.orderservice.service.PackagingService;
+import com.springbootmicroservices.orderservice.service.RequestDeadlines;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -18,7 +19,10 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
@@ -33,6 +37,9 @@ public class PackagingControllerTest {
     @MockBean
     private PackagingService packagingService;
 
+    @MockBean
+    private RequestDeadlines requestDeadlines;
+
     @Autowired
     private ObjectMapper objectMapper;
 
@@ -69,7 +76,7 @@ public class PackagingControllerTest {
     @Test
     void shouldOptimizePackaging() throws Exception {
         // Given
-        when(packagingService.packageOrders(anyList())).thenReturn(orderResponses);
+        when(packagingService.packageOrders(anyList(), any())).thenReturn(orderResponses);
 
         // When & Then
         mockMvc.perform(post("/api/v1/packaging/optimize")
@@ -79,6 +86,20 @@ public class PackagingControllerTest {
                 .andExpect(jsonPath("$.orders[0].orderNumber").value("ORD123"));
     }
 
+    @Test
+    void shouldQuotePackaging() throws Exception {
+        // Given
+        when(packagingService.quoteOrders(anyList(), any())).thenReturn(orderResponses);
+
+        // When & Then
+        mockMvc.perform(post("/api/v1/packaging/quote")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(packagingRequest)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.orders[0].orderNumber").value("ORD123"));
+        verify(packagingService, never()).packageOrders(anyList(), any());
+    }
+
     @Test
     void shouldReturnBadRequestForInvalidInput() throws Exception {
         // Given - invalid request (product with null dimensions)
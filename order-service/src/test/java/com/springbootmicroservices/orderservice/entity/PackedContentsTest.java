@@ -0,0 +1,64 @@
+package com.springbootmicroservices.orderservice.entity;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PackedContentsTest {
+
+    @Test
+    void shouldRoundTripEntriesAndPositions() {
+        // Given: ids out of order, so some deltas are negative
+        PackedContents contents = new PackedContents(new long[]{1051, 1050, 900_000_000_000L}, new int[]{3, 1, 200},
+                new double[]{0, 0, 0, 10, 20, 30, 10, 0, 0, 5.5, 5.5, 5.5, 0, 20, 0, 1, 2, 3});
+
+        // When
+        PackedContents decoded = PackedContents.decode(contents.encode());
+
+        // Then
+        assertEquals(3, decoded.size());
+        assertEquals(1050, decoded.productId(1));
+        assertEquals(900_000_000_000L, decoded.productId(2));
+        assertEquals(200, decoded.units(2));
+        assertArrayEquals(new double[]{10, 0, 0, 5.5, 5.5, 5.5}, decoded.position(1));
+    }
+
+    @Test
+    void shouldStoreCloseIdsInAFewBytesPerEntry() {
+        // Given: ten lines of one order, ids handed out by the same sequence
+        long[] productIds = new long[10];
+        int[] units = new int[10];
+        for (int i = 0; i < 10; i++) {
+            productIds[i] = 5000 + i;
+            units[i] = 1 + i;
+        }
+
+        // When
+        byte[] bytes = new PackedContents(productIds, units, null).encode();
+
+        // Then: header, a two-byte first id, then one byte for each delta and each unit count
+        assertEquals(3 + 2 + 1 + 9 * 2, bytes.length);
+        assertFalse(PackedContents.decode(bytes).hasPositions());
+    }
+
+    @Test
+    void shouldKeepPositionsWhenEntriesAreAppended() {
+        PackedContents contents = new PackedContents(new long[]{7}, new int[]{1}, new double[]{0, 0, 0, 1, 1, 1});
+
+        PackedContents appended = PackedContents.decode(contents.append(new long[]{8}, new int[]{2}).encode());
+
+        assertEquals(2, appended.size());
+        assertEquals(8, appended.productId(1));
+        assertTrue(appended.isPlaced(0));
+        assertArrayEquals(new double[]{0, 0, 0, 1, 1, 1}, appended.position(0));
+        assertFalse(appended.isPlaced(1));
+    }
+
+    @Test
+    void shouldRejectUnknownVersions() {
+        byte[] bytes = new PackedContents(new long[]{7}, new int[]{1}, null).encode();
+        bytes[0] = 2;
+
+        assertThrows(IllegalStateException.class, () -> PackedContents.decode(bytes));
+    }
+}
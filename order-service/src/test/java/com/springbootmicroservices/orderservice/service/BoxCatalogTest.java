@@ -0,0 +1,77 @@
+package com.springbootmicroservices.orderservice.service;
+
+import com.springbootmicroservices.orderservice.entity.Box;
+import com.springbootmicroservices.orderservice.repository.BoxRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class BoxCatalogTest {
+
+    @Mock
+    private BoxRepository boxRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+    private BoxCatalog boxCatalog;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        boxCatalog = new BoxCatalog(boxRepository, meterRegistry);
+    }
+
+    @Test
+    void shouldSwapSnapshotOnRefresh() {
+        Box box = new Box("Caixa 1", 30.0, 40.0, 80.0);
+        box.setId(1L);
+        when(boxRepository.findAll()).thenReturn(Collections.singletonList(box));
+
+        BoxCatalogSnapshot before = boxCatalog.current();
+        BoxCatalogSnapshot after = boxCatalog.refresh();
+
+        assertTrue(before.isEmpty());
+        assertSame(after, boxCatalog.current());
+        assertEquals(before.getVersion() + 1, after.getVersion());
+        assertEquals("Caixa 1", after.findById(1L).map(Box::getName).orElse(null));
+        assertEquals(96000.0, after.getBoxTypes().volume(0));
+        assertEquals(1.0, meterRegistry.get("packaging.box.catalog.refreshes").counter().count());
+        assertEquals(after.getVersion(), meterRegistry.get("packaging.box.catalog.version").gauge().value());
+    }
+
+    @Test
+    void shouldNotBeAffectedByLaterChangesToLoadedEntities() {
+        Box box = new Box("Caixa 1", 30.0, 40.0, 80.0);
+        box.setId(1L);
+        when(boxRepository.findAll()).thenReturn(Collections.singletonList(box));
+
+        BoxCatalogSnapshot snapshot = boxCatalog.refresh();
+        box.setHeight(10.0);
+
+        assertEquals(30.0, snapshot.getBox(0).getHeight());
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.getBoxes().add(box));
+    }
+
+    @Test
+    void shouldRefreshAfterSavingBoxes() {
+        List<Box> boxes = new ArrayList<>();
+        boxes.add(new Box("Caixa 1", 30.0, 40.0, 80.0));
+        when(boxRepository.findAll()).thenReturn(boxes);
+
+        BoxCatalogSnapshot snapshot = boxCatalog.saveAll(boxes);
+
+        verify(boxRepository).saveAll(boxes);
+        assertEquals(1, snapshot.getBoxes().size());
+        assertEquals(1L, snapshot.getVersion());
+    }
+}
@@ -0,0 +1,130 @@
+package com.springbootmicroservices.orderservice.service;
+
+import com.springbootmicroservices.orderservice.OrderServiceApplication;
+import com.springbootmicroservices.orderservice.dto.OrderRequestDto;
+import com.springbootmicroservices.orderservice.dto.ProductDto;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.TypeExcludeFilter;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.type.classreading.MetadataReader;
+import org.springframework.core.type.classreading.MetadataReaderFactory;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+// Run with: mvn test -Pbenchmark
+// Restarts the service on a durable database of -Dbenchmark.orders orders (default 2 million)
+// and times the start and the first requests after it. The requests call the service directly,
+// without HTTP and authentication, so they show the database work a first request pays.
+@Tag("benchmark")
+public class DurableStartupBenchmark {
+
+    private static final int ORDERS = Integer.getInteger("benchmark.orders", 2_000_000);
+    private static final int RESTARTS = 3;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void reportRestartTimeAndFirstRequestLatency() throws Exception {
+        String url = "jdbc:h2:file:" + directory.resolve("orderdb") + ";CACHE_SIZE=262144;DB_CLOSE_ON_EXIT=FALSE";
+
+        // The first start runs the migrations and stores the box catalog; the orders are loaded behind its back
+        long start = System.nanoTime();
+        start(url).close();
+        long firstStart = System.nanoTime() - start;
+        start = System.nanoTime();
+        populate(url);
+        long populate = System.nanoTime() - start;
+        System.out.printf("first start (migrations) %.0f ms, %d orders loaded in %.1f s, database %d MB%n",
+                firstStart / 1e6, ORDERS, populate / 1e9, Files.size(directory.resolve("orderdb.mv.db")) >> 20);
+
+        System.out.printf("%-8s %10s %12s %12s %12s %12s%n",
+                "restart", "start ms", "stored ms", "lookup ms", "page ms", "new ms");
+        for (int restart = 1; restart <= RESTARTS; restart++) {
+            start = System.nanoTime();
+            try (ConfigurableApplicationContext context = start(url)) {
+                long startup = System.nanoTime() - start;
+                PackagingService service = context.getBean(PackagingService.class);
+                String stored = "BENCH-" + (ORDERS / (restart + 1));
+                String other = "BENCH-" + (ORDERS / (restart + 2));
+                String created = "NEW-" + restart;
+                List<ProductDto> products = Arrays.asList(new ProductDto(null, "A", 10.0, 10.0, 10.0, null, 2));
+
+                // Resubmitted order answered from the database, a single order, the newest page, and a new order
+                double resubmit = millis(() -> service.packageOrders(
+                        Arrays.asList(new OrderRequestDto(stored, products)), RequestDeadline.NONE));
+                double lookup = millis(() -> service.findOrder(other));
+                double page = millis(() -> service.listOrders(null, 20));
+                double fresh = millis(() -> service.packageOrders(
+                        Arrays.asList(new OrderRequestDto(created, products)), RequestDeadline.NONE));
+                System.out.printf("%-8d %10.0f %12.1f %12.1f %12.1f %12.1f%n",
+                        restart, startup / 1e6, resubmit, lookup, page, fresh);
+            }
+        }
+    }
+
+    private ConfigurableApplicationContext start(String url) {
+        return new SpringApplicationBuilder(OrderServiceApplication.class)
+                .profiles("durable")
+                .initializers(context -> context.getBeanFactory().registerSingleton("testConfigurations",
+                        new TestConfigurationFilter()))
+                .run("--spring.datasource.url=" + url,
+                        "--server.port=0",
+                        "--eureka.client.enabled=false",
+                        "--spring.main.allow-circular-references=true",
+                        "--spring.main.banner-mode=off",
+                        "--logging.level.root=WARN",
+                        "--packaging.write-behind.outbox=" + directory.resolve("outbox.jsonl"));
+    }
+
+    // Orders of two lines in one box stored in the join tables, created_at one second apart
+    private static void populate(String url) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(url, "sa", "password");
+             Statement statement = connection.createStatement()) {
+            statement.execute("INSERT INTO orders (id, order_number, created_at, processed, strategy, optimal, version) "
+                    + "SELECT X, 'BENCH-' || X, DATEADD('SECOND', X, TIMESTAMP '2025-01-01 00:00:00'), FALSE, 'ffd', "
+                    + "FALSE, 0 FROM SYSTEM_RANGE(1, " + ORDERS + ")");
+            statement.execute("INSERT INTO products (id, order_id, name, height, width, length, quantity) "
+                    + "SELECT 2 * X - 1, X, 'A', 10, 10, 10, 2 FROM SYSTEM_RANGE(1, " + ORDERS + ")");
+            statement.execute("INSERT INTO products (id, order_id, name, height, width, length, quantity) "
+                    + "SELECT 2 * X, X, 'B', 20, 20, 20, 1 FROM SYSTEM_RANGE(1, " + ORDERS + ")");
+            statement.execute("INSERT INTO order_packaging (id, order_id, box_id) "
+                    + "SELECT X, X, (SELECT MIN(id) FROM boxes) FROM SYSTEM_RANGE(1, " + ORDERS + ")");
+            statement.execute("INSERT INTO packaging_products (packaging_id, position, product_id) "
+                    + "SELECT X / 2 + 1, MOD(X, 2), X + 1 FROM SYSTEM_RANGE(0, " + (2 * ORDERS - 1) + ")");
+            statement.execute("INSERT INTO packaging_product_quantities (packaging_id, position, quantity) "
+                    + "SELECT X / 2 + 1, MOD(X, 2), 2 - MOD(X, 2) FROM SYSTEM_RANGE(0, " + (2 * ORDERS - 1) + ")");
+            // Ids handed out from here on must not collide with the loaded rows
+            statement.execute("ALTER SEQUENCE order_seq RESTART WITH " + (ORDERS + 1));
+            statement.execute("ALTER SEQUENCE product_seq RESTART WITH " + (2L * ORDERS + 1));
+            statement.execute("ALTER SEQUENCE order_packaging_seq RESTART WITH " + (ORDERS + 1));
+            statement.execute("SHUTDOWN");
+        }
+    }
+
+    // Outside a Spring Boot test the scan would also pick up the test configurations on the classpath
+    private static final class TestConfigurationFilter extends TypeExcludeFilter {
+        @Override
+        public boolean match(MetadataReader metadataReader, MetadataReaderFactory metadataReaderFactory) {
+            return metadataReader.getAnnotationMetadata().hasAnnotation(TestConfiguration.class.getName());
+        }
+    }
+
+    private static double millis(Supplier<?> request) {
+        long start = System.nanoTime();
+        request.get();
+        return (System.nanoTime() - start) / 1e6;
+    }
+}
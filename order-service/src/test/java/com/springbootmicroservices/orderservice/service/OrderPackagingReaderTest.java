@@ -0,0 +1,188 @@
+package com.springbootmicroservices.orderservice.service;
+
+import com.springbootmicroservices.orderservice.config.PackagingProperties;
+import com.springbootmicroservices.orderservice.dto.BoxDto;
+import com.springbootmicroservices.orderservice.dto.OrderRequestDto;
+import com.springbootmicroservices.orderservice.dto.ProductDto;
+import com.springbootmicroservices.orderservice.dto.StoredOrderDto;
+import com.springbootmicroservices.orderservice.dto.StoredOrderPageDto;
+import com.springbootmicroservices.orderservice.entity.Box;
+import com.springbootmicroservices.orderservice.exception.ApiException;
+import com.springbootmicroservices.orderservice.service.impl.OrderPacking;
+import com.springbootmicroservices.orderservice.service.impl.OrderPackagingReader;
+import com.springbootmicroservices.orderservice.service.impl.OrderPackagingWriter;
+import com.springbootmicroservices.packing.FirstFitDecreasingKernel;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpStatus;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = {
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Import({OrderPackagingReader.class, OrderPackagingWriter.class, BoxCatalog.class, RequestDeadlines.class,
+        OrderPackagingWriterTest.Config.class})
+public class OrderPackagingReaderTest {
+
+    @Autowired
+    private OrderPackagingReader reader;
+
+    @Autowired
+    private OrderPackagingWriter writer;
+
+    @Autowired
+    private PackagingProperties packagingProperties;
+
+    @Autowired
+    private BoxCatalog boxCatalog;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        boxCatalog.saveAll(Arrays.asList(
+                new Box("Caixa 1", 30.0, 40.0, 80.0),
+                new Box("Caixa 2", 80.0, 50.0, 40.0)));
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @AfterEach
+    void tearDown() {
+        packagingProperties.setStorage(new PackagingProperties.Storage());
+    }
+
+    @Test
+    void shouldReadAPageOfMixedStorageWithAFixedNumberOfQueries() {
+        // Given: half of the orders in the join tables, half packed
+        save("JOIN-", 20);
+        packagingProperties.getStorage().setFormat("packed");
+        save("PACKED-", 20);
+
+        // When: a page of the newest, packed orders and a page of all of them
+        long packedPage = statementsFor(() -> reader.listOrders(null, 4));
+        StoredOrderPageDto page = reader.listOrders(null, 40);
+        long mixedPage = statementsFor(() -> reader.listOrders(null, 40));
+
+        // Then: keys, orders with products and boxes, plus the two join row reads once any box needs them;
+        // nothing per order
+        assertEquals(3, packedPage);
+        assertEquals(5, mixedPage);
+        assertEquals(40, page.getOrders().size());
+        for (StoredOrderDto order : page.getOrders()) {
+            assertEquals(2, order.getBoxes().size());
+            BoxDto second = order.getBoxes().get(1);
+            assertEquals(Arrays.asList("A", "B"), Arrays.asList(second.getProducts().get(0).getName(),
+                    second.getProducts().get(1).getName()));
+            assertEquals(2, second.getProducts().get(0).getQuantity());
+        }
+    }
+
+    @Test
+    void shouldWalkEveryOrderOnceNewestFirst() {
+        // Given: orders saved in one batch share their creation time; the id breaks the tie
+        save("ORD-", 17);
+
+        // When
+        List<String> orderNumbers = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            StoredOrderPageDto page = reader.listOrders(cursor, 5);
+            page.getOrders().forEach(order -> orderNumbers.add(order.getOrderNumber()));
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        // Then
+        assertEquals(4, pages);
+        assertEquals(17, orderNumbers.size());
+        Set<String> distinct = new HashSet<>(orderNumbers);
+        assertEquals(17, distinct.size());
+        assertEquals("ORD-16", orderNumbers.get(0));
+        assertEquals("ORD-0", orderNumbers.get(16));
+    }
+
+    @Test
+    void shouldChangeTagsOnlyWhenTheOrderChanges() {
+        // Given
+        save("ORD-", 3);
+        String orderTag = reader.orderTag("ORD-1");
+        String pageTag = reader.orderPageTag(null, 10);
+        assertEquals(orderTag, reader.orderTag("ORD-1"));
+
+        // When: a product is added to one order
+        writer.appendProducts("ORD-1", Arrays.asList(new ProductDto(null, "C", 5.0, 5.0, 5.0, null, 1)),
+                new FirstFitDecreasingKernel(), RequestDeadline.NONE);
+        entityManager.flush();
+        entityManager.clear();
+
+        // Then: its tag and the tag of the page holding it change, the others do not
+        assertNotEquals(orderTag, reader.orderTag("ORD-1"));
+        assertNotEquals(pageTag, reader.orderPageTag(null, 10));
+        assertEquals(reader.orderTag("ORD-0"), reader.orderTag("ORD-0"));
+        assertEquals(4, reader.findOrder("ORD-1").getBoxes().stream()
+                .mapToInt(box -> box.getProducts().size()).sum());
+    }
+
+    @Test
+    void shouldRejectUnknownOrdersAndCursors() {
+        ApiException notFound = assertThrows(ApiException.class, () -> reader.findOrder("MISSING"));
+        assertEquals(HttpStatus.NOT_FOUND, notFound.getStatus());
+        ApiException badCursor = assertThrows(ApiException.class, () -> reader.listOrders("not-a-cursor", 5));
+        assertEquals(HttpStatus.BAD_REQUEST, badCursor.getStatus());
+        ApiException badLimit = assertThrows(ApiException.class, () -> reader.listOrders(null, 1000));
+        assertEquals(HttpStatus.BAD_REQUEST, badLimit.getStatus());
+    }
+
+    // Orders of two lines in two boxes, written to the database and evicted from the persistence context
+    private void save(String prefix, int count) {
+        Box first = boxCatalog.current().getBox(0);
+        Box second = boxCatalog.current().getBox(1);
+        List<OrderRequestDto> orderRequests = new ArrayList<>(count);
+        List<OrderPacking> packings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ProductDto a = new ProductDto(null, "A", 10.0, 10.0, 10.0, null, 2);
+            ProductDto b = new ProductDto(null, "B", 20.0, 20.0, 20.0, null, 1);
+            orderRequests.add(new OrderRequestDto(prefix + i, Arrays.asList(a, b)));
+            packings.add(new OrderPacking(Arrays.asList(boxDto(first, a), boxDto(second, a, b)),
+                    Arrays.asList(first, second), new int[][]{{0}, {0, 1}}, "ffd", false));
+        }
+        writer.saveOrders(orderRequests, packings, RequestDeadline.NONE);
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    private long statementsFor(Runnable read) {
+        entityManager.clear();
+        statistics.clear();
+        read.run();
+        return statistics.getPrepareStatementCount();
+    }
+
+    private static BoxDto boxDto(Box box, ProductDto... products) {
+        return new BoxDto(box.getId(), box.getName(), box.getHeight(), box.getWidth(), box.getLength(),
+                new ArrayList<>(Arrays.asList(products)), new ArrayList<>());
+    }
+}
@@ -0,0 +1,291 @@
+package com.springbootmicroservices.orderservice.service;
+
+import com.springbootmicroservices.orderservice.config.PackagingProperties;
+import com.springbootmicroservices.orderservice.dto.BoxDto;
+import com.springbootmicroservices.orderservice.dto.OrderPackagingResponseDto;
+import com.springbootmicroservices.orderservice.dto.OrderRequestDto;
+import com.springbootmicroservices.orderservice.dto.PlacementDto;
+import com.springbootmicroservices.orderservice.dto.ProductDto;
+import com.springbootmicroservices.orderservice.entity.Box;
+import com.springbootmicroservices.orderservice.entity.Order;
+import com.springbootmicroservices.orderservice.entity.OrderPackaging;
+import com.springbootmicroservices.orderservice.entity.PackedContents;
+import com.springbootmicroservices.orderservice.repository.OrderPackagingRepository;
+import com.springbootmicroservices.orderservice.repository.OrderRepository;
+import com.springbootmicroservices.orderservice.service.impl.OrderPacking;
+import com.springbootmicroservices.orderservice.service.impl.OrderPackagingWriter;
+import com.springbootmicroservices.orderservice.service.impl.PackagingStorageMigration;
+import com.springbootmicroservices.packing.FirstFitDecreasingKernel;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = {
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Import({OrderPackagingWriter.class, BoxCatalog.class, RequestDeadlines.class, PackagingStorageMigration.class,
+        OrderPackagingWriterTest.Config.class})
+public class OrderPackagingWriterTest {
+
+    private static final int ORDERS = 100;
+
+    @TestConfiguration
+    static class Config {
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
+        @Bean
+        PackagingProperties packagingProperties() {
+            return new PackagingProperties();
+        }
+    }
+
+    @Autowired
+    private OrderPackagingWriter writer;
+
+    @Autowired
+    private PackagingStorageMigration migration;
+
+    @Autowired
+    private PackagingProperties packagingProperties;
+
+    @Autowired
+    private BoxCatalog boxCatalog;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private OrderPackagingRepository orderPackagingRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        boxCatalog.saveAll(Arrays.asList(
+                new Box("Caixa 1", 30.0, 40.0, 80.0),
+                new Box("Caixa 2", 80.0, 50.0, 40.0)));
+        entityManager.flush();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        // The properties bean outlives the test with the cached context
+        packagingProperties.setStorage(new PackagingProperties.Storage());
+    }
+
+    @Test
+    void shouldInsertABatchOfOrdersInJdbcBatches() {
+        // Given: orders of three lines packed into two boxes
+        List<OrderRequestDto> orderRequests = new ArrayList<>(ORDERS);
+        List<OrderPacking> packings = new ArrayList<>(ORDERS);
+        Box first = boxCatalog.current().getBox(0);
+        Box second = boxCatalog.current().getBox(1);
+        for (int i = 0; i < ORDERS; i++) {
+            ProductDto a = new ProductDto(null, "A", 10.0, 10.0, 10.0, null, 2);
+            ProductDto b = new ProductDto(null, "B", 20.0, 20.0, 20.0, null, 1);
+            ProductDto c = new ProductDto(null, "C", 30.0, 30.0, 30.0, null, 1);
+            orderRequests.add(new OrderRequestDto("ORD-" + i, Arrays.asList(a, b, c)));
+            packings.add(new OrderPacking(Arrays.asList(boxDto(first, a, b), boxDto(second, c)),
+                    Arrays.asList(first, second), new int[][]{{0, 1}, {2}}, "ffd", false));
+        }
+
+        // When
+        long start = System.nanoTime();
+        List<OrderPackagingResponseDto> result = writer.saveOrders(orderRequests, packings, RequestDeadline.NONE);
+        entityManager.flush();
+        long nanos = System.nanoTime() - start;
+
+        // Then: 100 orders, 300 products, 200 boxes and their 300 product entries are stored
+        assertEquals(ORDERS, result.size());
+        assertEquals(ORDERS, orderRepository.count());
+        assertEquals(2L * ORDERS, orderPackagingRepository.count());
+        long statements = statistics.getPrepareStatementCount();
+        System.out.printf("%d orders: %d entity inserts, %d collection writes, %d prepared statements, %.1f ms%n",
+                ORDERS, statistics.getEntityInsertCount(), statistics.getCollectionUpdateCount(), statements,
+                nanos / 1e6);
+        assertEquals(6L * ORDERS, statistics.getEntityInsertCount());
+        // One statement per batch of 50 inserts and a sequence call per 50 ids, nothing per order
+        assertTrue(statements < ORDERS / 2, "Expected batched inserts, got " + statements + " statements");
+    }
+
+    @Test
+    void shouldMapEveryEntryToItsOwnOrderLine() {
+        // Given: two lines with the same dimensions, packed in reverse order
+        Box first = boxCatalog.current().getBox(0);
+        ProductDto red = new ProductDto(null, "Red", 10.0, 10.0, 10.0, null, 3);
+        ProductDto blue = new ProductDto(null, "Blue", 10.0, 10.0, 10.0, null, 1);
+        OrderPacking packing = new OrderPacking(Arrays.asList(boxDto(first, blue, red)),
+                Arrays.asList(first), new int[][]{{1, 0}}, "ffd", false);
+
+        // When
+        writer.saveOrders(Arrays.asList(new OrderRequestDto("ORD-DUP", Arrays.asList(red, blue))),
+                Arrays.asList(packing), RequestDeadline.NONE);
+        entityManager.flush();
+        entityManager.clear();
+
+        // Then: each entry points at its own product row, with its own quantity
+        Order order = orderRepository.findByOrderNumber("ORD-DUP").orElseThrow(IllegalStateException::new);
+        OrderPackaging packaging = orderPackagingRepository.findByOrder(order).get(0);
+        assertEquals("Blue", packaging.getProducts().get(0).getName());
+        assertEquals("Red", packaging.getProducts().get(1).getName());
+        assertNotEquals(packaging.getProducts().get(0).getId(), packaging.getProducts().get(1).getId());
+        assertEquals(Arrays.asList(1, 3), packaging.getQuantities());
+    }
+
+    @Test
+    void shouldDeletePackagingOfManyOrdersInBulk() {
+        // Given
+        Box first = boxCatalog.current().getBox(0);
+        List<OrderRequestDto> orderRequests = new ArrayList<>();
+        List<OrderPacking> packings = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            ProductDto a = new ProductDto(null, "A", 10.0, 10.0, 10.0, null, 1);
+            orderRequests.add(new OrderRequestDto("ORD-DEL-" + i, Arrays.asList(a)));
+            packings.add(new OrderPacking(Arrays.asList(boxDto(first, a)), Arrays.asList(first),
+                    new int[][]{{0}}, "ffd", false));
+        }
+        writer.saveOrders(orderRequests, packings, RequestDeadline.NONE);
+        List<Long> orderIds = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            orderIds.add(orderRepository.findByOrderNumber("ORD-DEL-" + i).orElseThrow(IllegalStateException::new)
+                    .getId());
+        }
+        entityManager.flush();
+        statistics.clear();
+
+        // When
+        int deleted = orderPackagingRepository.deleteByOrderIds(orderIds);
+        long statements = statistics.getPrepareStatementCount();
+
+        // Then: three statements, whatever the number of orders, and the third order keeps its box
+        assertEquals(2, deleted);
+        assertEquals(3L, statements);
+        assertEquals(1L, orderPackagingRepository.count());
+    }
+
+    @Test
+    void shouldStorePackedContentsAndAppendToThem() {
+        // Given: a box with positions, stored packed
+        packagingProperties.getStorage().setFormat("packed");
+        Box first = boxCatalog.current().getBox(0);
+        ProductDto a = new ProductDto(null, "A", 10.0, 10.0, 10.0, null, 1);
+        ProductDto b = new ProductDto(null, "B", 20.0, 20.0, 20.0, null, 1);
+        BoxDto box = boxDto(first, a, b);
+        box.getPlacements().add(new PlacementDto(0.0, 0.0, 0.0, 10.0, 10.0, 10.0));
+        box.getPlacements().add(new PlacementDto(10.0, 0.0, 0.0, 20.0, 20.0, 20.0));
+        writer.saveOrders(Arrays.asList(new OrderRequestDto("ORD-PACKED", Arrays.asList(a, b))),
+                Arrays.asList(new OrderPacking(Arrays.asList(box), Arrays.asList(first), new int[][]{{0, 1}},
+                        "extreme-point", false)), RequestDeadline.NONE);
+        entityManager.flush();
+        entityManager.clear();
+
+        // When: a small product goes into the spare volume of the box
+        OrderPackagingResponseDto result = writer.appendProducts("ORD-PACKED",
+                Arrays.asList(new ProductDto(null, "C", 5.0, 5.0, 5.0, null, 2)), new FirstFitDecreasingKernel(),
+                RequestDeadline.NONE);
+        entityManager.flush();
+        entityManager.clear();
+
+        // Then: one row per box and no join rows; the stored box lists all three lines
+        assertEquals(0, count("packaging_products"));
+        assertEquals(0, count("packaging_product_quantities"));
+        assertEquals(1, result.getBoxes().size());
+        List<ProductDto> stored = result.getBoxes().get(0).getProducts();
+        assertEquals(Arrays.asList("A", "B", "C"), Arrays.asList(stored.get(0).getName(), stored.get(1).getName(),
+                stored.get(2).getName()));
+        assertEquals(2, stored.get(2).getQuantity());
+        OrderPackaging packaging = orderPackagingRepository.findAll().get(0);
+        assertEquals(3, PackedContents.decode(packaging.getContents()).size());
+
+        // And the lines packed before keep their positions; the appended one has none
+        List<PlacementDto> placements = result.getBoxes().get(0).getPlacements();
+        assertEquals(3, placements.size());
+        assertEquals(new PlacementDto(0.0, 0.0, 0.0, 10.0, 10.0, 10.0), placements.get(0));
+        assertEquals(new PlacementDto(10.0, 0.0, 0.0, 20.0, 20.0, 20.0), placements.get(1));
+        assertNull(placements.get(2).getX());
+        PackedContents contents = PackedContents.decode(packaging.getContents());
+        assertArrayEquals(new double[]{10.0, 0.0, 0.0, 20.0, 20.0, 20.0}, contents.position(1));
+        assertFalse(contents.isPlaced(2));
+    }
+
+    @Test
+    void shouldMigrateJoinTableBoxesToPackedContents() {
+        // Given: three orders stored in the join tables
+        Box first = boxCatalog.current().getBox(0);
+        Box second = boxCatalog.current().getBox(1);
+        List<OrderRequestDto> orderRequests = new ArrayList<>();
+        List<OrderPacking> packings = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            ProductDto a = new ProductDto(null, "A", 10.0, 10.0, 10.0, null, 2);
+            ProductDto b = new ProductDto(null, "B", 20.0, 20.0, 20.0, null, 1);
+            orderRequests.add(new OrderRequestDto("ORD-MIG-" + i, Arrays.asList(a, b)));
+            packings.add(new OrderPacking(Arrays.asList(boxDto(first, a), boxDto(second, a, b)),
+                    Arrays.asList(first, second), new int[][]{{0}, {0, 1}}, "ffd", false));
+        }
+        writer.saveOrders(orderRequests, packings, RequestDeadline.NONE);
+        entityManager.flush();
+        entityManager.clear();
+        assertEquals(9, count("packaging_products"));
+
+        // When: in chunks smaller than the number of boxes
+        packagingProperties.getStorage().setMigrationBatchSize(4);
+        int migrated = migration.migrate();
+        entityManager.flush();
+        entityManager.clear();
+
+        // Then: every box is packed, in its entry order, and the join rows are gone
+        assertEquals(6, migrated);
+        assertEquals(0, count("packaging_products"));
+        assertEquals(0, count("packaging_product_quantities"));
+        Order order = orderRepository.findByOrderNumber("ORD-MIG-1").orElseThrow(IllegalStateException::new);
+        List<OrderPackaging> stored = orderPackagingRepository.findByOrder(order);
+        stored.sort(Comparator.comparing(OrderPackaging::getId));
+        PackedContents contents = PackedContents.decode(stored.get(1).getContents());
+        assertEquals(order.getProducts().get(0).getId(), contents.productId(0));
+        assertEquals(order.getProducts().get(1).getId(), contents.productId(1));
+        assertEquals(2, contents.units(0));
+        assertEquals(0, migration.migrate());
+    }
+
+    private long count(String table) {
+        return ((Number) entityManager.createNativeQuery("SELECT COUNT(*) FROM " + table).getSingleResult())
+                .longValue();
+    }
+
+    private static BoxDto boxDto(Box box, ProductDto... products) {
+        List<ProductDto> contents = new ArrayList<>(Arrays.asList(products));
+        return new BoxDto(box.getId(), box.getName(), box.getHeight(), box.getWidth(), box.getLength(),
+                contents, new ArrayList<>());
+    }
+}
@@ -0,0 +1,198 @@
+package com.springbootmicroservices.orderservice.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springbootmicroservices.orderservice.config.PackagingProperties;
+import com.springbootmicroservices.orderservice.dto.BoxDto;
+import com.springbootmicroservices.orderservice.dto.OrderRequestDto;
+import com.springbootmicroservices.orderservice.dto.ProductDto;
+import com.springbootmicroservices.orderservice.entity.Box;
+import com.springbootmicroservices.orderservice.repository.OrderPackagingRepository;
+import com.springbootmicroservices.orderservice.repository.OrderRepository;
+import com.springbootmicroservices.orderservice.repository.ProductRepository;
+import com.springbootmicroservices.orderservice.service.impl.OrderPacking;
+import com.springbootmicroservices.orderservice.service.impl.OrderPackagingReader;
+import com.springbootmicroservices.orderservice.service.impl.OrderPackagingWriter;
+import com.springbootmicroservices.orderservice.service.impl.OrderRetention;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import javax.persistence.EntityManager;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = "spring.jpa.show-sql=false")
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Import({OrderRetention.class, OrderPackagingReader.class, OrderPackagingWriter.class, BoxCatalog.class,
+        RequestDeadlines.class, OrderPackagingWriterTest.Config.class})
+public class OrderRetentionTest {
+
+    @Autowired
+    private OrderRetention retention;
+
+    @Autowired
+    private OrderPackagingWriter writer;
+
+    @Autowired
+    private PackagingProperties packagingProperties;
+
+    @Autowired
+    private BoxCatalog boxCatalog;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private OrderPackagingRepository orderPackagingRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @TempDir
+    Path directory;
+
+    @BeforeEach
+    void setUp() {
+        boxCatalog.saveAll(Arrays.asList(new Box("Caixa 1", 30.0, 40.0, 80.0)));
+        PackagingProperties.Retention properties = packagingProperties.getRetention();
+        properties.setBatchSize(3);
+        properties.setPause(Duration.ZERO);
+    }
+
+    @AfterEach
+    void tearDown() {
+        packagingProperties.setRetention(new PackagingProperties.Retention());
+        packagingProperties.setStorage(new PackagingProperties.Storage());
+    }
+
+    @Test
+    void shouldRemoveOldOrdersInChunksAndKeepRecentOnes() {
+        // Given: old orders in both storage formats, and recent ones in the join tables
+        save("OLD-JOIN-", 4);
+        packagingProperties.getStorage().setFormat("packed");
+        save("OLD-PACKED-", 3);
+        age("OLD-%", Duration.ofDays(400));
+        packagingProperties.getStorage().setFormat("join-table");
+        save("NEW-", 2);
+        double removedBefore = removedOrders();
+
+        // When: three chunks of three, the last one short
+        int removed = retention.purge();
+        entityManager.clear();
+
+        // Then: the recent orders keep every row of theirs
+        assertEquals(7, removed);
+        assertEquals(7, removedOrders() - removedBefore, 0.0);
+        assertEquals(2, orderRepository.count());
+        assertEquals(4, productRepository.count());
+        assertEquals(2, orderPackagingRepository.count());
+        assertEquals(4, joinRows("packaging_products"));
+        assertEquals(4, joinRows("packaging_product_quantities"));
+        assertTrue(orderRepository.findByOrderNumber("NEW-1").isPresent());
+        assertEquals(7, meterRegistry.get("packaging.retention.run.orders").summary().max(), 0.0);
+        assertTrue(meterRegistry.get("packaging.retention.run.duration").timer().count() > 0);
+
+        // And a second run finds nothing to do
+        assertEquals(0, retention.purge());
+    }
+
+    @Test
+    void shouldArchiveRemovedOrdersBeforeRemovingThem() throws IOException {
+        // Given
+        PackagingProperties.Retention properties = packagingProperties.getRetention();
+        properties.setArchive(true);
+        properties.setArchiveDirectory(directory.toString());
+        save("OLD-", 4);
+        age("OLD-%", Duration.ofDays(400));
+        save("NEW-", 1);
+
+        // When
+        retention.purge();
+
+        // Then: one file for the run, one order per line with its boxes
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = list.collect(Collectors.toList());
+        }
+        assertEquals(1, files.size());
+        List<JsonNode> orders = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(files.get(0))), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                orders.add(objectMapper.readTree(line));
+            }
+        }
+        assertEquals(4, orders.size());
+        assertEquals(Arrays.asList("OLD-0", "OLD-1", "OLD-2", "OLD-3"), orders.stream()
+                .map(order -> order.get("orderNumber").asText()).sorted().collect(Collectors.toList()));
+        JsonNode box = orders.get(0).get("boxes").get(0);
+        assertEquals(2, box.get("products").size());
+        assertEquals(1, orderRepository.count());
+    }
+
+    // Orders of two lines in one box, written to the database and evicted from the persistence context
+    private void save(String prefix, int count) {
+        Box box = boxCatalog.current().getBox(0);
+        List<OrderRequestDto> orderRequests = new ArrayList<>(count);
+        List<OrderPacking> packings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ProductDto a = new ProductDto(null, "A", 10.0, 10.0, 10.0, null, 2);
+            ProductDto b = new ProductDto(null, "B", 20.0, 20.0, 20.0, null, 1);
+            orderRequests.add(new OrderRequestDto(prefix + i, Arrays.asList(a, b)));
+            packings.add(new OrderPacking(Arrays.asList(new BoxDto(box.getId(), box.getName(), box.getHeight(),
+                    box.getWidth(), box.getLength(), new ArrayList<>(Arrays.asList(a, b)), new ArrayList<>())),
+                    Arrays.asList(box), new int[][]{{0, 1}}, "ffd", false));
+        }
+        writer.saveOrders(orderRequests, packings, RequestDeadline.NONE);
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    private void age(String orderNumbers, Duration age) {
+        entityManager.createQuery("UPDATE Order o SET o.createdAt = :createdAt WHERE o.orderNumber LIKE :orderNumbers")
+                .setParameter("createdAt", LocalDateTime.now().minus(age))
+                .setParameter("orderNumbers", orderNumbers)
+                .executeUpdate();
+    }
+
+    private long joinRows(String table) {
+        return ((Number) entityManager.createNativeQuery("SELECT COUNT(*) FROM " + table).getSingleResult())
+                .longValue();
+    }
+
+    private double removedOrders() {
+        return meterRegistry.get("packaging.retention.removed").tag("table", "orders").counter().count();
+    }
+}
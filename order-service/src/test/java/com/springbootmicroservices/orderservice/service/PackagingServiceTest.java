@@ -1,23 +1,52 @@
 package com.springbootmicroservices.orderservice.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springbootmicroservices.orderservice.config.PackagingProperties;
 import com.springbootmicroservices.orderservice.dto.BoxDto;
+import com.springbootmicroservices.orderservice.dto.OrderPackagingResponseDto;
 import com.springbootmicroservices.orderservice.dto.OrderRequestDto;
 import com.springbootmicroservices.orderservice.dto.ProductDto;
 import com.springbootmicroservices.orderservice.entity.Box;
+import com.springbootmicroservices.orderservice.entity.Order;
+import com.springbootmicroservices.orderservice.entity.OrderPackaging;
+import com.springbootmicroservices.orderservice.entity.PackedContents;
+import com.springbootmicroservices.orderservice.entity.Product;
+import com.springbootmicroservices.orderservice.exception.ApiException;
 import com.springbootmicroservices.orderservice.repository.BoxRepository;
+import com.springbootmicroservices.orderservice.repository.OrderKey;
 import com.springbootmicroservices.orderservice.repository.OrderPackagingRepository;
 import com.springbootmicroservices.orderservice.repository.OrderRepository;
+import com.springbootmicroservices.orderservice.repository.ProductRepository;
+import com.springbootmicroservices.orderservice.service.impl.OrderPackagingReader;
+import com.springbootmicroservices.orderservice.service.impl.OrderPackagingWriter;
+import com.springbootmicroservices.orderservice.service.impl.OrderSubmissions;
 import com.springbootmicroservices.orderservice.service.impl.PackagingServiceImpl;
+import com.springbootmicroservices.orderservice.service.impl.WriteBehindPersistence;
+import com.springbootmicroservices.packing.BoxTypes;
+import com.springbootmicroservices.packing.ExtremePointEngine;
+import com.springbootmicroservices.packing.FirstFitDecreasingKernel;
+import com.springbootmicroservices.packing.PackingEngine;
+import com.springbootmicroservices.packing.PackingItems;
+import com.springbootmicroservices.packing.PackingPlan;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -35,8 +64,14 @@ public class PackagingServiceTest {
     @Mock
     private OrderPackagingRepository orderPackagingRepository;
 
-    @InjectMocks
+    @Mock
+    private ProductRepository productRepository;
+
     private PackagingServiceImpl packagingService;
+    private PackagingProperties properties;
+    private ExecutorService packingExecutor;
+    private SimpleMeterRegistry meterRegistry;
+    private RequestDeadlines requestDeadlines;
 
     private List<Box> sampleBoxes;
     private List<ProductDto> sampleProducts;
@@ -85,14 +120,38 @@ public class PackagingServiceTest {
         sampleProducts.add(product2);
 
         when(boxRepository.findAll()).thenReturn(sampleBoxes);
-        when(orderRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        properties = new PackagingProperties();
+        packingExecutor = Executors.newFixedThreadPool(4);
+        meterRegistry = new SimpleMeterRegistry();
+        requestDeadlines = new RequestDeadlines(properties, meterRegistry);
+        packagingService = newService(new FirstFitDecreasingKernel());
+    }
+
+    private PackagingServiceImpl newService(PackingEngine packingEngine) {
+        BoxCatalog boxCatalog = new BoxCatalog(boxRepository, new SimpleMeterRegistry());
+        boxCatalog.refresh();
+        OrderPackagingWriter writer = new OrderPackagingWriter(boxCatalog, orderRepository, orderPackagingRepository,
+                productRepository, requestDeadlines, properties);
+        OrderPackagingReader reader = new OrderPackagingReader(orderRepository, orderPackagingRepository, properties);
+        OrderSubmissions orderSubmissions = new OrderSubmissions(reader, requestDeadlines, meterRegistry);
+        return new PackagingServiceImpl(boxCatalog, writer,
+                packingEngine, new PackingResultCache(properties, new SimpleMeterRegistry()),
+                packingExecutor, properties,
+                new ShadowPacking(new ExtremePointEngine(), Runnable::run, properties.getShadow(), meterRegistry),
+                requestDeadlines,
+                new WriteBehindPersistence(writer, orderRepository, boxCatalog, orderSubmissions, properties,
+                        new ObjectMapper(), new SimpleMeterRegistry()),
+                reader, orderSubmissions);
+    }
+
+    @AfterEach
+    void tearDown() {
+        packingExecutor.shutdownNow();
     }
 
     @Test
     void shouldFindOptimalPackaging() {
-        // Given
-        when(boxRepository.save(any(Box.class))).thenAnswer(invocation -> invocation.getArgument(0));
-        
         // When
         List<BoxDto> result = packagingService.findOptimalPackaging(sampleProducts);
         
@@ -113,8 +172,6 @@ public class PackagingServiceTest {
         largeProduct.setLength(55.0);
         sampleProducts.add(largeProduct);
         
-        when(boxRepository.save(any(Box.class))).thenAnswer(invocation -> invocation.getArgument(0));
-        
         // When
         List<BoxDto> result = packagingService.findOptimalPackaging(sampleProducts);
         
@@ -143,4 +200,292 @@ public class PackagingServiceTest {
         assertNotNull(result);
         assertTrue(result.isEmpty(), "Result should be an empty list for no products");
     }
+
+    @Test
+    void shouldCompareWithTheShadowCandidateOnlyWhatTheEngineActuallyPacked() {
+        // Given
+        properties.getShadow().setEnabled(true);
+        properties.getShadow().setSampleRate(1.0);
+        packagingService = newService(new FirstFitDecreasingKernel());
+
+        // When: the same shapes twice, the second time from the cache
+        packagingService.findOptimalPackaging(sampleProducts);
+        packagingService.findOptimalPackaging(sampleProducts);
+
+        // Then: a map lookup is never timed as the primary engine
+        assertEquals(1, meterRegistry.get("packaging.shadow.time").tag("engine", "primary").timer().count());
+        assertEquals(1, meterRegistry.get("packaging.shadow.time").tag("engine", "candidate").timer().count());
+    }
+
+    @Test
+    void shouldPackOrdersInParallelKeepingRequestOrder() {
+        // Given
+        properties.getParallel().setEnabled(true);
+
+        List<OrderRequestDto> orders = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            List<ProductDto> products = new ArrayList<>();
+            for (int j = 0; j <= i % 7; j++) {
+                products.add(new ProductDto(null, "Product " + j, 10.0 + j, 20.0, 30.0, null, null));
+            }
+            orders.add(new OrderRequestDto("ORD-" + i, products));
+        }
+
+        // When
+        List<OrderPackagingResponseDto> result = packagingService.packageOrders(orders, RequestDeadline.NONE);
+
+        // Then
+        assertEquals(50, result.size());
+        for (int i = 0; i < 50; i++) {
+            assertEquals("ORD-" + i, result.get(i).getOrderNumber());
+            assertEquals(packagingService.findOptimalPackaging(orders.get(i).getProducts()), result.get(i).getBoxes());
+        }
+        // All orders are handed to JPA in one saveAll, so their inserts can be batched
+        ArgumentCaptor<List<Order>> saved = ArgumentCaptor.forClass(List.class);
+        verify(orderRepository).saveAll(saved.capture());
+        assertEquals(50, saved.getValue().size());
+        verify(orderRepository, never()).save(any(Order.class));
+    }
+
+    @Test
+    void shouldQuoteOrdersWithoutPersisting() {
+        // Given
+        List<OrderRequestDto> orders = Arrays.asList(
+                new OrderRequestDto("ORD-1", sampleProducts),
+                new OrderRequestDto(null, sampleProducts));
+
+        // When
+        List<OrderPackagingResponseDto> result = packagingService.quoteOrders(orders, RequestDeadline.NONE);
+
+        // Then
+        assertEquals(2, result.size());
+        assertEquals("ORD-1", result.get(0).getOrderNumber());
+        assertNull(result.get(1).getOrderNumber());
+        assertEquals(packagingService.findOptimalPackaging(sampleProducts), result.get(0).getBoxes());
+        assertEquals("ffd", result.get(0).getStrategy());
+        verifyNoInteractions(orderRepository, orderPackagingRepository);
+    }
+
+    @Test
+    void shouldAppendProductsToExistingBoxesFirst() {
+        // Given: a Caixa 1 (96 000 cm³) holding ten 10 cm cubes, so 86 000 cm³ are still free
+        Order order = new Order();
+        order.setOrderNumber("ORD-1");
+        Product cube = new Product("Cube", 10.0, 10.0, 10.0, null, 10);
+        cube.setId(11L);
+        order.getProducts().add(cube);
+        OrderPackaging stored = new OrderPackaging(order, sampleBoxes.get(0),
+                new ArrayList<>(Arrays.asList(cube)), new ArrayList<>(Arrays.asList(10)), null);
+        stored.setId(21L);
+        when(orderRepository.findForUpdateByOrderNumber("ORD-1")).thenReturn(Optional.of(order));
+        when(orderPackagingRepository.findByOrder(order)).thenReturn(Arrays.asList(stored));
+        // Two 20 cm cubes fit in the free space, the 45×70×55 product needs a box of its own
+        ProductDto small = new ProductDto(null, "Small", 20.0, 20.0, 20.0, null, 2);
+        ProductDto large = new ProductDto(null, "Large", 45.0, 70.0, 55.0, null, 1);
+
+        // When
+        OrderPackagingResponseDto result = packagingService.appendProducts("ORD-1", Arrays.asList(small, large),
+                RequestDeadline.NONE);
+
+        // Then: the stored box got the small cubes appended, one new box was opened for the rest
+        assertEquals(Arrays.asList(10, 2), stored.getQuantities());
+        assertEquals("Small", stored.getProducts().get(1).getName());
+        assertEquals(3, order.getProducts().size());
+        assertEquals(2, result.getBoxes().size());
+        assertEquals(2, result.getBoxes().get(0).getProducts().size());
+        assertEquals("Large", result.getBoxes().get(1).getProducts().get(0).getName());
+        ArgumentCaptor<List<OrderPackaging>> opened = ArgumentCaptor.forClass(List.class);
+        verify(orderPackagingRepository).saveAll(opened.capture());
+        assertEquals(1, opened.getValue().size());
+        verify(orderPackagingRepository, never()).deleteByOrderIds(any());
+    }
+
+    @Test
+    void shouldRejectAppendingToUnknownOrder() {
+        when(orderRepository.findForUpdateByOrderNumber("ORD-404")).thenReturn(Optional.empty());
+
+        ApiException exception = assertThrows(ApiException.class, () -> packagingService.appendProducts("ORD-404",
+                sampleProducts, RequestDeadline.NONE));
+
+        assertEquals(HttpStatus.NOT_FOUND, exception.getStatus());
+        verifyNoInteractions(productRepository, orderPackagingRepository);
+    }
+
+    @Test
+    void shouldAbandonOrdersPastTheirDeadline() {
+        // Given
+        List<OrderRequestDto> orders = Arrays.asList(new OrderRequestDto("ORD-1", sampleProducts));
+
+        // When
+        ApiException exception = assertThrows(ApiException.class,
+                () -> packagingService.packageOrders(orders, requestDeadlines.start(0L)));
+
+        // Then: nothing was packed or saved
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, exception.getStatus());
+        assertEquals(1.0, meterRegistry.get("packaging.deadline.expired")
+                .tag("stage", RequestDeadlines.STAGE_PACKING).counter().count());
+        verifyNoInteractions(orderRepository, orderPackagingRepository);
+    }
+
+    @Test
+    void shouldCancelQueuedPacksWhenTheDeadlineExpires() {
+        // Given: one packing thread and an engine far slower than the deadline
+        properties.getParallel().setEnabled(true);
+        packingExecutor.shutdownNow();
+        packingExecutor = Executors.newSingleThreadExecutor();
+        PackingEngine slow = new PackingEngine() {
+            @Override
+            public String name() {
+                return "slow";
+            }
+
+            @Override
+            public PackingPlan pack(PackingItems items, BoxTypes boxes) {
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return new FirstFitDecreasingKernel().pack(items, boxes);
+            }
+        };
+        PackagingServiceImpl service = newService(slow);
+        List<OrderRequestDto> orders = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            orders.add(new OrderRequestDto("ORD-" + i, sampleProducts));
+        }
+
+        // When
+        long start = System.nanoTime();
+        assertThrows(ApiException.class, () -> service.packageOrders(orders, requestDeadlines.start(50L)));
+
+        // Then: the request gave up at its deadline and the packs still pending were dropped
+        assertTrue(System.nanoTime() - start < 900_000_000L);
+        assertEquals(4.0, meterRegistry.get("packaging.deadline.cancelled").counter().count());
+        // Only the lookup for already stored order numbers reached the database
+        verify(orderRepository, never()).saveAll(any());
+        verifyNoInteractions(orderPackagingRepository);
+    }
+
+    @Test
+    void shouldCapRequestedTimeoutsAtTheMaximum() {
+        properties.getDeadline().setMaxTimeout(Duration.ofMillis(100));
+
+        RequestDeadline deadline = requestDeadlines.start(60_000L);
+
+        assertTrue(deadline.remainingNanos() <= Duration.ofMillis(100).toNanos());
+        assertFalse(requestDeadlines.start(null).isExpired());
+    }
+
+    @Test
+    void shouldPackQuantitiesInBulk() {
+        // Given: 3000 cubes of 1 000 cm³, 96 of which fill a Caixa 1
+        ProductDto cube = new ProductDto(7L, "Cube", 10.0, 10.0, 10.0, null, 3000);
+
+        // When
+        List<BoxDto> result = packagingService.findOptimalPackaging(Arrays.asList(cube));
+
+        // Then
+        assertEquals(32, result.size());
+        int total = 0;
+        for (BoxDto box : result) {
+            assertEquals(1, box.getProducts().size(), "One entry per product line and box");
+            assertEquals(7L, box.getProducts().get(0).getId());
+            total += box.getProducts().get(0).getQuantity();
+        }
+        assertEquals(96, result.get(0).getProducts().get(0).getQuantity());
+        assertEquals(3000, total);
+    }
+
+    @Test
+    void shouldExpandQuantitiesForEnginesPlacingSingleUnits() {
+        // Given
+        PackagingServiceImpl service = newService(new ExtremePointEngine());
+        ProductDto cube = new ProductDto(7L, "Cube", 10.0, 10.0, 10.0, null, 3);
+
+        // When
+        List<BoxDto> result = service.findOptimalPackaging(Arrays.asList(cube));
+
+        // Then: every unit keeps its own position
+        assertEquals(1, result.size());
+        assertEquals(3, result.get(0).getProducts().size());
+        assertEquals(3, result.get(0).getPlacements().size());
+        assertTrue(result.get(0).getProducts().stream().allMatch(p -> p.getQuantity() == 1));
+    }
+
+    @Test
+    void shouldAnswerAStoredOrderNumberFromTheDatabase() {
+        // Given: ORD-1 is stored with one packed box, ORD-2 is new
+        Order order = new Order();
+        order.setId(7L);
+        order.setOrderNumber("ORD-1");
+        order.setStrategy("extreme-point");
+        Product product = new Product();
+        product.setId(70L);
+        product.setName("Stored Product");
+        product.setHeight(10.0);
+        product.setWidth(10.0);
+        product.setLength(10.0);
+        order.getProducts().add(product);
+        OrderPackaging packaging = new OrderPackaging();
+        packaging.setOrder(order);
+        packaging.setBox(sampleBoxes.get(0));
+        packaging.setContents(new PackedContents(new long[]{70L}, new int[]{3}, null).encode());
+        OrderKey key = mock(OrderKey.class);
+        when(key.getId()).thenReturn(7L);
+        when(orderRepository.findKeysByOrderNumberIn(any())).thenReturn(Arrays.asList(key));
+        when(orderRepository.findWithProductsByIdIn(any())).thenReturn(Arrays.asList(order));
+        when(orderPackagingRepository.findWithBoxByOrderIdIn(any())).thenReturn(Arrays.asList(packaging));
+
+        // When
+        List<OrderPackagingResponseDto> result = packagingService.packageOrders(Arrays.asList(
+                new OrderRequestDto("ORD-1", sampleProducts),
+                new OrderRequestDto("ORD-2", sampleProducts)), RequestDeadline.NONE);
+
+        // Then: ORD-1 is the stored packing, not a new one; only ORD-2 is stored
+        assertEquals("ORD-1", result.get(0).getOrderNumber());
+        assertEquals("extreme-point", result.get(0).getStrategy());
+        assertEquals("Stored Product", result.get(0).getBoxes().get(0).getProducts().get(0).getName());
+        assertEquals(3, result.get(0).getBoxes().get(0).getProducts().get(0).getQuantity());
+        assertEquals("ORD-2", result.get(1).getOrderNumber());
+        ArgumentCaptor<List<Order>> saved = ArgumentCaptor.forClass(List.class);
+        verify(orderRepository).saveAll(saved.capture());
+        assertEquals(1, saved.getValue().size());
+        assertEquals("ORD-2", saved.getValue().get(0).getOrderNumber());
+        assertEquals(1.0, meterRegistry.get("packaging.submissions").tag("result", "stored").counter().count());
+        assertEquals(1.0, meterRegistry.get("packaging.submissions").tag("result", "packed").counter().count());
+    }
+
+    @Test
+    void shouldPackConcurrentSubmissionsOfAnOrderNumberOnce() throws Exception {
+        // Given: the first submission holds its transaction open
+        CountDownLatch saving = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(orderRepository.saveAll(any())).thenAnswer(invocation -> {
+            saving.countDown();
+            release.await();
+            return invocation.getArgument(0);
+        });
+        List<OrderRequestDto> orders = Arrays.asList(new OrderRequestDto("ORD-1", sampleProducts));
+        ExecutorService clients = Executors.newFixedThreadPool(2);
+        try {
+            Future<List<OrderPackagingResponseDto>> first =
+                    clients.submit(() -> packagingService.packageOrders(orders, RequestDeadline.NONE));
+            saving.await();
+
+            // When: a retry comes in while it is still being stored
+            Future<List<OrderPackagingResponseDto>> retry =
+                    clients.submit(() -> packagingService.packageOrders(orders, RequestDeadline.NONE));
+            while (meterRegistry.get("packaging.submissions").tag("result", "in-flight").counter().count() < 1) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+
+            // Then: both get the one packing, which is packed and stored once
+            assertEquals(first.get(), retry.get());
+            verify(orderRepository, times(1)).saveAll(any());
+        } finally {
+            clients.shutdownNow();
+        }
+    }
 }
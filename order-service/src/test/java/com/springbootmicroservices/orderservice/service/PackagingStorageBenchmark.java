@@ -0,0 +1,188 @@
+package com.springbootmicroservices.orderservice.service;
+
+import com.springbootmicroservices.orderservice.config.PackagingProperties;
+import com.springbootmicroservices.orderservice.dto.BoxDto;
+import com.springbootmicroservices.orderservice.dto.OrderRequestDto;
+import com.springbootmicroservices.orderservice.dto.PlacementDto;
+import com.springbootmicroservices.orderservice.dto.ProductDto;
+import com.springbootmicroservices.orderservice.entity.Box;
+import com.springbootmicroservices.orderservice.entity.Order;
+import com.springbootmicroservices.orderservice.entity.OrderPackaging;
+import com.springbootmicroservices.orderservice.entity.PackedContents;
+import com.springbootmicroservices.orderservice.entity.Product;
+import com.springbootmicroservices.orderservice.repository.OrderPackagingRepository;
+import com.springbootmicroservices.orderservice.repository.OrderRepository;
+import com.springbootmicroservices.orderservice.service.impl.OrderPacking;
+import com.springbootmicroservices.orderservice.service.impl.OrderPackagingWriter;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Run with: mvn test -Pbenchmark
+@Tag("benchmark")
+@DataJpaTest(properties = "spring.jpa.show-sql=false")
+@Import({OrderPackagingWriter.class, BoxCatalog.class, RequestDeadlines.class,
+        OrderPackagingWriterTest.Config.class})
+// Every chunk commits, as in production; H2 reads slow down a lot under one huge open transaction
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class PackagingStorageBenchmark {
+
+    private static final int ORDERS = 1000;
+    private static final int LINES_PER_ORDER = 12;
+    private static final int LINES_PER_BOX = 4;
+    private static final int CHUNK = 100;
+    private static final int ROUNDS = 5;
+
+    @Autowired
+    private OrderPackagingWriter writer;
+
+    @Autowired
+    private BoxCatalog boxCatalog;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private OrderPackagingRepository orderPackagingRepository;
+
+    @Autowired
+    private PackagingProperties packagingProperties;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void reportJoinTableVersusPackedStorage() {
+        boxCatalog.saveAll(Arrays.asList(new Box("Caixa 1", 30.0, 40.0, 80.0)));
+
+        System.out.printf("%-20s %10s %10s %12s %12s%n", "format", "boxes", "join rows", "bytes", "load ms");
+        run("join-table", "JOIN-", false);
+        run("packed", "PACKED-", false);
+        run("packed", "POSITIONS-", true);
+        packagingProperties.setStorage(new PackagingProperties.Storage());
+    }
+
+    private void run(String format, String prefix, boolean positions) {
+        packagingProperties.getStorage().setFormat(format);
+        long boxesBefore = orderPackagingRepository.count();
+        long joinRowsBefore = count("packaging_products") + count("packaging_product_quantities");
+        long bytesBefore = joinBytes() + packedBytes();
+
+        for (int from = 0; from < ORDERS; from += CHUNK) {
+            List<OrderRequestDto> orderRequests = new ArrayList<>(CHUNK);
+            List<OrderPacking> packings = new ArrayList<>(CHUNK);
+            for (int o = from; o < from + CHUNK; o++) {
+                addOrder(prefix + o, positions, orderRequests, packings);
+            }
+            writer.saveOrders(orderRequests, packings, RequestDeadline.NONE);
+        }
+
+        long boxes = orderPackagingRepository.count() - boxesBefore;
+        long joinRows = count("packaging_products") + count("packaging_product_quantities") - joinRowsBefore;
+        long bytes = joinBytes() + packedBytes() - bytesBefore;
+
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            // One read-only transaction per order, each with a fresh persistence context
+            long units = 0;
+            for (int o = 0; o < ORDERS; o++) {
+                String orderNumber = prefix + o;
+                units += transactionTemplate.execute(status -> loadUnits(orderNumber));
+            }
+            best = Math.min(best, System.nanoTime() - start);
+            if (units != (long) ORDERS * LINES_PER_ORDER * 2) {
+                throw new IllegalStateException("Loaded " + units + " units");
+            }
+        }
+        System.out.printf("%-20s %10d %10d %12d %12.1f%n", format + (positions ? "+positions" : ""),
+                boxes, joinRows, bytes, best / 1e6);
+    }
+
+    // Reads an order's boxes back the way a reader of the stored packing would
+    private long loadUnits(String orderNumber) {
+        Order order = orderRepository.findByOrderNumber(orderNumber).orElseThrow(IllegalStateException::new);
+        long units = 0;
+        Map<Long, Product> productsById = null;
+        for (OrderPackaging packaging : orderPackagingRepository.findByOrder(order)) {
+            if (packaging.getContents() == null) {
+                for (int i = 0; i < packaging.getProducts().size(); i++) {
+                    packaging.getProducts().get(i).getName();
+                    units += packaging.getQuantities().get(i);
+                }
+                continue;
+            }
+            if (productsById == null) {
+                productsById = new HashMap<>();
+                for (Product product : order.getProducts()) {
+                    productsById.put(product.getId(), product);
+                }
+            }
+            PackedContents contents = PackedContents.decode(packaging.getContents());
+            for (int i = 0; i < contents.size(); i++) {
+                productsById.get(contents.productId(i)).getName();
+                units += contents.units(i);
+            }
+        }
+        return units;
+    }
+
+    private void addOrder(String orderNumber, boolean positions, List<OrderRequestDto> orderRequests,
+                          List<OrderPacking> packings) {
+        Box box = boxCatalog.current().getBox(0);
+        List<ProductDto> products = new ArrayList<>(LINES_PER_ORDER);
+        for (int p = 0; p < LINES_PER_ORDER; p++) {
+            products.add(new ProductDto(null, "Product " + p, 5.0, 5.0, 5.0, null, 2));
+        }
+        int boxCount = LINES_PER_ORDER / LINES_PER_BOX;
+        List<BoxDto> boxes = new ArrayList<>(boxCount);
+        List<Box> catalogBoxes = new ArrayList<>(boxCount);
+        int[][] lines = new int[boxCount][LINES_PER_BOX];
+        for (int b = 0; b < boxCount; b++) {
+            BoxDto boxDto = new BoxDto(box.getId(), box.getName(), box.getHeight(), box.getWidth(), box.getLength(),
+                    new ArrayList<>(), new ArrayList<>());
+            for (int k = 0; k < LINES_PER_BOX; k++) {
+                lines[b][k] = b * LINES_PER_BOX + k;
+                boxDto.getProducts().add(products.get(lines[b][k]));
+                if (positions) {
+                    boxDto.getPlacements().add(new PlacementDto(5.0 * k, 0.0, 0.0, 5.0, 5.0, 5.0));
+                }
+            }
+            boxes.add(boxDto);
+            catalogBoxes.add(box);
+        }
+        orderRequests.add(new OrderRequestDto(orderNumber, products));
+        packings.add(new OrderPacking(boxes, catalogBoxes, lines, "ffd", false));
+    }
+
+    private long count(String table) {
+        return ((Number) entityManager.createNativeQuery("SELECT COUNT(*) FROM " + table).getSingleResult())
+                .longValue();
+    }
+
+    // Payload only: packaging id, product id or quantity, and position of every join row
+    private long joinBytes() {
+        return count("packaging_products") * (8 + 8 + 4) + count("packaging_product_quantities") * (8 + 4 + 4);
+    }
+
+    private long packedBytes() {
+        Object sum = entityManager.createNativeQuery("SELECT SUM(OCTET_LENGTH(contents)) FROM order_packaging")
+                .getSingleResult();
+        return sum != null ? ((Number) sum).longValue() : 0;
+    }
+}
@@ -0,0 +1,181 @@
+package com.springbootmicroservices.orderservice.service;
+
+import com.springbootmicroservices.orderservice.dto.BoxDto;
+import com.springbootmicroservices.orderservice.dto.OrderPackagingResponseDto;
+import com.springbootmicroservices.orderservice.dto.OrderRequestDto;
+import com.springbootmicroservices.orderservice.dto.ProductDto;
+import com.springbootmicroservices.orderservice.entity.Box;
+import com.springbootmicroservices.orderservice.entity.Order;
+import com.springbootmicroservices.orderservice.entity.OrderPackaging;
+import com.springbootmicroservices.orderservice.entity.PackedContents;
+import com.springbootmicroservices.orderservice.repository.OrderPackagingRepository;
+import com.springbootmicroservices.orderservice.repository.OrderRepository;
+import com.springbootmicroservices.orderservice.service.impl.OrderPacking;
+import com.springbootmicroservices.orderservice.service.impl.OrderPackagingWriter;
+import com.springbootmicroservices.orderservice.service.impl.PackagingStorageMigration;
+import com.springbootmicroservices.packing.FirstFitDecreasingKernel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = "spring.jpa.show-sql=false")
+@Import({OrderPackagingWriter.class, BoxCatalog.class, RequestDeadlines.class, PackagingStorageMigration.class,
+        OrderPackagingWriterTest.Config.class})
+// The append and the migration run in transactions of their own on two threads, as in production
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class PackagingStorageMigrationTest {
+
+    @Autowired
+    private OrderPackagingWriter writer;
+
+    @Autowired
+    private PackagingStorageMigration migration;
+
+    @Autowired
+    private BoxCatalog boxCatalog;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private OrderPackagingRepository orderPackagingRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newFixedThreadPool(2);
+        Box box = boxCatalog.saveAll(Arrays.asList(new Box("Caixa 1", 30.0, 40.0, 80.0))).getBox(0);
+        // One order with one box in the join tables, room to spare
+        ProductDto a = new ProductDto(null, "A", 10.0, 10.0, 10.0, null, 2);
+        ProductDto b = new ProductDto(null, "B", 20.0, 20.0, 20.0, null, 1);
+        writer.saveOrders(Arrays.asList(new OrderRequestDto("ORD-RACE", Arrays.asList(a, b))),
+                Arrays.asList(new OrderPacking(Arrays.asList(new BoxDto(box.getId(), box.getName(), box.getHeight(),
+                        box.getWidth(), box.getLength(), new ArrayList<>(Arrays.asList(a, b)), new ArrayList<>())),
+                        Arrays.asList(box), new int[][]{{0, 1}}, "ffd", false)), RequestDeadline.NONE);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+        // Everything here was committed
+        transactionTemplate.execute(status -> {
+            for (String table : Arrays.asList("packaging_product_quantities", "packaging_products", "order_packaging",
+                    "products", "orders", "boxes")) {
+                entityManager.createNativeQuery("DELETE FROM " + table).executeUpdate();
+            }
+            return null;
+        });
+    }
+
+    @Test
+    void shouldMigrateWhatAnAppendInProgressAddsToTheBox() throws Exception {
+        // Given: an append that has read the box from the join tables and not committed yet
+        CountDownLatch appended = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<OrderPackagingResponseDto> append = executor.submit(() -> transactionTemplate.execute(status -> {
+            OrderPackagingResponseDto response = append();
+            appended.countDown();
+            await(release);
+            return response;
+        }));
+        assertTrue(appended.await(10, TimeUnit.SECONDS));
+
+        // When: the migration runs meanwhile
+        Future<Integer> migrate = executor.submit(migration::migrate);
+
+        // Then: it waits for the append, and packs the line it added along with the others
+        assertThrows(TimeoutException.class, () -> migrate.get(300, TimeUnit.MILLISECONDS));
+        release.countDown();
+        assertEquals(Arrays.asList("A", "B", "C"), names(append.get(10, TimeUnit.SECONDS)));
+        assertEquals(1, migrate.get(10, TimeUnit.SECONDS));
+        assertStoredPacked(3);
+    }
+
+    @Test
+    void shouldAppendToTheBoxAsMigratedWhenTheMigrationGoesFirst() throws Exception {
+        // Given: a migration that has converted the box and not committed yet
+        CountDownLatch migrated = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<Integer> migrate = executor.submit(() -> transactionTemplate.execute(status -> {
+            int converted = migration.migrate();
+            migrated.countDown();
+            await(release);
+            return converted;
+        }));
+        assertTrue(migrated.await(10, TimeUnit.SECONDS));
+
+        // When: an append to the same order comes in meanwhile
+        Future<OrderPackagingResponseDto> append = executor.submit(
+                () -> transactionTemplate.execute(status -> append()));
+
+        // Then: it waits for the migration, and adds its line to the packed contents
+        assertThrows(TimeoutException.class, () -> append.get(300, TimeUnit.MILLISECONDS));
+        release.countDown();
+        assertEquals(1, migrate.get(10, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("A", "B", "C"), names(append.get(10, TimeUnit.SECONDS)));
+        assertStoredPacked(3);
+    }
+
+    private OrderPackagingResponseDto append() {
+        return writer.appendProducts("ORD-RACE", Arrays.asList(new ProductDto(null, "C", 5.0, 5.0, 5.0, null, 1)),
+                new FirstFitDecreasingKernel(), RequestDeadline.NONE);
+    }
+
+    // One packed box holding every line of the order, and no join rows left behind
+    private void assertStoredPacked(int lines) {
+        transactionTemplate.execute(status -> {
+            Order order = orderRepository.findByOrderNumber("ORD-RACE").orElseThrow(IllegalStateException::new);
+            List<OrderPackaging> packagings = orderPackagingRepository.findByOrder(order);
+            assertEquals(1, packagings.size());
+            assertEquals(lines, PackedContents.decode(packagings.get(0).getContents()).size());
+            assertEquals(0, count("packaging_products"));
+            assertEquals(0, count("packaging_product_quantities"));
+            return null;
+        });
+    }
+
+    private long count(String table) {
+        return ((Number) entityManager.createNativeQuery("SELECT COUNT(*) FROM " + table).getSingleResult())
+                .longValue();
+    }
+
+    private static List<String> names(OrderPackagingResponseDto response) {
+        return response.getBoxes().get(0).getProducts().stream().map(ProductDto::getName)
+                .collect(Collectors.toList());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
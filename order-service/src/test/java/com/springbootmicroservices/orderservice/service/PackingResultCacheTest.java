@@ -0,0 +1,120 @@
+package com.springbootmicroservices.orderservice.service;
+
+import com.springbootmicroservices.orderservice.config.PackagingProperties;
+import com.springbootmicroservices.packing.BoxTypes;
+import com.springbootmicroservices.packing.ExtremePointEngine;
+import com.springbootmicroservices.packing.FirstFitDecreasingKernel;
+import com.springbootmicroservices.packing.PackingEngine;
+import com.springbootmicroservices.packing.PackingItems;
+import com.springbootmicroservices.packing.PackingPlan;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PackingResultCacheTest {
+
+    private final BoxTypes boxes = new BoxTypes(
+            new double[]{30.0, 80.0, 50.0},
+            new double[]{40.0, 50.0, 80.0},
+            new double[]{80.0, 40.0, 60.0});
+
+    private PackagingProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+    private PackingResultCache cache;
+
+    @BeforeEach
+    void setUp() {
+        properties = new PackagingProperties();
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new PackingResultCache(properties, meterRegistry);
+    }
+
+    @Test
+    void shouldRemapCachedPlanOntoReorderedAndRotatedItems() {
+        PackingEngine engine = new ExtremePointEngine();
+        PackingItems first = new PackingItems(
+                new double[]{10.0, 25.0, 30.0},
+                new double[]{15.0, 30.0, 40.0},
+                new double[]{20.0, 35.0, 40.0});
+        // Same shapes, listed in a different order and with sides swapped
+        PackingItems second = new PackingItems(
+                new double[]{40.0, 20.0, 35.0},
+                new double[]{30.0, 10.0, 25.0},
+                new double[]{40.0, 15.0, 30.0});
+        AtomicInteger packs = new AtomicInteger();
+
+        cache.computeIfAbsent(1L, engine.name(), first, () -> {
+            packs.incrementAndGet();
+            return engine.pack(first, boxes);
+        });
+        PackingPlan cached = cache.computeIfAbsent(1L, engine.name(), second, () -> {
+            packs.incrementAndGet();
+            return engine.pack(second, boxes);
+        });
+        PackingPlan expected = engine.pack(second, boxes);
+
+        assertEquals(1, packs.get());
+        assertEquals(expected.boxCount(), cached.boxCount());
+        for (int box = 0; box < expected.boxCount(); box++) {
+            assertEquals(expected.boxType(box), cached.boxType(box));
+        }
+        for (int item = 0; item < second.size(); item++) {
+            assertEquals(expected.boxOf(item), cached.boxOf(item));
+            assertEquals(expected.placements().x(item), cached.placements().x(item));
+            assertEquals(expected.placements().y(item), cached.placements().y(item));
+            assertEquals(expected.placements().z(item), cached.placements().z(item));
+        }
+        assertEquals(1.0, meterRegistry.get("packaging.cache.hits").counter().count());
+        assertEquals(1.0, meterRegistry.get("packaging.cache.misses").counter().count());
+    }
+
+    @Test
+    void shouldMissWhenCatalogVersionChanges() {
+        PackingEngine engine = new FirstFitDecreasingKernel();
+        PackingItems items = new PackingItems(new double[]{10.0}, new double[]{10.0}, new double[]{10.0});
+
+        cache.computeIfAbsent(1L, engine.name(), items, () -> engine.pack(items, boxes));
+        cache.computeIfAbsent(2L, engine.name(), items, () -> engine.pack(items, boxes));
+
+        assertEquals(0.0, meterRegistry.get("packaging.cache.hits").counter().count());
+        assertEquals(2.0, meterRegistry.get("packaging.cache.misses").counter().count());
+    }
+
+    @Test
+    void shouldEvictLeastRecentlyUsedEntry() {
+        properties.getCache().setMaxEntries(2);
+        cache = new PackingResultCache(properties, meterRegistry = new SimpleMeterRegistry());
+        PackingEngine engine = new FirstFitDecreasingKernel();
+        PackingItems a = new PackingItems(new double[]{10.0}, new double[]{10.0}, new double[]{10.0});
+        PackingItems b = new PackingItems(new double[]{20.0}, new double[]{20.0}, new double[]{20.0});
+        PackingItems c = new PackingItems(new double[]{30.0}, new double[]{30.0}, new double[]{30.0});
+
+        cache.computeIfAbsent(1L, engine.name(), a, () -> engine.pack(a, boxes));
+        cache.computeIfAbsent(1L, engine.name(), b, () -> engine.pack(b, boxes));
+        // Touch a so that b becomes the eldest entry
+        cache.computeIfAbsent(1L, engine.name(), a, () -> engine.pack(a, boxes));
+        cache.computeIfAbsent(1L, engine.name(), c, () -> engine.pack(c, boxes));
+        cache.computeIfAbsent(1L, engine.name(), a, () -> engine.pack(a, boxes));
+
+        assertEquals(2, cache.size());
+        assertEquals(1.0, meterRegistry.get("packaging.cache.evictions").counter().count());
+        assertEquals(2.0, meterRegistry.get("packaging.cache.hits").counter().count());
+    }
+
+    @Test
+    void shouldBypassWhenDisabled() {
+        properties.getCache().setEnabled(false);
+        PackingEngine engine = new FirstFitDecreasingKernel();
+        PackingItems items = new PackingItems(new double[]{10.0}, new double[]{10.0}, new double[]{10.0});
+
+        cache.computeIfAbsent(1L, engine.name(), items, () -> engine.pack(items, boxes));
+        cache.computeIfAbsent(1L, engine.name(), items, () -> engine.pack(items, boxes));
+
+        assertEquals(0, cache.size());
+        assertEquals(0.0, meterRegistry.get("packaging.cache.misses").counter().count());
+    }
+}
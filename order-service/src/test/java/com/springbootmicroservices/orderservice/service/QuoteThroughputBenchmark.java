@@ -0,0 +1,77 @@
+package com.springbootmicroservices.orderservice.service;
+
+import com.springbootmicroservices.orderservice.dto.OrderRequestDto;
+import com.springbootmicroservices.orderservice.dto.ProductDto;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Run with: mvn test -Pbenchmark
+@Tag("benchmark")
+@SpringBootTest(properties = {
+        "spring.main.allow-circular-references=true",
+        "eureka.client.enabled=false",
+        "spring.jpa.show-sql=false",
+        "packaging.cache.enabled=false"
+})
+public class QuoteThroughputBenchmark {
+
+    private static final int BATCHES = 1000;
+    private static final int ORDERS_PER_BATCH = 5;
+    private static final int PRODUCTS_PER_ORDER = 10;
+
+    @Autowired
+    private PackagingService packagingService;
+
+    @Test
+    void reportQuoteVersusPersistingThroughput() {
+        List<List<OrderRequestDto>> batches = new ArrayList<>(BATCHES);
+        Random random = new Random(42);
+        for (int b = 0; b < BATCHES; b++) {
+            batches.add(randomBatch(random));
+        }
+
+        // Warm up both paths before measuring
+        for (int b = 0; b < BATCHES / 4; b++) {
+            packagingService.quoteOrders(batches.get(b), RequestDeadline.NONE);
+            packagingService.packageOrders(batches.get(b), RequestDeadline.NONE);
+        }
+
+        long start = System.nanoTime();
+        for (List<OrderRequestDto> batch : batches) {
+            packagingService.quoteOrders(batch, RequestDeadline.NONE);
+        }
+        long quoteNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (List<OrderRequestDto> batch : batches) {
+            packagingService.packageOrders(batch, RequestDeadline.NONE);
+        }
+        long persistNanos = System.nanoTime() - start;
+
+        System.out.printf("quote    %8.0f orders/s  %6.3f ms per batch%n",
+                BATCHES * ORDERS_PER_BATCH / (quoteNanos / 1e9), quoteNanos / 1e6 / BATCHES);
+        System.out.printf("optimize %8.0f orders/s  %6.3f ms per batch  (%.1fx slower)%n",
+                BATCHES * ORDERS_PER_BATCH / (persistNanos / 1e9), persistNanos / 1e6 / BATCHES,
+                (double) persistNanos / quoteNanos);
+    }
+
+    private List<OrderRequestDto> randomBatch(Random random) {
+        List<OrderRequestDto> orders = new ArrayList<>(ORDERS_PER_BATCH);
+        for (int o = 0; o < ORDERS_PER_BATCH; o++) {
+            List<ProductDto> products = new ArrayList<>(PRODUCTS_PER_ORDER);
+            for (int p = 0; p < PRODUCTS_PER_ORDER; p++) {
+                products.add(new ProductDto(null, "Product " + p, 5.0 + random.nextInt(25),
+                        5.0 + random.nextInt(25), 5.0 + random.nextInt(25), null, 1 + random.nextInt(3)));
+            }
+            // No order number: the persisting path gives every order a fresh one, so batches can be stored again
+            orders.add(new OrderRequestDto(null, products));
+        }
+        return orders;
+    }
+}
@@ -0,0 +1,75 @@
+package com.springbootmicroservices.orderservice.service;
+
+import com.springbootmicroservices.orderservice.dto.BoxDto;
+import com.springbootmicroservices.orderservice.dto.OrderRequestDto;
+import com.springbootmicroservices.orderservice.dto.ProductDto;
+import com.springbootmicroservices.orderservice.dto.StoredOrderDto;
+import com.springbootmicroservices.orderservice.entity.Box;
+import com.springbootmicroservices.orderservice.service.impl.OrderPacking;
+import com.springbootmicroservices.orderservice.service.impl.OrderPackagingReader;
+import com.springbootmicroservices.orderservice.service.impl.OrderPackagingWriter;
+import com.springbootmicroservices.packing.FirstFitDecreasingKernel;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// The schema of the durable profile: created by the migrations only, and the entities must match it
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=true",
+        "spring.jpa.hibernate.ddl-auto=validate",
+        "spring.jpa.show-sql=false"
+})
+@Import({OrderPackagingReader.class, OrderPackagingWriter.class, BoxCatalog.class, RequestDeadlines.class,
+        OrderPackagingWriterTest.Config.class})
+public class SchemaMigrationTest {
+
+    @Autowired
+    private OrderPackagingWriter writer;
+
+    @Autowired
+    private OrderPackagingReader reader;
+
+    @Autowired
+    private BoxCatalog boxCatalog;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Test
+    void shouldStoreAndReadOrdersOnTheMigratedSchema() {
+        // Given
+        boxCatalog.saveAll(Arrays.asList(new Box("Caixa 1", 30.0, 40.0, 80.0)));
+        Box box = boxCatalog.current().getBox(0);
+        ProductDto product = new ProductDto(null, "A", 10.0, 10.0, 10.0, null, 2);
+        BoxDto boxDto = new BoxDto(box.getId(), box.getName(), box.getHeight(), box.getWidth(), box.getLength(),
+                new ArrayList<>(Arrays.asList(product)), new ArrayList<>());
+
+        // When: stored, then changed
+        writer.saveOrders(Arrays.asList(new OrderRequestDto("ORD-1", Arrays.asList(product))),
+                Arrays.asList(new OrderPacking(Arrays.asList(boxDto), Arrays.asList(box), new int[][]{{0}}, "ffd",
+                        true)), RequestDeadline.NONE);
+        entityManager.flush();
+        entityManager.clear();
+        String tag = reader.orderTag("ORD-1");
+        writer.appendProducts("ORD-1", Arrays.asList(new ProductDto(null, "B", 5.0, 5.0, 5.0, null, 1)),
+                new FirstFitDecreasingKernel(), RequestDeadline.NONE);
+        entityManager.flush();
+        entityManager.clear();
+
+        // Then
+        StoredOrderDto stored = reader.findOrder("ORD-1");
+        assertEquals("ffd", stored.getStrategy());
+        assertTrue(stored.isOptimal());
+        assertEquals(2, stored.getBoxes().get(0).getProducts().size());
+        assertNotEquals(tag, reader.orderTag("ORD-1"));
+        assertEquals("1", entityManager.createNativeQuery(
+                "SELECT MAX(\"version\") FROM \"flyway_schema_history\" WHERE \"success\"").getSingleResult());
+    }
+}
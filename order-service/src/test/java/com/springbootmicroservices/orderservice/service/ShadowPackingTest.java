@@ -0,0 +1,161 @@
+package com.springbootmicroservices.orderservice.service;
+
+import com.springbootmicroservices.orderservice.config.PackagingProperties;
+import com.springbootmicroservices.packing.BoxTypes;
+import com.springbootmicroservices.packing.FirstFitDecreasingKernel;
+import com.springbootmicroservices.packing.PackingEngine;
+import com.springbootmicroservices.packing.PackingItems;
+import com.springbootmicroservices.packing.PackingPlan;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShadowPackingTest {
+
+    private final BoxTypes boxes = new BoxTypes(
+            new double[]{30.0, 80.0, 50.0},
+            new double[]{40.0, 50.0, 80.0},
+            new double[]{80.0, 40.0, 60.0});
+
+    private final PackingEngine primary = new FirstFitDecreasingKernel();
+
+    private PackagingProperties.Shadow properties;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        properties = new PackagingProperties.Shadow();
+        properties.setEnabled(true);
+        properties.setSampleRate(1.0);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void shouldRecordWorseCandidateAsDisagreement() {
+        ShadowPacking shadow = new ShadowPacking(new OneBoxPerItem(), Runnable::run, properties, meterRegistry);
+        PackingItems items = cubes(4);
+        PackingPlan plan = primary.pack(items, boxes);
+
+        shadow.offer("ORD-1", items, boxes, plan, 1_000_000L);
+
+        assertEquals(1.0, comparisons(ShadowPacking.OUTCOME_WORSE));
+        assertEquals(1.0, meterRegistry.get("packaging.shadow.boxes").tag("engine", "primary").counter().count());
+        assertEquals(4.0, meterRegistry.get("packaging.shadow.boxes").tag("engine", "candidate").counter().count());
+        assertEquals(1, meterRegistry.get("packaging.shadow.time").tag("engine", "candidate").timer().count());
+        List<ShadowPacking.Disagreement> disagreements = shadow.disagreements();
+        assertEquals(1, disagreements.size());
+        assertEquals("ORD-1", disagreements.get(0).getOrderNumber());
+        assertEquals(1, disagreements.get(0).getPrimaryBoxes());
+        assertEquals(4, disagreements.get(0).getCandidateBoxes());
+        assertEquals(1000, disagreements.get(0).getPrimaryMicros());
+    }
+
+    @Test
+    void shouldNotKeepOrdersBothEnginesPackTheSame() {
+        ShadowPacking shadow = new ShadowPacking(new FirstFitDecreasingKernel(), Runnable::run, properties,
+                meterRegistry);
+        PackingItems items = cubes(4);
+
+        shadow.offer("ORD-1", items, boxes, primary.pack(items, boxes), 0L);
+
+        assertEquals(1.0, comparisons(ShadowPacking.OUTCOME_SAME));
+        assertTrue(shadow.disagreements().isEmpty());
+    }
+
+    @Test
+    void shouldKeepOnlyTheWorstDisagreementsWorstFirst() {
+        properties.setDisagreements(2);
+        ShadowPacking shadow = new ShadowPacking(new OneBoxPerItem(), Runnable::run, properties, meterRegistry);
+
+        // A large regression first, then smaller ones that would push it out of a buffer of the latest
+        for (int count : new int[]{9, 2, 4, 3}) {
+            PackingItems items = cubes(count);
+            shadow.offer("ORD-" + count, items, boxes, primary.pack(items, boxes), 0L);
+        }
+
+        List<ShadowPacking.Disagreement> disagreements = shadow.disagreements();
+        assertEquals(2, disagreements.size());
+        assertEquals("ORD-9", disagreements.get(0).getOrderNumber());
+        assertEquals("ORD-4", disagreements.get(1).getOrderNumber());
+    }
+
+    @Test
+    void shouldDropSampledOrdersWhenThePoolIsFull() {
+        ShadowPacking shadow = new ShadowPacking(new OneBoxPerItem(), runnable -> {
+            throw new RejectedExecutionException("full");
+        }, properties, meterRegistry);
+        PackingItems items = cubes(2);
+
+        shadow.offer("ORD-1", items, boxes, primary.pack(items, boxes), 0L);
+
+        assertEquals(1.0, meterRegistry.get("packaging.shadow.dropped").counter().count());
+        assertTrue(shadow.disagreements().isEmpty());
+    }
+
+    @Test
+    void shouldNotSampleWhenDisabled() {
+        properties.setEnabled(false);
+        AtomicInteger submitted = new AtomicInteger();
+        ShadowPacking shadow = new ShadowPacking(new OneBoxPerItem(), runnable -> submitted.incrementAndGet(),
+                properties, meterRegistry);
+        PackingItems items = cubes(2);
+
+        shadow.offer("ORD-1", items, boxes, primary.pack(items, boxes), 0L);
+
+        assertFalse(shadow.isEnabled());
+        assertEquals(0, submitted.get());
+    }
+
+    @Test
+    void shouldCountFailingCandidate() {
+        PackingEngine failing = new OneBoxPerItem() {
+            @Override
+            public PackingPlan pack(PackingItems items, BoxTypes boxes) {
+                throw new IllegalStateException("broken");
+            }
+        };
+        ShadowPacking shadow = new ShadowPacking(failing, Runnable::run, properties, meterRegistry);
+        PackingItems items = cubes(2);
+
+        shadow.offer("ORD-1", items, boxes, primary.pack(items, boxes), 0L);
+
+        assertEquals(1.0, comparisons(ShadowPacking.OUTCOME_FAILED));
+    }
+
+    private double comparisons(String outcome) {
+        return meterRegistry.get("packaging.shadow.comparisons").tag("outcome", outcome).counter().count();
+    }
+
+    private static PackingItems cubes(int count) {
+        double[] sides = new double[count];
+        Arrays.fill(sides, 10.0);
+        return new PackingItems(sides, sides.clone(), sides.clone());
+    }
+
+    // Deliberately poor candidate: every item in its own largest box
+    private static class OneBoxPerItem implements PackingEngine {
+
+        @Override
+        public String name() {
+            return "one-box-per-item";
+        }
+
+        @Override
+        public PackingPlan pack(PackingItems items, BoxTypes boxes) {
+            int[] types = new int[items.size()];
+            int[] itemBoxes = new int[items.size()];
+            for (int i = 0; i < items.size(); i++) {
+                types[i] = 2;
+                itemBoxes[i] = i;
+            }
+            return new PackingPlan(items.size(), types, itemBoxes, itemBoxes.clone());
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package com.springbootmicroservices.orderservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springbootmicroservices.orderservice.config.PackagingProperties;
+import com.springbootmicroservices.orderservice.dto.BoxDto;
+import com.springbootmicroservices.orderservice.dto.OrderPackagingResponseDto;
+import com.springbootmicroservices.orderservice.dto.OrderRequestDto;
+import com.springbootmicroservices.orderservice.dto.ProductDto;
+import com.springbootmicroservices.orderservice.entity.Box;
+import com.springbootmicroservices.orderservice.exception.ApiException;
+import com.springbootmicroservices.orderservice.repository.BoxRepository;
+import com.springbootmicroservices.orderservice.repository.OrderRepository;
+import com.springbootmicroservices.orderservice.service.impl.OrderPacking;
+import com.springbootmicroservices.orderservice.service.impl.OrderPackagingReader;
+import com.springbootmicroservices.orderservice.service.impl.OrderPackagingWriter;
+import com.springbootmicroservices.orderservice.service.impl.OrderSubmissions;
+import com.springbootmicroservices.orderservice.service.impl.WriteBehindPersistence;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class WriteBehindPersistenceTest {
+
+    @Mock
+    private BoxRepository boxRepository;
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    @TempDir
+    Path directory;
+
+    private BoxCatalog boxCatalog;
+    private PackagingProperties properties;
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final List<WriteBehindPersistence> started = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        Box box = new Box("Caixa 1", 30.0, 40.0, 80.0);
+        box.setId(1L);
+        when(boxRepository.findAll()).thenReturn(Collections.singletonList(box));
+        boxCatalog = new BoxCatalog(boxRepository, new SimpleMeterRegistry());
+        boxCatalog.refresh();
+
+        properties = new PackagingProperties();
+        properties.getWriteBehind().setEnabled(true);
+        properties.getWriteBehind().setOutbox(directory.resolve("outbox.jsonl").toString());
+        properties.getWriteBehind().setMaxWait(Duration.ofMillis(10));
+        properties.getWriteBehind().setShutdownTimeout(Duration.ofSeconds(5));
+        properties.getWriteBehind().setDeadLetter(directory.resolve("dead-letter.jsonl").toString());
+        properties.getWriteBehind().setRetryBackoff(Duration.ofMillis(10));
+        properties.getWriteBehind().setMaxRetryBackoff(Duration.ofMillis(50));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        release.countDown();
+        for (WriteBehindPersistence writeBehind : started) {
+            writeBehind.stop();
+        }
+    }
+
+    @Test
+    void shouldAnswerFirstAndStoreInTheBackground() throws Exception {
+        // Given
+        OrderPackagingWriter writer = mock(OrderPackagingWriter.class);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        WriteBehindPersistence writeBehind = start(writer, meterRegistry);
+
+        // When: an order without a number
+        List<OrderPackagingResponseDto> result = writeBehind.submit(Arrays.asList(order("ORD-1"), order(null)),
+                Arrays.asList(packing(), packing()), RequestDeadline.NONE);
+
+        // Then: the answer names the numbers the orders are stored under
+        assertEquals("ORD-1", result.get(0).getOrderNumber());
+        assertNotNull(result.get(1).getOrderNumber());
+
+        // And both are stored by the time the writer has drained, leaving an empty outbox
+        writeBehind.stop();
+        ArgumentCaptor<List<OrderRequestDto>> stored = ArgumentCaptor.forClass(List.class);
+        verify(writer, atLeastOnce()).saveOrders(stored.capture(), anyList(), any());
+        List<String> storedNumbers = new ArrayList<>();
+        stored.getAllValues().forEach(batch -> batch.forEach(order -> storedNumbers.add(order.getOrderNumber())));
+        assertEquals(Arrays.asList("ORD-1", result.get(1).getOrderNumber()), storedNumbers);
+        assertEquals(0, Files.size(directory.resolve("outbox.jsonl")));
+        assertEquals(2, meterRegistry.get("packaging.write-behind.lag").timer().count());
+    }
+
+    @Test
+    void shouldRejectOrdersWhileTheQueueIsFull() throws Exception {
+        // Given: room for two orders and a writer stuck on the first batch
+        properties.getWriteBehind().setQueueCapacity(2);
+        OrderPackagingWriter writer = blockedWriter();
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        WriteBehindPersistence writeBehind = start(writer, meterRegistry);
+        writeBehind.submit(Arrays.asList(order("ORD-1"), order("ORD-2")), Arrays.asList(packing(), packing()),
+                RequestDeadline.NONE);
+
+        // When
+        ApiException exception = assertThrows(ApiException.class, () -> writeBehind.submit(
+                Collections.singletonList(order("ORD-3")), Collections.singletonList(packing()), RequestDeadline.NONE));
+
+        // Then
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, exception.getStatus());
+        assertEquals(1.0, meterRegistry.get("packaging.write-behind.rejected").counter().count());
+    }
+
+    @Test
+    void shouldReplayOrdersLeftInTheOutbox() throws Exception {
+        // Given: two accepted orders, never stored before the process died
+        WriteBehindPersistence crashed = start(blockedWriter(), new SimpleMeterRegistry());
+        crashed.submit(Arrays.asList(order("ORD-1"), order("ORD-2")), Arrays.asList(packing(), packing()),
+                RequestDeadline.NONE);
+
+        // When: the next process starts on the same outbox, with ORD-1 stored just before the crash
+        when(orderRepository.findExistingOrderNumbers(anyList())).thenReturn(Collections.singletonList("ORD-1"));
+        OrderPackagingWriter writer = mock(OrderPackagingWriter.class);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        start(writer, meterRegistry);
+
+        // Then: only ORD-2 is stored, into the catalog box it was packed in
+        ArgumentCaptor<List<OrderRequestDto>> stored = ArgumentCaptor.forClass(List.class);
+        ArgumentCaptor<List<OrderPacking>> packings = ArgumentCaptor.forClass(List.class);
+        verify(writer, timeout(5000)).saveOrders(stored.capture(), packings.capture(), any());
+        assertEquals(1, stored.getValue().size());
+        assertEquals("ORD-2", stored.getValue().get(0).getOrderNumber());
+        assertEquals("Caixa 1", packings.getValue().get(0).getCatalogBoxes().get(0).getName());
+        assertArrayEquals(new int[]{0}, packings.getValue().get(0).getLines()[0]);
+        assertEquals(2.0, meterRegistry.get("packaging.write-behind.recovered").counter().count());
+    }
+
+    @Test
+    void shouldKeepAnOrderInTheOutboxUntilATemporaryFailureIsOver() throws Exception {
+        // Given: a database that is down for now
+        AtomicBoolean databaseUp = new AtomicBoolean();
+        OrderPackagingWriter writer = mock(OrderPackagingWriter.class);
+        when(writer.saveOrders(anyList(), anyList(), any())).thenAnswer(invocation -> {
+            if (!databaseUp.get()) {
+                throw new CannotCreateTransactionException("Could not open JPA EntityManager for transaction");
+            }
+            return Collections.emptyList();
+        });
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        WriteBehindPersistence writeBehind = start(writer, meterRegistry);
+
+        // When
+        writeBehind.submit(Collections.singletonList(order("ORD-1")), Collections.singletonList(packing()),
+                RequestDeadline.NONE);
+
+        // Then: tried again and again, and neither acknowledged nor given up on
+        verify(writer, timeout(5000).atLeast(4)).saveOrders(anyList(), anyList(), any());
+        List<String> outbox = Files.readAllLines(directory.resolve("outbox.jsonl"));
+        assertEquals(1, outbox.size());
+        assertTrue(outbox.get(0).contains("ORD-1"));
+        assertTrue(meterRegistry.get("packaging.write-behind.retries").counter().count() > 0);
+        assertEquals(0.0, meterRegistry.get("packaging.write-behind.failed").counter().count());
+
+        // When: the database is back
+        databaseUp.set(true);
+
+        // Then: the order is stored and only now leaves the outbox
+        awaitEmptyOutbox();
+        writeBehind.stop();
+        ArgumentCaptor<List<OrderRequestDto>> stored = ArgumentCaptor.forClass(List.class);
+        verify(writer, atLeastOnce()).saveOrders(stored.capture(), anyList(), any());
+        assertEquals("ORD-1", stored.getValue().get(0).getOrderNumber());
+        assertEquals(1, meterRegistry.get("packaging.write-behind.lag").timer().count());
+    }
+
+    @Test
+    void shouldMoveOrdersThatCanNeverBeStoredToTheDeadLetterFile() throws Exception {
+        // Given: ORD-2 breaks a constraint
+        OrderPackagingWriter writer = mock(OrderPackagingWriter.class);
+        when(writer.saveOrders(anyList(), anyList(), any())).thenAnswer(invocation -> {
+            List<OrderRequestDto> orders = invocation.getArgument(0);
+            if (orders.stream().anyMatch(order -> "ORD-2".equals(order.getOrderNumber()))) {
+                throw new DataIntegrityViolationException("Unique index or primary key violation");
+            }
+            return Collections.emptyList();
+        });
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        WriteBehindPersistence writeBehind = start(writer, meterRegistry);
+
+        // When
+        writeBehind.submit(Arrays.asList(order("ORD-1"), order("ORD-2"), order("ORD-3")),
+                Arrays.asList(packing(), packing(), packing()), RequestDeadline.NONE);
+        writeBehind.stop();
+
+        // Then: the others are stored, ORD-2 is kept aside with its cause, and the outbox is done with all three
+        ArgumentCaptor<List<OrderRequestDto>> stored = ArgumentCaptor.forClass(List.class);
+        verify(writer, atLeastOnce()).saveOrders(stored.capture(), anyList(), any());
+        List<String> storedNumbers = new ArrayList<>();
+        stored.getAllValues().stream().filter(batch -> batch.size() == 1)
+                .forEach(batch -> storedNumbers.add(batch.get(0).getOrderNumber()));
+        assertEquals(Arrays.asList("ORD-1", "ORD-2", "ORD-3"), storedNumbers);
+        List<String> deadLetters = Files.readAllLines(directory.resolve("dead-letter.jsonl"));
+        assertEquals(1, deadLetters.size());
+        assertTrue(deadLetters.get(0).contains("ORD-2"));
+        assertTrue(deadLetters.get(0).contains("Unique index or primary key violation"));
+        assertEquals(0, Files.size(directory.resolve("outbox.jsonl")));
+        assertEquals(1.0, meterRegistry.get("packaging.write-behind.failed").counter().count());
+        assertEquals(0.0, meterRegistry.get("packaging.write-behind.retries").counter().count());
+    }
+
+    @Test
+    void shouldAnswerAClaimBeforeTheWriterCanStoreItsOrders() throws Exception {
+        // Given: claims on a real submissions registry, and a writer that stores at once and looks at the claim
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        OrderPackagingReader reader = mock(OrderPackagingReader.class);
+        OrderSubmissions submissions = new OrderSubmissions(reader,
+                new RequestDeadlines(properties, meterRegistry), meterRegistry);
+        OrderSubmissions.Claim claim = submissions.claim(Collections.singletonList(order("ORD-1")));
+        AtomicReference<String> answeredWhenStored = new AtomicReference<>();
+        OrderPackagingWriter writer = mock(OrderPackagingWriter.class);
+        when(writer.saveOrders(anyList(), anyList(), any())).thenAnswer(invocation -> {
+            // Only the first attempt counts: a retry would give the request thread time to catch up
+            String answer;
+            try {
+                answer = claim.await(RequestDeadline.in(Duration.ofMillis(1))).get(0).getOrderNumber();
+            } catch (ApiException e) {
+                answer = "no answer yet";
+            }
+            answeredWhenStored.compareAndSet(null, answer);
+            return Collections.emptyList();
+        });
+        WriteBehindPersistence writeBehind = start(writer, submissions, meterRegistry);
+
+        // When: the writer stores the order before the request thread is back
+        writeBehind.submit(claim, Collections.singletonList(packing()), RequestDeadline.NONE);
+        writeBehind.stop();
+
+        // Then: the answer was there when it was stored, and the number is free again
+        assertEquals("ORD-1", answeredWhenStored.get());
+        OrderSubmissions.Claim retry = submissions.claim(Collections.singletonList(order("ORD-1")));
+        assertEquals(1, retry.getFresh().size());
+        assertEquals(0.0, meterRegistry.get("packaging.submissions").tag("result", "in-flight").counter().count());
+    }
+
+    private void awaitEmptyOutbox() throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (Files.size(directory.resolve("outbox.jsonl")) > 0) {
+            assertTrue(System.nanoTime() < deadline, "The order never left the outbox");
+            Thread.sleep(10);
+        }
+    }
+
+    private WriteBehindPersistence start(OrderPackagingWriter writer, SimpleMeterRegistry meterRegistry)
+            throws Exception {
+        return start(writer, mock(OrderSubmissions.class), meterRegistry);
+    }
+
+    private WriteBehindPersistence start(OrderPackagingWriter writer, OrderSubmissions submissions,
+                                         SimpleMeterRegistry meterRegistry) throws Exception {
+        WriteBehindPersistence writeBehind = new WriteBehindPersistence(writer, orderRepository, boxCatalog,
+                submissions, properties, new ObjectMapper(), meterRegistry);
+        writeBehind.start();
+        started.add(writeBehind);
+        return writeBehind;
+    }
+
+    private OrderPackagingWriter blockedWriter() {
+        OrderPackagingWriter writer = mock(OrderPackagingWriter.class);
+        when(writer.saveOrders(anyList(), anyList(), any())).thenAnswer(invocation -> {
+            release.await();
+            return Collections.emptyList();
+        });
+        return writer;
+    }
+
+    private static OrderRequestDto order(String orderNumber) {
+        return new OrderRequestDto(orderNumber,
+                Collections.singletonList(new ProductDto(null, "A", 10.0, 10.0, 10.0, null, 1)));
+    }
+
+    private OrderPacking packing() {
+        Box box = boxCatalog.current().getBox(0);
+        BoxDto boxDto = new BoxDto(box.getId(), box.getName(), box.getHeight(), box.getWidth(), box.getLength(),
+                new ArrayList<>(Collections.singletonList(new ProductDto(null, "A", 10.0, 10.0, 10.0, null, 1))),
+                new ArrayList<>());
+        return new OrderPacking(Collections.singletonList(boxDto), Collections.singletonList(box),
+                new int[][]{{0}}, "ffd", false);
+    }
+}
@@ -0,0 +1,120 @@
+package com.springbootmicroservices.packing;
+
+/**
+ * Finds the smallest box type that holds an item.
+ * Box types are kept sorted by volume (catalog order on ties) over their sorted
+ * dimensions. Types that can never be the answer are pruned: a type is dominated
+ * when an earlier, no larger type is at least as big in every sorted dimension,
+ * since that one fits every item the dominated type fits. A lookup binary searches
+ * past every box with less volume than the item, then walks up in volume with a
+ * single canonical comparison per candidate, and gives up as soon as the suffix
+ * maxima show no remaining type is long, wide or tall enough.
+ */
+public final class BoxFitIndex {
+
+    // Slack for volumes computed from the same sides multiplied in a different order
+    private static final double VOLUME_TOLERANCE = 1e-12;
+
+    private final int size;
+    private final int[] types;
+    private final double[] small;
+    private final double[] medium;
+    private final double[] large;
+    private final double[] volume;
+    private final double[] maxSmall;
+    private final double[] maxMedium;
+    private final double[] maxLarge;
+
+    public BoxFitIndex(BoxTypes boxes) {
+        int count = boxes.size();
+        int[] byVolume = new int[count];
+        for (int i = 0; i < count; i++) {
+            byVolume[i] = i;
+        }
+        // Insertion sort keeps catalog order on equal volumes; catalogs are small
+        for (int i = 1; i < count; i++) {
+            int type = byVolume[i];
+            int j = i - 1;
+            while (j >= 0 && boxes.volume(byVolume[j]) > boxes.volume(type)) {
+                byVolume[j + 1] = byVolume[j];
+                j--;
+            }
+            byVolume[j + 1] = type;
+        }
+
+        int[] kept = new int[count];
+        int keptCount = 0;
+        for (int i = 0; i < count; i++) {
+            int type = byVolume[i];
+            boolean dominated = false;
+            for (int k = 0; k < keptCount && !dominated; k++) {
+                int other = kept[k];
+                dominated = boxes.small(other) >= boxes.small(type)
+                        && boxes.medium(other) >= boxes.medium(type)
+                        && boxes.large(other) >= boxes.large(type);
+            }
+            if (!dominated) {
+                kept[keptCount++] = type;
+            }
+        }
+
+        this.size = keptCount;
+        this.types = new int[size];
+        this.small = new double[size];
+        this.medium = new double[size];
+        this.large = new double[size];
+        this.volume = new double[size];
+        for (int i = 0; i < size; i++) {
+            types[i] = kept[i];
+            small[i] = boxes.small(kept[i]);
+            medium[i] = boxes.medium(kept[i]);
+            large[i] = boxes.large(kept[i]);
+            volume[i] = boxes.volume(kept[i]);
+        }
+
+        this.maxSmall = new double[size + 1];
+        this.maxMedium = new double[size + 1];
+        this.maxLarge = new double[size + 1];
+        for (int i = size - 1; i >= 0; i--) {
+            maxSmall[i] = Math.max(small[i], maxSmall[i + 1]);
+            maxMedium[i] = Math.max(medium[i], maxMedium[i + 1]);
+            maxLarge[i] = Math.max(large[i], maxLarge[i + 1]);
+        }
+    }
+
+    // Number of box types left after pruning
+    public int size() {
+        return size;
+    }
+
+    // Box type index of the smallest type holding the item, or -1 when none does
+    public int smallestFitting(PackingItems items, int item) {
+        double s = items.small(item);
+        double m = items.medium(item);
+        double l = items.large(item);
+
+        for (int i = firstWithVolume(items.volume(item) * (1 - VOLUME_TOLERANCE)); i < size; i++) {
+            if (s > maxSmall[i] || m > maxMedium[i] || l > maxLarge[i]) {
+                return -1;
+            }
+            if (s <= small[i] && m <= medium[i] && l <= large[i]) {
+                return types[i];
+            }
+        }
+        return -1;
+    }
+
+    private int firstWithVolume(double minimum) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (volume[mid] < minimum) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,83 @@
+package com.springbootmicroservices.packing;
+
+/**
+ * Struct-of-arrays view of the available box types, with sorted dimensions
+ * and precomputed volumes.
+ */
+public final class BoxTypes {
+
+    private final int size;
+    private final double[] heights;
+    private final double[] widths;
+    private final double[] lengths;
+    private final double[] small;
+    private final double[] medium;
+    private final double[] large;
+    private final double[] volume;
+    private final BoxFitIndex fitIndex;
+
+    public BoxTypes(double[] heights, double[] widths, double[] lengths) {
+        if (heights.length != widths.length || heights.length != lengths.length) {
+            throw new IllegalArgumentException("Dimension arrays must have the same length");
+        }
+        this.size = heights.length;
+        this.heights = heights.clone();
+        this.widths = widths.clone();
+        this.lengths = lengths.clone();
+        this.small = new double[size];
+        this.medium = new double[size];
+        this.large = new double[size];
+        this.volume = new double[size];
+
+        for (int i = 0; i < size; i++) {
+            // Same multiplication order as Box#getVolume
+            volume[i] = heights[i] * widths[i] * lengths[i];
+            Dimensions.sort(heights[i], widths[i], lengths[i], small, medium, large, i);
+        }
+        this.fitIndex = new BoxFitIndex(this);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public double height(int type) {
+        return heights[type];
+    }
+
+    public double width(int type) {
+        return widths[type];
+    }
+
+    public double length(int type) {
+        return lengths[type];
+    }
+
+    public double small(int type) {
+        return small[type];
+    }
+
+    public double medium(int type) {
+        return medium[type];
+    }
+
+    public double large(int type) {
+        return large[type];
+    }
+
+    public double volume(int type) {
+        return volume[type];
+    }
+
+    // Smallest type (catalog order on ties) that holds the item, or -1 when none does
+    public int smallestFitting(PackingItems items, int item) {
+        return fitIndex.smallestFitting(items, item);
+    }
+
+    // An item fits in some orientation iff its sorted dimensions are all within the box's
+    public boolean fits(int type, PackingItems items, int item) {
+        return items.small(item) <= small[type]
+                && items.medium(item) <= medium[type]
+                && items.large(item) <= large[type];
+    }
+}
@@ -0,0 +1,232 @@
+package com.springbootmicroservices.packing;
+
+/**
+ * Exact packing for small orders, in the same volume and orientation model as FFD.
+ * A heuristic packs the order first and its plan is the incumbent; a depth first
+ * search then assigns items (largest first) to opened boxes or to a new box of any
+ * fitting type, looking for fewer boxes, or as many boxes with less total volume.
+ * Branches are cut by a volume lower bound, opened boxes in the same state (type
+ * and remaining capacity) are only tried once, and identical items are kept in
+ * non-decreasing box order. When the search runs to completion the plan is marked
+ * as proven optimal; when the deadline passes first the best plan found so far is
+ * returned unproven. Orders above the item limit get the heuristic plan.
+ */
+public final class BranchAndBoundEngine implements PackingEngine {
+
+    private static final double EPSILON = 1e-9;
+
+    // Nodes between two deadline checks
+    private static final int CLOCK_INTERVAL = 1024;
+
+    private final PackingEngine fallback;
+    private final int maxItems;
+    private final long deadlineNanos;
+
+    public BranchAndBoundEngine(PackingEngine fallback, int maxItems, long deadlineNanos) {
+        this.fallback = fallback;
+        this.maxItems = maxItems;
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    @Override
+    public String name() {
+        return PackingEngines.EXACT;
+    }
+
+    @Override
+    public PackingPlan pack(PackingItems items, BoxTypes boxes) {
+        long start = System.nanoTime();
+        // Also rejects orders with an item that fits no box
+        PackingPlan incumbent = fallback.pack(items, boxes);
+        if (items.size() == 0 || items.size() > maxItems) {
+            return incumbent;
+        }
+
+        Search search = new Search(items, boxes, incumbent, start + deadlineNanos);
+        boolean complete = search.run();
+        PackingPlan plan = search.improved ? search.plan() : incumbent;
+        return complete ? plan.asProvenOptimal() : plan;
+    }
+
+    private static final class Search {
+
+        private final PackingItems items;
+        private final BoxTypes boxes;
+        private final long deadline;
+        private final int n;
+
+        // Items in search order: volume descending, identical shapes next to each other
+        private final int[] order;
+        private final boolean[] sameAsPrevious;
+        private final double[] suffixVolume;
+        // Box types by volume, smallest first
+        private final int[] types;
+        private final double maxTypeVolume;
+
+        private final int[] boxTypes;
+        private final double[] remaining;
+        private final int[] assigned;
+
+        private int bestCount;
+        private double bestVolume;
+        private final int[] bestBoxTypes;
+        private final int[] bestAssigned;
+        private boolean improved;
+
+        private long nodes;
+        private boolean expired;
+
+        Search(PackingItems items, BoxTypes boxes, PackingPlan incumbent, long deadline) {
+            this.items = items;
+            this.boxes = boxes;
+            this.deadline = deadline;
+            this.n = items.size();
+
+            this.order = searchOrder(items);
+            this.sameAsPrevious = new boolean[n];
+            for (int k = 1; k < n; k++) {
+                int a = order[k - 1];
+                int b = order[k];
+                sameAsPrevious[k] = items.small(a) == items.small(b)
+                        && items.medium(a) == items.medium(b)
+                        && items.large(a) == items.large(b);
+            }
+            this.suffixVolume = new double[n + 1];
+            for (int k = n - 1; k >= 0; k--) {
+                suffixVolume[k] = suffixVolume[k + 1] + items.volume(order[k]);
+            }
+
+            this.types = new int[boxes.size()];
+            double max = 0;
+            for (int t = 0; t < types.length; t++) {
+                int type = t;
+                int j = t - 1;
+                while (j >= 0 && boxes.volume(types[j]) > boxes.volume(type)) {
+                    types[j + 1] = types[j];
+                    j--;
+                }
+                types[j + 1] = type;
+                max = Math.max(max, boxes.volume(t));
+            }
+            this.maxTypeVolume = max;
+
+            this.boxTypes = new int[n];
+            this.remaining = new double[n];
+            this.assigned = new int[n];
+            this.bestBoxTypes = new int[n];
+            this.bestAssigned = new int[n];
+            this.bestCount = incumbent.boxCount();
+            this.bestVolume = incumbent.totalBoxVolume(boxes);
+        }
+
+        // True when the whole tree was explored before the deadline
+        boolean run() {
+            search(0, 0, 0, 0);
+            return !expired;
+        }
+
+        private void search(int k, int open, double openVolume, double free) {
+            if (expired || (nodes++ % CLOCK_INTERVAL == 0 && System.nanoTime() - deadline > 0)) {
+                expired = true;
+                return;
+            }
+
+            if (k == n) {
+                if (open < bestCount || (open == bestCount && openVolume < bestVolume - EPSILON)) {
+                    bestCount = open;
+                    bestVolume = openVolume;
+                    System.arraycopy(boxTypes, 0, bestBoxTypes, 0, open);
+                    System.arraycopy(assigned, 0, bestAssigned, 0, n);
+                    improved = true;
+                }
+                return;
+            }
+
+            // Whatever does not fit in the free space needs new boxes, at best of the largest type
+            double excess = suffixVolume[k] - free;
+            int lowerCount = open;
+            double lowerVolume = openVolume;
+            if (excess > EPSILON) {
+                lowerCount += (int) Math.ceil(excess / maxTypeVolume - EPSILON);
+                lowerVolume += excess;
+            }
+            if (lowerCount > bestCount || (lowerCount == bestCount && lowerVolume >= bestVolume - EPSILON)) {
+                return;
+            }
+
+            int item = order[k];
+            double volume = items.volume(item);
+
+            int first = sameAsPrevious[k] ? assigned[k - 1] : 0;
+            for (int box = first; box < open; box++) {
+                if (volume > remaining[box] || !boxes.fits(boxTypes[box], items, item) || seenBefore(first, box)) {
+                    continue;
+                }
+                double before = remaining[box];
+                remaining[box] -= volume;
+                assigned[k] = box;
+                search(k + 1, open, openVolume, free - volume);
+                remaining[box] = before;
+            }
+
+            if (open + 1 > bestCount) {
+                return;
+            }
+            for (int type : types) {
+                if (!boxes.fits(type, items, item)) {
+                    continue;
+                }
+                boxTypes[open] = type;
+                remaining[open] = boxes.volume(type) - volume;
+                assigned[k] = open;
+                search(k + 1, open + 1, openVolume + boxes.volume(type), free + remaining[open]);
+            }
+        }
+
+        // Another box of the same type with the same space left leads to the same subtrees
+        private boolean seenBefore(int first, int box) {
+            for (int other = first; other < box; other++) {
+                if (boxTypes[other] == boxTypes[box] && Math.abs(remaining[other] - remaining[box]) < EPSILON) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        PackingPlan plan() {
+            int[] planTypes = new int[bestCount];
+            System.arraycopy(bestBoxTypes, 0, planTypes, 0, bestCount);
+            int[] itemBoxes = new int[n];
+            for (int k = 0; k < n; k++) {
+                itemBoxes[order[k]] = bestAssigned[k];
+            }
+            return new PackingPlan(bestCount, planTypes, itemBoxes, order);
+        }
+
+        private static int[] searchOrder(PackingItems items) {
+            int n = items.size();
+            int[] order = items.orderByVolumeDescending();
+            // Insertion sort by shape within equal volumes; orders here are small
+            for (int i = 1; i < n; i++) {
+                int item = order[i];
+                int j = i - 1;
+                while (j >= 0 && items.volume(order[j]) == items.volume(item) && shapeAfter(items, order[j], item)) {
+                    order[j + 1] = order[j];
+                    j--;
+                }
+                order[j + 1] = item;
+            }
+            return order;
+        }
+
+        private static boolean shapeAfter(PackingItems items, int a, int b) {
+            if (items.small(a) != items.small(b)) {
+                return items.small(a) > items.small(b);
+            }
+            if (items.medium(a) != items.medium(b)) {
+                return items.medium(a) > items.medium(b);
+            }
+            return items.large(a) > items.large(b);
+        }
+    }
+}
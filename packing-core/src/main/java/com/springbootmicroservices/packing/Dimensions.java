@@ -0,0 +1,19 @@
+package com.springbootmicroservices.packing;
+
+// Helpers shared by the struct-of-arrays types
+final class Dimensions {
+
+    private Dimensions() {
+    }
+
+    // Writes a, b and c in ascending order into small[i], medium[i] and large[i]
+    static void sort(double a, double b, double c, double[] small, double[] medium, double[] large, int i) {
+        double t;
+        if (a > b) { t = a; a = b; b = t; }
+        if (b > c) { t = b; b = c; c = t; }
+        if (a > b) { t = a; a = b; b = t; }
+        small[i] = a;
+        medium[i] = b;
+        large[i] = c;
+    }
+}
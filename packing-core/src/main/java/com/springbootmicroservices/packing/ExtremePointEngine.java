@@ -0,0 +1,216 @@
+package com.springbootmicroservices.packing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Extreme-point 3D placement.
+ * Items are taken largest volume first and put into the first opened box where
+ * they physically fit: every box keeps its candidate corner points (the extreme
+ * points left behind by earlier placements), and an item is placed at the lowest
+ * point where one of its orientations stays inside the box without overlapping
+ * anything already there. Overlap tests and the projections of new corners go
+ * through a {@link SpatialGrid}, so they only look at the items near them.
+ */
+public final class ExtremePointEngine implements PackingEngine {
+
+    private static final double EPSILON = SpatialGrid.EPSILON;
+
+    private final int gridCells;
+
+    public ExtremePointEngine() {
+        this(8);
+    }
+
+    public ExtremePointEngine(int gridCells) {
+        this.gridCells = gridCells;
+    }
+
+    @Override
+    public String name() {
+        return PackingEngines.EXTREME_POINT;
+    }
+
+    @Override
+    public PackingPlan pack(PackingItems items, BoxTypes boxes) {
+        int n = items.size();
+        int[] order = items.orderByVolumeDescending();
+        int[] itemBoxes = new int[n];
+        Placements placements = new Placements(n);
+        List<OpenBox> open = new ArrayList<>();
+
+        for (int k = 0; k < n; k++) {
+            int item = order[k];
+            double volume = items.volume(item);
+
+            int target = -1;
+            for (int box = 0; box < open.size(); box++) {
+                OpenBox candidate = open.get(box);
+                if (volume <= candidate.remaining + EPSILON && candidate.place(items, item, placements)) {
+                    target = box;
+                    break;
+                }
+            }
+
+            if (target < 0) {
+                int type = FirstFitDecreasingKernel.smallestFittingType(items, item, boxes);
+                OpenBox box = new OpenBox(type, boxes, gridCells);
+                // The canonical fit guarantees an orientation that fits at the origin
+                if (!box.place(items, item, placements)) {
+                    throw new ItemDoesNotFitException(item);
+                }
+                open.add(box);
+                target = open.size() - 1;
+            }
+
+            itemBoxes[item] = target;
+        }
+
+        int[] boxTypes = new int[open.size()];
+        for (int box = 0; box < open.size(); box++) {
+            boxTypes[box] = open.get(box).type;
+        }
+        return new PackingPlan(open.size(), boxTypes, itemBoxes, order, placements);
+    }
+
+    private static final class OpenBox {
+
+        private final int type;
+        private final double sizeX;
+        private final double sizeY;
+        private final double sizeZ;
+        private final SpatialGrid grid;
+        private double remaining;
+
+        // Extreme points kept sorted by (z, y, x) so lower positions are tried first
+        private double[] px = new double[16];
+        private double[] py = new double[16];
+        private double[] pz = new double[16];
+        private int points;
+
+        OpenBox(int type, BoxTypes boxes, int gridCells) {
+            this.type = type;
+            this.sizeX = boxes.length(type);
+            this.sizeY = boxes.width(type);
+            this.sizeZ = boxes.height(type);
+            this.remaining = boxes.volume(type);
+            this.grid = new SpatialGrid(sizeX, sizeY, sizeZ, gridCells);
+            addPoint(0, 0, 0);
+        }
+
+        boolean place(PackingItems items, int item, Placements placements) {
+            double s = items.small(item);
+            double m = items.medium(item);
+            double l = items.large(item);
+            // Flat orientations first: the smallest side standing up
+            double[][] orientations = distinct(new double[][]{
+                    {l, m, s}, {m, l, s}, {l, s, m}, {s, l, m}, {m, s, l}, {s, m, l}
+            });
+
+            for (int p = 0; p < points; p++) {
+                double x = px[p];
+                double y = py[p];
+                double z = pz[p];
+                for (double[] d : orientations) {
+                    if (x + d[0] > sizeX + EPSILON || y + d[1] > sizeY + EPSILON || z + d[2] > sizeZ + EPSILON) {
+                        continue;
+                    }
+                    if (grid.overlaps(x, y, z, x + d[0], y + d[1], z + d[2])) {
+                        continue;
+                    }
+                    commit(p, x, y, z, d[0], d[1], d[2]);
+                    remaining -= items.volume(item);
+                    placements.set(item, x, y, z, d[0], d[1], d[2]);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // Cubes and square faces would otherwise be tried several times
+        private static double[][] distinct(double[][] orientations) {
+            int count = 0;
+            for (int o = 0; o < orientations.length; o++) {
+                boolean duplicate = false;
+                for (int previous = 0; previous < count && !duplicate; previous++) {
+                    duplicate = Arrays.equals(orientations[previous], orientations[o]);
+                }
+                if (!duplicate) {
+                    orientations[count++] = orientations[o];
+                }
+            }
+            return Arrays.copyOf(orientations, count);
+        }
+
+        private void commit(int point, double x, double y, double z, double dx, double dy, double dz) {
+            removePoint(point);
+            grid.add(x, y, z, x + dx, y + dy, z + dz);
+
+            // Points swallowed by the new item can never host anything again
+            for (int p = points - 1; p >= 0; p--) {
+                if (px[p] >= x - EPSILON && px[p] < x + dx - EPSILON
+                        && py[p] >= y - EPSILON && py[p] < y + dy - EPSILON
+                        && pz[p] >= z - EPSILON && pz[p] < z + dz - EPSILON) {
+                    removePoint(p);
+                }
+            }
+
+            addProjected(x + dx, y, z);
+            addProjected(x, y + dy, z);
+            addProjected(x, y, z + dz);
+        }
+
+        // Slides a new corner down and back until it rests on an item or a wall
+        private void addProjected(double x, double y, double z) {
+            if (x >= sizeX - EPSILON || y >= sizeY - EPSILON || z >= sizeZ - EPSILON) {
+                return;
+            }
+            z = grid.project(SpatialGrid.Z, x, y, z);
+            y = grid.project(SpatialGrid.Y, x, y, z);
+            x = grid.project(SpatialGrid.X, x, y, z);
+            addPoint(x, y, z);
+        }
+
+        private void addPoint(double x, double y, double z) {
+            int at = points;
+            for (int p = 0; p < points; p++) {
+                if (Math.abs(px[p] - x) < EPSILON && Math.abs(py[p] - y) < EPSILON && Math.abs(pz[p] - z) < EPSILON) {
+                    return;
+                }
+                if (at == points && before(x, y, z, p)) {
+                    at = p;
+                }
+            }
+            if (points == px.length) {
+                px = Arrays.copyOf(px, points * 2);
+                py = Arrays.copyOf(py, points * 2);
+                pz = Arrays.copyOf(pz, points * 2);
+            }
+            System.arraycopy(px, at, px, at + 1, points - at);
+            System.arraycopy(py, at, py, at + 1, points - at);
+            System.arraycopy(pz, at, pz, at + 1, points - at);
+            px[at] = x;
+            py[at] = y;
+            pz[at] = z;
+            points++;
+        }
+
+        private boolean before(double x, double y, double z, int p) {
+            if (z != pz[p]) {
+                return z < pz[p];
+            }
+            if (y != py[p]) {
+                return y < py[p];
+            }
+            return x < px[p];
+        }
+
+        private void removePoint(int p) {
+            System.arraycopy(px, p + 1, px, p, points - p - 1);
+            System.arraycopy(py, p + 1, py, p, points - p - 1);
+            System.arraycopy(pz, p + 1, pz, p, points - p - 1);
+            points--;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.springbootmicroservices.packing;
+
+/**
+ * First-Fit Decreasing over primitive arrays.
+ * Items are taken largest volume first; each goes into the first opened box with
+ * enough remaining capacity whose type holds it in some orientation, otherwise a
+ * new box of the smallest type that can hold it is opened. Every opened box keeps a running remaining capacity, so a
+ * fit check is a single comparison instead of re-summing the box contents. Once many
+ * boxes are open, the first such box is looked up in an {@link OpenBoxIndex}
+ * rather than by scanning them all.
+ */
+public final class FirstFitDecreasingKernel implements PackingEngine {
+
+    // Same rule, filling boxes a run of identical units at a time
+    private static final HeuristicPacker QUANTITIES = new HeuristicPacker(
+            PackingEngines.FIRST_FIT_DECREASING, HeuristicPacker.ItemOrder.VOLUME, HeuristicPacker.FitRule.FIRST);
+
+    @Override
+    public String name() {
+        return PackingEngines.FIRST_FIT_DECREASING;
+    }
+
+    @Override
+    public boolean packsQuantities() {
+        return true;
+    }
+
+    @Override
+    public PackingPlan pack(PackingItems items, BoxTypes boxes) {
+        if (items.hasQuantities()) {
+            return QUANTITIES.pack(items, boxes);
+        }
+        int n = items.size();
+        int[] order = items.orderByVolumeDescending();
+        int[] itemBoxes = new int[n];
+
+        // At most one box per item
+        int[] boxTypes = new int[n];
+        double[] remaining = new double[n];
+        int open = 0;
+        // Built once enough boxes are open for a scan to cost more than a tree walk
+        OpenBoxIndex index = null;
+
+        for (int k = 0; k < n; k++) {
+            int item = order[k];
+            double volume = items.volume(item);
+
+            int target = -1;
+            if (index != null) {
+                target = index.firstFit(volume, items.small(item), items.medium(item), items.large(item));
+            } else {
+                for (int box = 0; box < open; box++) {
+                    if (volume <= remaining[box] && boxes.fits(boxTypes[box], items, item)) {
+                        target = box;
+                        break;
+                    }
+                }
+            }
+
+            if (target < 0) {
+                int type = smallestFittingType(items, item, boxes);
+                target = open++;
+                boxTypes[target] = type;
+                remaining[target] = boxes.volume(type);
+                if (index != null) {
+                    index.open(boxes.small(type), boxes.medium(type), boxes.large(type), remaining[target]);
+                } else if (open > OpenBoxIndex.LINEAR_SCAN_LIMIT) {
+                    index = OpenBoxIndex.of(boxes, boxTypes, remaining, open, n);
+                }
+            }
+
+            remaining[target] -= volume;
+            if (index != null) {
+                index.take(target, volume);
+            }
+            itemBoxes[item] = target;
+        }
+
+        return new PackingPlan(open, boxTypes, itemBoxes, order);
+    }
+
+    // Smallest box type (first one on ties) that holds the item in some orientation
+    static int smallestFittingType(PackingItems items, int item, BoxTypes boxes) {
+        int type = boxes.smallestFitting(items, item);
+        if (type < 0) {
+            throw new ItemDoesNotFitException(item);
+        }
+        return type;
+    }
+}
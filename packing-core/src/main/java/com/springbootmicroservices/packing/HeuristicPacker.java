@@ -0,0 +1,153 @@
+package com.springbootmicroservices.packing;
+
+import java.util.Arrays;
+
+/**
+ * Volume based greedy packing with a configurable item order and box choice.
+ * Items are taken in the given order; each goes into an opened box with enough
+ * remaining capacity whose type holds it in some orientation, chosen by the fit
+ * rule, otherwise a new box of the smallest type that can hold it is opened.
+ * With {@link ItemOrder#VOLUME} and {@link FitRule#FIRST} this is plain FFD.
+ * Items with a quantity are placed a box at a time: a box chosen for a unit is
+ * filled with as many units as its remaining capacity holds, which is where the
+ * unit by unit loop would have put them too.
+ */
+public final class HeuristicPacker implements PackingEngine {
+
+    public enum ItemOrder {
+        // Largest volume first
+        VOLUME,
+        // Longest side first, then largest volume
+        LONGEST_EDGE
+    }
+
+    public enum FitRule {
+        // First opened box the item fits in
+        FIRST,
+        // Opened box left with the least capacity after taking the item
+        BEST,
+        // Opened box left with the most capacity after taking the item
+        WORST
+    }
+
+    private final String name;
+    private final ItemOrder itemOrder;
+    private final FitRule fitRule;
+
+    public HeuristicPacker(String name, ItemOrder itemOrder, FitRule fitRule) {
+        this.name = name;
+        this.itemOrder = itemOrder;
+        this.fitRule = fitRule;
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public boolean packsQuantities() {
+        // Identical units keep going to the box the previous one went to until it is full,
+        // except under worst fit, which spreads them one by one
+        return fitRule != FitRule.WORST;
+    }
+
+    @Override
+    public PackingPlan pack(PackingItems items, BoxTypes boxes) {
+        int n = items.size();
+        int[] order = itemOrder == ItemOrder.LONGEST_EDGE
+                ? items.orderByLongestEdgeDescending()
+                : items.orderByVolumeDescending();
+
+        // Grown on demand; a unit order never opens more boxes than it has items
+        int[] boxTypes = new int[Math.max(n, 1)];
+        double[] remaining = new double[Math.max(n, 1)];
+        int open = 0;
+        int[] allocationItems = new int[Math.max(n, 1)];
+        int[] allocationBoxes = new int[Math.max(n, 1)];
+        int[] allocationUnits = new int[Math.max(n, 1)];
+        int allocations = 0;
+        // First fit looks boxes up in a tournament tree once scanning them gets expensive
+        OpenBoxIndex index = null;
+
+        for (int k = 0; k < n; k++) {
+            int item = order[k];
+            double volume = items.volume(item);
+            int left = items.quantity(item);
+
+            while (left > 0) {
+                int target = index != null
+                        ? index.firstFit(volume, items.small(item), items.medium(item), items.large(item))
+                        : -1;
+                for (int box = 0; index == null && box < open; box++) {
+                    if (volume > remaining[box] || !boxes.fits(boxTypes[box], items, item)) {
+                        continue;
+                    }
+                    if (fitRule == FitRule.FIRST) {
+                        target = box;
+                        break;
+                    }
+                    if (target < 0
+                            || (fitRule == FitRule.BEST && remaining[box] < remaining[target])
+                            || (fitRule == FitRule.WORST && remaining[box] > remaining[target])) {
+                        target = box;
+                    }
+                }
+
+                if (target < 0) {
+                    int type = FirstFitDecreasingKernel.smallestFittingType(items, item, boxes);
+                    if (open == boxTypes.length) {
+                        boxTypes = Arrays.copyOf(boxTypes, open * 2);
+                        remaining = Arrays.copyOf(remaining, open * 2);
+                    }
+                    target = open++;
+                    boxTypes[target] = type;
+                    remaining[target] = boxes.volume(type);
+                    if (index != null) {
+                        index.open(boxes.small(type), boxes.medium(type), boxes.large(type), remaining[target]);
+                    } else if (fitRule == FitRule.FIRST && open > OpenBoxIndex.LINEAR_SCAN_LIMIT) {
+                        index = OpenBoxIndex.of(boxes, boxTypes, remaining, open, n);
+                    }
+                }
+
+                int take = fitRule == FitRule.WORST ? 1 : unitsFitting(remaining[target], volume, left);
+                remaining[target] -= take * volume;
+                if (index != null) {
+                    index.take(target, take * volume);
+                }
+                left -= take;
+
+                if (allocations > 0 && allocationItems[allocations - 1] == item && allocationBoxes[allocations - 1] == target) {
+                    allocationUnits[allocations - 1] += take;
+                    continue;
+                }
+                if (allocations == allocationItems.length) {
+                    allocationItems = Arrays.copyOf(allocationItems, allocations * 2);
+                    allocationBoxes = Arrays.copyOf(allocationBoxes, allocations * 2);
+                    allocationUnits = Arrays.copyOf(allocationUnits, allocations * 2);
+                }
+                allocationItems[allocations] = item;
+                allocationBoxes[allocations] = target;
+                allocationUnits[allocations] = take;
+                allocations++;
+            }
+        }
+
+        return PackingPlan.ofAllocations(open, Arrays.copyOf(boxTypes, open), n,
+                Arrays.copyOf(allocationItems, allocations),
+                Arrays.copyOf(allocationBoxes, allocations),
+                Arrays.copyOf(allocationUnits, allocations));
+    }
+
+    // How many of the remaining units fit by volume, at least one (the caller checked that one does)
+    static int unitsFitting(double remaining, double volume, int left) {
+        int units = (int) Math.min(left, Math.floor(remaining / volume));
+        while (units > 1 && units * volume > remaining) {
+            units--;
+        }
+        while (units < left && (units + 1) * volume <= remaining) {
+            units++;
+        }
+        return Math.max(units, 1);
+    }
+}
@@ -0,0 +1,108 @@
+package com.springbootmicroservices.packing;
+
+import java.util.Arrays;
+
+/**
+ * Adds items to boxes that are already packed. The items, largest volume first,
+ * go into the first existing box with enough spare volume whose type holds them,
+ * as many units at a time as fit; whatever is left is packed by the engine into
+ * new boxes. In the returned plan boxes 0..open-1 are the existing boxes, holding
+ * only the units added to them, and the new boxes follow.
+ */
+public final class IncrementalPacker {
+
+    private IncrementalPacker() {
+    }
+
+    public static PackingPlan pack(PackingEngine engine, PackingItems items, BoxTypes boxes,
+                                   int[] openTypes, double[] openRemaining) {
+        int n = items.size();
+        int open = openTypes.length;
+        double[] remaining = openRemaining.clone();
+        int[] left = new int[n];
+        int capacity = Math.max(n, 1);
+        int[] allocationItems = new int[capacity];
+        int[] allocationBoxes = new int[capacity];
+        int[] allocationUnits = new int[capacity];
+        int allocations = 0;
+
+        for (int item : items.orderByVolumeDescending()) {
+            double volume = items.volume(item);
+            left[item] = items.quantity(item);
+            for (int box = 0; box < open && left[item] > 0; box++) {
+                if (volume > remaining[box] || !boxes.fits(openTypes[box], items, item)) {
+                    continue;
+                }
+                int take = HeuristicPacker.unitsFitting(remaining[box], volume, left[item]);
+                remaining[box] -= take * volume;
+                left[item] -= take;
+                if (allocations == allocationItems.length) {
+                    allocationItems = Arrays.copyOf(allocationItems, allocations * 2);
+                    allocationBoxes = Arrays.copyOf(allocationBoxes, allocations * 2);
+                    allocationUnits = Arrays.copyOf(allocationUnits, allocations * 2);
+                }
+                allocationItems[allocations] = item;
+                allocationBoxes[allocations] = box;
+                allocationUnits[allocations] = take;
+                allocations++;
+            }
+        }
+
+        // Units no existing box could take, packed from scratch
+        int restCount = 0;
+        for (int item = 0; item < n; item++) {
+            if (left[item] > 0) {
+                restCount++;
+            }
+        }
+        int[] restItems = new int[restCount];
+        int[] restQuantities = new int[restCount];
+        for (int item = 0, r = 0; item < n; item++) {
+            if (left[item] > 0) {
+                restItems[r] = item;
+                restQuantities[r++] = left[item];
+            }
+        }
+        PackingItems rest = items.select(restItems, restQuantities);
+        boolean expand = rest.hasQuantities() && !engine.packsQuantities();
+        int[] unitRest = expand ? rest.unitItems() : null;
+        PackingPlan restPlan;
+        try {
+            restPlan = engine.pack(expand ? rest.expand() : rest, boxes);
+        } catch (ItemDoesNotFitException e) {
+            int r = expand ? unitRest[e.getItem()] : e.getItem();
+            throw new ItemDoesNotFitException(restItems[r]);
+        }
+
+        int boxCount = open + restPlan.boxCount();
+        int[] boxTypes = Arrays.copyOf(openTypes, boxCount);
+        int[][] contents = restPlan.contents();
+        int[][] units = restPlan.units();
+        for (int box = 0; box < restPlan.boxCount(); box++) {
+            boxTypes[open + box] = restPlan.boxType(box);
+            for (int k = 0; k < contents[box].length; k++) {
+                int item = restItems[expand ? unitRest[contents[box][k]] : contents[box][k]];
+                if (allocations > 0 && allocationItems[allocations - 1] == item
+                        && allocationBoxes[allocations - 1] == open + box) {
+                    allocationUnits[allocations - 1] += units[box][k];
+                    continue;
+                }
+                if (allocations == allocationItems.length) {
+                    allocationItems = Arrays.copyOf(allocationItems, allocations * 2);
+                    allocationBoxes = Arrays.copyOf(allocationBoxes, allocations * 2);
+                    allocationUnits = Arrays.copyOf(allocationUnits, allocations * 2);
+                }
+                allocationItems[allocations] = item;
+                allocationBoxes[allocations] = open + box;
+                allocationUnits[allocations] = units[box][k];
+                allocations++;
+            }
+        }
+
+        return PackingPlan.ofAllocations(boxCount, boxTypes, n,
+                Arrays.copyOf(allocationItems, allocations),
+                Arrays.copyOf(allocationBoxes, allocations),
+                Arrays.copyOf(allocationUnits, allocations))
+                .withStrategy(restPlan.strategy());
+    }
+}
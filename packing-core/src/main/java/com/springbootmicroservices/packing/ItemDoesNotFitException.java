@@ -0,0 +1,16 @@
+package com.springbootmicroservices.packing;
+
+// Thrown when no available box type can hold an item in any orientation
+public class ItemDoesNotFitException extends RuntimeException {
+
+    private final int item;
+
+    public ItemDoesNotFitException(int item) {
+        super("No box can fit item " + item);
+        this.item = item;
+    }
+
+    public int getItem() {
+        return item;
+    }
+}
@@ -0,0 +1,432 @@
+package com.springbootmicroservices.packing;
+
+import java.util.Arrays;
+
+/**
+ * Improves the plan of another engine for as long as a time budget allows.
+ * Every move keeps the plan valid and makes it strictly better (fewer boxes, or
+ * the same boxes with less volume), so the search can stop at any point:
+ * <ul>
+ *   <li>empty a box, least filled first, by moving its units into the tightest other boxes that hold them;</li>
+ *   <li>switch a box to a smaller type, moving out the units that no longer fit, if need be
+ *   into a box that hands back some of its smaller units in exchange.</li>
+ * </ul>
+ * Passes repeat until one changes nothing or the budget is used up. Plans with
+ * coordinates and plans proven optimal are returned as they are.
+ */
+public final class LocalSearchEngine implements PackingEngine {
+
+    // Told the size of the plan before and after every search and how long it took
+    public interface Listener {
+        Listener NONE = (boxesBefore, boxesAfter, volumeBefore, volumeAfter, nanos) -> { };
+
+        void searched(int boxesBefore, int boxesAfter, double volumeBefore, double volumeAfter, long nanos);
+    }
+
+    private final PackingEngine delegate;
+    private final long budgetNanos;
+    private final Listener listener;
+
+    public LocalSearchEngine(PackingEngine delegate, long budgetNanos, Listener listener) {
+        this.delegate = delegate;
+        this.budgetNanos = budgetNanos;
+        this.listener = listener;
+    }
+
+    @Override
+    public String name() {
+        return delegate.name();
+    }
+
+    @Override
+    public boolean packsQuantities() {
+        return delegate.packsQuantities();
+    }
+
+    @Override
+    public PackingPlan pack(PackingItems items, BoxTypes boxes) {
+        PackingPlan plan = delegate.pack(items, boxes);
+        if (plan.provenOptimal() || plan.placements() != null || plan.boxCount() == 0) {
+            return plan;
+        }
+
+        long start = System.nanoTime();
+        Search search = new Search(items, boxes, plan, start + budgetNanos);
+        search.run();
+        PackingPlan improved = search.improved ? search.plan(items.size()).withStrategy(plan.strategy()) : plan;
+        listener.searched(plan.boxCount(), improved.boxCount(), plan.totalBoxVolume(boxes),
+                improved.totalBoxVolume(boxes), System.nanoTime() - start);
+        return improved;
+    }
+
+    private static final class Search {
+
+        private final PackingItems items;
+        private final BoxTypes boxes;
+        private final long deadline;
+        // Box types by volume, smallest first
+        private final int[] types;
+
+        private final int boxCount;
+        private final int[] boxTypes;
+        private final double[] room;
+        private final boolean[] emptied;
+        // Items and units in every box; sizes[box] entries are used
+        private final int[][] boxItems;
+        private final int[][] boxUnits;
+        private final int[] sizes;
+
+        // Moves of the relocation being tried, undone when it fails
+        private int[] moveBoxes = new int[16];
+        private int[] moveItems = new int[16];
+        private int[] moveUnits = new int[16];
+        private int moves;
+
+        private boolean improved;
+
+        Search(PackingItems items, BoxTypes boxes, PackingPlan plan, long deadline) {
+            this.items = items;
+            this.boxes = boxes;
+            this.deadline = deadline;
+            this.types = typesByVolume(boxes);
+
+            this.boxCount = plan.boxCount();
+            this.boxTypes = new int[boxCount];
+            this.room = new double[boxCount];
+            this.emptied = new boolean[boxCount];
+            this.boxItems = plan.contents();
+            this.boxUnits = plan.units();
+            this.sizes = new int[boxCount];
+            for (int box = 0; box < boxCount; box++) {
+                boxTypes[box] = plan.boxType(box);
+                sizes[box] = boxItems[box].length;
+                room[box] = boxes.volume(boxTypes[box]) - used(box);
+            }
+        }
+
+        void run() {
+            boolean progress = true;
+            while (progress) {
+                progress = false;
+                for (int box : byFill()) {
+                    if (expired()) {
+                        return;
+                    }
+                    progress |= empty(box);
+                }
+                for (int box = 0; box < boxCount; box++) {
+                    if (expired()) {
+                        return;
+                    }
+                    progress |= !emptied[box] && shrink(box);
+                }
+            }
+        }
+
+        private boolean expired() {
+            return System.nanoTime() - deadline > 0;
+        }
+
+        // Moves every unit of the box elsewhere and drops the box
+        private boolean empty(int box) {
+            if (!relocate(box, boxUnits[box])) {
+                return false;
+            }
+            sizes[box] = 0;
+            emptied[box] = true;
+            improved = true;
+            return true;
+        }
+
+        // Switches the box to the smallest type it can get down to by moving some units out
+        private boolean shrink(int box) {
+            double capacity = boxes.volume(boxTypes[box]);
+            for (int type : types) {
+                if (boxes.volume(type) >= capacity) {
+                    return false;
+                }
+                if (shrinkTo(box, type)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean shrinkTo(int box, int type) {
+            int size = sizes[box];
+            double capacity = boxes.volume(type);
+            double staying = used(box);
+            int[] leaving = new int[size];
+            for (int k = 0; k < size; k++) {
+                if (!boxes.fits(type, items, boxItems[box][k])) {
+                    leaving[k] = boxUnits[box][k];
+                    staying -= leaving[k] * items.volume(boxItems[box][k]);
+                }
+            }
+            // Then the smallest units until the rest fits the volume
+            for (int k : byVolume(box)) {
+                if (staying <= capacity) {
+                    break;
+                }
+                double volume = items.volume(boxItems[box][k]);
+                int more = (int) Math.min(boxUnits[box][k] - leaving[k], Math.ceil((staying - capacity) / volume));
+                leaving[k] += more;
+                staying -= more * volume;
+            }
+            if (staying > capacity) {
+                return false;
+            }
+            // Moving everything out without taking anything back is emptying the box
+            if (staying > 0 && relocate(box, leaving)) {
+                remove(box, leaving);
+            } else if (!exchange(box, type, leaving, staying, capacity)) {
+                return false;
+            }
+            boxTypes[box] = type;
+            room[box] = capacity - used(box);
+            improved = true;
+            return true;
+        }
+
+        // Moves the leaving units into a single other box, making room there by taking back
+        // its smallest units that the new type holds
+        private boolean exchange(int box, int type, int[] leaving, double staying, double capacity) {
+            double out = 0;
+            for (int k = 0; k < sizes[box]; k++) {
+                out += leaving[k] * items.volume(boxItems[box][k]);
+            }
+            for (int other = 0; other < boxCount; other++) {
+                double needed = out - room[other];
+                if (other == box || emptied[other] || needed > capacity - staying || !holds(other, box, leaving)) {
+                    continue;
+                }
+                int[] back = new int[sizes[other]];
+                double freed = 0;
+                for (int k : byVolume(other)) {
+                    if (freed >= needed) {
+                        break;
+                    }
+                    int item = boxItems[other][k];
+                    if (boxes.fits(type, items, item)) {
+                        double volume = items.volume(item);
+                        back[k] = (int) Math.min(boxUnits[other][k], Math.ceil((needed - freed) / volume));
+                        freed += back[k] * volume;
+                    }
+                }
+                if (out > room[other] + freed || staying + freed > capacity || staying + freed <= 0) {
+                    continue;
+                }
+
+                int[][] moved = entries(box, leaving);
+                int[][] returned = entries(other, back);
+                remove(box, leaving);
+                remove(other, back);
+                for (int k = 0; k < moved[0].length; k++) {
+                    add(other, moved[0][k], moved[1][k]);
+                }
+                for (int k = 0; k < returned[0].length; k++) {
+                    add(box, returned[0][k], returned[1][k]);
+                }
+                room[other] = boxes.volume(boxTypes[other]) - used(other);
+                return true;
+            }
+            return false;
+        }
+
+        // True when the type of the other box holds every item with units leaving the box
+        private boolean holds(int other, int box, int[] leaving) {
+            for (int k = 0; k < sizes[box]; k++) {
+                if (leaving[k] > 0 && !boxes.fits(boxTypes[other], items, boxItems[box][k])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // Items and units of the given units per entry of the box, leaving out the empty ones
+        private int[][] entries(int box, int[] units) {
+            int count = 0;
+            for (int k = 0; k < sizes[box]; k++) {
+                count += units[k] > 0 ? 1 : 0;
+            }
+            int[][] entries = new int[2][count];
+            int e = 0;
+            for (int k = 0; k < sizes[box]; k++) {
+                if (units[k] > 0) {
+                    entries[0][e] = boxItems[box][k];
+                    entries[1][e] = units[k];
+                    e++;
+                }
+            }
+            return entries;
+        }
+
+        // Takes the given units per entry out of the box
+        private void remove(int box, int[] units) {
+            int kept = 0;
+            for (int k = 0; k < sizes[box]; k++) {
+                int left = boxUnits[box][k] - units[k];
+                if (left > 0) {
+                    boxItems[box][kept] = boxItems[box][k];
+                    boxUnits[box][kept] = left;
+                    kept++;
+                }
+            }
+            sizes[box] = kept;
+        }
+
+        // Moves the given units of every entry of the box into the tightest other boxes that hold them;
+        // all or nothing
+        private boolean relocate(int box, int[] leaving) {
+            moves = 0;
+            for (int k = 0; k < sizes[box]; k++) {
+                int item = boxItems[box][k];
+                double volume = items.volume(item);
+                int left = leaving[k];
+                while (left > 0) {
+                    int target = tightest(box, item, volume);
+                    if (target < 0) {
+                        undo();
+                        return false;
+                    }
+                    int units = HeuristicPacker.unitsFitting(room[target], volume, left);
+                    room[target] -= units * volume;
+                    record(target, item, units);
+                    left -= units;
+                }
+            }
+            for (int m = 0; m < moves; m++) {
+                add(moveBoxes[m], moveItems[m], moveUnits[m]);
+            }
+            return true;
+        }
+
+        // Other box with the least room that still holds a unit of the item, or -1
+        private int tightest(int box, int item, double volume) {
+            int best = -1;
+            for (int other = 0; other < boxCount; other++) {
+                if (other != box && !emptied[other] && volume <= room[other]
+                        && (best < 0 || room[other] < room[best]) && boxes.fits(boxTypes[other], items, item)) {
+                    best = other;
+                }
+            }
+            return best;
+        }
+
+        private void record(int box, int item, int units) {
+            if (moves == moveBoxes.length) {
+                moveBoxes = Arrays.copyOf(moveBoxes, moves * 2);
+                moveItems = Arrays.copyOf(moveItems, moves * 2);
+                moveUnits = Arrays.copyOf(moveUnits, moves * 2);
+            }
+            moveBoxes[moves] = box;
+            moveItems[moves] = item;
+            moveUnits[moves] = units;
+            moves++;
+        }
+
+        private void undo() {
+            for (int m = 0; m < moves; m++) {
+                room[moveBoxes[m]] += moveUnits[m] * items.volume(moveItems[m]);
+            }
+            moves = 0;
+        }
+
+        private void add(int box, int item, int units) {
+            int size = sizes[box];
+            for (int k = 0; k < size; k++) {
+                if (boxItems[box][k] == item) {
+                    boxUnits[box][k] += units;
+                    return;
+                }
+            }
+            if (size == boxItems[box].length) {
+                boxItems[box] = Arrays.copyOf(boxItems[box], Math.max(4, size * 2));
+                boxUnits[box] = Arrays.copyOf(boxUnits[box], Math.max(4, size * 2));
+            }
+            boxItems[box][size] = item;
+            boxUnits[box][size] = units;
+            sizes[box] = size + 1;
+        }
+
+        private double used(int box) {
+            double used = 0;
+            for (int k = 0; k < sizes[box]; k++) {
+                used += boxUnits[box][k] * items.volume(boxItems[box][k]);
+            }
+            return used;
+        }
+
+        // Boxes still in use, least filled first
+        private int[] byFill() {
+            double[] fill = new double[boxCount];
+            for (int box = 0; box < boxCount; box++) {
+                fill[box] = 1 - room[box] / boxes.volume(boxTypes[box]);
+            }
+            return Arrays.stream(indices(boxCount))
+                    .filter(box -> !emptied[box])
+                    .boxed()
+                    .sorted((a, b) -> Double.compare(fill[a], fill[b]))
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+        }
+
+        // Entries of the box, smallest item first
+        private int[] byVolume(int box) {
+            return Arrays.stream(indices(sizes[box]))
+                    .boxed()
+                    .sorted((a, b) -> Double.compare(items.volume(boxItems[box][a]), items.volume(boxItems[box][b])))
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+        }
+
+        // Boxes that are still in use, renumbered in their original order
+        PackingPlan plan(int itemCount) {
+            int count = 0;
+            int allocations = 0;
+            for (int box = 0; box < boxCount; box++) {
+                if (!emptied[box]) {
+                    count++;
+                    allocations += sizes[box];
+                }
+            }
+            int[] planTypes = new int[count];
+            int[] allocationItems = new int[allocations];
+            int[] allocationBoxes = new int[allocations];
+            int[] allocationUnits = new int[allocations];
+            int next = 0;
+            int a = 0;
+            for (int box = 0; box < boxCount; box++) {
+                if (emptied[box]) {
+                    continue;
+                }
+                planTypes[next] = boxTypes[box];
+                for (int k = 0; k < sizes[box]; k++) {
+                    allocationItems[a] = boxItems[box][k];
+                    allocationBoxes[a] = next;
+                    allocationUnits[a] = boxUnits[box][k];
+                    a++;
+                }
+                next++;
+            }
+            return PackingPlan.ofAllocations(count, planTypes, itemCount, allocationItems, allocationBoxes,
+                    allocationUnits);
+        }
+
+        private static int[] indices(int count) {
+            int[] indices = new int[count];
+            for (int i = 0; i < count; i++) {
+                indices[i] = i;
+            }
+            return indices;
+        }
+
+        private static int[] typesByVolume(BoxTypes boxes) {
+            return Arrays.stream(indices(boxes.size()))
+                    .boxed()
+                    .sorted((a, b) -> Double.compare(boxes.volume(a), boxes.volume(b)))
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+        }
+    }
+}
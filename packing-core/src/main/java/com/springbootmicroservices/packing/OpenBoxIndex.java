@@ -0,0 +1,184 @@
+package com.springbootmicroservices.packing;
+
+import java.util.Arrays;
+
+/**
+ * Index over the opened boxes of a packing run, in opening order. Boxes are grouped
+ * by their sorted dimensions, and every group keeps a tournament tree of remaining
+ * capacities over its boxes in opening order. A lookup checks the dimensions once
+ * per group, and in every group that holds the item in some orientation walks the
+ * tree straight down to its leftmost box with room. The first fit is the smallest
+ * opening index among those: O(t log m) per lookup for t box shapes holding the
+ * item, instead of a scan over all m opened boxes. A single capacity per node keeps
+ * the descent exact; no subtree is entered that has no box with room. Leaves
+ * compare exactly like the linear first-fit loop.
+ */
+final class OpenBoxIndex {
+
+    // Below this many opened boxes a plain scan is faster than walking the trees
+    static final int LINEAR_SCAN_LIMIT = 256;
+
+    private static final double NONE = Double.NEGATIVE_INFINITY;
+
+    private final int expectedBoxes;
+    private ShapeTree[] shapes = new ShapeTree[4];
+    private int shapeCount;
+    // Per opened box: its shape tree and its leaf in that tree
+    private int[] shapeOf;
+    private int[] slotOf;
+    private int size;
+
+    OpenBoxIndex(int expectedBoxes) {
+        this.expectedBoxes = Math.max(expectedBoxes, 8);
+        this.shapeOf = new int[this.expectedBoxes];
+        this.slotOf = new int[this.expectedBoxes];
+    }
+
+    // Index over boxes that are already open, capacities as they are now
+    static OpenBoxIndex of(BoxTypes boxes, int[] boxTypes, double[] remaining, int open, int expectedBoxes) {
+        OpenBoxIndex index = new OpenBoxIndex(Math.min(Math.max(2 * open, 8), expectedBoxes));
+        for (int box = 0; box < open; box++) {
+            int type = boxTypes[box];
+            index.open(boxes.small(type), boxes.medium(type), boxes.large(type), remaining[box]);
+        }
+        return index;
+    }
+
+    int size() {
+        return size;
+    }
+
+    double remaining(int box) {
+        return shapes[shapeOf[box]].remaining(slotOf[box]);
+    }
+
+    // Opens a box of the given sorted dimensions and capacity; returns its index
+    int open(double boxSmall, double boxMedium, double boxLarge, double capacity) {
+        if (size == shapeOf.length) {
+            shapeOf = Arrays.copyOf(shapeOf, size * 2);
+            slotOf = Arrays.copyOf(slotOf, size * 2);
+        }
+        int shape = shape(boxSmall, boxMedium, boxLarge);
+        int box = size++;
+        shapeOf[box] = shape;
+        slotOf[box] = shapes[shape].open(box, capacity);
+        return box;
+    }
+
+    // Takes the given volume out of a box
+    void take(int box, double volume) {
+        shapes[shapeOf[box]].take(slotOf[box], volume);
+    }
+
+    // First box with volume <= remaining capacity that holds an item of the given sorted dimensions, or -1
+    int firstFit(double volume, double itemSmall, double itemMedium, double itemLarge) {
+        int first = -1;
+        for (int s = 0; s < shapeCount; s++) {
+            ShapeTree tree = shapes[s];
+            if (itemSmall > tree.small || itemMedium > tree.medium || itemLarge > tree.large) {
+                continue;
+            }
+            int box = tree.firstWithRoom(volume);
+            if (box >= 0 && (first < 0 || box < first)) {
+                first = box;
+            }
+        }
+        return first;
+    }
+
+    // The group of boxes with these dimensions, created on its first box; catalogs hold a handful of shapes
+    private int shape(double boxSmall, double boxMedium, double boxLarge) {
+        for (int s = 0; s < shapeCount; s++) {
+            ShapeTree tree = shapes[s];
+            if (tree.small == boxSmall && tree.medium == boxMedium && tree.large == boxLarge) {
+                return s;
+            }
+        }
+        if (shapeCount == shapes.length) {
+            shapes = Arrays.copyOf(shapes, shapeCount * 2);
+        }
+        shapes[shapeCount] = new ShapeTree(boxSmall, boxMedium, boxLarge, expectedBoxes);
+        return shapeCount++;
+    }
+
+    // Max tree of remaining capacity over the boxes of one shape, in opening order
+    private static final class ShapeTree {
+
+        private final double small;
+        private final double medium;
+        private final double large;
+        // Number of leaves, a power of two; leaf i sits at node leaves + i
+        private int leaves;
+        private double[] capacity;
+        // Opening index of the box at each leaf
+        private int[] boxes;
+        private int size;
+
+        ShapeTree(double small, double medium, double large, int expectedBoxes) {
+            this.small = small;
+            this.medium = medium;
+            this.large = large;
+            allocate(Integer.highestOneBit(Math.max(Math.min(expectedBoxes, 64), 8) - 1) << 1);
+        }
+
+        double remaining(int slot) {
+            return capacity[leaves + slot];
+        }
+
+        int open(int box, double remaining) {
+            if (size == leaves) {
+                grow();
+            }
+            int slot = size++;
+            boxes[slot] = box;
+            int node = leaves + slot;
+            capacity[node] = remaining;
+            for (node >>= 1; node > 0; node >>= 1) {
+                capacity[node] = Math.max(capacity[2 * node], capacity[2 * node + 1]);
+            }
+            return slot;
+        }
+
+        void take(int slot, double volume) {
+            int node = leaves + slot;
+            capacity[node] -= volume;
+            for (node >>= 1; node > 0; node >>= 1) {
+                double updated = Math.max(capacity[2 * node], capacity[2 * node + 1]);
+                if (updated == capacity[node]) {
+                    break;
+                }
+                capacity[node] = updated;
+            }
+        }
+
+        // Leftmost box with room: one step per level, since a node has room exactly when a leaf below it has
+        int firstWithRoom(double volume) {
+            if (!(volume <= capacity[1])) {
+                return -1;
+            }
+            int node = 1;
+            while (node < leaves) {
+                node = volume <= capacity[2 * node] ? 2 * node : 2 * node + 1;
+            }
+            return boxes[node - leaves];
+        }
+
+        private void allocate(int leafCount) {
+            leaves = leafCount;
+            capacity = new double[2 * leafCount];
+            Arrays.fill(capacity, NONE);
+            boxes = boxes == null ? new int[leafCount] : Arrays.copyOf(boxes, leafCount);
+        }
+
+        private void grow() {
+            int oldLeaves = leaves;
+            double[] oldCapacity = capacity;
+
+            allocate(oldLeaves * 2);
+            System.arraycopy(oldCapacity, oldLeaves, capacity, leaves, size);
+            for (int node = leaves - 1; node > 0; node--) {
+                capacity[node] = Math.max(capacity[2 * node], capacity[2 * node + 1]);
+            }
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.springbootmicroservices.packing;
+
+// A packing algorithm working on the primitive item and box views
+public interface PackingEngine {
+
+    String name();
+
+    PackingPlan pack(PackingItems items, BoxTypes boxes);
+
+    // Whether items standing for several units can be passed as they are; other engines
+    // must be given PackingItems#expand() and only ever see single units
+    default boolean packsQuantities() {
+        return false;
+    }
+}
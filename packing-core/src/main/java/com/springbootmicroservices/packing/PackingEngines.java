@@ -0,0 +1,38 @@
+package com.springbootmicroservices.packing;
+
+// Resolves the packing engines that can be selected through configuration
+public final class PackingEngines {
+
+    public static final String FIRST_FIT_DECREASING = "ffd";
+    public static final String EXTREME_POINT = "extreme-point";
+    public static final String BEST_FIT_DECREASING = "bfd";
+    public static final String WORST_FIT_DECREASING = "wfd";
+    public static final String FIRST_FIT_LONGEST_EDGE = "ffd-longest-edge";
+    public static final String BEST_FIT_LONGEST_EDGE = "bfd-longest-edge";
+    // Exact search for small orders; wraps a heuristic, so it is assembled by the caller
+    public static final String EXACT = "exact";
+    // Races several of the engines above; needs an executor, so it is assembled by the caller
+    public static final String PORTFOLIO = "portfolio";
+
+    private PackingEngines() {
+    }
+
+    public static PackingEngine byName(String name) {
+        switch (name) {
+            case FIRST_FIT_DECREASING:
+                return new FirstFitDecreasingKernel();
+            case EXTREME_POINT:
+                return new ExtremePointEngine();
+            case BEST_FIT_DECREASING:
+                return new HeuristicPacker(name, HeuristicPacker.ItemOrder.VOLUME, HeuristicPacker.FitRule.BEST);
+            case WORST_FIT_DECREASING:
+                return new HeuristicPacker(name, HeuristicPacker.ItemOrder.VOLUME, HeuristicPacker.FitRule.WORST);
+            case FIRST_FIT_LONGEST_EDGE:
+                return new HeuristicPacker(name, HeuristicPacker.ItemOrder.LONGEST_EDGE, HeuristicPacker.FitRule.FIRST);
+            case BEST_FIT_LONGEST_EDGE:
+                return new HeuristicPacker(name, HeuristicPacker.ItemOrder.LONGEST_EDGE, HeuristicPacker.FitRule.BEST);
+            default:
+                throw new IllegalArgumentException("Unknown packing engine: " + name);
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.springbootmicroservices.packing;
+
+/**
+ * Struct-of-arrays view of the items of a single order.
+ * Dimensions are kept sorted (small <= medium <= large) so that an orientation
+ * check against a box becomes a single canonical comparison. An item can stand
+ * for several identical units; engines that do not pack quantities get the
+ * order through {@link #expand()}.
+ */
+public final class PackingItems {
+
+    private final int size;
+    private final double[] small;
+    private final double[] medium;
+    private final double[] large;
+    private final double[] volume;
+    private final int[] quantity;
+
+    public PackingItems(double[] heights, double[] widths, double[] lengths) {
+        this(heights, widths, lengths, null);
+    }
+
+    // Quantities may be null, meaning one unit per item
+    public PackingItems(double[] heights, double[] widths, double[] lengths, int[] quantities) {
+        if (heights.length != widths.length || heights.length != lengths.length
+                || (quantities != null && quantities.length != heights.length)) {
+            throw new IllegalArgumentException("Dimension arrays must have the same length");
+        }
+        this.size = heights.length;
+        this.small = new double[size];
+        this.medium = new double[size];
+        this.large = new double[size];
+        this.volume = new double[size];
+        this.quantity = new int[size];
+
+        for (int i = 0; i < size; i++) {
+            // Same multiplication order as Product#getVolume
+            volume[i] = heights[i] * widths[i] * lengths[i];
+            Dimensions.sort(heights[i], widths[i], lengths[i], small, medium, large, i);
+            quantity[i] = quantities != null ? quantities[i] : 1;
+            if (quantity[i] < 1) {
+                throw new IllegalArgumentException("Quantities must be positive");
+            }
+        }
+    }
+
+    private PackingItems(double[] small, double[] medium, double[] large, double[] volume, int[] quantity) {
+        this.size = small.length;
+        this.small = small;
+        this.medium = medium;
+        this.large = large;
+        this.volume = volume;
+        this.quantity = quantity;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public double small(int item) {
+        return small[item];
+    }
+
+    public double medium(int item) {
+        return medium[item];
+    }
+
+    public double large(int item) {
+        return large[item];
+    }
+
+    public double volume(int item) {
+        return volume[item];
+    }
+
+    // Number of identical units the item stands for
+    public int quantity(int item) {
+        return quantity[item];
+    }
+
+    // Total number of units over all items
+    public int units() {
+        int units = 0;
+        for (int i = 0; i < size; i++) {
+            units = Math.addExact(units, quantity[i]);
+        }
+        return units;
+    }
+
+    public boolean hasQuantities() {
+        for (int i = 0; i < size; i++) {
+            if (quantity[i] > 1) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // One item per unit, units of an item next to each other in item order
+    public PackingItems expand() {
+        int[] lines = unitItems();
+        double[] unitSmall = new double[lines.length];
+        double[] unitMedium = new double[lines.length];
+        double[] unitLarge = new double[lines.length];
+        double[] unitVolume = new double[lines.length];
+        int[] unitQuantity = new int[lines.length];
+        for (int u = 0; u < lines.length; u++) {
+            unitSmall[u] = small[lines[u]];
+            unitMedium[u] = medium[lines[u]];
+            unitLarge[u] = large[lines[u]];
+            unitVolume[u] = volume[lines[u]];
+            unitQuantity[u] = 1;
+        }
+        return new PackingItems(unitSmall, unitMedium, unitLarge, unitVolume, unitQuantity);
+    }
+
+    // The given items with the given quantities, in that order
+    PackingItems select(int[] items, int[] quantities) {
+        double[] selectedSmall = new double[items.length];
+        double[] selectedMedium = new double[items.length];
+        double[] selectedLarge = new double[items.length];
+        double[] selectedVolume = new double[items.length];
+        for (int k = 0; k < items.length; k++) {
+            selectedSmall[k] = small[items[k]];
+            selectedMedium[k] = medium[items[k]];
+            selectedLarge[k] = large[items[k]];
+            selectedVolume[k] = volume[items[k]];
+        }
+        return new PackingItems(selectedSmall, selectedMedium, selectedLarge, selectedVolume, quantities.clone());
+    }
+
+    // Item every unit of expand() belongs to
+    public int[] unitItems() {
+        int[] items = new int[units()];
+        int u = 0;
+        for (int i = 0; i < size; i++) {
+            for (int q = 0; q < quantity[i]; q++) {
+                items[u++] = i;
+            }
+        }
+        return items;
+    }
+
+    // Item indices ordered by volume, largest first. Stable, so items with the
+    // same volume keep their input order (as the stream sort used to do).
+    public int[] orderByVolumeDescending() {
+        return sortedOrder((a, b) -> Double.compare(volume[b], volume[a]));
+    }
+
+    // Item indices ordered by longest side, largest first; volume breaks ties
+    public int[] orderByLongestEdgeDescending() {
+        return sortedOrder((a, b) -> {
+            int c = Double.compare(large[b], large[a]);
+            return c != 0 ? c : Double.compare(volume[b], volume[a]);
+        });
+    }
+
+    // Item indices ordered by sorted dimensions, then quantity. Two orders hold the same
+    // multiset of items iff their items listed in this order have equal dimensions and quantities.
+    public int[] canonicalOrder() {
+        return sortedOrder((a, b) -> {
+            int c = Double.compare(small[a], small[b]);
+            if (c == 0) {
+                c = Double.compare(medium[a], medium[b]);
+            }
+            if (c == 0) {
+                c = Double.compare(large[a], large[b]);
+            }
+            return c != 0 ? c : Integer.compare(quantity[a], quantity[b]);
+        });
+    }
+
+    private int[] sortedOrder(ItemComparator comparator) {
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        mergeSort(order, new int[size], 0, size, comparator);
+        return order;
+    }
+
+    private static void mergeSort(int[] order, int[] buffer, int from, int to, ItemComparator comparator) {
+        if (to - from < 2) {
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        mergeSort(order, buffer, from, mid, comparator);
+        mergeSort(order, buffer, mid, to, comparator);
+
+        // Already in order, nothing to merge
+        if (comparator.compare(order[mid - 1], order[mid]) <= 0) {
+            return;
+        }
+
+        System.arraycopy(order, from, buffer, from, to - from);
+        int left = from;
+        int right = mid;
+        for (int k = from; k < to; k++) {
+            if (right >= to || (left < mid && comparator.compare(buffer[left], buffer[right]) <= 0)) {
+                order[k] = buffer[left++];
+            } else {
+                order[k] = buffer[right++];
+            }
+        }
+    }
+
+    private interface ItemComparator {
+        int compare(int a, int b);
+    }
+}
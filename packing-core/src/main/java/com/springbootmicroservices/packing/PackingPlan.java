@@ -0,0 +1,163 @@
+package com.springbootmicroservices.packing;
+
+import java.util.Arrays;
+
+/**
+ * Result of a packing run expressed purely as indices: which box type every
+ * opened box uses and how many units of which item went into every opened box.
+ * The plan is a list of allocations (item, box, units) in placement order; when
+ * every item is a single unit there is exactly one allocation per item.
+ */
+public final class PackingPlan {
+
+    private final int boxCount;
+    private final int[] boxTypes;
+    // First box every item went into
+    private final int[] itemBoxes;
+    private final int[] allocationItems;
+    private final int[] allocationBoxes;
+    private final int[] allocationUnits;
+    private final Placements placements;
+    private final String strategy;
+    private final boolean provenOptimal;
+
+    public PackingPlan(int boxCount, int[] boxTypes, int[] itemBoxes, int[] placementOrder) {
+        this(boxCount, boxTypes, itemBoxes, placementOrder, null);
+    }
+
+    public PackingPlan(int boxCount, int[] boxTypes, int[] itemBoxes, int[] placementOrder, Placements placements) {
+        this(boxCount, boxTypes, itemBoxes, placementOrder, boxesOf(itemBoxes, placementOrder), ones(placementOrder.length),
+                placements, null, false);
+    }
+
+    private PackingPlan(int boxCount, int[] boxTypes, int[] itemBoxes, int[] allocationItems, int[] allocationBoxes,
+                        int[] allocationUnits, Placements placements, String strategy, boolean provenOptimal) {
+        this.boxCount = boxCount;
+        this.boxTypes = boxTypes;
+        this.itemBoxes = itemBoxes;
+        this.allocationItems = allocationItems;
+        this.allocationBoxes = allocationBoxes;
+        this.allocationUnits = allocationUnits;
+        this.placements = placements;
+        this.strategy = strategy;
+        this.provenOptimal = provenOptimal;
+    }
+
+    // Plan for items with quantities; the allocation arrays are taken as they are, in placement order
+    public static PackingPlan ofAllocations(int boxCount, int[] boxTypes, int itemCount,
+                                           int[] allocationItems, int[] allocationBoxes, int[] allocationUnits) {
+        int[] itemBoxes = new int[itemCount];
+        Arrays.fill(itemBoxes, -1);
+        for (int a = 0; a < allocationItems.length; a++) {
+            if (itemBoxes[allocationItems[a]] < 0) {
+                itemBoxes[allocationItems[a]] = allocationBoxes[a];
+            }
+        }
+        return new PackingPlan(boxCount, boxTypes, itemBoxes, allocationItems, allocationBoxes, allocationUnits,
+                null, null, false);
+    }
+
+    public int boxCount() {
+        return boxCount;
+    }
+
+    // Box type index (into BoxTypes) of the given opened box
+    public int boxType(int box) {
+        return boxTypes[box];
+    }
+
+    // Opened box index the given item (input order) was placed in; the first one when its units were split
+    public int boxOf(int item) {
+        return itemBoxes[item];
+    }
+
+    // Sum of the volumes of all opened boxes
+    public double totalBoxVolume(BoxTypes boxes) {
+        double total = 0;
+        for (int box = 0; box < boxCount; box++) {
+            total += boxes.volume(boxTypes[box]);
+        }
+        return total;
+    }
+
+    // Name of the heuristic that produced the plan when an engine picks among several, otherwise null
+    public String strategy() {
+        return strategy;
+    }
+
+    public PackingPlan withStrategy(String strategy) {
+        return new PackingPlan(boxCount, boxTypes, itemBoxes, allocationItems, allocationBoxes, allocationUnits,
+                placements, strategy, provenOptimal);
+    }
+
+    // True when a complete search showed no plan uses fewer boxes, or as many boxes with less total volume
+    public boolean provenOptimal() {
+        return provenOptimal;
+    }
+
+    public PackingPlan asProvenOptimal() {
+        return new PackingPlan(boxCount, boxTypes, itemBoxes, allocationItems, allocationBoxes, allocationUnits,
+                placements, strategy, true);
+    }
+
+    // Item coordinates, or null when the engine only checks volumes and orientations
+    public Placements placements() {
+        return placements;
+    }
+
+    // Same plan with item i renumbered to mapping[i]; used to move a plan between two
+    // orderings of the same items
+    public PackingPlan permute(int[] mapping) {
+        int[] permutedBoxes = new int[itemBoxes.length];
+        for (int item = 0; item < itemBoxes.length; item++) {
+            permutedBoxes[mapping[item]] = itemBoxes[item];
+        }
+        int[] permutedItems = new int[allocationItems.length];
+        for (int a = 0; a < allocationItems.length; a++) {
+            permutedItems[a] = mapping[allocationItems[a]];
+        }
+        return new PackingPlan(boxCount, boxTypes, permutedBoxes, permutedItems, allocationBoxes, allocationUnits,
+                placements != null ? placements.permute(mapping) : null, strategy, provenOptimal);
+    }
+
+    // Item indices of every opened box, in the order they were placed
+    public int[][] contents() {
+        return perBox(allocationItems);
+    }
+
+    // Units of the matching contents() entry
+    public int[][] units() {
+        return perBox(allocationUnits);
+    }
+
+    private int[][] perBox(int[] values) {
+        int[] counts = new int[boxCount];
+        for (int box : allocationBoxes) {
+            counts[box]++;
+        }
+        int[][] result = new int[boxCount][];
+        for (int box = 0; box < boxCount; box++) {
+            result[box] = new int[counts[box]];
+            counts[box] = 0;
+        }
+        for (int a = 0; a < allocationBoxes.length; a++) {
+            int box = allocationBoxes[a];
+            result[box][counts[box]++] = values[a];
+        }
+        return result;
+    }
+
+    private static int[] boxesOf(int[] itemBoxes, int[] placementOrder) {
+        int[] boxes = new int[placementOrder.length];
+        for (int k = 0; k < placementOrder.length; k++) {
+            boxes[k] = itemBoxes[placementOrder[k]];
+        }
+        return boxes;
+    }
+
+    private static int[] ones(int length) {
+        int[] ones = new int[length];
+        Arrays.fill(ones, 1);
+        return ones;
+    }
+}
@@ -0,0 +1,319 @@
+package com.springbootmicroservices.packing;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Packs a single very large order in parallel. The items, largest volume first,
+ * are dealt round robin into partitions so that every partition gets a similar mix
+ * of sizes; the partitions are packed by the delegate on a fork-join pool and their
+ * boxes are concatenated in partition order. A consolidation pass then takes the
+ * boxes left less than {@link #CONSOLIDATION_FILL} full among the last
+ * {@link #CONSOLIDATION_TAIL} boxes of every partition, where a decreasing fit leaves
+ * its partly filled boxes, and repacks their contents together, keeping the repack
+ * only when it needs fewer boxes, or as many with less volume. The tail bounds the
+ * repack whatever the fill of the other boxes: with items large for the boxes nearly
+ * every box stays under the fill, and repacking them all would cost a serial pack
+ * of the whole order on top of the parallel one. The plan depends on the
+ * order alone, never on thread timing. Smaller orders go to the delegate unchanged.
+ */
+public final class PartitionedEngine implements PackingEngine {
+
+    // Boxes filled less than this are emptied and repacked together after the merge
+    static final double CONSOLIDATION_FILL = 0.9;
+    // Only this many of the last boxes of every partition can be emptied
+    static final int CONSOLIDATION_TAIL = 8;
+
+    private final PackingEngine delegate;
+    private final ForkJoinPool pool;
+    private final int minItems;
+    private final int partitions;
+
+    public PartitionedEngine(PackingEngine delegate, ForkJoinPool pool, int minItems, int partitions) {
+        this.delegate = delegate;
+        this.pool = pool;
+        this.minItems = minItems;
+        this.partitions = partitions;
+    }
+
+    @Override
+    public String name() {
+        return delegate.name();
+    }
+
+    @Override
+    public boolean packsQuantities() {
+        return delegate.packsQuantities();
+    }
+
+    @Override
+    public PackingPlan pack(PackingItems items, BoxTypes boxes) {
+        if (items.size() < minItems || partitions < 2) {
+            return delegate.pack(items, boxes);
+        }
+
+        Partitions split = new Partitions(delegate, items, boxes, deal(items, partitions));
+        pool.invoke(new PackRange(split, 0, partitions));
+        // Same failure whatever partition finished first
+        for (RuntimeException failure : split.failures) {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+        return consolidate(merge(items, split), items, boxes);
+    }
+
+    // Item indices of every partition: items by volume, largest first, dealt round robin
+    static int[][] deal(PackingItems items, int partitions) {
+        int n = items.size();
+        int[] order = items.orderByVolumeDescending();
+        int[][] members = new int[partitions][];
+        for (int p = 0; p < partitions; p++) {
+            members[p] = new int[(n - p + partitions - 1) / partitions];
+        }
+        for (int k = 0; k < n; k++) {
+            members[k % partitions][k / partitions] = order[k];
+        }
+        return members;
+    }
+
+    // Boxes of all partitions one after the other, allocations in input item indices
+    private Merged merge(PackingItems items, Partitions split) {
+        int boxCount = 0;
+        int allocationCount = 0;
+        boolean placed = true;
+        for (PackingPlan plan : split.plans) {
+            boxCount += plan.boxCount();
+            for (int[] contents : plan.contents()) {
+                allocationCount += contents.length;
+            }
+            placed &= plan.placements() != null;
+        }
+
+        Merged merged = new Merged(boxCount, allocationCount, partitions,
+                placed ? new Placements(items.size()) : null);
+        int offset = 0;
+        int a = 0;
+        for (int p = 0; p < partitions; p++) {
+            PackingPlan plan = split.plans[p];
+            int[] members = split.members[p];
+            int[][] contents = plan.contents();
+            int[][] units = plan.units();
+            for (int box = 0; box < plan.boxCount(); box++) {
+                int type = plan.boxType(box);
+                merged.boxTypes[offset + box] = type;
+                for (int k = 0; k < contents[box].length; k++) {
+                    int item = members[contents[box][k]];
+                    merged.items[a] = item;
+                    merged.boxes[a] = offset + box;
+                    merged.units[a] = units[box][k];
+                    merged.used[offset + box] += units[box][k] * items.volume(item);
+                    a++;
+                }
+            }
+            if (placed) {
+                copyPlacements(plan.placements(), members, merged.placements);
+            }
+            offset += plan.boxCount();
+            merged.partitionEnds[p] = offset;
+        }
+        return merged;
+    }
+
+    private PackingPlan consolidate(Merged merged, PackingItems items, BoxTypes boxes) {
+        int boxCount = merged.boxTypes.length;
+        boolean[] emptied = new boolean[boxCount];
+        int emptiedCount = 0;
+        double emptiedVolume = 0;
+        int start = 0;
+        for (int end : merged.partitionEnds) {
+            for (int box = Math.max(start, end - CONSOLIDATION_TAIL); box < end; box++) {
+                double capacity = boxes.volume(merged.boxTypes[box]);
+                if (merged.used[box] < CONSOLIDATION_FILL * capacity) {
+                    emptied[box] = true;
+                    emptiedCount++;
+                    emptiedVolume += capacity;
+                }
+            }
+            start = end;
+        }
+        if (emptiedCount < 2) {
+            return merged.plan(items.size(), new boolean[boxCount], 0, null, null);
+        }
+
+        int repackCount = 0;
+        for (int a = 0; a < merged.items.length; a++) {
+            if (emptied[merged.boxes[a]]) {
+                repackCount++;
+            }
+        }
+        int[] repackItems = new int[repackCount];
+        int[] repackUnits = new int[repackCount];
+        int r = 0;
+        for (int a = 0; a < merged.items.length; a++) {
+            if (emptied[merged.boxes[a]]) {
+                repackItems[r] = merged.items[a];
+                repackUnits[r] = merged.units[a];
+                r++;
+            }
+        }
+
+        PackingPlan repack = delegate.pack(items.select(repackItems, repackUnits), boxes);
+        double repackVolume = repack.totalBoxVolume(boxes);
+        boolean better = repack.boxCount() < emptiedCount
+                || (repack.boxCount() == emptiedCount && repackVolume < emptiedVolume);
+        return better
+                ? merged.plan(items.size(), emptied, emptiedCount, repack, repackItems)
+                : merged.plan(items.size(), new boolean[boxCount], 0, null, null);
+    }
+
+    private static void copyPlacements(Placements from, int[] items, Placements to) {
+        for (int k = 0; k < items.length; k++) {
+            to.set(items[k], from.x(k), from.y(k), from.z(k), from.length(k), from.width(k), from.height(k));
+        }
+    }
+
+    // Allocations of the merged partitions, before consolidation
+    private static final class Merged {
+
+        final int[] boxTypes;
+        final double[] used;
+        final int[] items;
+        final int[] boxes;
+        final int[] units;
+        // End of the boxes of every partition, exclusive
+        final int[] partitionEnds;
+        final Placements placements;
+
+        Merged(int boxCount, int allocationCount, int partitions, Placements placements) {
+            this.boxTypes = new int[boxCount];
+            this.used = new double[boxCount];
+            this.items = new int[allocationCount];
+            this.boxes = new int[allocationCount];
+            this.units = new int[allocationCount];
+            this.partitionEnds = new int[partitions];
+            this.placements = placements;
+        }
+
+        // Plan without the emptied boxes, followed by the boxes of the repack when there is one
+        PackingPlan plan(int itemCount, boolean[] emptied, int emptiedCount, PackingPlan repack, int[] repackItems) {
+            int kept = boxTypes.length - emptiedCount;
+            int planBoxes = kept + (repack != null ? repack.boxCount() : 0);
+            int[] planTypes = new int[planBoxes];
+            int[] renumbered = new int[boxTypes.length];
+            int next = 0;
+            for (int box = 0; box < boxTypes.length; box++) {
+                if (!emptied[box]) {
+                    renumbered[box] = next;
+                    planTypes[next++] = boxTypes[box];
+                }
+            }
+
+            int[][] repackContents = repack != null ? repack.contents() : new int[0][];
+            int[][] repackUnits = repack != null ? repack.units() : new int[0][];
+            int allocationCount = 0;
+            for (int a = 0; a < items.length; a++) {
+                if (!emptied[boxes[a]]) {
+                    allocationCount++;
+                }
+            }
+            for (int[] contents : repackContents) {
+                allocationCount += contents.length;
+            }
+
+            int[] planItems = new int[allocationCount];
+            int[] planBoxesOf = new int[allocationCount];
+            int[] planUnits = new int[allocationCount];
+            int p = 0;
+            for (int a = 0; a < items.length; a++) {
+                if (!emptied[boxes[a]]) {
+                    planItems[p] = items[a];
+                    planBoxesOf[p] = renumbered[boxes[a]];
+                    planUnits[p] = units[a];
+                    p++;
+                }
+            }
+            for (int box = 0; box < repackContents.length; box++) {
+                planTypes[kept + box] = repack.boxType(box);
+                for (int k = 0; k < repackContents[box].length; k++) {
+                    planItems[p] = repackItems[repackContents[box][k]];
+                    planBoxesOf[p] = kept + box;
+                    planUnits[p] = repackUnits[box][k];
+                    p++;
+                }
+            }
+
+            if (placements == null || (repack != null && repack.placements() == null)) {
+                return PackingPlan.ofAllocations(planBoxes, planTypes, itemCount, planItems, planBoxesOf, planUnits);
+            }
+            // Engines that place coordinates pack single units: one allocation per item
+            if (repack != null) {
+                copyPlacements(repack.placements(), repackItems, placements);
+            }
+            int[] itemBoxes = new int[itemCount];
+            for (int a = 0; a < planItems.length; a++) {
+                itemBoxes[planItems[a]] = planBoxesOf[a];
+            }
+            return new PackingPlan(planBoxes, planTypes, itemBoxes, planItems, placements);
+        }
+    }
+
+    // State shared by the fork-join tasks; every partition writes only its own slots
+    private static final class Partitions {
+
+        final PackingEngine engine;
+        final PackingItems items;
+        final BoxTypes boxes;
+        final int[][] members;
+        final PackingPlan[] plans;
+        final RuntimeException[] failures;
+
+        Partitions(PackingEngine engine, PackingItems items, BoxTypes boxes, int[][] members) {
+            this.engine = engine;
+            this.items = items;
+            this.boxes = boxes;
+            this.members = members;
+            this.plans = new PackingPlan[members.length];
+            this.failures = new RuntimeException[members.length];
+        }
+
+        void pack(int partition) {
+            int[] members = this.members[partition];
+            int[] quantities = new int[members.length];
+            for (int k = 0; k < members.length; k++) {
+                quantities[k] = items.quantity(members[k]);
+            }
+            try {
+                plans[partition] = engine.pack(items.select(members, quantities), boxes);
+            } catch (ItemDoesNotFitException e) {
+                failures[partition] = new ItemDoesNotFitException(members[e.getItem()]);
+            } catch (RuntimeException e) {
+                failures[partition] = e;
+            }
+        }
+    }
+
+    // Splits the partition range in halves until a single partition is left
+    private static final class PackRange extends RecursiveAction {
+
+        private final Partitions split;
+        private final int from;
+        private final int to;
+
+        PackRange(Partitions split, int from, int to) {
+            this.split = split;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                split.pack(from);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new PackRange(split, from, mid), new PackRange(split, mid, to));
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.springbootmicroservices.packing;
+
+/**
+ * Position and orientation of every item inside its box.
+ * The x axis runs along the box length, y along its width and z along its
+ * height; the extents are the item dimensions laid along those axes.
+ */
+public final class Placements {
+
+    private final double[] x;
+    private final double[] y;
+    private final double[] z;
+    private final double[] lengths;
+    private final double[] widths;
+    private final double[] heights;
+
+    public Placements(int size) {
+        this.x = new double[size];
+        this.y = new double[size];
+        this.z = new double[size];
+        this.lengths = new double[size];
+        this.widths = new double[size];
+        this.heights = new double[size];
+    }
+
+    void set(int item, double x, double y, double z, double length, double width, double height) {
+        this.x[item] = x;
+        this.y[item] = y;
+        this.z[item] = z;
+        this.lengths[item] = length;
+        this.widths[item] = width;
+        this.heights[item] = height;
+    }
+
+    // Same placements with item i renumbered to mapping[i]
+    public Placements permute(int[] mapping) {
+        Placements permuted = new Placements(x.length);
+        for (int item = 0; item < x.length; item++) {
+            permuted.set(mapping[item], x[item], y[item], z[item], lengths[item], widths[item], heights[item]);
+        }
+        return permuted;
+    }
+
+    public double x(int item) {
+        return x[item];
+    }
+
+    public double y(int item) {
+        return y[item];
+    }
+
+    public double z(int item) {
+        return z[item];
+    }
+
+    public double length(int item) {
+        return lengths[item];
+    }
+
+    public double width(int item) {
+        return widths[item];
+    }
+
+    public double height(int item) {
+        return heights[item];
+    }
+}
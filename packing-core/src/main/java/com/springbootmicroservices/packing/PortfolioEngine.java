@@ -0,0 +1,156 @@
+package com.springbootmicroservices.packing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs several packing strategies on the same order and keeps the best plan:
+ * fewest boxes, then least total box volume, then the earlier strategy.
+ * The first strategy runs on the calling thread and always completes, so there
+ * is a result even when the budget runs out; the others run on the executor and
+ * only take part if they finish within the budget. Late strategies are abandoned
+ * (they run to completion in the background, packing does not check for interrupts).
+ */
+public final class PortfolioEngine implements PackingEngine {
+
+    public static final String OUTCOME_WON = "won";
+    public static final String OUTCOME_LOST = "lost";
+    public static final String OUTCOME_TIMEOUT = "timeout";
+    public static final String OUTCOME_REJECTED = "rejected";
+    public static final String OUTCOME_FAILED = "failed";
+
+    // Told how every strategy of every run ended and how long it took
+    public interface Listener {
+        Listener NONE = (strategy, outcome, nanos) -> { };
+
+        void strategyFinished(String strategy, String outcome, long nanos);
+    }
+
+    private final List<PackingEngine> strategies;
+    private final Executor executor;
+    private final long budgetNanos;
+    private final Listener listener;
+
+    public PortfolioEngine(List<PackingEngine> strategies, Executor executor, long budgetNanos, Listener listener) {
+        if (strategies.isEmpty()) {
+            throw new IllegalArgumentException("A portfolio needs at least one strategy");
+        }
+        this.strategies = new ArrayList<>(strategies);
+        this.executor = executor;
+        this.budgetNanos = budgetNanos;
+        this.listener = listener;
+    }
+
+    @Override
+    public String name() {
+        return PackingEngines.PORTFOLIO;
+    }
+
+    @Override
+    public boolean packsQuantities() {
+        return strategies.stream().allMatch(PackingEngine::packsQuantities);
+    }
+
+    @Override
+    public PackingPlan pack(PackingItems items, BoxTypes boxes) {
+        long start = System.nanoTime();
+        int count = strategies.size();
+
+        List<CompletableFuture<Run>> futures = new ArrayList<>(count - 1);
+        String[] outcomes = new String[count];
+        for (int s = 1; s < count; s++) {
+            PackingEngine strategy = strategies.get(s);
+            try {
+                futures.add(CompletableFuture.supplyAsync(() -> run(strategy, items, boxes), executor));
+            } catch (RejectedExecutionException e) {
+                futures.add(null);
+                outcomes[s] = OUTCOME_REJECTED;
+            }
+        }
+
+        // The baseline decides whether the order can be packed at all, so its failure is the caller's
+        Run[] runs = new Run[count];
+        try {
+            runs[0] = run(strategies.get(0), items, boxes);
+        } catch (RuntimeException e) {
+            futures.stream().filter(f -> f != null).forEach(f -> f.cancel(true));
+            throw e;
+        }
+
+        long deadline = start + budgetNanos;
+        for (int s = 1; s < count; s++) {
+            CompletableFuture<Run> future = futures.get(s - 1);
+            if (future == null) {
+                continue;
+            }
+            try {
+                runs[s] = future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                outcomes[s] = OUTCOME_TIMEOUT;
+            } catch (ExecutionException | CancellationException e) {
+                outcomes[s] = OUTCOME_FAILED;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                outcomes[s] = OUTCOME_TIMEOUT;
+            }
+        }
+
+        int best = 0;
+        for (int s = 1; s < count; s++) {
+            if (runs[s] != null && better(runs[s].plan, runs[best].plan, boxes)) {
+                best = s;
+            }
+        }
+
+        long elapsed = System.nanoTime() - start;
+        for (int s = 0; s < count; s++) {
+            String name = strategies.get(s).name();
+            if (runs[s] != null) {
+                listener.strategyFinished(name, s == best ? OUTCOME_WON : OUTCOME_LOST, runs[s].nanos);
+            } else {
+                listener.strategyFinished(name, outcomes[s], elapsed);
+            }
+        }
+
+        PackingPlan plan = runs[best].plan.withStrategy(strategies.get(best).name());
+        // A strategy that proved its plan optimal also proves any plan that is just as good
+        for (int s = 0; s < count && !plan.provenOptimal(); s++) {
+            if (runs[s] != null && runs[s].plan.provenOptimal() && !better(plan, runs[s].plan, boxes)) {
+                plan = plan.asProvenOptimal();
+            }
+        }
+        return plan;
+    }
+
+    private static boolean better(PackingPlan candidate, PackingPlan incumbent, BoxTypes boxes) {
+        if (candidate.boxCount() != incumbent.boxCount()) {
+            return candidate.boxCount() < incumbent.boxCount();
+        }
+        return candidate.totalBoxVolume(boxes) < incumbent.totalBoxVolume(boxes);
+    }
+
+    private static Run run(PackingEngine strategy, PackingItems items, BoxTypes boxes) {
+        long start = System.nanoTime();
+        PackingPlan plan = strategy.pack(items, boxes);
+        return new Run(plan, System.nanoTime() - start);
+    }
+
+    private static final class Run {
+
+        private final PackingPlan plan;
+        private final long nanos;
+
+        Run(PackingPlan plan, long nanos) {
+            this.plan = plan;
+            this.nanos = nanos;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.springbootmicroservices.packing;
+
+import java.util.Arrays;
+
+/**
+ * Uniform grid over the inside of one box. Every placed cuboid is registered in
+ * the cells it covers, so an overlap query only looks at the cuboids sharing a
+ * cell with the candidate instead of everything already in the box, and a
+ * projection only looks at the cells along its ray.
+ */
+final class SpatialGrid {
+
+    static final double EPSILON = 1e-9;
+
+    static final int X = 0;
+    static final int Y = 1;
+    static final int Z = 2;
+
+    private final int cells;
+    private final double cellX;
+    private final double cellY;
+    private final double cellZ;
+    private final int[][] members;
+    private final int[] memberCounts;
+
+    private double[] x0 = new double[16];
+    private double[] y0 = new double[16];
+    private double[] z0 = new double[16];
+    private double[] x1 = new double[16];
+    private double[] y1 = new double[16];
+    private double[] z1 = new double[16];
+    private int[] visited = new int[16];
+    private int count;
+    private int query;
+
+    SpatialGrid(double sizeX, double sizeY, double sizeZ, int cells) {
+        this.cells = cells;
+        this.cellX = sizeX / cells;
+        this.cellY = sizeY / cells;
+        this.cellZ = sizeZ / cells;
+        this.members = new int[cells * cells * cells][];
+        this.memberCounts = new int[cells * cells * cells];
+    }
+
+    int size() {
+        return count;
+    }
+
+    double x0(int i) {
+        return x0[i];
+    }
+
+    double y0(int i) {
+        return y0[i];
+    }
+
+    double z0(int i) {
+        return z0[i];
+    }
+
+    double x1(int i) {
+        return x1[i];
+    }
+
+    double y1(int i) {
+        return y1[i];
+    }
+
+    double z1(int i) {
+        return z1[i];
+    }
+
+    void add(double ax, double ay, double az, double bx, double by, double bz) {
+        if (count == x0.length) {
+            int capacity = count * 2;
+            x0 = Arrays.copyOf(x0, capacity);
+            y0 = Arrays.copyOf(y0, capacity);
+            z0 = Arrays.copyOf(z0, capacity);
+            x1 = Arrays.copyOf(x1, capacity);
+            y1 = Arrays.copyOf(y1, capacity);
+            z1 = Arrays.copyOf(z1, capacity);
+            visited = Arrays.copyOf(visited, capacity);
+        }
+        int id = count++;
+        x0[id] = ax;
+        y0[id] = ay;
+        z0[id] = az;
+        x1[id] = bx;
+        y1[id] = by;
+        z1[id] = bz;
+
+        for (int i = cell(ax, cellX); i <= cell(bx - EPSILON, cellX); i++) {
+            for (int j = cell(ay, cellY); j <= cell(by - EPSILON, cellY); j++) {
+                for (int k = cell(az, cellZ); k <= cell(bz - EPSILON, cellZ); k++) {
+                    int c = (i * cells + j) * cells + k;
+                    int[] list = members[c];
+                    if (list == null) {
+                        list = members[c] = new int[4];
+                    } else if (memberCounts[c] == list.length) {
+                        list = members[c] = Arrays.copyOf(list, list.length * 2);
+                    }
+                    list[memberCounts[c]++] = id;
+                }
+            }
+        }
+    }
+
+    // True when the half-open cuboid [a, b) intersects anything already registered
+    boolean overlaps(double ax, double ay, double az, double bx, double by, double bz) {
+        query++;
+        for (int i = cell(ax, cellX); i <= cell(bx - EPSILON, cellX); i++) {
+            for (int j = cell(ay, cellY); j <= cell(by - EPSILON, cellY); j++) {
+                for (int k = cell(az, cellZ); k <= cell(bz - EPSILON, cellZ); k++) {
+                    int c = (i * cells + j) * cells + k;
+                    int[] list = members[c];
+                    for (int m = 0; m < memberCounts[c]; m++) {
+                        int id = list[m];
+                        if (visited[id] == query) {
+                            continue;
+                        }
+                        visited[id] = query;
+                        if (ax < x1[id] - EPSILON && x0[id] < bx - EPSILON
+                                && ay < y1[id] - EPSILON && y0[id] < by - EPSILON
+                                && az < z1[id] - EPSILON && z0[id] < bz - EPSILON) {
+                            return true;
+                        }
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Slides the point toward the wall along one axis: the highest face, at or below the
+     * point on that axis, of the cuboids whose cross-section holds the point, or 0 when
+     * nothing is in the way. Walks the cells of the ray from the point toward the wall
+     * and stops at the first layer nothing further down can beat.
+     */
+    double project(int axis, double x, double y, double z) {
+        query++;
+        int a = axis == X ? Y : X;
+        int b = axis == Z ? Y : Z;
+        double along = coordinate(axis, x, y, z);
+        double across = coordinate(a, x, y, z);
+        double other = coordinate(b, x, y, z);
+        double layer = cellSize(axis);
+        double best = 0;
+        // A point within EPSILON below a cell boundary still rests on cuboids starting at it
+        int fromA = cell(across - EPSILON, cellSize(a));
+        int toA = cell(across, cellSize(a));
+        int fromB = cell(other - EPSILON, cellSize(b));
+        int toB = cell(other, cellSize(b));
+        for (int r = cell(along, layer); r >= 0; r--) {
+            for (int ca = fromA; ca <= toA; ca++) {
+                for (int cb = fromB; cb <= toB; cb++) {
+                    int c = r * stride(axis) + ca * stride(a) + cb * stride(b);
+                    int[] list = members[c];
+                    for (int m = 0; m < memberCounts[c]; m++) {
+                        int id = list[m];
+                        if (visited[id] == query) {
+                            continue;
+                        }
+                        visited[id] = query;
+                        double face = high(axis, id);
+                        if (face <= along + EPSILON && face > best
+                                && across >= low(a, id) - EPSILON && across < high(a, id) - EPSILON
+                                && other >= low(b, id) - EPSILON && other < high(b, id) - EPSILON) {
+                            best = face;
+                        }
+                    }
+                }
+            }
+            // Cuboids only in lower layers end below this layer's floor
+            if (best >= r * layer + EPSILON) {
+                break;
+            }
+        }
+        return best;
+    }
+
+    private static double coordinate(int axis, double x, double y, double z) {
+        return axis == X ? x : (axis == Y ? y : z);
+    }
+
+    private double cellSize(int axis) {
+        return axis == X ? cellX : (axis == Y ? cellY : cellZ);
+    }
+
+    // Cells are laid out x-major, then y, then z
+    private int stride(int axis) {
+        return axis == X ? cells * cells : (axis == Y ? cells : 1);
+    }
+
+    private double low(int axis, int id) {
+        return axis == X ? x0[id] : (axis == Y ? y0[id] : z0[id]);
+    }
+
+    private double high(int axis, int id) {
+        return axis == X ? x1[id] : (axis == Y ? y1[id] : z1[id]);
+    }
+
+    private int cell(double value, double cellSize) {
+        int c = (int) (value / cellSize);
+        return c < 0 ? 0 : (c >= cells ? cells - 1 : c);
+    }
+}
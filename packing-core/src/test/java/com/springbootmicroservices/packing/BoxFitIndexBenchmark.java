@@ -0,0 +1,104 @@
+package com.springbootmicroservices.packing;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Run with: mvn test -Pbenchmark
+@Tag("benchmark")
+public class BoxFitIndexBenchmark {
+
+    private static final int QUERIES = 200_000;
+
+    @Test
+    void compareIndexWithLinearScan() {
+        for (int catalogSize : new int[]{3, 50, 300, 1000}) {
+            Random random = new Random(catalogSize);
+            double[] h = new double[catalogSize];
+            double[] w = new double[catalogSize];
+            double[] l = new double[catalogSize];
+            List<LegacyBox> legacyBoxes = new ArrayList<>();
+            for (int i = 0; i < catalogSize; i++) {
+                h[i] = 10 + random.nextInt(90);
+                w[i] = 10 + random.nextInt(90);
+                l[i] = 10 + random.nextInt(90);
+                legacyBoxes.add(new LegacyBox(i, h[i], w[i], l[i]));
+            }
+            BoxTypes boxes = new BoxTypes(h, w, l);
+
+            double[] ih = new double[QUERIES];
+            double[] iw = new double[QUERIES];
+            double[] il = new double[QUERIES];
+            for (int i = 0; i < QUERIES; i++) {
+                ih[i] = 1 + random.nextInt(60);
+                iw[i] = 1 + random.nextInt(60);
+                il[i] = 1 + random.nextInt(60);
+            }
+            PackingItems items = new PackingItems(ih, iw, il);
+
+            // Warm up both paths
+            long checksum = 0;
+            for (int i = 0; i < 20_000; i++) {
+                checksum += boxes.smallestFitting(items, i) + legacyScan(legacyBoxes, ih[i], iw[i], il[i]);
+            }
+
+            long start = System.nanoTime();
+            long indexSum = 0;
+            for (int i = 0; i < QUERIES; i++) {
+                indexSum += boxes.smallestFitting(items, i);
+            }
+            long indexNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            long legacySum = 0;
+            for (int i = 0; i < QUERIES; i++) {
+                legacySum += legacyScan(legacyBoxes, ih[i], iw[i], il[i]);
+            }
+            long legacyNanos = System.nanoTime() - start;
+
+            assertEquals(legacySum, indexSum);
+            System.out.printf("catalog=%4d  index=%7.1f ns/query  linear scan=%8.1f ns/query  speedup=%.1fx (%d)%n",
+                    catalogSize, indexNanos / (double) QUERIES, legacyNanos / (double) QUERIES,
+                    legacyNanos / (double) indexNanos, checksum & 1);
+        }
+    }
+
+    // The stream over six orientation predicates that findBestBoxForProduct used to run
+    private int legacyScan(List<LegacyBox> boxes, double height, double width, double length) {
+        return boxes.stream()
+                .filter(box ->
+                        (height <= box.height && width <= box.width && length <= box.length) ||
+                        (height <= box.height && length <= box.width && width <= box.length) ||
+                        (width <= box.height && height <= box.width && length <= box.length) ||
+                        (width <= box.height && length <= box.width && height <= box.length) ||
+                        (length <= box.height && height <= box.width && width <= box.length) ||
+                        (length <= box.height && width <= box.width && height <= box.length))
+                .min(Comparator.comparing(LegacyBox::getVolume))
+                .map(box -> box.type)
+                .orElse(-1);
+    }
+
+    private static final class LegacyBox {
+        private final int type;
+        private final double height;
+        private final double width;
+        private final double length;
+
+        LegacyBox(int type, double height, double width, double length) {
+            this.type = type;
+            this.height = height;
+            this.width = width;
+            this.length = length;
+        }
+
+        Double getVolume() {
+            return height * width * length;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.springbootmicroservices.packing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BoxFitIndexTest {
+
+    @Test
+    void shouldPruneBoxesThatCanNeverBeTheSmallestFit() {
+        // Caixa 2 rotated is the same box as Caixa 2, so only its first occurrence can win
+        BoxTypes boxes = new BoxTypes(
+                new double[]{30.0, 80.0, 50.0, 40.0},
+                new double[]{40.0, 50.0, 80.0, 80.0},
+                new double[]{80.0, 40.0, 60.0, 50.0});
+
+        BoxFitIndex index = new BoxFitIndex(boxes);
+        PackingItems item = new PackingItems(new double[]{45.0}, new double[]{35.0}, new double[]{70.0});
+
+        assertEquals(3, index.size());
+        assertEquals(1, index.smallestFitting(item, 0));
+    }
+
+    @Test
+    void shouldReturnMinusOneWhenNothingFits() {
+        BoxTypes boxes = new BoxTypes(new double[]{30.0}, new double[]{40.0}, new double[]{80.0});
+        PackingItems items = new PackingItems(new double[]{10.0, 1.0}, new double[]{10.0, 1.0}, new double[]{81.0, 0.5});
+
+        assertEquals(-1, boxes.smallestFitting(items, 0));
+        assertEquals(0, boxes.smallestFitting(items, 1));
+    }
+
+    @Test
+    void shouldAgreeWithLinearScanOnLargeCatalogs() {
+        Random random = new Random(3);
+        for (int run = 0; run < 20; run++) {
+            int types = 1 + random.nextInt(400);
+            double[] h = new double[types];
+            double[] w = new double[types];
+            double[] l = new double[types];
+            for (int i = 0; i < types; i++) {
+                h[i] = 10 + random.nextInt(20) * 5;
+                w[i] = 10 + random.nextInt(20) * 5;
+                l[i] = 10 + random.nextInt(20) * 5;
+            }
+            BoxTypes boxes = new BoxTypes(h, w, l);
+
+            int size = 2000;
+            double[] ih = new double[size];
+            double[] iw = new double[size];
+            double[] il = new double[size];
+            for (int i = 0; i < size; i++) {
+                ih[i] = 1 + random.nextInt(110);
+                iw[i] = 1 + random.nextInt(110);
+                il[i] = 1 + random.nextInt(110);
+            }
+            PackingItems items = new PackingItems(ih, iw, il);
+
+            for (int item = 0; item < size; item++) {
+                assertEquals(linearScan(boxes, items, item), boxes.smallestFitting(items, item));
+            }
+        }
+    }
+
+    private int linearScan(BoxTypes boxes, PackingItems items, int item) {
+        int best = -1;
+        for (int type = 0; type < boxes.size(); type++) {
+            if (boxes.fits(type, items, item) && (best < 0 || boxes.volume(type) < boxes.volume(best))) {
+                best = type;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,115 @@
+package com.springbootmicroservices.packing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BranchAndBoundEngineTest {
+
+    private final FirstFitDecreasingKernel ffd = new FirstFitDecreasingKernel();
+
+    // A 10 cm rod; items below are rods too, so this is one dimensional bin packing
+    private final BoxTypes rod = new BoxTypes(new double[]{1.0}, new double[]{1.0}, new double[]{10.0});
+
+    private final PackingItems rods = new PackingItems(
+            new double[]{1.0, 1.0, 1.0, 1.0, 1.0, 1.0},
+            new double[]{1.0, 1.0, 1.0, 1.0, 1.0, 1.0},
+            new double[]{4.0, 4.0, 3.0, 3.0, 3.0, 3.0});
+
+    @Test
+    void shouldBeatFirstFitDecreasingAndProveIt() {
+        // FFD fills {4, 4}, {3, 3, 3}, {3}; two boxes of {4, 3, 3} suffice
+        assertEquals(3, ffd.pack(rods, rod).boxCount());
+
+        PackingPlan plan = new BranchAndBoundEngine(ffd, 20, TimeUnit.SECONDS.toNanos(5)).pack(rods, rod);
+
+        assertEquals(2, plan.boxCount());
+        assertTrue(plan.provenOptimal());
+        assertFeasible(rods, rod, plan);
+    }
+
+    @Test
+    void shouldProveHeuristicPlanWhenNothingBeatsIt() {
+        PackingItems items = new PackingItems(new double[]{1.0, 1.0}, new double[]{1.0, 1.0}, new double[]{5.0, 5.0});
+
+        PackingPlan plan = new BranchAndBoundEngine(ffd, 20, TimeUnit.SECONDS.toNanos(5)).pack(items, rod);
+
+        assertEquals(1, plan.boxCount());
+        assertTrue(plan.provenOptimal());
+    }
+
+    @Test
+    void shouldReturnUnprovenPlanWhenDeadlinePasses() {
+        PackingPlan plan = new BranchAndBoundEngine(ffd, 20, 0).pack(rods, rod);
+
+        assertEquals(3, plan.boxCount());
+        assertFalse(plan.provenOptimal());
+    }
+
+    @Test
+    void shouldLeaveLargeOrdersToFallback() {
+        PackingPlan plan = new BranchAndBoundEngine(ffd, 5, TimeUnit.SECONDS.toNanos(5)).pack(rods, rod);
+
+        assertEquals(3, plan.boxCount());
+        assertFalse(plan.provenOptimal());
+    }
+
+    @Test
+    void shouldOpenLargerBoxWhenThatSavesBoxes() {
+        // FFD opens the smallest box for each item, two 6 boxes; a single 9 box holds both
+        BoxTypes catalog = new BoxTypes(new double[]{1.0, 1.0}, new double[]{1.0, 1.0}, new double[]{9.0, 6.0});
+        PackingItems items = new PackingItems(new double[]{1.0, 1.0}, new double[]{1.0, 1.0}, new double[]{6.0, 3.0});
+        BranchAndBoundEngine engine = new BranchAndBoundEngine(ffd, 20, TimeUnit.SECONDS.toNanos(5));
+
+        PackingPlan plan = engine.pack(items, catalog);
+
+        assertEquals(1, plan.boxCount());
+        assertEquals(0, plan.boxType(0));
+        assertTrue(plan.provenOptimal());
+    }
+
+    @Test
+    void shouldNeverUseMoreBoxesThanFirstFitDecreasing() {
+        BoxTypes catalog = new BoxTypes(
+                new double[]{30.0, 80.0, 50.0},
+                new double[]{40.0, 50.0, 80.0},
+                new double[]{80.0, 40.0, 60.0});
+        BranchAndBoundEngine engine = new BranchAndBoundEngine(ffd, 20, TimeUnit.SECONDS.toNanos(1));
+        Random random = new Random(11);
+
+        for (int run = 0; run < 50; run++) {
+            int size = 1 + random.nextInt(14);
+            double[] heights = new double[size];
+            double[] widths = new double[size];
+            double[] lengths = new double[size];
+            for (int i = 0; i < size; i++) {
+                heights[i] = 5 * (1 + random.nextInt(6));
+                widths[i] = 5 * (1 + random.nextInt(8));
+                lengths[i] = 5 * (1 + random.nextInt(10));
+            }
+            PackingItems items = new PackingItems(heights, widths, lengths);
+
+            PackingPlan heuristic = ffd.pack(items, catalog);
+            PackingPlan exact = engine.pack(items, catalog);
+
+            assertTrue(exact.boxCount() <= heuristic.boxCount());
+            assertTrue(exact.totalBoxVolume(catalog) <= heuristic.totalBoxVolume(catalog) || exact.boxCount() < heuristic.boxCount());
+            assertFeasible(items, catalog, exact);
+        }
+    }
+
+    private void assertFeasible(PackingItems items, BoxTypes boxes, PackingPlan plan) {
+        double[] used = new double[plan.boxCount()];
+        for (int item = 0; item < items.size(); item++) {
+            int box = plan.boxOf(item);
+            assertTrue(boxes.fits(plan.boxType(box), items, item));
+            used[box] += items.volume(item);
+        }
+        for (int box = 0; box < plan.boxCount(); box++) {
+            assertTrue(used[box] <= boxes.volume(plan.boxType(box)) + 1e-9);
+        }
+    }
+}
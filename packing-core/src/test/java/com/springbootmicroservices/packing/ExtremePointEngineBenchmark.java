@@ -0,0 +1,77 @@
+package com.springbootmicroservices.packing;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Run with: mvn test -Pbenchmark
+@Tag("benchmark")
+public class ExtremePointEngineBenchmark {
+
+    private static final int ORDER_SIZE = 200;
+    private static final int WARMUP = 200;
+    private static final int RUNS = 1000;
+
+    @Test
+    void extremePointShouldStayUnderTenMillisecondsAtP99() {
+        BoxTypes boxes = new BoxTypes(
+                new double[]{30.0, 80.0, 50.0},
+                new double[]{40.0, 50.0, 80.0},
+                new double[]{80.0, 40.0, 60.0});
+        Random random = new Random(1);
+        PackingEngine extremePoint = new ExtremePointEngine();
+        PackingEngine ffd = new FirstFitDecreasingKernel();
+
+        for (int i = 0; i < WARMUP; i++) {
+            PackingItems items = randomOrder(random);
+            extremePoint.pack(items, boxes);
+            ffd.pack(items, boxes);
+        }
+
+        long[] extremePointNanos = new long[RUNS];
+        long[] ffdNanos = new long[RUNS];
+        long extremePointBoxes = 0;
+        long ffdBoxes = 0;
+        for (int i = 0; i < RUNS; i++) {
+            PackingItems items = randomOrder(random);
+
+            long start = System.nanoTime();
+            extremePointBoxes += extremePoint.pack(items, boxes).boxCount();
+            extremePointNanos[i] = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            ffdBoxes += ffd.pack(items, boxes).boxCount();
+            ffdNanos[i] = System.nanoTime() - start;
+        }
+
+        double p99 = percentile(extremePointNanos, 0.99) / 1e6;
+        System.out.printf("extreme-point: p50=%.3fms p99=%.3fms avg boxes=%.1f%n",
+                percentile(extremePointNanos, 0.50) / 1e6, p99, extremePointBoxes / (double) RUNS);
+        System.out.printf("ffd:           p50=%.3fms p99=%.3fms avg boxes=%.1f (volume only)%n",
+                percentile(ffdNanos, 0.50) / 1e6, percentile(ffdNanos, 0.99) / 1e6, ffdBoxes / (double) RUNS);
+
+        assertTrue(p99 < 10.0, "p99 for " + ORDER_SIZE + " items was " + p99 + "ms");
+    }
+
+    private PackingItems randomOrder(Random random) {
+        double[] heights = new double[ORDER_SIZE];
+        double[] widths = new double[ORDER_SIZE];
+        double[] lengths = new double[ORDER_SIZE];
+        for (int i = 0; i < ORDER_SIZE; i++) {
+            heights[i] = 2 + random.nextInt(25);
+            widths[i] = 2 + random.nextInt(35);
+            lengths[i] = 2 + random.nextInt(50);
+        }
+        return new PackingItems(heights, widths, lengths);
+    }
+
+    private long percentile(long[] values, double p) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)];
+    }
+}
@@ -0,0 +1,94 @@
+package com.springbootmicroservices.packing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExtremePointEngineTest {
+
+    private static final double EPSILON = 1e-6;
+
+    private final ExtremePointEngine engine = new ExtremePointEngine();
+
+    private final BoxTypes boxes = new BoxTypes(
+            new double[]{30.0, 80.0, 50.0},
+            new double[]{40.0, 50.0, 80.0},
+            new double[]{80.0, 40.0, 60.0});
+
+    @Test
+    void shouldStackIdenticalItemsWithoutGaps() {
+        // Eight 15x20x40 blocks fill Caixa 1 (30x40x80) exactly
+        double[] heights = new double[8];
+        double[] widths = new double[8];
+        double[] lengths = new double[8];
+        for (int i = 0; i < 8; i++) {
+            heights[i] = 15.0;
+            widths[i] = 20.0;
+            lengths[i] = 40.0;
+        }
+
+        PackingPlan plan = engine.pack(new PackingItems(heights, widths, lengths), boxes);
+
+        assertEquals(1, plan.boxCount());
+        assertEquals(0, plan.boxType(0));
+        assertValidLayout(plan, new PackingItems(heights, widths, lengths));
+    }
+
+    @Test
+    void shouldOpenNewBoxWhenVolumeFitsButShapeDoesNot() {
+        // Together the two slabs are below Caixa 1's volume, but cannot sit side by side in it
+        PackingItems items = new PackingItems(
+                new double[]{25.0, 25.0},
+                new double[]{35.0, 35.0},
+                new double[]{50.0, 50.0});
+
+        PackingPlan plan = engine.pack(items, boxes);
+
+        assertEquals(2, plan.boxCount());
+        assertValidLayout(plan, items);
+    }
+
+    @Test
+    void shouldProduceNonOverlappingLayoutsInsideTheBoxes() {
+        Random random = new Random(7);
+        for (int run = 0; run < 50; run++) {
+            int size = 1 + random.nextInt(200);
+            double[] heights = new double[size];
+            double[] widths = new double[size];
+            double[] lengths = new double[size];
+            for (int i = 0; i < size; i++) {
+                heights[i] = 1 + random.nextInt(30);
+                widths[i] = 1 + random.nextInt(40);
+                lengths[i] = 1 + random.nextInt(60);
+            }
+            PackingItems items = new PackingItems(heights, widths, lengths);
+
+            assertValidLayout(engine.pack(items, boxes), items);
+        }
+    }
+
+    private void assertValidLayout(PackingPlan plan, PackingItems items) {
+        Placements p = plan.placements();
+        assertNotNull(p);
+        int[][] contents = plan.contents();
+        for (int box = 0; box < plan.boxCount(); box++) {
+            int type = plan.boxType(box);
+            for (int a : contents[box]) {
+                assertEquals(items.volume(a), p.length(a) * p.width(a) * p.height(a), EPSILON);
+                assertTrue(p.x(a) >= -EPSILON && p.x(a) + p.length(a) <= boxes.length(type) + EPSILON);
+                assertTrue(p.y(a) >= -EPSILON && p.y(a) + p.width(a) <= boxes.width(type) + EPSILON);
+                assertTrue(p.z(a) >= -EPSILON && p.z(a) + p.height(a) <= boxes.height(type) + EPSILON);
+                for (int b : contents[box]) {
+                    if (a < b) {
+                        boolean overlap = p.x(a) < p.x(b) + p.length(b) - EPSILON && p.x(b) < p.x(a) + p.length(a) - EPSILON
+                                && p.y(a) < p.y(b) + p.width(b) - EPSILON && p.y(b) < p.y(a) + p.width(a) - EPSILON
+                                && p.z(a) < p.z(b) + p.height(b) - EPSILON && p.z(b) < p.z(a) + p.height(a) - EPSILON;
+                        assertFalse(overlap, "Items " + a + " and " + b + " overlap");
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.springbootmicroservices.packing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FirstFitDecreasingKernelTest {
+
+    private final FirstFitDecreasingKernel kernel = new FirstFitDecreasingKernel();
+
+    private final BoxTypes boxes = new BoxTypes(
+            new double[]{30.0, 80.0, 50.0},
+            new double[]{40.0, 50.0, 80.0},
+            new double[]{80.0, 40.0, 60.0});
+
+    @Test
+    void shouldOpenSmallestFittingBoxAndReuseIt() {
+        PackingItems items = new PackingItems(
+                new double[]{10.0, 25.0},
+                new double[]{15.0, 30.0},
+                new double[]{20.0, 35.0});
+
+        PackingPlan plan = kernel.pack(items, boxes);
+
+        assertEquals(1, plan.boxCount());
+        assertEquals(0, plan.boxType(0), "Caixa 1 is the smallest box that holds both products");
+        assertArrayEquals(new int[]{1, 0}, plan.contents()[0], "Largest product is placed first");
+    }
+
+    @Test
+    void shouldNotPutItemInOpenedBoxItCannotFitInAnyOrientation() {
+        // The slab has room by volume in Caixa 1, but 45 cm does not fit its 30x40 cross section
+        PackingItems items = new PackingItems(
+                new double[]{30.0, 10.0},
+                new double[]{40.0, 45.0},
+                new double[]{40.0, 45.0});
+
+        PackingPlan plan = kernel.pack(items, boxes);
+
+        assertEquals(2, plan.boxCount());
+        assertEquals(0, plan.boxType(0));
+        assertEquals(1, plan.boxType(1));
+    }
+
+    @Test
+    void shouldRejectItemThatFitsNoBox() {
+        PackingItems items = new PackingItems(new double[]{90.0}, new double[]{90.0}, new double[]{90.0});
+
+        ItemDoesNotFitException exception = assertThrows(ItemDoesNotFitException.class, () -> kernel.pack(items, boxes));
+        assertEquals(0, exception.getItem());
+    }
+
+    @Test
+    void shouldMatchLegacyFirstFitDecreasing() {
+        Random random = new Random(42);
+        for (int run = 0; run < 200; run++) {
+            int size = 1 + random.nextInt(60);
+            double[] heights = new double[size];
+            double[] widths = new double[size];
+            double[] lengths = new double[size];
+            for (int i = 0; i < size; i++) {
+                // Coarse grid so that equal volumes (and tie ordering) actually happen
+                heights[i] = 5 * (1 + random.nextInt(6));
+                widths[i] = 5 * (1 + random.nextInt(8));
+                lengths[i] = 5 * (1 + random.nextInt(10));
+            }
+
+            PackingPlan plan = kernel.pack(new PackingItems(heights, widths, lengths), boxes);
+            List<int[]> expected = legacyPack(heights, widths, lengths);
+
+            assertEquals(expected.size(), plan.boxCount());
+            int[][] contents = plan.contents();
+            for (int box = 0; box < expected.size(); box++) {
+                assertEquals(expected.get(box)[0], plan.boxType(box));
+                assertArrayEquals(IntStream.of(expected.get(box)).skip(1).toArray(), contents[box]);
+            }
+        }
+    }
+
+    // Straight port of the stream based loop the kernel replaced; returns {type, items...} per box.
+    // The generated items fit every box type, so its volume-only check for opened boxes still agrees.
+    private List<int[]> legacyPack(double[] heights, double[] widths, double[] lengths) {
+        double[][] box = {{30.0, 40.0, 80.0}, {80.0, 50.0, 40.0}, {50.0, 80.0, 60.0}};
+        List<Integer> sorted = IntStream.range(0, heights.length).boxed()
+                .sorted(Comparator.comparing((Integer i) -> heights[i] * widths[i] * lengths[i]).reversed())
+                .collect(Collectors.toList());
+
+        List<List<Integer>> contents = new ArrayList<>();
+        List<Integer> types = new ArrayList<>();
+        for (int item : sorted) {
+            double volume = heights[item] * widths[item] * lengths[item];
+            boolean placed = false;
+            for (int b = 0; b < contents.size() && !placed; b++) {
+                double[] type = box[types.get(b)];
+                double current = contents.get(b).stream()
+                        .mapToDouble(i -> heights[i] * widths[i] * lengths[i])
+                        .sum();
+                if (current + volume <= type[0] * type[1] * type[2]) {
+                    contents.get(b).add(item);
+                    placed = true;
+                }
+            }
+            if (!placed) {
+                int best = -1;
+                for (int t = 0; t < box.length; t++) {
+                    if (fitsAnyOrientation(heights[item], widths[item], lengths[item], box[t])
+                            && (best < 0 || box[t][0] * box[t][1] * box[t][2] < box[best][0] * box[best][1] * box[best][2])) {
+                        best = t;
+                    }
+                }
+                List<Integer> newBox = new ArrayList<>();
+                newBox.add(item);
+                contents.add(newBox);
+                types.add(best);
+            }
+        }
+
+        List<int[]> result = new ArrayList<>();
+        for (int b = 0; b < contents.size(); b++) {
+            int[] row = new int[contents.get(b).size() + 1];
+            row[0] = types.get(b);
+            for (int i = 0; i < contents.get(b).size(); i++) {
+                row[i + 1] = contents.get(b).get(i);
+            }
+            result.add(row);
+        }
+        return result;
+    }
+
+    private boolean fitsAnyOrientation(double h, double w, double l, double[] box) {
+        return (h <= box[0] && w <= box[1] && l <= box[2]) ||
+                (h <= box[0] && l <= box[1] && w <= box[2]) ||
+                (w <= box[0] && h <= box[1] && l <= box[2]) ||
+                (w <= box[0] && l <= box[1] && h <= box[2]) ||
+                (l <= box[0] && h <= box[1] && w <= box[2]) ||
+                (l <= box[0] && w <= box[1] && h <= box[2]);
+    }
+}
@@ -0,0 +1,142 @@
+package com.springbootmicroservices.packing;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Run with: mvn test -Pbenchmark
+@Tag("benchmark")
+public class FirstFitScalingBenchmark {
+
+    private final BoxTypes boxes = new BoxTypes(
+            new double[]{30.0, 80.0, 50.0},
+            new double[]{40.0, 50.0, 80.0},
+            new double[]{80.0, 40.0, 60.0});
+
+    private final FirstFitDecreasingKernel kernel = new FirstFitDecreasingKernel();
+
+    @Test
+    void compareIndexedFirstFitWithLinearScan() {
+        // Get both paths compiled before the small sizes are timed
+        PackingItems warmUp = randomItems(5_000, new Random(1));
+        for (int i = 0; i < 20; i++) {
+            kernel.pack(warmUp, boxes);
+            linearFirstFit(warmUp);
+        }
+
+        for (int n : new int[]{10, 100, 1_000, 10_000, 100_000}) {
+            PackingItems items = randomItems(n, new Random(n));
+            int runs = Math.max(5, 1_000_000 / n);
+
+            long start = System.nanoTime();
+            PackingPlan indexed = null;
+            for (int i = 0; i < runs; i++) {
+                indexed = kernel.pack(items, boxes);
+            }
+            long indexedNanos = (System.nanoTime() - start) / runs;
+
+            start = System.nanoTime();
+            PackingPlan linear = null;
+            for (int i = 0; i < runs; i++) {
+                linear = linearFirstFit(items);
+            }
+            long linearNanos = (System.nanoTime() - start) / runs;
+
+            for (int item = 0; item < n; item++) {
+                assertEquals(linear.boxOf(item), indexed.boxOf(item));
+            }
+            System.out.printf("items=%7d boxes=%6d  index=%10.1f us  linear scan=%12.1f us  speedup=%.1fx%n",
+                    n, indexed.boxCount(), indexedNanos / 1000.0, linearNanos / 1000.0,
+                    linearNanos / (double) indexedNanos);
+        }
+    }
+
+    @Test
+    void compareLookupsOverAlternatingBoxShapes() {
+        // Small boxes with plenty of room alternate with long boxes that are nearly full, so per dimension and
+        // capacity some box below every node looks right; a long item with more volume than the long boxes have
+        // left fits none of them until the last box
+        for (int m : new int[]{1_000, 10_000, 100_000}) {
+            OpenBoxIndex index = new OpenBoxIndex(m);
+            double[][] open = new double[m][];
+            for (int box = 0; box < m - 1; box++) {
+                open[box] = box % 2 == 0 ? new double[]{12, 12, 12, 1700} : new double[]{5, 5, 100, 100};
+            }
+            open[m - 1] = new double[]{5, 5, 100, 2500};
+            for (double[] b : open) {
+                index.open(b[0], b[1], b[2], b[3]);
+            }
+            double volume = 1500;
+            int lookups = 2_000;
+
+            long start = System.nanoTime();
+            int indexed = -1;
+            for (int i = 0; i < lookups; i++) {
+                indexed = index.firstFit(volume, 5, 5, 60);
+            }
+            long indexedNanos = (System.nanoTime() - start) / lookups;
+
+            start = System.nanoTime();
+            int linear = -1;
+            for (int i = 0; i < lookups; i++) {
+                linear = -1;
+                for (int box = 0; box < m && linear < 0; box++) {
+                    double[] b = open[box];
+                    if (volume <= b[3] && 5 <= b[0] && 5 <= b[1] && 60 <= b[2]) {
+                        linear = box;
+                    }
+                }
+            }
+            long linearNanos = (System.nanoTime() - start) / lookups;
+
+            assertEquals(linear, indexed);
+            System.out.printf("alternating boxes=%6d  index=%8.3f us/lookup  linear scan=%10.3f us/lookup%n",
+                    m, indexedNanos / 1000.0, linearNanos / 1000.0);
+        }
+    }
+
+    private PackingItems randomItems(int n, Random random) {
+        double[] h = new double[n];
+        double[] w = new double[n];
+        double[] l = new double[n];
+        for (int i = 0; i < n; i++) {
+            h[i] = 5 + random.nextInt(25);
+            w[i] = 5 + random.nextInt(35);
+            l[i] = 5 + random.nextInt(45);
+        }
+        return new PackingItems(h, w, l);
+    }
+
+    // The kernel's loop before the index: scan every opened box
+    private PackingPlan linearFirstFit(PackingItems items) {
+        int n = items.size();
+        int[] order = items.orderByVolumeDescending();
+        int[] itemBoxes = new int[n];
+        int[] boxTypes = new int[n];
+        double[] remaining = new double[n];
+        int open = 0;
+        for (int k = 0; k < n; k++) {
+            int item = order[k];
+            double volume = items.volume(item);
+            int target = -1;
+            for (int box = 0; box < open; box++) {
+                if (volume <= remaining[box] && boxes.fits(boxTypes[box], items, item)) {
+                    target = box;
+                    break;
+                }
+            }
+            if (target < 0) {
+                int type = boxes.smallestFitting(items, item);
+                target = open++;
+                boxTypes[target] = type;
+                remaining[target] = boxes.volume(type);
+            }
+            remaining[target] -= volume;
+            itemBoxes[item] = target;
+        }
+        return new PackingPlan(open, boxTypes, itemBoxes, order);
+    }
+}
@@ -0,0 +1,133 @@
+package com.springbootmicroservices.packing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HeuristicPackerTest {
+
+    // A large and a half height box, so that the two opened boxes end up with different slack
+    private final BoxTypes boxes = new BoxTypes(
+            new double[]{10.0, 10.0},
+            new double[]{10.0, 10.0},
+            new double[]{10.0, 5.0});
+
+    // 600 opens the large box (400 left), 450 the small one (50 left), then the 40 rod has a choice
+    private final PackingItems items = new PackingItems(
+            new double[]{10.0, 10.0, 2.0},
+            new double[]{10.0, 10.0, 2.0},
+            new double[]{6.0, 4.5, 10.0});
+
+    @Test
+    void shouldPutItemIntoFirstOpenedBox() {
+        PackingPlan plan = PackingEngines.byName(PackingEngines.FIRST_FIT_LONGEST_EDGE).pack(items, boxes);
+
+        assertEquals(2, plan.boxCount());
+        assertEquals(0, plan.boxOf(2));
+    }
+
+    @Test
+    void shouldPutItemIntoTightestOpenedBox() {
+        PackingPlan plan = PackingEngines.byName(PackingEngines.BEST_FIT_DECREASING).pack(items, boxes);
+
+        assertEquals(2, plan.boxCount());
+        assertEquals(1, plan.boxType(1));
+        assertEquals(1, plan.boxOf(2));
+    }
+
+    @Test
+    void shouldPutItemIntoLoosestOpenedBox() {
+        PackingPlan plan = PackingEngines.byName(PackingEngines.WORST_FIT_DECREASING).pack(items, boxes);
+
+        assertEquals(0, plan.boxOf(2));
+    }
+
+    @Test
+    void shouldOrderByLongestEdge() {
+        PackingPlan plan = PackingEngines.byName(PackingEngines.FIRST_FIT_LONGEST_EDGE).pack(items, boxes);
+
+        // The rod and the 600 cube both have a 10 cm side; the larger volume goes first
+        assertArrayEquals(new int[]{0, 2}, plan.contents()[0]);
+    }
+
+    @Test
+    void shouldMatchFirstFitDecreasingKernel() {
+        BoxTypes catalog = new BoxTypes(
+                new double[]{30.0, 80.0, 50.0},
+                new double[]{40.0, 50.0, 80.0},
+                new double[]{80.0, 40.0, 60.0});
+        HeuristicPacker packer = new HeuristicPacker("ffd", HeuristicPacker.ItemOrder.VOLUME, HeuristicPacker.FitRule.FIRST);
+        FirstFitDecreasingKernel kernel = new FirstFitDecreasingKernel();
+        Random random = new Random(7);
+
+        for (int run = 0; run < 100; run++) {
+            int size = 1 + random.nextInt(50);
+            double[] heights = new double[size];
+            double[] widths = new double[size];
+            double[] lengths = new double[size];
+            for (int i = 0; i < size; i++) {
+                heights[i] = 5 * (1 + random.nextInt(6));
+                widths[i] = 5 * (1 + random.nextInt(8));
+                lengths[i] = 5 * (1 + random.nextInt(10));
+            }
+            PackingItems randomItems = new PackingItems(heights, widths, lengths);
+
+            PackingPlan expected = kernel.pack(randomItems, catalog);
+            PackingPlan actual = packer.pack(randomItems, catalog);
+
+            assertEquals(expected.boxCount(), actual.boxCount());
+            for (int item = 0; item < size; item++) {
+                assertEquals(expected.boxOf(item), actual.boxOf(item));
+            }
+        }
+    }
+
+    @Test
+    void shouldFillBoxesWithQuantitiesLikeUnitByUnit() {
+        BoxTypes catalog = new BoxTypes(
+                new double[]{30.0, 80.0, 50.0},
+                new double[]{40.0, 50.0, 80.0},
+                new double[]{80.0, 40.0, 60.0});
+        Random random = new Random(3);
+
+        for (HeuristicPacker.FitRule rule : new HeuristicPacker.FitRule[]{HeuristicPacker.FitRule.FIRST, HeuristicPacker.FitRule.BEST}) {
+            HeuristicPacker packer = new HeuristicPacker("test", HeuristicPacker.ItemOrder.VOLUME, rule);
+            for (int run = 0; run < 50; run++) {
+                int size = 1 + random.nextInt(6);
+                double[] heights = new double[size];
+                double[] widths = new double[size];
+                double[] lengths = new double[size];
+                int[] quantities = new int[size];
+                for (int i = 0; i < size; i++) {
+                    heights[i] = 5 * (1 + random.nextInt(6));
+                    widths[i] = 5 * (1 + random.nextInt(8));
+                    lengths[i] = 5 * (1 + random.nextInt(10));
+                    quantities[i] = 1 + random.nextInt(40);
+                }
+                PackingItems grouped = new PackingItems(heights, widths, lengths, quantities);
+
+                PackingPlan bulk = packer.pack(grouped, catalog);
+                PackingPlan unitByUnit = packer.pack(grouped.expand(), catalog);
+
+                assertEquals(unitByUnit.boxCount(), bulk.boxCount());
+                assertArrayEquals(unitsPerBox(unitByUnit, grouped.unitItems(), size), unitsPerBox(bulk, null, size));
+            }
+        }
+    }
+
+    // units[box][item] of a plan; unit plans are folded back onto their items through unitItems
+    private static int[][] unitsPerBox(PackingPlan plan, int[] unitItems, int items) {
+        int[][] result = new int[plan.boxCount()][items];
+        int[][] contents = plan.contents();
+        int[][] units = plan.units();
+        for (int box = 0; box < plan.boxCount(); box++) {
+            for (int k = 0; k < contents[box].length; k++) {
+                int item = unitItems != null ? unitItems[contents[box][k]] : contents[box][k];
+                result[box][item] += units[box][k];
+            }
+        }
+        return result;
+    }
+}
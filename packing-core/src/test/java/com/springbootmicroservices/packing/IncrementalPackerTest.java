@@ -0,0 +1,84 @@
+package com.springbootmicroservices.packing;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IncrementalPackerTest {
+
+    // A 1000 cm³ cube box and a half height one
+    private final BoxTypes boxes = new BoxTypes(
+            new double[]{10.0, 10.0},
+            new double[]{10.0, 10.0},
+            new double[]{10.0, 5.0});
+
+    private final PackingEngine engine = new FirstFitDecreasingKernel();
+
+    @Test
+    void shouldFillExistingBoxesBeforeOpeningNewOnes() {
+        // 5 cm cubes of 125 cm³: the open box has room for 3 of them
+        PackingItems items = new PackingItems(new double[]{5.0}, new double[]{5.0}, new double[]{5.0}, new int[]{5});
+
+        PackingPlan plan = IncrementalPacker.pack(engine, items, boxes, new int[]{0}, new double[]{400.0});
+
+        assertEquals(2, plan.boxCount());
+        assertEquals(0, plan.boxType(0));
+        assertArrayEquals(new int[]{0}, plan.contents()[0]);
+        assertArrayEquals(new int[]{3}, plan.units()[0]);
+        // The other 2 units (250 cm³) get the smaller new box
+        assertEquals(1, plan.boxType(1));
+        assertArrayEquals(new int[]{2}, plan.units()[1]);
+    }
+
+    @Test
+    void shouldSkipExistingBoxesTooSmallForTheItem() {
+        // The half height box has the volume but not the height for a 6 cm cube, the other one lacks the volume
+        PackingItems items = new PackingItems(new double[]{6.0}, new double[]{6.0}, new double[]{6.0});
+
+        PackingPlan plan = IncrementalPacker.pack(engine, items, boxes, new int[]{1, 0}, new double[]{500.0, 200.0});
+
+        assertEquals(3, plan.boxCount());
+        assertEquals(0, plan.contents()[0].length);
+        assertEquals(0, plan.contents()[1].length);
+        assertEquals(2, plan.boxOf(0));
+    }
+
+    @Test
+    void shouldLeaveUntouchedBoxesEmptyWhenEverythingFits() {
+        PackingItems items = new PackingItems(new double[]{2.0, 3.0}, new double[]{2.0, 3.0}, new double[]{2.0, 3.0});
+
+        PackingPlan plan = IncrementalPacker.pack(engine, items, boxes, new int[]{0, 0}, new double[]{5.0, 900.0});
+
+        assertEquals(2, plan.boxCount());
+        assertEquals(0, plan.contents()[0].length);
+        assertArrayEquals(new int[]{1, 0}, plan.contents()[1]);
+    }
+
+    @Test
+    void shouldMapUnitsBackForEnginesPackingSingleUnits() {
+        PackingEngine extremePoint = new ExtremePointEngine();
+        PackingItems items = new PackingItems(new double[]{10.0, 5.0}, new double[]{10.0, 5.0},
+                new double[]{10.0, 5.0}, new int[]{2, 1});
+
+        PackingPlan plan = IncrementalPacker.pack(extremePoint, items, boxes, new int[0], new double[0]);
+
+        int units = 0;
+        for (int box = 0; box < plan.boxCount(); box++) {
+            for (int k = 0; k < plan.contents()[box].length; k++) {
+                units += plan.units()[box][k];
+            }
+        }
+        assertEquals(3, units);
+        assertEquals(3, plan.boxCount());
+    }
+
+    @Test
+    void shouldReportTheItemThatDoesNotFit() {
+        PackingItems items = new PackingItems(new double[]{1.0, 20.0}, new double[]{1.0, 20.0},
+                new double[]{1.0, 20.0});
+
+        ItemDoesNotFitException e = assertThrows(ItemDoesNotFitException.class,
+                () -> IncrementalPacker.pack(engine, items, boxes, new int[]{0}, new double[]{0.5}));
+        assertEquals(1, e.getItem());
+    }
+}
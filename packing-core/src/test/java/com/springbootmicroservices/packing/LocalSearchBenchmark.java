@@ -0,0 +1,66 @@
+package com.springbootmicroservices.packing;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Run with: mvn test -Pbenchmark
+@Tag("benchmark")
+public class LocalSearchBenchmark {
+
+    private static final int ORDERS = 50;
+
+    private final BoxTypes boxes = new BoxTypes(
+            new double[]{30.0, 80.0, 50.0},
+            new double[]{40.0, 50.0, 80.0},
+            new double[]{80.0, 40.0, 60.0});
+
+    @Test
+    void reportImprovementWithinBudget() {
+        for (String name : new String[]{PackingEngines.FIRST_FIT_DECREASING, PackingEngines.WORST_FIT_DECREASING,
+                PackingEngines.FIRST_FIT_LONGEST_EDGE}) {
+            PackingEngine engine = PackingEngines.byName(name);
+            for (int n : new int[]{10, 50, 200, 1000}) {
+                for (long budgetMillis : new long[]{1, 20}) {
+                    long[] totals = new long[2];
+                    double[] volumes = new double[2];
+                    long nanos = 0;
+                    LocalSearchEngine.Listener listener = (boxesBefore, boxesAfter, volumeBefore, volumeAfter, took) -> {
+                        totals[0] += boxesBefore;
+                        totals[1] += boxesAfter;
+                        volumes[0] += volumeBefore;
+                        volumes[1] += volumeAfter;
+                    };
+                    LocalSearchEngine search = new LocalSearchEngine(engine,
+                            TimeUnit.MILLISECONDS.toNanos(budgetMillis), listener);
+                    for (int order = 0; order < ORDERS; order++) {
+                        PackingItems items = randomItems(n, order);
+                        long start = System.nanoTime();
+                        search.pack(items, boxes);
+                        nanos += System.nanoTime() - start;
+                    }
+                    System.out.printf("%-16s items=%6d budget=%4d ms  boxes %7d -> %7d (%5.2f%%)  volume %6.2f%% less"
+                                    + "  time per order=%7.1f ms%n",
+                            name, n, budgetMillis, totals[0], totals[1], 100.0 * (totals[0] - totals[1]) / totals[0],
+                            100.0 * (volumes[0] - volumes[1]) / volumes[0], nanos / 1e6 / ORDERS);
+                }
+            }
+        }
+    }
+
+    // Parcels up to 45 cm a side: the bulkier ones only fit the larger boxes
+    private PackingItems randomItems(int n, long seed) {
+        Random random = new Random(seed);
+        double[] h = new double[n];
+        double[] w = new double[n];
+        double[] l = new double[n];
+        for (int i = 0; i < n; i++) {
+            h[i] = 5 + random.nextInt(40);
+            w[i] = 5 + random.nextInt(40);
+            l[i] = 5 + random.nextInt(40);
+        }
+        return new PackingItems(h, w, l);
+    }
+}
@@ -0,0 +1,150 @@
+package com.springbootmicroservices.packing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LocalSearchEngineTest {
+
+    private static final long BUDGET = TimeUnit.SECONDS.toNanos(5);
+
+    // A large and a half height box
+    private final BoxTypes boxes = new BoxTypes(
+            new double[]{10.0, 10.0},
+            new double[]{10.0, 10.0},
+            new double[]{10.0, 5.0});
+
+    // 400, 200, 300 and 800 cm3 slabs
+    private final PackingItems items = new PackingItems(
+            new double[]{10.0, 10.0, 10.0, 10.0},
+            new double[]{10.0, 10.0, 10.0, 10.0},
+            new double[]{4.0, 2.0, 3.0, 8.0});
+
+    private final List<String> reports = new ArrayList<>();
+    private final LocalSearchEngine.Listener listener = (boxesBefore, boxesAfter, volumeBefore, volumeAfter, nanos) ->
+            reports.add(boxesBefore + "->" + boxesAfter + " " + (int) volumeBefore + "->" + (int) volumeAfter);
+
+    @Test
+    void shouldShrinkBoxToSmallestTypeHoldingItsItems() {
+        PackingPlan plan = new LocalSearchEngine(fixed(new int[]{0}, new int[]{0}), BUDGET, listener)
+                .pack(items, boxes);
+
+        assertEquals(1, plan.boxCount());
+        assertEquals(1, plan.boxType(0));
+        assertEquals(List.of("1->1 1000->500"), reports);
+    }
+
+    @Test
+    void shouldEmptyLeastFilledBox() {
+        // 400 + 200 in one large box, 300 alone in another
+        PackingPlan plan = new LocalSearchEngine(fixed(new int[]{0, 0}, new int[]{0, 0, 1}), BUDGET, listener)
+                .pack(items, boxes);
+
+        assertEquals(1, plan.boxCount());
+        assertArrayEquals(new int[]{0, 1, 2}, plan.contents()[0]);
+    }
+
+    @Test
+    void shouldMoveItemsOutToShrinkBox() {
+        // 400 + 200 in one large box, 800 in another: the 200 moves so the first box can be a small one
+        PackingPlan plan = new LocalSearchEngine(fixed(new int[]{0, 0}, new int[]{0, 0, -1, 1}), BUDGET, listener)
+                .pack(items, boxes);
+
+        assertEquals(2, plan.boxCount());
+        assertEquals(1, plan.boxType(0));
+        assertArrayEquals(new int[]{0}, plan.contents()[0]);
+        assertArrayEquals(new int[]{3, 1}, plan.contents()[1]);
+        assertEquals(List.of("2->2 2000->1500"), reports);
+    }
+
+    @Test
+    void shouldReturnEnginePlanWhenBudgetIsUsedUp() {
+        PackingEngine engine = fixed(new int[]{0, 0}, new int[]{0, 0, 1});
+        PackingPlan plan = new LocalSearchEngine(engine, 0, listener).pack(items, boxes);
+
+        assertEquals(2, plan.boxCount());
+        assertEquals(List.of("2->2 2000->2000"), reports);
+    }
+
+    @Test
+    void shouldKeepEveryUnitInBoxesThatHoldIt() {
+        BoxTypes catalog = new BoxTypes(
+                new double[]{30.0, 80.0, 50.0},
+                new double[]{40.0, 50.0, 80.0},
+                new double[]{80.0, 40.0, 60.0});
+        Random random = new Random(11);
+        int n = 2000;
+        double[] h = new double[n];
+        double[] w = new double[n];
+        double[] l = new double[n];
+        int[] quantities = new int[n];
+        for (int i = 0; i < n; i++) {
+            h[i] = 2 + random.nextInt(30);
+            w[i] = 2 + random.nextInt(30);
+            l[i] = 2 + random.nextInt(30);
+            quantities[i] = 1 + random.nextInt(3);
+        }
+        PackingItems order = new PackingItems(h, w, l, quantities);
+        PackingEngine engine = PackingEngines.byName(PackingEngines.WORST_FIT_DECREASING);
+
+        PackingPlan initial = engine.pack(order.expand(), catalog);
+        PackingPlan plan = new LocalSearchEngine(engine, BUDGET, listener).pack(order.expand(), catalog);
+
+        assertTrue(plan.boxCount() <= initial.boxCount());
+        assertTrue(plan.totalBoxVolume(catalog) <= initial.totalBoxVolume(catalog));
+        PackingItems units = order.expand();
+        int[] packed = new int[units.size()];
+        int[][] contents = plan.contents();
+        int[][] unitCounts = plan.units();
+        for (int box = 0; box < plan.boxCount(); box++) {
+            double used = 0;
+            for (int k = 0; k < contents[box].length; k++) {
+                int item = contents[box][k];
+                assertTrue(catalog.fits(plan.boxType(box), units, item));
+                packed[item] += unitCounts[box][k];
+                used += unitCounts[box][k] * units.volume(item);
+            }
+            assertTrue(used <= catalog.volume(plan.boxType(box)) + 1e-6);
+        }
+        for (int count : packed) {
+            assertEquals(1, count);
+        }
+    }
+
+    // Engine with a fixed plan: box types, and the box of every item (-1 for items left out of the test)
+    private PackingEngine fixed(int[] types, int[] itemBoxes) {
+        return new PackingEngine() {
+            @Override
+            public String name() {
+                return "fixed";
+            }
+
+            @Override
+            public PackingPlan pack(PackingItems items, BoxTypes boxes) {
+                int count = 0;
+                for (int box : itemBoxes) {
+                    count += box >= 0 ? 1 : 0;
+                }
+                int[] allocationItems = new int[count];
+                int[] allocationBoxes = new int[count];
+                int[] allocationUnits = new int[count];
+                int a = 0;
+                for (int item = 0; item < itemBoxes.length; item++) {
+                    if (itemBoxes[item] >= 0) {
+                        allocationItems[a] = item;
+                        allocationBoxes[a] = itemBoxes[item];
+                        allocationUnits[a] = 1;
+                        a++;
+                    }
+                }
+                return PackingPlan.ofAllocations(types.length, types, items.size(), allocationItems, allocationBoxes,
+                        allocationUnits);
+            }
+        };
+    }
+}
@@ -0,0 +1,55 @@
+package com.springbootmicroservices.packing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OpenBoxIndexTest {
+
+    @Test
+    void shouldFindSameBoxAsLinearScan() {
+        Random random = new Random(5);
+        OpenBoxIndex index = new OpenBoxIndex(1);
+        List<double[]> open = new ArrayList<>();
+
+        for (int step = 0; step < 20_000; step++) {
+            double s = 1 + random.nextInt(10);
+            double m = s + random.nextInt(10);
+            double l = m + random.nextInt(10);
+            double volume = 1 + random.nextInt(400);
+
+            int expected = -1;
+            for (int box = 0; box < open.size() && expected < 0; box++) {
+                double[] b = open.get(box);
+                if (volume <= b[3] && s <= b[0] && m <= b[1] && l <= b[2]) {
+                    expected = box;
+                }
+            }
+            assertEquals(expected, index.firstFit(volume, s, m, l));
+
+            if (expected < 0) {
+                // Boxes of varying shape, so that some have room but the wrong shape
+                double[] b = {5 + random.nextInt(10), 10 + random.nextInt(10), 15 + random.nextInt(15), 1000};
+                expected = index.open(b[0], b[1], b[2], b[3]);
+                assertEquals(open.size(), expected);
+                open.add(b);
+                if (!(volume <= b[3] && s <= b[0] && m <= b[1] && l <= b[2])) {
+                    continue;
+                }
+            }
+            open.get(expected)[3] -= volume;
+            index.take(expected, volume);
+            assertEquals(open.get(expected)[3], index.remaining(expected));
+        }
+        assertEquals(open.size(), index.size());
+    }
+
+    @Test
+    void shouldFindNothingWhenEmpty() {
+        assertEquals(-1, new OpenBoxIndex(0).firstFit(1.0, 1.0, 1.0, 1.0));
+    }
+}
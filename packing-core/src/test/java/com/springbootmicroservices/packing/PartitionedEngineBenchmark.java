@@ -0,0 +1,88 @@
+package com.springbootmicroservices.packing;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntFunction;
+
+// Run with: mvn test -Pbenchmark
+@Tag("benchmark")
+public class PartitionedEngineBenchmark {
+
+    private final BoxTypes boxes = new BoxTypes(
+            new double[]{30.0, 80.0, 50.0},
+            new double[]{40.0, 50.0, 80.0},
+            new double[]{80.0, 40.0, 60.0});
+
+    @Test
+    void compareWithSerialPacking() {
+        compare("small", n -> randomItems(n, n, 2, 25));
+    }
+
+    @Test
+    void compareWithSerialPackingOfLargeItems() {
+        // A box takes one to three of these, so nearly every box stays under the consolidation fill
+        compare("large", n -> randomItems(n, n, 20, 25));
+    }
+
+    private void compare(String mix, IntFunction<PackingItems> orders) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            for (String name : new String[]{PackingEngines.FIRST_FIT_DECREASING, PackingEngines.BEST_FIT_DECREASING}) {
+                PackingEngine serial = PackingEngines.byName(name);
+                for (int partitions : new int[]{2, 4, 8}) {
+                    PartitionedEngine partitioned = new PartitionedEngine(serial, pool, 0, partitions);
+                    for (int n : new int[]{20_000, 50_000, 100_000}) {
+                        PackingItems items = orders.apply(n);
+                        int runs = Math.max(3, 200_000 / n);
+
+                        // Warm up both paths
+                        serial.pack(items, boxes);
+                        partitioned.pack(items, boxes);
+
+                        long start = System.nanoTime();
+                        PackingPlan serialPlan = null;
+                        for (int i = 0; i < runs; i++) {
+                            serialPlan = serial.pack(items, boxes);
+                        }
+                        long serialNanos = (System.nanoTime() - start) / runs;
+
+                        start = System.nanoTime();
+                        PackingPlan partitionedPlan = null;
+                        for (int i = 0; i < runs; i++) {
+                            partitionedPlan = partitioned.pack(items, boxes);
+                        }
+                        long partitionedNanos = (System.nanoTime() - start) / runs;
+
+                        int overhead = partitionedPlan.boxCount() - serialPlan.boxCount();
+                        System.out.printf("%-5s %-4s threads=%2d partitions=%d items=%7d serial=%9.1f ms (%6d boxes)"
+                                        + "  partitioned=%9.1f ms (%6d boxes)  speedup=%.1fx  overhead=%+d boxes (%+.2f%%)%n",
+                                mix, name, threads, partitions, n, serialNanos / 1e6, serialPlan.boxCount(),
+                                partitionedNanos / 1e6, partitionedPlan.boxCount(),
+                                serialNanos / (double) partitionedNanos, overhead,
+                                100.0 * overhead / serialPlan.boxCount());
+                    }
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // Dimensions from min to min + spread - 1
+    private PackingItems randomItems(int n, long seed, int min, int spread) {
+        Random random = new Random(seed);
+        double[] h = new double[n];
+        double[] w = new double[n];
+        double[] l = new double[n];
+        for (int i = 0; i < n; i++) {
+            h[i] = min + random.nextInt(spread);
+            w[i] = min + random.nextInt(spread);
+            l[i] = min + random.nextInt(spread);
+        }
+        return new PackingItems(h, w, l);
+    }
+}
@@ -0,0 +1,175 @@
+package com.springbootmicroservices.packing;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PartitionedEngineTest {
+
+    private final BoxTypes boxes = new BoxTypes(
+            new double[]{30.0, 80.0, 50.0},
+            new double[]{40.0, 50.0, 80.0},
+            new double[]{80.0, 40.0, 60.0});
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void shouldPackSmallOrdersWithDelegate() {
+        PackingItems items = randomItems(500, null, 1);
+        FirstFitDecreasingKernel kernel = new FirstFitDecreasingKernel();
+
+        PackingPlan plan = new PartitionedEngine(kernel, pool, 1000, 4).pack(items, boxes);
+        PackingPlan serial = kernel.pack(items, boxes);
+
+        assertEquals(serial.boxCount(), plan.boxCount());
+        for (int item = 0; item < items.size(); item++) {
+            assertEquals(serial.boxOf(item), plan.boxOf(item));
+        }
+    }
+
+    @Test
+    void shouldPackEveryUnitOnceIntoBoxesThatHoldIt() {
+        int[] quantities = new int[3000];
+        Random random = new Random(7);
+        for (int i = 0; i < quantities.length; i++) {
+            quantities[i] = 1 + random.nextInt(3);
+        }
+        PackingItems items = randomItems(quantities.length, quantities, 2);
+
+        PackingPlan plan = new PartitionedEngine(new FirstFitDecreasingKernel(), pool, 1000, 4).pack(items, boxes);
+
+        int[] packed = new int[items.size()];
+        int[][] contents = plan.contents();
+        int[][] units = plan.units();
+        for (int box = 0; box < plan.boxCount(); box++) {
+            double used = 0;
+            for (int k = 0; k < contents[box].length; k++) {
+                int item = contents[box][k];
+                assertTrue(boxes.fits(plan.boxType(box), items, item));
+                packed[item] += units[box][k];
+                used += units[box][k] * items.volume(item);
+            }
+            assertTrue(used <= boxes.volume(plan.boxType(box)) + 1e-6);
+        }
+        assertArrayEquals(quantities, packed);
+    }
+
+    @Test
+    void shouldGiveSamePlanOnEveryRun() {
+        PackingItems items = randomItems(4000, null, 3);
+        PartitionedEngine engine = new PartitionedEngine(new FirstFitDecreasingKernel(), pool, 1000, 4);
+
+        PackingPlan first = engine.pack(items, boxes);
+        for (int run = 0; run < 5; run++) {
+            PackingPlan again = engine.pack(items, boxes);
+            assertEquals(first.boxCount(), again.boxCount());
+            assertArrayEquals(first.contents(), again.contents());
+        }
+    }
+
+    @Test
+    void shouldStayCloseToSerialBoxCount() {
+        PackingItems items = randomItems(20000, null, 4);
+        FirstFitDecreasingKernel kernel = new FirstFitDecreasingKernel();
+
+        int partitioned = new PartitionedEngine(kernel, pool, 1000, 4).pack(items, boxes).boxCount();
+        int serial = kernel.pack(items, boxes).boxCount();
+
+        assertTrue(partitioned <= serial + 4, partitioned + " boxes against " + serial + " serially");
+    }
+
+    @Test
+    void shouldKeepPlacementsOfPlacingEngines() {
+        PackingItems items = randomItems(400, null, 5);
+
+        PackingPlan plan = new PartitionedEngine(PackingEngines.byName(PackingEngines.EXTREME_POINT), pool, 100, 4)
+                .pack(items, boxes);
+
+        assertNotNull(plan.placements());
+        int[][] contents = plan.contents();
+        for (int box = 0; box < plan.boxCount(); box++) {
+            for (int item : contents[box]) {
+                Placements placements = plan.placements();
+                assertTrue(placements.x(item) + placements.length(item) <= boxes.length(plan.boxType(box)) + 1e-6);
+                assertEquals(items.volume(item),
+                        placements.length(item) * placements.width(item) * placements.height(item), 1e-6);
+            }
+        }
+    }
+
+    @Test
+    void shouldReportItemThatFitsNoBoxInInputIndices() {
+        double[] h = new double[2000];
+        double[] w = new double[2000];
+        double[] l = new double[2000];
+        Arrays.fill(h, 5.0);
+        Arrays.fill(w, 5.0);
+        Arrays.fill(l, 5.0);
+        l[1234] = 500.0;
+        PartitionedEngine engine = new PartitionedEngine(new FirstFitDecreasingKernel(), pool, 1000, 4);
+
+        ItemDoesNotFitException e = assertThrows(ItemDoesNotFitException.class,
+                () -> engine.pack(new PackingItems(h, w, l), boxes));
+        assertEquals(1234, e.getItem());
+    }
+
+    @Test
+    void shouldRepackOnlyTheTailsOfThePartitions() {
+        // Given: two items to a box and every box under the consolidation fill
+        BoxTypes oneBox = new BoxTypes(new double[]{30.0}, new double[]{40.0}, new double[]{80.0});
+        double[] h = new double[1000];
+        double[] w = new double[1000];
+        double[] l = new double[1000];
+        Arrays.fill(h, 30.0);
+        Arrays.fill(w, 40.0);
+        Arrays.fill(l, 35.0);
+        List<Integer> calls = Collections.synchronizedList(new ArrayList<>());
+        FirstFitDecreasingKernel kernel = new FirstFitDecreasingKernel();
+        PackingEngine counting = new PackingEngine() {
+            @Override
+            public String name() {
+                return kernel.name();
+            }
+
+            @Override
+            public PackingPlan pack(PackingItems items, BoxTypes boxes) {
+                calls.add(items.size());
+                return kernel.pack(items, boxes);
+            }
+        };
+
+        // When
+        PackingPlan plan = new PartitionedEngine(counting, pool, 100, 4).pack(new PackingItems(h, w, l), oneBox);
+
+        // Then: four partitions, then a repack of the last boxes of each, not of all 500
+        assertEquals(500, plan.boxCount());
+        assertEquals(5, calls.size());
+        assertTrue(calls.get(4) <= 4 * PartitionedEngine.CONSOLIDATION_TAIL * 2, calls.get(4) + " items repacked");
+    }
+
+    private PackingItems randomItems(int n, int[] quantities, long seed) {
+        Random random = new Random(seed);
+        double[] h = new double[n];
+        double[] w = new double[n];
+        double[] l = new double[n];
+        for (int i = 0; i < n; i++) {
+            h[i] = 2 + random.nextInt(25);
+            w[i] = 2 + random.nextInt(25);
+            l[i] = 2 + random.nextInt(25);
+        }
+        return new PackingItems(h, w, l, quantities);
+    }
+}
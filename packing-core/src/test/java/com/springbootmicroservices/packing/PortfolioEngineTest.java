@@ -0,0 +1,125 @@
+package com.springbootmicroservices.packing;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PortfolioEngineTest {
+
+    private final BoxTypes boxes = new BoxTypes(
+            new double[]{10.0, 10.0},
+            new double[]{10.0, 10.0},
+            new double[]{10.0, 5.0});
+
+    private final PackingItems items = new PackingItems(
+            new double[]{1.0, 1.0},
+            new double[]{1.0, 1.0},
+            new double[]{1.0, 1.0});
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final List<String> outcomes = new ArrayList<>();
+    private final PortfolioEngine.Listener listener = (strategy, outcome, nanos) -> {
+        synchronized (outcomes) {
+            outcomes.add(strategy + ":" + outcome);
+        }
+    };
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    void shouldKeepFewestBoxesThenLeastVolume() {
+        PortfolioEngine engine = new PortfolioEngine(Arrays.asList(
+                fixed("two-large", 0, 0),
+                fixed("two-small", 1, 1),
+                fixed("one-large", 0),
+                fixed("one-small", 1)), executor, TimeUnit.SECONDS.toNanos(5), listener);
+
+        PackingPlan plan = engine.pack(items, boxes);
+
+        assertEquals("one-small", plan.strategy());
+        assertEquals(1, plan.boxCount());
+        assertEquals(1, plan.boxType(0));
+        assertTrue(outcomes.contains("one-small:" + PortfolioEngine.OUTCOME_WON));
+        assertTrue(outcomes.contains("one-large:" + PortfolioEngine.OUTCOME_LOST));
+        assertEquals(4, outcomes.size());
+    }
+
+    @Test
+    void shouldKeepEarlierStrategyOnTies() {
+        PortfolioEngine engine = new PortfolioEngine(Arrays.asList(
+                fixed("first", 1), fixed("second", 1)), executor, TimeUnit.SECONDS.toNanos(5), listener);
+
+        assertEquals("first", engine.pack(items, boxes).strategy());
+    }
+
+    @Test
+    void shouldFallBackToBaselineWhenOthersMissTheBudget() {
+        PackingEngine slow = new PackingEngine() {
+            @Override
+            public String name() {
+                return "slow";
+            }
+
+            @Override
+            public PackingPlan pack(PackingItems items, BoxTypes boxes) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return plan(1);
+            }
+        };
+        PortfolioEngine engine = new PortfolioEngine(Arrays.asList(fixed("baseline", 0, 0), slow),
+                executor, TimeUnit.MILLISECONDS.toNanos(20), listener);
+
+        PackingPlan plan = engine.pack(items, boxes);
+
+        assertEquals("baseline", plan.strategy());
+        assertEquals(2, plan.boxCount());
+        assertTrue(outcomes.contains("slow:" + PortfolioEngine.OUTCOME_TIMEOUT));
+    }
+
+    @Test
+    void shouldPropagateBaselineFailure() {
+        PortfolioEngine engine = new PortfolioEngine(Arrays.asList(
+                PackingEngines.byName(PackingEngines.FIRST_FIT_DECREASING),
+                PackingEngines.byName(PackingEngines.BEST_FIT_DECREASING)), executor, TimeUnit.SECONDS.toNanos(5), listener);
+        PackingItems tooLarge = new PackingItems(new double[]{20.0}, new double[]{1.0}, new double[]{1.0});
+
+        assertThrows(ItemDoesNotFitException.class, () -> engine.pack(tooLarge, boxes));
+    }
+
+    // Puts both items into the first box of the given types
+    private PackingEngine fixed(String name, int... types) {
+        return new PackingEngine() {
+            @Override
+            public String name() {
+                return name;
+            }
+
+            @Override
+            public PackingPlan pack(PackingItems items, BoxTypes boxes) {
+                return plan(types);
+            }
+        };
+    }
+
+    private static PackingPlan plan(int... types) {
+        return new PackingPlan(types.length, types, new int[]{0, 0}, new int[]{0, 1});
+    }
+}
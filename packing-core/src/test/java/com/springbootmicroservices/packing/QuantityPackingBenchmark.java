@@ -0,0 +1,68 @@
+package com.springbootmicroservices.packing;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Run with: mvn test -Pbenchmark
+@Tag("benchmark")
+public class QuantityPackingBenchmark {
+
+    private static final int RUNS = 50;
+
+    private final BoxTypes boxes = new BoxTypes(
+            new double[]{30.0, 80.0, 50.0},
+            new double[]{40.0, 50.0, 80.0},
+            new double[]{80.0, 40.0, 60.0});
+
+    private final FirstFitDecreasingKernel kernel = new FirstFitDecreasingKernel();
+
+    @Test
+    void compareQuantitiesWithExpandedUnits() {
+        for (int skus : new int[]{1, 5, 20}) {
+            for (int unitsPerSku : new int[]{100, 3000}) {
+                Random random = new Random(skus * 31L + unitsPerSku);
+                double[] h = new double[skus];
+                double[] w = new double[skus];
+                double[] l = new double[skus];
+                int[] quantities = new int[skus];
+                for (int i = 0; i < skus; i++) {
+                    h[i] = 2 + random.nextInt(15);
+                    w[i] = 2 + random.nextInt(15);
+                    l[i] = 2 + random.nextInt(15);
+                    quantities[i] = unitsPerSku;
+                }
+                PackingItems grouped = new PackingItems(h, w, l, quantities);
+                PackingItems units = grouped.expand();
+
+                // Warm up both paths
+                for (int i = 0; i < 10; i++) {
+                    kernel.pack(grouped, boxes);
+                    kernel.pack(units, boxes);
+                }
+
+                long start = System.nanoTime();
+                int bulkBoxes = 0;
+                for (int i = 0; i < RUNS; i++) {
+                    bulkBoxes = kernel.pack(grouped, boxes).boxCount();
+                }
+                long bulkNanos = (System.nanoTime() - start) / RUNS;
+
+                start = System.nanoTime();
+                int unitBoxes = 0;
+                for (int i = 0; i < RUNS; i++) {
+                    unitBoxes = kernel.pack(units, boxes).boxCount();
+                }
+                long unitNanos = (System.nanoTime() - start) / RUNS;
+
+                assertEquals(unitBoxes, bulkBoxes);
+                System.out.printf("skus=%3d units=%6d boxes=%5d  quantities=%9.1f us  expanded=%10.1f us  speedup=%.1fx%n",
+                        skus, units.size(), bulkBoxes, bulkNanos / 1000.0, unitNanos / 1000.0,
+                        unitNanos / (double) bulkNanos);
+            }
+        }
+    }
+}
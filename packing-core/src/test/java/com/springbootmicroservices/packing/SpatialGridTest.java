@@ -0,0 +1,58 @@
+package com.springbootmicroservices.packing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SpatialGridTest {
+
+    @Test
+    void shouldProjectLikeAScanOfEveryCuboid() {
+        // Given: cuboids on and off the cell boundaries, some touching the walls
+        Random random = new Random(7);
+        SpatialGrid grid = new SpatialGrid(100, 60, 80, 8);
+        for (int i = 0; i < 300; i++) {
+            double ax = snap(random, 100);
+            double ay = snap(random, 60);
+            double az = snap(random, 80);
+            grid.add(ax, ay, az, Math.min(100, ax + 1 + snap(random, 20)), Math.min(60, ay + 1 + snap(random, 15)),
+                    Math.min(80, az + 1 + snap(random, 20)));
+        }
+
+        // When / Then: every ray stops at the same face as the full scan
+        for (int q = 0; q < 2000; q++) {
+            double x = snap(random, 100);
+            double y = snap(random, 60);
+            double z = snap(random, 80);
+            assertEquals(scan(grid, SpatialGrid.Z, x, y, z), grid.project(SpatialGrid.Z, x, y, z), 0.0);
+            assertEquals(scan(grid, SpatialGrid.Y, x, y, z), grid.project(SpatialGrid.Y, x, y, z), 0.0);
+            assertEquals(scan(grid, SpatialGrid.X, x, y, z), grid.project(SpatialGrid.X, x, y, z), 0.0);
+        }
+    }
+
+    // Half of the values land on a multiple of 5, which is where cell boundaries and faces meet
+    private static double snap(Random random, double size) {
+        double value = random.nextDouble() * size;
+        return random.nextBoolean() ? Math.floor(value / 5) * 5 : value;
+    }
+
+    private static double scan(SpatialGrid grid, int axis, double x, double y, double z) {
+        double eps = SpatialGrid.EPSILON;
+        double best = 0;
+        for (int i = 0; i < grid.size(); i++) {
+            boolean holdsX = x >= grid.x0(i) - eps && x < grid.x1(i) - eps;
+            boolean holdsY = y >= grid.y0(i) - eps && y < grid.y1(i) - eps;
+            boolean holdsZ = z >= grid.z0(i) - eps && z < grid.z1(i) - eps;
+            if (axis == SpatialGrid.Z && holdsX && holdsY && grid.z1(i) <= z + eps && grid.z1(i) > best) {
+                best = grid.z1(i);
+            } else if (axis == SpatialGrid.Y && holdsX && holdsZ && grid.y1(i) <= y + eps && grid.y1(i) > best) {
+                best = grid.y1(i);
+            } else if (axis == SpatialGrid.X && holdsY && holdsZ && grid.x1(i) <= x + eps && grid.x1(i) > best) {
+                best = grid.x1(i);
+            }
+        }
+        return best;
+    }
+}